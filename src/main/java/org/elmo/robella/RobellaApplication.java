@@ -5,12 +5,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
 @EnableTransactionManagement
 @EnableAspectJAutoProxy
+@EnableScheduling
 @MapperScan("org.elmo.robella.mapper")
 public class RobellaApplication {
 
@@ -4,6 +4,7 @@ import org.elmo.robella.model.entity.Provider;
 import org.elmo.robella.model.internal.UnifiedChatRequest;
 import org.elmo.robella.model.internal.UnifiedChatResponse;
 import org.elmo.robella.model.internal.UnifiedStreamChunk;
+import org.elmo.robella.service.stream.SsePassthrough;
 
 import java.util.stream.Stream;
 
@@ -31,6 +32,16 @@ public interface ApiClient {
      */
     Stream<UnifiedStreamChunk> chatStream(UnifiedChatRequest request, Provider provider);
 
+    /**
+     * 以流式方式发送请求，并原样返回上游的 SSE 字节流
+     * 仅在客户端端点格式与供应商端点格式相同时使用
+     *
+     * @param request 统一聊天请求对象
+     * @param provider 提供商配置信息
+     * @return 待转发的上游响应，调用方负责关闭
+     */
+    SsePassthrough chatStreamPassthrough(UnifiedChatRequest request, Provider provider);
+
 
 
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package org.elmo.robella.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.elmo.robella.config.OkHttpConfig;
+import org.elmo.robella.model.entity.Provider;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 供应商 HTTP 客户端
+ * 每个 Provider 独立的连接池、Dispatcher 和并发上限，慢供应商不会占满其它供应商的连接。
+ * 客户端在首次使用时按 {@link ProviderHttpSettings} 构建并缓存；Provider.config 变化或供应商被删除后，
+ * 由路由表重建时调用 {@link #retainAll} 丢弃旧客户端，正在进行的调用不受影响。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderHttpClientRegistry {
+
+    /** 流式调用的读超时是非流式的倍数，token 之间可能有较长停顿 */
+    private static final int STREAM_READ_TIMEOUT_FACTOR = 5;
+
+    private final OkHttpClient okHttpClient;
+    private final OkHttpConfig okHttpConfig;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, ProviderClients> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 非流式调用使用的客户端
+     */
+    public OkHttpClient client(Provider provider) {
+        return clients(provider).client();
+    }
+
+    /**
+     * 流式调用使用的客户端，与非流式共享连接池和并发上限
+     */
+    public OkHttpClient streamClient(Provider provider) {
+        return clients(provider).streamClient();
+    }
+
+    /**
+     * 只保留仍存在且配置未变的供应商客户端，其余释放空闲连接后丢弃
+     */
+    public void retainAll(Collection<Provider> providers) {
+        Map<Long, String> configs = providers.stream()
+                .filter(provider -> provider.getId() != null)
+                .collect(Collectors.toMap(Provider::getId, provider -> Objects.toString(provider.getConfig(), ""), (a, b) -> a));
+        Set<Long> ids = Set.copyOf(clients.keySet());
+        for (Long id : ids) {
+            ProviderClients current = clients.get(id);
+            if (current != null && !current.config().equals(configs.get(id)) && clients.remove(id, current)) {
+                current.close();
+                log.info("Discarded HTTP client of provider {}", id);
+            }
+        }
+    }
+
+    private ProviderClients clients(Provider provider) {
+        String config = Objects.toString(provider.getConfig(), "");
+        ProviderClients current = clients.get(provider.getId());
+        if (current != null && current.config().equals(config)) {
+            return current;
+        }
+        ProviderClients[] replaced = new ProviderClients[1];
+        ProviderClients result = clients.compute(provider.getId(), (id, existing) -> {
+            if (existing != null && existing.config().equals(config)) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return build(provider, config);
+        });
+        if (replaced[0] != null) {
+            replaced[0].close();
+        }
+        return result;
+    }
+
+    private ProviderClients build(Provider provider, String config) {
+        ProviderHttpSettings settings;
+        try {
+            settings = ProviderHttpSettings.parse(config, objectMapper);
+        } catch (IOException e) {
+            log.warn("Invalid config of provider {}, using default HTTP settings: {}", provider.getId(), e.getMessage());
+            settings = ProviderHttpSettings.DEFAULT;
+        }
+
+        OkHttpConfig.ConnectionPoolConfig pool = okHttpConfig.getConnectionPool();
+        OkHttpConfig.TimeoutConfig timeout = okHttpConfig.getTimeout();
+        long connectTimeoutMs = orDefault(settings.connectTimeoutMs(), timeout.getConnect().toMillis());
+        long readTimeoutMs = orDefault(settings.readTimeoutMs(), timeout.getRead().toMillis());
+
+        OkHttpClient.Builder builder = okHttpClient.newBuilder()
+                .connectionPool(new ConnectionPool(
+                        settings.maxIdleConnections() != null ? settings.maxIdleConnections() : pool.getMaxIdleConnections(),
+                        orDefault(settings.keepAliveMs(), pool.getKeepAliveDuration().toMillis()),
+                        TimeUnit.MILLISECONDS))
+                .dispatcher(new Dispatcher())
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(orDefault(settings.writeTimeoutMs(), timeout.getWrite().toMillis()), TimeUnit.MILLISECONDS)
+                .callTimeout(orDefault(settings.callTimeoutMs(), timeout.getCall().toMillis()), TimeUnit.MILLISECONDS);
+        if (Boolean.FALSE.equals(settings.http2())) {
+            builder.protocols(List.of(Protocol.HTTP_1_1));
+        }
+        Integer maxConcurrent = settings.maxConcurrentRequests();
+        if (maxConcurrent != null && maxConcurrent > 0) {
+            // Dispatcher 的上限只约束异步调用，同步 execute() 由拦截器限流
+            builder.addInterceptor(new ConcurrencyLimitInterceptor(maxConcurrent, connectTimeoutMs));
+        }
+        OkHttpClient client = builder.build();
+        if (maxConcurrent != null && maxConcurrent > 0) {
+            client.dispatcher().setMaxRequests(maxConcurrent);
+            client.dispatcher().setMaxRequestsPerHost(maxConcurrent);
+        }
+        OkHttpClient streamClient = client.newBuilder()
+                .readTimeout(readTimeoutMs * STREAM_READ_TIMEOUT_FACTOR, TimeUnit.MILLISECONDS)
+                .build();
+        log.info("Built HTTP client of provider {}: {}", provider.getId(), settings);
+        return new ProviderClients(config, client, streamClient);
+    }
+
+    private static long orDefault(Long value, long defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    private record ProviderClients(String config, OkHttpClient client, OkHttpClient streamClient) {
+
+        /**
+         * 关闭空闲连接；使用中的连接在调用结束后随连接池过期回收
+         */
+        void close() {
+            client.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * 并发上限
+     * 许可在响应体关闭时归还，流式响应一直占用到流结束；等待超过连接超时则按上游故障失败，由故障转移换供应商。
+     */
+    private static final class ConcurrencyLimitInterceptor implements Interceptor {
+
+        private final Semaphore permits;
+        private final long waitMillis;
+
+        ConcurrencyLimitInterceptor(int maxConcurrent, long waitMillis) {
+            this.permits = new Semaphore(maxConcurrent);
+            this.waitMillis = waitMillis;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            try {
+                if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Provider concurrency limit reached: " + chain.request().url().host());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for provider concurrency permit");
+            }
+
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            ResponseBody body = response.body();
+            if (body == null) {
+                permits.release();
+                return response;
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            ForwardingSource source = new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.elmo.robella.client;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * 供应商级 HTTP 客户端设置
+ * 来自 Provider.config 中的 http 对象，未设置的项沿用 robella.okhttp 全局配置，例如：
+ * <pre>{"http": {"maxIdleConnections": 20, "readTimeoutMs": 120000, "maxConcurrentRequests": 64, "http2": false}}</pre>
+ *
+ * @param maxConcurrentRequests 同时进行中的调用上限（流式调用占用到流结束），为空表示不限制
+ * @param http2                 false 时只使用 HTTP/1.1，为空或 true 时按 TLS 协商优先使用 HTTP/2
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProviderHttpSettings(
+        Integer maxIdleConnections,
+        Long keepAliveMs,
+        Long connectTimeoutMs,
+        Long readTimeoutMs,
+        Long writeTimeoutMs,
+        Long callTimeoutMs,
+        Integer maxConcurrentRequests,
+        Boolean http2) {
+
+    public static final ProviderHttpSettings DEFAULT =
+            new ProviderHttpSettings(null, null, null, null, null, null, null, null);
+
+    /**
+     * 解析 Provider.config，没有 http 对象时返回 {@link #DEFAULT}
+     *
+     * @throws IOException config 不是合法的 JSON
+     */
+    public static ProviderHttpSettings parse(String config, ObjectMapper objectMapper) throws IOException {
+        if (config == null || config.isBlank()) {
+            return DEFAULT;
+        }
+        JsonNode http = objectMapper.readTree(config).path("http");
+        return http.isObject() ? objectMapper.treeToValue(http, ProviderHttpSettings.class) : DEFAULT;
+    }
+}
@@ -2,7 +2,9 @@ package org.elmo.robella.client.anthropic;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
 import org.elmo.robella.client.ApiClient;
+import org.elmo.robella.client.ProviderHttpClientRegistry;
 import org.elmo.robella.client.logging.ClientRequestLogger;
 import org.elmo.robella.common.ErrorCodeConstants;
 import org.elmo.robella.common.ProviderType;
@@ -16,15 +18,17 @@ import org.elmo.robella.model.internal.UnifiedChatRequest;
 import org.elmo.robella.model.internal.UnifiedChatResponse;
 import org.elmo.robella.model.internal.UnifiedStreamChunk;
 import org.elmo.robella.service.stream.EndpointToUnifiedStreamTransformer;
+import org.elmo.robella.service.stream.SsePassthrough;
+import org.elmo.robella.service.stream.anthropic.AnthropicStreamScanner;
 import org.elmo.robella.service.transform.EndpointTransform;
 import org.elmo.robella.service.transform.provider.VendorTransform;
 import org.elmo.robella.util.JsonUtils;
 import org.elmo.robella.util.OkHttpUtils;
+import org.elmo.robella.util.SseFrame;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
@@ -37,13 +41,13 @@ import java.util.stream.Stream;
 @Qualifier("ANTHROPIC")
 public class AnthropicClient implements ApiClient {
 
-    private static final String SSE_DATA_PREFIX = "data: ";
     private static final String ANTHROPIC_VERSION = "2023-06-01";
 
     private final EndpointTransform<AnthropicChatRequest, AnthropicMessage> anthropicEndpointTransform;
     private final EndpointToUnifiedStreamTransformer<AnthropicStreamEvent> streamTransformer;
     private final Map<ProviderType, VendorTransform<AnthropicChatRequest, AnthropicMessage>> anthropicProviderTransformMap;
     private final OkHttpUtils okHttpUtils;
+    private final ProviderHttpClientRegistry providerHttpClients;
     private final ClientRequestLogger clientRequestLogger;
     private final JsonUtils jsonUtils;
 
@@ -84,7 +88,7 @@ public class AnthropicClient implements ApiClient {
 
             // Make HTTP call
             String url = buildMessagesUrl(provider);
-            String responseBody = okHttpUtils.postJson(url, anthropicRequest, headers);
+            String responseBody = okHttpUtils.postJson(providerHttpClients.client(provider), url, anthropicRequest, headers);
 
             // Parse response
             AnthropicMessage response = jsonUtils.fromJson(responseBody, AnthropicMessage.class);
@@ -114,41 +118,13 @@ public class AnthropicClient implements ApiClient {
         RequestContextHolder.RequestContext ctx = RequestContextHolder.getContext();
         String requestId = ctx.getRequestId();
         try {
-            // Transform unified request to Anthropic format
-            AnthropicChatRequest anthropicRequest = anthropicEndpointTransform.unifiedToEndpointRequest(request);
-
-            // Apply vendor-specific transformations if needed
-            if (request.getProviderType() != null) {
-                VendorTransform<AnthropicChatRequest, AnthropicMessage> providerTransform =
-                    anthropicProviderTransformMap.get(request.getProviderType());
-                if (providerTransform != null) {
-                    anthropicRequest = providerTransform.processRequest(anthropicRequest);
-                }
-            }
-
-            // Start logging
-            clientRequestLogger.startRequest(anthropicRequest, true);
-
-            if (log.isDebugEnabled()) {
-                log.debug("[AnthropicClient] chatStream start provider={} model={} stream=true",
-                    provider.getName(), anthropicRequest.getModel());
-            }
-
-            // Build HTTP headers for streaming
-            Map<String, String> headers = new ConcurrentHashMap<>();
-            headers.put("x-api-key", provider.getApiKey());
-            headers.put("anthropic-version", ANTHROPIC_VERSION);
-            headers.put("Accept", "text/event-stream");
-            headers.put("Content-Type", "application/json");
+            AnthropicChatRequest anthropicRequest = toStreamRequest(request, provider);
 
             // Make streaming HTTP call
             String url = buildMessagesUrl(provider);
-            Stream<String> rawStream = okHttpUtils.postStream(url, anthropicRequest, headers);
-
             // Parse stream chunks first, then transform the entire stream
-            Stream<AnthropicStreamEvent> parsedStream = rawStream
-                .map(this::parseStreamRaw)
-                .filter(Objects::nonNull)
+            Stream<AnthropicStreamEvent> parsedStream = okHttpUtils
+                .postStream(providerHttpClients.streamClient(provider), url, anthropicRequest, streamHeaders(provider), this::parseStreamFrame)
                 .peek(event -> {
                     clientRequestLogger.logStreamChunk(event);
                     if (log.isTraceEnabled()) {
@@ -171,6 +147,54 @@ public class AnthropicClient implements ApiClient {
         }
     }
 
+    @Override
+    public SsePassthrough chatStreamPassthrough(UnifiedChatRequest request, Provider provider) {
+        try {
+            AnthropicChatRequest anthropicRequest = toStreamRequest(request, provider);
+            Response response = okHttpUtils.openStream(providerHttpClients.streamClient(provider), buildMessagesUrl(provider), anthropicRequest, streamHeaders(provider));
+            return new SsePassthrough(response, new AnthropicStreamScanner(clientRequestLogger, jsonUtils),
+                () -> clientRequestLogger.completeLog(true));
+        } catch (Exception e) {
+            clientRequestLogger.completeLog(false);
+            throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错", e);
+        }
+    }
+
+    /**
+     * 转换为供应商的流式请求并开始记录日志
+     */
+    private AnthropicChatRequest toStreamRequest(UnifiedChatRequest request, Provider provider) {
+        // Transform unified request to Anthropic format
+        AnthropicChatRequest anthropicRequest = anthropicEndpointTransform.unifiedToEndpointRequest(request);
+
+        // Apply vendor-specific transformations if needed
+        if (request.getProviderType() != null) {
+            VendorTransform<AnthropicChatRequest, AnthropicMessage> providerTransform =
+                anthropicProviderTransformMap.get(request.getProviderType());
+            if (providerTransform != null) {
+                anthropicRequest = providerTransform.processRequest(anthropicRequest);
+            }
+        }
+
+        // Start logging
+        clientRequestLogger.startRequest(anthropicRequest, true);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[AnthropicClient] chatStream start provider={} model={} stream=true",
+                provider.getName(), anthropicRequest.getModel());
+        }
+        return anthropicRequest;
+    }
+
+    private Map<String, String> streamHeaders(Provider provider) {
+        Map<String, String> headers = new ConcurrentHashMap<>();
+        headers.put("x-api-key", provider.getApiKey());
+        headers.put("anthropic-version", ANTHROPIC_VERSION);
+        headers.put("Accept", "text/event-stream");
+        headers.put("Content-Type", "application/json");
+        return headers;
+    }
+
     private String buildMessagesUrl(Provider provider) {
         String base = provider.getBaseUrl();
         if (base.endsWith("/"))
@@ -182,19 +206,9 @@ public class AnthropicClient implements ApiClient {
         return base + "/v1/messages";
     }
 
-    private AnthropicStreamEvent parseStreamRaw(String raw) {
-        if (raw == null || raw.isEmpty())
-            return null;
-
-        if (raw.startsWith(SSE_DATA_PREFIX)) {
-            raw = raw.substring(SSE_DATA_PREFIX.length()).trim();
-        }
-
+    private AnthropicStreamEvent parseStreamFrame(SseFrame frame) {
         try {
-            AnthropicStreamEvent event = jsonUtils.fromJson(raw, AnthropicStreamEvent.class);
-            if (event != null) {
-                return event;
-            }
+            return jsonUtils.fromJson(frame.data(), 0, frame.length(), AnthropicStreamEvent.class);
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("[AnthropicClient] Failed to parse stream chunk: {}", e.getMessage());
@@ -203,4 +217,4 @@ public class AnthropicClient implements ApiClient {
 
         return null;
     }
-}
\ No newline at end of file
+}
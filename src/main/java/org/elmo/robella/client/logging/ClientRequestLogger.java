@@ -6,7 +6,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.elmo.robella.model.entity.RequestLog;
 import org.elmo.robella.context.RequestContextHolder;
 import org.elmo.robella.context.RequestContextHolder.RequestContext;
-import org.elmo.robella.exception.InsufficientCreditsException;
 import org.elmo.robella.model.anthropic.core.AnthropicChatRequest;
 import org.elmo.robella.model.anthropic.core.AnthropicMessage;
 import org.elmo.robella.model.openai.core.ChatCompletionRequest;
@@ -18,8 +17,13 @@ import org.elmo.robella.model.anthropic.stream.AnthropicStreamEvent;
 import org.elmo.robella.model.anthropic.stream.AnthropicMessageDeltaEvent;
 import org.elmo.robella.model.anthropic.stream.AnthropicMessageStartEvent;
 import org.elmo.robella.model.anthropic.stream.AnthropicContentBlockStartEvent;
-import org.elmo.robella.service.RequestLogService;
-import org.elmo.robella.service.UserService;
+import org.elmo.robella.service.credit.CreditHold;
+import org.elmo.robella.service.credit.CreditLedger;
+import org.elmo.robella.service.loadblancer.UpstreamLatencyTracker;
+import org.elmo.robella.service.requestlog.RequestJournal;
+import org.elmo.robella.service.requestlog.RequestLogWriter;
+import org.elmo.robella.service.statistics.LiveMetricsRing;
+import org.elmo.robella.util.UpstreamCallHandle;
 import org.elmo.robella.util.BillingUtils;
 import org.elmo.robella.util.TokenCountingUtils;
 import org.springframework.stereotype.Component;
@@ -36,10 +40,13 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class ClientRequestLogger {
 
-    private final RequestLogService requestLogService;
+    private final RequestLogWriter requestLogWriter;
+    private final RequestJournal requestJournal;
     private final TokenCountingUtils tokenCountingUtils;
     private final BillingUtils billingUtils;
-    private final UserService userService;
+    private final CreditLedger creditLedger;
+    private final UpstreamLatencyTracker latencyTracker;
+    private final LiveMetricsRing liveMetrics;
 
     // 统一的请求状态跟踪
     private static final Map<String, LogState> requestStateMap = new ConcurrentHashMap<>();
@@ -60,7 +67,9 @@ public class ClientRequestLogger {
         usage.setCompletionTokens(0); // 初始为0，后续根据响应更新
         usage.setTotalTokens(usage.getPromptTokens());
         state.setUsage(usage);
+        state.setVendorModelId(ctx.getVendorModel() != null ? ctx.getVendorModel().getId() : null);
         requestStateMap.put(requestId, state);
+        latencyTracker.onStart(state.getVendorModelId());
     }
 
     /**
@@ -78,7 +87,9 @@ public class ClientRequestLogger {
         usage.setCompletionTokens(0); // 初始为0，后续根据响应更新
         usage.setTotalTokens(usage.getPromptTokens());
         state.setUsage(usage);
+        state.setVendorModelId(ctx.getVendorModel() != null ? ctx.getVendorModel().getId() : null);
         requestStateMap.put(requestId, state);
+        latencyTracker.onStart(state.getVendorModelId());
     }
 
 
@@ -212,6 +223,30 @@ public class ClientRequestLogger {
         }
     }
 
+    /**
+     * 透传流式：记录首 token 时间
+     */
+    public void markFirstToken() {
+        LogState state = requestStateMap.get(RequestContextHolder.getContext().getRequestId());
+        if (state != null && state.getFirstTokenLatencyMs() == null) {
+            state.setFirstTokenLatencyMs(calculateDurationMs(state.getStartTime(), LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * 透传流式：暂存生成的文本，上游最终没有返回 usage 时在结束时一次性计数
+     */
+    public void logStreamText(String text) {
+        LogState state = requestStateMap.get(RequestContextHolder.getContext().getRequestId());
+        if (state == null || !state.getTokenSource().equals("counter")) {
+            return;
+        }
+        if (state.getStreamedText() == null) {
+            state.setStreamedText(new StringBuilder());
+        }
+        state.getStreamedText().append(text);
+    }
+
     /**
      * 通用
      */
@@ -235,9 +270,27 @@ public class ClientRequestLogger {
         }
         
         try {
+            UpstreamCallHandle upstreamCall = ctx.getUpstreamCall();
+            // 被取消的调用（对冲落败方、客户端中途断开）不计入上游延迟统计；
+            // 客户端断开的流仍按已收到的 usage 或已转发内容的计数结算
+            if (upstreamCall != null && upstreamCall.isCancelled()) {
+                latencyTracker.onCancel(state.getVendorModelId());
+            } else if (state.getStartTime() != null) {
+                int elapsedMs = calculateDurationMs(state.getStartTime(), LocalDateTime.now());
+                latencyTracker.onComplete(state.getVendorModelId(), state.getFirstTokenLatencyMs(), elapsedMs, isSuccess);
+                if (isSuccess && !state.isStream()) {
+                    latencyTracker.recordResponseTime(state.getVendorModelId(), elapsedMs);
+                }
+            }
+            // 对冲请求中只有率先完成的分支计费，其余分支按失败记录
+            if (isSuccess && upstreamCall != null && !upstreamCall.claimSettlement()) {
+                log.info("Hedged request {} completed after another branch won, skipping billing", requestId);
+                isSuccess = false;
+            }
             RequestLog.RequestLogBuilder builder = buildBaseRequestLog();
             builder.isSuccess(isSuccess);
             Usage usage = state.getUsage();
+            countStreamedText(state, ctx);
             
             // 做一下deepseek适配
             if (usage != null && usage.getPromptCacheHitTokens() != null) {
@@ -275,47 +328,39 @@ public class ClientRequestLogger {
             builder.tokenSource(state.getTokenSource()).isStream(state.stream);
             RequestLog logEntry = builder.build();
             log.info("[ClientRequestLogger]RequestLog: {}", logEntry);
-            requestLogService.save(logEntry);
+            liveMetrics.record(logEntry);
+            CreditHold hold = ctx.getCreditHold();
+            boolean charge = isSuccess && logEntry.getUserId() != null && logEntry.getTotalCost() != null;
+            boolean journaled = appendToJournal(logEntry, hold, charge);
+            if (!journaled) {
+                requestLogWriter.submit(logEntry);
+            }
             
-            // 基于预扣费的精确扣费逻辑
-            if (isSuccess && logEntry.getUserId() != null && logEntry.getTotalCost() != null) {
+            // 按实际成本结算余额预留，扣费经账本合并写入（或随本地日志回放写入）。
+            // 预留由故障转移的各次尝试和对冲的各分支共用，单次尝试失败不能释放，最终失败时由 UnifiedService 释放
+            if (charge) {
                 try {
                     BigDecimal actualCost = logEntry.getTotalCost();
-                    BigDecimal preBilledAmount = ctx.getPreBilledAmount();
-                    
-                    if (preBilledAmount != null && preBilledAmount.compareTo(BigDecimal.ZERO) > 0) {
-                        // 有预扣费，计算差额
-                        BigDecimal costDifference = actualCost.subtract(preBilledAmount);
-                        
-                        if (costDifference.compareTo(BigDecimal.ZERO) > 0) {
-                            // 实际成本高于预扣费，需要补扣差额
-                            userService.deductUserCredits(logEntry.getUserId(), costDifference);
-                            log.info("请求完成扣费: userId={}, preBilled={}, actualCost={}, additionalCharge={}", 
-                                    logEntry.getUserId(), preBilledAmount, actualCost, costDifference);
-                        } else if (costDifference.compareTo(BigDecimal.ZERO) < 0) {
-                            // 实际成本低于预扣费，需要退还差额
-                            BigDecimal refundAmount = costDifference.abs();
-                            userService.refundUserCredits(logEntry.getUserId(), refundAmount);
-                            log.info("请求完成退费: userId={}, preBilled={}, actualCost={}, refund={}", 
-                                    logEntry.getUserId(), preBilledAmount, actualCost, refundAmount);
+                    if (hold != null) {
+                        hold.settle(actualCost, journaled);
+                        log.info("请求完成结算: userId={}, held={}, actualCost={}",
+                                logEntry.getUserId(), hold.getAmount(), actualCost);
+                    } else {
+                        // 没有预留，直接扣费（兼容旧版本或特殊情况）
+                        if (journaled) {
+                            creditLedger.deferJournaled(logEntry.getUserId(), actualCost.negate());
                         } else {
-                            // 预扣费与实际成本完全一致，无需额外操作
-                            log.info("请求完成扣费: userId={}, preBilled=actualCost={}, no additional charge", 
-                                    logEntry.getUserId(), preBilledAmount);
+                            creditLedger.defer(logEntry.getUserId(), actualCost.negate());
                         }
-                    } else {
-                        // 没有预扣费，按原有逻辑直接扣费（兼容旧版本或特殊情况）
-                        userService.deductUserCredits(logEntry.getUserId(), actualCost);
                         log.info("请求完成直接扣费: userId={}, cost={}", logEntry.getUserId(), actualCost);
                     }
-                } catch (InsufficientCreditsException e) {
-                    log.warn("用户credits不足: userId={}, cost={}, error={}", 
-                            logEntry.getUserId(), logEntry.getTotalCost(), e.getMessage());
-                    // 可以在这里添加额外的处理逻辑，比如通知用户或记录特殊日志
                 } catch (Exception e) {
-                    log.error("扣减用户credits失败: userId={}, cost={}, error={}", 
+                    log.error("扣减用户credits失败: userId={}, cost={}, error={}",
                             logEntry.getUserId(), logEntry.getTotalCost(), e.getMessage(), e);
                 }
+            } else if (isSuccess && hold != null) {
+                // 成功但无需计费（缺少用户或成本），请求已结束，直接释放预留
+                hold.release();
             }
         } finally {
             requestStateMap.remove(requestId);
@@ -324,6 +369,42 @@ public class ClientRequestLogger {
     
 
 
+    private void countStreamedText(LogState state, RequestContext ctx) {
+        StringBuilder text = state.getStreamedText();
+        if (text == null || text.isEmpty() || !state.getTokenSource().equals("counter") || state.getUsage() == null) {
+            return;
+        }
+        Usage usage = state.getUsage();
+        int completionTokens = tokenCountingUtils.calculateTokens(text.toString(), ctx.getVendorModel().getVendorModelKey());
+        usage.setCompletionTokens(usage.getCompletionTokens() + completionTokens);
+        usage.setTotalTokens(usage.getPromptTokens() + usage.getCompletionTokens());
+        state.setStreamedText(null);
+    }
+
+    /**
+     * 请求日志连同扣费写入本地日志，由后台回放写入数据库
+     *
+     * @return 是否已写入；本地日志未开启或写入失败时返回 false
+     */
+    private boolean appendToJournal(RequestLog logEntry, CreditHold hold, boolean charge) {
+        if (!requestJournal.isEnabled()) {
+            return false;
+        }
+        long creditDeltaMicros = 0;
+        if (charge) {
+            if (hold == null) {
+                try {
+                    // 先加载账户缓存，避免回放后才加载的余额重复计入本次扣费
+                    creditLedger.getBalanceMicros(logEntry.getUserId());
+                } catch (Exception e) {
+                    return false;
+                }
+            }
+            creditDeltaMicros = -CreditLedger.toMicros(logEntry.getTotalCost());
+        }
+        return requestJournal.append(logEntry, creditDeltaMicros);
+    }
+
     private RequestLog.RequestLogBuilder buildBaseRequestLog() {
         RequestLog.RequestLogBuilder builder = RequestLog.builder();
         RequestContext ctx = RequestContextHolder.getContext();
@@ -354,5 +435,7 @@ public class ClientRequestLogger {
         private String tokenSource = "counter"; // 默认使用计数器
         private boolean stream;
         private Usage usage; // 存储Usage信息用于详细计费
+        private Long vendorModelId; // 用于负载均衡的延迟统计
+        private StringBuilder streamedText; // 透传流式暂存的生成文本，结束时计数
     }
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package org.elmo.robella.client.openai;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
 import org.elmo.robella.client.ApiClient;
+import org.elmo.robella.client.ProviderHttpClientRegistry;
 import org.elmo.robella.client.logging.ClientRequestLogger;
 import org.elmo.robella.common.ErrorCodeConstants;
 import org.elmo.robella.common.ProviderType;
@@ -16,15 +18,18 @@ import org.elmo.robella.model.openai.core.ChatCompletionRequest;
 import org.elmo.robella.model.openai.core.ChatCompletionResponse;
 import org.elmo.robella.model.openai.stream.ChatCompletionChunk;
 import org.elmo.robella.service.stream.EndpointToUnifiedStreamTransformer;
+import org.elmo.robella.service.stream.SsePassthrough;
+import org.elmo.robella.service.stream.openai.OpenAIStreamScanner;
 import org.elmo.robella.service.transform.EndpointTransform;
 import org.elmo.robella.service.transform.provider.VendorTransform;
 import org.elmo.robella.util.JsonUtils;
 import org.elmo.robella.util.OkHttpUtils;
+import org.elmo.robella.util.SseFrame;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
@@ -37,12 +42,13 @@ import java.util.stream.Stream;
 @Qualifier("OPENAI")
 public class OpenAIClient implements ApiClient {
 
-    private static final String SSE_DONE_MARKER = "[DONE]";
+    private static final byte[] SSE_DONE_MARKER = "[DONE]".getBytes(StandardCharsets.US_ASCII);
 
     private final EndpointTransform<ChatCompletionRequest, ChatCompletionResponse> openAIEndpointTransform;
     private final EndpointToUnifiedStreamTransformer<ChatCompletionChunk> streamTransformer;
     private final Map<ProviderType, VendorTransform<ChatCompletionRequest, ChatCompletionResponse>> openaiProviderTransformMap;
     private final OkHttpUtils okHttpUtils;
+    private final ProviderHttpClientRegistry providerHttpClients;
     private final ClientRequestLogger clientRequestLogger;
     private final JsonUtils jsonUtils;
 
@@ -71,7 +77,7 @@ public class OpenAIClient implements ApiClient {
 
             // Make HTTP call
             String url = buildChatCompletionsUrl(provider);
-            String responseBody = okHttpUtils.postJson(url, openaiRequest, headers);
+            String responseBody = okHttpUtils.postJson(providerHttpClients.client(provider), url, openaiRequest, headers);
 
             // Parse response
             ChatCompletionResponse response = jsonUtils.fromJson(responseBody, ChatCompletionResponse.class);
@@ -94,35 +100,13 @@ public class OpenAIClient implements ApiClient {
     @Override
     public Stream<UnifiedStreamChunk> chatStream(UnifiedChatRequest request, Provider provider) {
         try {
-            // Transform unified request to OpenAI format
-            ChatCompletionRequest openaiRequest = openAIEndpointTransform.unifiedToEndpointRequest(request);
-
-            // Apply vendor-specific transformations if needed
-            if (request.getProviderType() != null) {
-                VendorTransform<ChatCompletionRequest, ChatCompletionResponse> providerTransform = openaiProviderTransformMap
-                        .get(request.getProviderType());
-                if (providerTransform != null) {
-                    openaiRequest = providerTransform.processRequest(openaiRequest);
-                }
-            }
-
-            // Start logging
-            clientRequestLogger.startRequest(openaiRequest, true);
-
-            // Build HTTP headers for streaming
-            Map<String, String> headers = new ConcurrentHashMap<>();
-            headers.put("Authorization", "Bearer " + provider.getApiKey());
-            headers.put("Content-Type", "application/json");
-            headers.put("Accept", "text/event-stream");
+            ChatCompletionRequest openaiRequest = toStreamRequest(request);
 
             // Make streaming HTTP call
             String url = buildChatCompletionsUrl(provider);
-            Stream<String> rawStream = okHttpUtils.postStream(url, openaiRequest, headers);
-
             // Parse stream chunks first, then transform the entire stream
-            Stream<ChatCompletionChunk> parsedStream = rawStream
-                    .map(this::parseStreamRaw)
-                    .filter(Objects::nonNull)
+            Stream<ChatCompletionChunk> parsedStream = okHttpUtils
+                    .postStream(providerHttpClients.streamClient(provider), url, openaiRequest, streamHeaders(provider), this::parseStreamFrame)
                     .peek(chunk -> clientRequestLogger.logStreamChunk(chunk));
 
             // Transform the entire stream at once
@@ -138,30 +122,62 @@ public class OpenAIClient implements ApiClient {
             throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错", e);
         }
     }
+
+    @Override
+    public SsePassthrough chatStreamPassthrough(UnifiedChatRequest request, Provider provider) {
+        try {
+            ChatCompletionRequest openaiRequest = toStreamRequest(request);
+            Response response = okHttpUtils.openStream(providerHttpClients.streamClient(provider), buildChatCompletionsUrl(provider), openaiRequest, streamHeaders(provider));
+            return new SsePassthrough(response, new OpenAIStreamScanner(clientRequestLogger, jsonUtils),
+                    () -> clientRequestLogger.completeLog(true));
+        } catch (Exception e) {
+            clientRequestLogger.completeLog(false);
+            throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错", e);
+        }
+    }
+
+    /**
+     * 转换为供应商的流式请求并开始记录日志
+     */
+    private ChatCompletionRequest toStreamRequest(UnifiedChatRequest request) {
+        // Transform unified request to OpenAI format
+        ChatCompletionRequest openaiRequest = openAIEndpointTransform.unifiedToEndpointRequest(request);
+
+        // Apply vendor-specific transformations if needed
+        if (request.getProviderType() != null) {
+            VendorTransform<ChatCompletionRequest, ChatCompletionResponse> providerTransform = openaiProviderTransformMap
+                    .get(request.getProviderType());
+            if (providerTransform != null) {
+                openaiRequest = providerTransform.processRequest(openaiRequest);
+            }
+        }
+
+        // Start logging
+        clientRequestLogger.startRequest(openaiRequest, true);
+        return openaiRequest;
+    }
+
+    private Map<String, String> streamHeaders(Provider provider) {
+        Map<String, String> headers = new ConcurrentHashMap<>();
+        headers.put("Authorization", "Bearer " + provider.getApiKey());
+        headers.put("Content-Type", "application/json");
+        headers.put("Accept", "text/event-stream");
+        return headers;
+    }
+
     private String buildChatCompletionsUrl(Provider provider) {
         String baseUrl = provider.getBaseUrl();
         return baseUrl + "/chat/completions";
     }
 
-    private ChatCompletionChunk parseStreamRaw(String raw) {
-        if (raw == null || raw.isEmpty()) {
-            return null;
-        }
-        String trimmed = raw.trim();
-        if (trimmed.startsWith("data: ")) {
-            trimmed = trimmed.substring(5).trim();
-        }
-        
-        if (SSE_DONE_MARKER.equals(trimmed)) {
+    private ChatCompletionChunk parseStreamFrame(SseFrame frame) {
+        if (frame.dataEquals(SSE_DONE_MARKER)) {
             log.debug("[OpenAIClient] streamChatCompletion done ");
             return null;
         }
 
         try {
-            ChatCompletionChunk chunk = jsonUtils.fromJson(trimmed, ChatCompletionChunk.class);
-            if (chunk != null) {
-                return chunk;
-            }
+            return jsonUtils.fromJson(frame.data(), 0, frame.length(), ChatCompletionChunk.class);
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("[OpenAIClient] Failed to parse stream chunk: {}", e.getMessage());
@@ -171,4 +187,4 @@ public class OpenAIClient implements ApiClient {
         return null;
     }
 
-}
\ No newline at end of file
+}
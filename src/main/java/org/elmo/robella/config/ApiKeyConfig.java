@@ -0,0 +1,41 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * API Key 相关配置
+ * 对应application.yml中的robella.api-key配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.api-key")
+public class ApiKeyConfig {
+
+    private CacheConfig cache = new CacheConfig();
+    private TouchConfig touch = new TouchConfig();
+    private RateLimitConfig rateLimit = new RateLimitConfig();
+
+    @Data
+    public static class CacheConfig {
+        private boolean enabled = true;
+        private int maxSize = 10000;
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class TouchConfig {
+        private Duration flushInterval = Duration.ofSeconds(5);
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class RateLimitConfig {
+        private Duration persistInterval = Duration.ofSeconds(30);
+        private Duration idleTimeout = Duration.ofHours(1);
+        private int batchSize = 500;
+    }
+}
@@ -0,0 +1,37 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 用户余额记账配置
+ * 对应application.yml中的robella.credit配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.credit")
+public class CreditConfig {
+
+    private LedgerConfig ledger = new LedgerConfig();
+
+    public enum LedgerMode {
+        /** SQLite 使用 COALESCING，其它数据库使用 DIRECT */
+        AUTO,
+        /** 每次变动执行一条原子 UPDATE ... RETURNING */
+        DIRECT,
+        /** 变动先累加在内存中，定时合并为每个用户一次 UPDATE */
+        COALESCING
+    }
+
+    @Data
+    public static class LedgerConfig {
+        private LedgerMode mode = LedgerMode.AUTO;
+        /** COALESCING 模式下的刷新间隔 */
+        private Duration flushInterval = Duration.ofSeconds(1);
+        /** 每批写入的用户数 */
+        private int batchSize = 500;
+    }
+}
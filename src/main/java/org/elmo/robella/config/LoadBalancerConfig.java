@@ -0,0 +1,40 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 负载均衡配置
+ * 对应application.yml中的robella.loadbalancer配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.loadbalancer")
+public class LoadBalancerConfig {
+
+    /**
+     * 负载均衡策略: ROUND_ROBIN, RANDOM, HYBRID_WEIGHTED, LEAST_LATENCY
+     */
+    private String strategy = "ROUND_ROBIN";
+
+    private LeastLatencyConfig leastLatency = new LeastLatencyConfig();
+
+    @Data
+    public static class LeastLatencyConfig {
+        /**
+         * EWMA 衰减时间常数，越小对延迟变化越敏感
+         */
+        private Duration decayTime = Duration.ofSeconds(10);
+        /**
+         * 错误惩罚延迟，得分 = (EWMA 首字节延迟 + 错误率 × 惩罚延迟) × (在途请求数 + 1)
+         */
+        private Duration errorPenaltyLatency = Duration.ofSeconds(5);
+        /**
+         * 没有观测数据时假定的首字节延迟；同组候选中有已观测的供应商模型时改用它们的平均值
+         */
+        private Duration coldStartLatency = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,82 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 请求日志写入配置
+ * 对应application.yml中的robella.request-log配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.request-log")
+public class RequestLogConfig {
+
+    private WriterConfig writer = new WriterConfig();
+    private JournalConfig journal = new JournalConfig();
+    private PartitionConfig partition = new PartitionConfig();
+
+    public enum OverflowPolicy {
+        /** 队列已满时由调用线程同步写入（背压） */
+        SYNC,
+        /** 队列已满时丢弃日志并计数 */
+        DROP
+    }
+
+    public enum SinkType {
+        /** PostgreSQL 使用 COPY，其它数据库使用 MyBatis 多行 INSERT */
+        AUTO,
+        MYBATIS,
+        /** PostgreSQL COPY FROM STDIN，仅适用于 PostgreSQL */
+        COPY
+    }
+
+    @Data
+    public static class WriterConfig {
+        /** 关闭时每条日志在调用线程上同步写入 */
+        private boolean enabled = true;
+        /** 队列中最多缓存的日志条数 */
+        private int queueCapacity = 10000;
+        /** 单次批量写入的条数，队列积压达到该值时立即刷新 */
+        private int flushSize = 200;
+        /** 积压不足一批时的最长等待时间 */
+        private Duration flushInterval = Duration.ofMillis(500);
+        private OverflowPolicy overflowPolicy = OverflowPolicy.SYNC;
+        /** 批量写入方式 */
+        private SinkType sink = SinkType.AUTO;
+        /** 关闭时等待队列写完的最长时间 */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class JournalConfig {
+        /** 开启后请求日志与扣费先追加到本地日志文件，再由后台回放写入数据库 */
+        private boolean enabled = false;
+        private String directory = "./data/journal";
+        /** 单个分段文件大小，写满后切换到新分段 */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        /** 每次追加后强制刷盘；关闭时只保证进程崩溃不丢数据，不保证断电 */
+        private boolean forceOnAppend = false;
+        private Duration replayInterval = Duration.ofMillis(200);
+        /** 每个回放事务包含的记录数 */
+        private int replayBatchSize = 500;
+    }
+
+    @Data
+    public static class PartitionConfig {
+        /** 定期创建之后月份的分区（仅 PostgreSQL），并按保留期归档过期月份 */
+        private boolean enabled = true;
+        /** 提前创建分区的月数 */
+        private int premakeMonths = 3;
+        /** 当月之前保留的完整月数，更早的月份导出为归档文件后从数据库移除；0 表示不归档 */
+        private int retentionMonths = 0;
+        /** 归档目录，每个月导出为一个 request_log_YYYYMM.csv.gz */
+        private String archiveDirectory = "./data/archive";
+        private Duration checkInterval = Duration.ofHours(6);
+    }
+}
@@ -0,0 +1,58 @@
+package org.elmo.robella.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.service.requestlog.MybatisRequestLogSink;
+import org.elmo.robella.service.requestlog.PostgresCopyRequestLogSink;
+import org.elmo.robella.service.requestlog.PostgresRequestLogPartitions;
+import org.elmo.robella.service.requestlog.RequestLogPartitions;
+import org.elmo.robella.service.requestlog.RequestLogSink;
+import org.elmo.robella.service.requestlog.RollupRequestLogSink;
+import org.elmo.robella.service.requestlog.SqliteRequestLogPartitions;
+import org.elmo.robella.service.statistics.RequestStatsRollupService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * 请求日志批量写入方式的选择：PostgreSQL 使用 COPY，SQLite 使用 MyBatis 多行 INSERT；
+ * 两者都在同一事务内累加统计汇总表。按月划分的存储同样按数据库选择实现。
+ */
+@Slf4j
+@Configuration
+public class RequestLogSinkConfig {
+
+    @Value("${spring.datasource.driver-class-name:}")
+    private String driverClassName;
+
+    @Bean
+    public RequestLogSink requestLogSink(RequestLogConfig requestLogConfig, RequestLogMapper requestLogMapper,
+                                         DataSource dataSource, RequestStatsRollupService rollupService,
+                                         TransactionTemplate transactionTemplate) {
+        RequestLogConfig.SinkType type = requestLogConfig.getWriter().getSink();
+        RequestLogSink sink;
+        if (type == RequestLogConfig.SinkType.COPY
+                || (type == RequestLogConfig.SinkType.AUTO && isPostgres())) {
+            log.info("Request logs will be written with PostgreSQL COPY");
+            sink = new PostgresCopyRequestLogSink(dataSource);
+        } else {
+            sink = new MybatisRequestLogSink(requestLogMapper);
+        }
+        return new RollupRequestLogSink(sink, rollupService, transactionTemplate);
+    }
+
+    @Bean
+    public RequestLogPartitions requestLogPartitions(DataSource dataSource) {
+        return isPostgres() ? new PostgresRequestLogPartitions(dataSource) : new SqliteRequestLogPartitions(dataSource);
+    }
+
+    /**
+     * 检查是否使用 PostgreSQL 数据库
+     */
+    private boolean isPostgres() {
+        return "org.postgresql.Driver".equals(driverClassName);
+    }
+}
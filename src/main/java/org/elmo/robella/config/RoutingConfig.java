@@ -0,0 +1,63 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 路由容错配置（熔断、故障转移与对冲请求）
+ * 对应application.yml中的robella.routing配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.routing")
+public class RoutingConfig {
+
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+    private FailoverConfig failover = new FailoverConfig();
+    private HedgingConfig hedging = new HedgingConfig();
+
+    @Data
+    public static class CircuitBreakerConfig {
+        private boolean enabled = true;
+        /** 滑动窗口长度 */
+        private Duration window = Duration.ofSeconds(30);
+        /** 滑动窗口分桶数 */
+        private int buckets = 10;
+        /** 窗口内最少调用次数，达到后才计算失败率 */
+        private int minimumCalls = 10;
+        /** 失败率阈值 (0~1) */
+        private double failureRateThreshold = 0.5;
+        /** 超过该耗时的调用视为慢调用 */
+        private Duration slowCallDuration = Duration.ofSeconds(30);
+        /** 慢调用比例阈值 (0~1) */
+        private double slowCallRateThreshold = 0.8;
+        /** 熔断打开后的等待时间，之后进入半开状态 */
+        private Duration openDuration = Duration.ofSeconds(30);
+        /** 半开状态允许的探测请求数，全部成功后关闭熔断 */
+        private int halfOpenMaxCalls = 3;
+    }
+
+    @Data
+    public static class FailoverConfig {
+        private boolean enabled = true;
+        /** 单个请求最多尝试的供应商模型数量（含首次） */
+        private int maxAttempts = 3;
+    }
+
+    @Data
+    public static class HedgingConfig {
+        /** 全局开关，具体是否对冲由 Model.hedgingEnabled 决定 */
+        private boolean enabled = true;
+        /** 首选供应商模型响应耗时的分位点，超过该耗时未返回则发出对冲请求 */
+        private double percentile = 0.95;
+        /** 计算分位数所需的最少样本数 */
+        private int minSamples = 20;
+        /** 样本不足时使用的对冲延迟 */
+        private Duration defaultDelay = Duration.ofSeconds(5);
+        private Duration minDelay = Duration.ofMillis(200);
+        private Duration maxDelay = Duration.ofSeconds(30);
+    }
+}
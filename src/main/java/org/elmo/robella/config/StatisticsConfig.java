@@ -0,0 +1,44 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 统计配置
+ * 对应application.yml中的robella.statistics配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.statistics")
+public class StatisticsConfig {
+
+    private LiveConfig live = new LiveConfig();
+    private CacheConfig cache = new CacheConfig();
+
+    @Data
+    public static class LiveConfig {
+        /** 关闭后不再记录实时指标，/live 返回空结果 */
+        private boolean enabled = true;
+        /** 内存中保留的时间范围，修改后需重启生效 */
+        private Duration window = Duration.ofMinutes(60);
+        /** 单个时间桶的长度，修改后需重启生效 */
+        private Duration resolution = Duration.ofSeconds(1);
+        /** 每个模型 × 供应商环形缓冲区的锁分段数 */
+        private int stripes = 16;
+    }
+
+    @Data
+    public static class CacheConfig {
+        private boolean enabled = true;
+        private int maxSize = 1000;
+        /** 窗口已结束且写入已稳定时的缓存时间，迟到的写入会使其提前失效 */
+        private Duration closedTtl = Duration.ofHours(1);
+        /** 窗口仍包含正在写入的时间段时的缓存时间 */
+        private Duration openTtl = Duration.ofSeconds(10);
+        /** 时间桶结束后仍可能有请求日志写入的时长，超过后视为已结束 */
+        private Duration settleDelay = Duration.ofMinutes(1);
+    }
+}
@@ -0,0 +1,30 @@
+package org.elmo.robella.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 流式响应配置
+ * 对应application.yml中的robella.streaming配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "robella.streaming")
+public class StreamingConfig {
+
+    /** 客户端端点与供应商端点格式相同（OpenAI→OpenAI、Anthropic→Anthropic）时直接透传上游 SSE 字节 */
+    private boolean passthrough = true;
+    private FlushConfig flush = new FlushConfig();
+
+    @Data
+    public static class FlushConfig {
+        /** 增量事件合并写出的最长间隔，0 表示每个事件立即刷新 */
+        private Duration interval = Duration.ZERO;
+        /** 缓冲达到该大小时立即刷新 */
+        private DataSize maxBuffered = DataSize.ofKilobytes(8);
+    }
+}
@@ -1,10 +1,11 @@
 package org.elmo.robella.context;
 
 import org.elmo.robella.model.entity.VendorModel;
+import org.elmo.robella.service.credit.CreditHold;
+import org.elmo.robella.util.UpstreamCallHandle;
 
 import lombok.Builder;
 import lombok.Data;
-import java.math.BigDecimal;
 
 @Data
 public class RequestContextHolder {
@@ -28,7 +29,7 @@ public class RequestContextHolder {
     }
 
     @Data
-    @Builder
+    @Builder(toBuilder = true)
     public static class RequestContext {
         private String requestId;
         private Long userId;
@@ -40,7 +41,10 @@ public class RequestContextHolder {
         private String modelKey;
         private Long providerId;
         private VendorModel vendorModel;
-        private BigDecimal preBilledAmount;
+        /** 请求开始时按预估成本设置的余额预留，完成后结算 */
+        private CreditHold creditHold;
+        /** 当前正在执行的上游调用，用于跨线程取消和对冲请求的计费仲裁 */
+        private UpstreamCallHandle upstreamCall;
 
 
     }
@@ -15,17 +15,25 @@ import org.elmo.robella.model.anthropic.stream.AnthropicStreamEvent;
 import org.elmo.robella.model.internal.UnifiedChatRequest;
 import org.elmo.robella.model.internal.UnifiedChatResponse;
 import org.elmo.robella.model.openai.model.ModelListResponse;
+import org.elmo.robella.common.EndpointType;
+import org.elmo.robella.config.StreamingConfig;
+import org.elmo.robella.exception.ClientDisconnectedException;
 import org.elmo.robella.service.UnifiedService;
+import org.elmo.robella.service.stream.SsePassthrough;
+import org.elmo.robella.service.stream.SseResponseWriter;
+import org.elmo.robella.service.stream.UpstreamStream;
 import org.elmo.robella.service.stream.UnifiedToEndpointStreamTransformer;
 import org.elmo.robella.service.transform.EndpointTransform;
 import org.elmo.robella.util.JsonUtils;
+import org.elmo.robella.util.UpstreamCallHandle;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 /**
@@ -38,10 +46,13 @@ import java.util.stream.Stream;
 @Slf4j
 public class AnthropicController {
 
+    private static final byte[] SSE_ERROR = "[ERROR]".getBytes(StandardCharsets.US_ASCII);
+
     private final UnifiedService unifiedService;
     private final EndpointTransform<AnthropicChatRequest, AnthropicMessage> anthropicEndpointTransform;
     private final UnifiedToEndpointStreamTransformer<AnthropicStreamEvent> unifiedToAnthropicStreamTransformer;
     private final JsonUtils jsonUtils;
+    private final StreamingConfig streamingConfig;
     /**
      * Anthropic Messages API 端点
      *
@@ -72,68 +83,82 @@ public class AnthropicController {
         return ResponseEntity.ok().body(anthropicResponse);
     }
 
-    private SseEmitter handleStreamingResponse(UnifiedChatRequest unifiedRequest, String requestId, HttpServletResponse response) {
-        SseEmitter emitter = new SseEmitter(30000000000L);
+    private Object handleStreamingResponse(UnifiedChatRequest unifiedRequest, String requestId, HttpServletResponse response) {
         response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
         response.setHeader(HttpHeaders.CONNECTION, "keep-alive");
         response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
 
-        // 捕获当前线程的上下文
-        RequestContext currentContext = RequestContextHolder.getContext();
-
-        // 使用虚拟线程异步处理SSE发送
-        Thread.ofVirtual().name("sse-sender-" + requestId).start(() -> {
-            try {
-                // 在虚拟线程中设置上下文
-                if (currentContext != null) {
-                    RequestContextHolder.setContext(currentContext);
-                }
-
-                // 获取流式响应数据
-                Stream<AnthropicStreamEvent> anthropicStream = unifiedToAnthropicStreamTransformer.transform(unifiedService.sendStreamRequest(unifiedRequest), requestId);
-                
-                // 异步发送SSE数据
-                sendAnthropicSseDataAsync(emitter, anthropicStream);
+        // 路由并建立上游连接，失败时直接以错误响应返回
+        UpstreamStream upstream = unifiedService.sendStreamRequest(unifiedRequest, EndpointType.ANTHROPIC);
+        if (upstream.isPassthrough()) {
+            transferPassthrough(upstream.passthrough(), response);
+        } else {
+            writeStream(unifiedToAnthropicStreamTransformer.transform(upstream.chunks(), requestId), response);
+        }
+        // 已直接写入响应，不再经过返回值处理
+        return null;
+    }
 
-            } catch (Exception e) {
-                log.error("Error in streaming response", e);
-                try {
-                    emitter.send(SseEmitter.event().data("[ERROR]"));
-                    emitter.completeWithError(e);
-                } catch (IOException ioException) {
-                    log.error("Error sending error event", ioException);
-                }
-            } finally {
-                // 清理虚拟线程中的上下文
-                RequestContextHolder.clear();
-            }
-        });
+    /**
+     * 透传上游原始 SSE，事件名随原始字节一起转发
+     */
+    private void transferPassthrough(SsePassthrough passthrough, HttpServletResponse response) {
+        try {
+            passthrough.transferTo(response.getOutputStream());
+        } catch (ClientDisconnectedException e) {
+            cancelUpstream(e);
+        } catch (IOException e) {
+            log.warn("SSE passthrough interrupted: {}", e.getMessage());
+        } finally {
+            passthrough.close();
+        }
+    }
 
-        return emitter;
+    /**
+     * 客户端已断开：先取消上游调用再释放连接，不再为无人接收的 token 付费，已转发的部分照常结算
+     */
+    private void cancelUpstream(ClientDisconnectedException e) {
+        log.info("Client disconnected, cancelling upstream call: {}", e.getMessage());
+        UpstreamCallHandle upstreamCall = RequestContextHolder.getContext().getUpstreamCall();
+        if (upstreamCall != null) {
+            upstreamCall.cancel();
+        }
     }
 
     /**
-     * 异步发送Anthropic SSE数据
+     * 在请求线程上逐个写出带事件名的 SSE 事件
+     * 只有 content_block_delta 参与合并刷新，其余结构性事件立即刷新
      */
-    private void sendAnthropicSseDataAsync(SseEmitter emitter, Stream<AnthropicStreamEvent> anthropicStream) {
+    private void writeStream(Stream<AnthropicStreamEvent> events, HttpServletResponse response) {
+        SseResponseWriter writer = null;
         try {
-            anthropicStream.forEach(event -> {
-                try {
-                    // 使用SseEmitter的专用API发送带事件类型的消息
-                    String eventType = extractEventType(event);
-                    String eventData = jsonUtils.toJson(event);
-                    emitter.send(SseEmitter.event().name(eventType).data(eventData));
-                } catch (IOException e) {
-                    log.error("Error sending SSE event", e);
+            writer = new SseResponseWriter(response.getOutputStream(), jsonUtils, streamingConfig.getFlush());
+            Iterator<AnthropicStreamEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                AnthropicStreamEvent event = iterator.next();
+                String eventType = extractEventType(event);
+                if ("content_block_delta".equals(eventType)) {
+                    writer.write(eventType, event);
+                } else {
+                    writer.writeAndFlush(eventType, event);
                 }
-            });
-            anthropicStream.close();
-            // 发送完成标记
-            emitter.complete();
-
+            }
+            writer.flush();
+        } catch (ClientDisconnectedException e) {
+            cancelUpstream(e);
+        } catch (IOException e) {
+            log.warn("SSE stream interrupted: {}", e.getMessage());
         } catch (Exception e) {
-            log.error("Error in async SSE sending", e);
-            emitter.completeWithError(e);
+            log.error("Error in streaming response", e);
+            if (writer != null) {
+                try {
+                    writer.writeRawAndFlush(SSE_ERROR);
+                } catch (IOException ioException) {
+                    log.error("Error sending error event", ioException);
+                }
+            }
+        } finally {
+            events.close();
         }
     }
 
@@ -9,24 +9,31 @@ import org.elmo.robella.model.openai.core.ChatCompletionRequest;
 import org.elmo.robella.model.openai.core.ChatCompletionResponse;
 import org.elmo.robella.model.openai.model.ModelListResponse;
 import org.elmo.robella.model.openai.stream.ChatCompletionChunk;
+import org.elmo.robella.common.EndpointType;
+import org.elmo.robella.config.StreamingConfig;
+import org.elmo.robella.exception.ClientDisconnectedException;
 import org.elmo.robella.service.UnifiedService;
+import org.elmo.robella.service.stream.SsePassthrough;
+import org.elmo.robella.service.stream.SseResponseWriter;
+import org.elmo.robella.service.stream.UpstreamStream;
 import org.elmo.robella.service.stream.UnifiedToEndpointStreamTransformer;
 import org.elmo.robella.service.transform.EndpointTransform;
 import org.elmo.robella.util.JsonUtils;
+import org.elmo.robella.util.UpstreamCallHandle;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 import org.elmo.robella.context.RequestContextHolder;
 import org.elmo.robella.context.RequestContextHolder.RequestContext;
 import org.elmo.robella.model.internal.UnifiedChatRequest;
 import org.elmo.robella.model.internal.UnifiedChatResponse;
-import org.elmo.robella.model.internal.UnifiedStreamChunk;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Slf4j
 @RestController
@@ -34,10 +41,13 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 @RequiredArgsConstructor
 public class OpenAIController {
 
+    private static final byte[] SSE_DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
     private final UnifiedService unifiedService;
     private final EndpointTransform<ChatCompletionRequest, ChatCompletionResponse> openAIEndpointTransform;
     private final UnifiedToEndpointStreamTransformer<ChatCompletionChunk> unifiedToOpenAIStreamTransformer;
     private final JsonUtils jsonUtils;
+    private final StreamingConfig streamingConfig;
 
     @PostMapping(value = "/chat/completions", consumes = MediaType.APPLICATION_JSON_VALUE)
     public Object chatCompletions(@RequestBody @Valid ChatCompletionRequest request, HttpServletResponse response) {
@@ -60,66 +70,70 @@ public class OpenAIController {
         return ResponseEntity.ok().body(chatResponse);
     }
 
-    private SseEmitter handleStreamingResponse(UnifiedChatRequest unifiedRequest, String requestId, HttpServletResponse response) {
-        SseEmitter emitter = new SseEmitter(30000000000L);
+    private Object handleStreamingResponse(UnifiedChatRequest unifiedRequest, String requestId, HttpServletResponse response) {
         response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
         response.setHeader(HttpHeaders.CONNECTION, "keep-alive");
         response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
 
-        // 捕获当前线程的上下文
-        RequestContext currentContext = RequestContextHolder.getContext();
+        // 路由并建立上游连接，失败时直接以错误响应返回
+        UpstreamStream upstream = unifiedService.sendStreamRequest(unifiedRequest, EndpointType.OPENAI);
+        if (upstream.isPassthrough()) {
+            transferPassthrough(upstream.passthrough(), response);
+        } else {
+            writeStream(unifiedToOpenAIStreamTransformer.transform(upstream.chunks(), requestId), response);
+        }
+        // 已直接写入响应，不再经过返回值处理
+        return null;
+    }
 
-        // 使用虚拟线程异步处理SSE发送
-        Thread.ofVirtual().name("sse-sender-" + requestId).start(() -> {
-            try {
-                // 在虚拟线程中设置上下文
-                if (currentContext != null) {
-                    RequestContextHolder.setContext(currentContext);
-                }
-                
-                // 获取流式响应数据
-                Stream<UnifiedStreamChunk> unifiedStream = unifiedService.sendStreamRequest(unifiedRequest);
-                Stream<String> sseStream = unifiedToOpenAIStreamTransformer.transform(unifiedStream, requestId)
-                        .map(jsonUtils::toJson);
-
-                // 异步发送SSE数据
-                sendSseDataAsync(emitter, sseStream);
-
-            } catch (Exception e) {
-                log.error("Error in streaming response", e);
-                emitter.completeWithError(e);
-            } finally {
-                // 清理虚拟线程中的上下文
-                RequestContextHolder.clear();
-            }
-        });
+    /**
+     * 透传上游原始 SSE，上游的 [DONE] 标记随原始字节一起转发
+     */
+    private void transferPassthrough(SsePassthrough passthrough, HttpServletResponse response) {
+        try {
+            passthrough.transferTo(response.getOutputStream());
+        } catch (ClientDisconnectedException e) {
+            cancelUpstream(e);
+        } catch (IOException e) {
+            log.warn("SSE passthrough interrupted: {}", e.getMessage());
+        } finally {
+            passthrough.close();
+        }
+    }
 
-        return emitter;
+    /**
+     * 客户端已断开：先取消上游调用再释放连接，不再为无人接收的 token 付费，已转发的部分照常结算
+     */
+    private void cancelUpstream(ClientDisconnectedException e) {
+        log.info("Client disconnected, cancelling upstream call: {}", e.getMessage());
+        UpstreamCallHandle upstreamCall = RequestContextHolder.getContext().getUpstreamCall();
+        if (upstreamCall != null) {
+            upstreamCall.cancel();
+        }
     }
 
     /**
-     * 异步发送SSE数据
+     * 在请求线程上逐个编码并写出分块，最后发送完成标记；结束后关闭流，释放上游连接并完成请求日志
      */
-    private void sendSseDataAsync(SseEmitter emitter, Stream<String> sseStream) {
+    private void writeStream(Stream<ChatCompletionChunk> chunks, HttpServletResponse response) {
         try {
-            sseStream.forEach(chunk -> {
-                try {
-                    emitter.send(SseEmitter.event().data(chunk));
-                } catch (IOException e) {
-                    log.error("Error sending SSE chunk", e);
-                    
-                    return;
+            SseResponseWriter writer = new SseResponseWriter(response.getOutputStream(), jsonUtils, streamingConfig.getFlush());
+            Iterator<ChatCompletionChunk> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                ChatCompletionChunk chunk = iterator.next();
+                if (chunk != null) {
+                    writer.write(null, chunk);
                 }
-            });
-
-            // 发送完成标记
-            emitter.send(SseEmitter.event().data("[DONE]"));
-            sseStream.close();
-            emitter.complete();
-
+            }
+            writer.writeRawAndFlush(SSE_DONE);
+        } catch (ClientDisconnectedException e) {
+            cancelUpstream(e);
+        } catch (IOException e) {
+            log.warn("SSE stream interrupted: {}", e.getMessage());
         } catch (Exception e) {
-            log.error("Error in async SSE sending", e);
-            emitter.completeWithError(e);
+            log.error("Error in streaming response", e);
+        } finally {
+            chunks.close();
         }
     }
 
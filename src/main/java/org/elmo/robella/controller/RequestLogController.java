@@ -0,0 +1,115 @@
+package org.elmo.robella.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.annotation.RequiredRole;
+import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.context.RequestContextHolder;
+import org.elmo.robella.exception.BusinessException;
+import org.elmo.robella.exception.ValidationException;
+import org.elmo.robella.model.common.Role;
+import org.elmo.robella.model.dto.RequestLogQuery;
+import org.elmo.robella.model.response.RequestLogPageResponse;
+import org.elmo.robella.service.RequestLogService;
+import org.elmo.robella.service.requestlog.RequestLogExporter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+
+/**
+ * 请求日志明细：键集分页查询与流式导出
+ * 普通用户只能访问自己的日志，管理员通过 /all 访问全部日志。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/request-logs")
+@RequiredArgsConstructor
+@Validated
+public class RequestLogController {
+
+    private final RequestLogService requestLogService;
+    private final RequestLogExporter requestLogExporter;
+
+    @GetMapping
+    @RequiredRole(Role.USER)
+    public RequestLogPageResponse getMyLogs(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit,
+            @RequestParam(required = false) Long apiKeyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endTime) {
+        RequestLogQuery query = new RequestLogQuery(getCurrentUserId(), apiKeyId, startTime, endTime);
+        return requestLogService.getLogPage(query, cursor, limit);
+    }
+
+    @GetMapping("/export")
+    @RequiredRole(Role.USER)
+    public void exportMyLogs(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Long apiKeyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endTime,
+            HttpServletResponse response) throws IOException {
+        export(new RequestLogQuery(getCurrentUserId(), apiKeyId, startTime, endTime), format, response);
+    }
+
+    @GetMapping("/all")
+    @RequiredRole(Role.ADMIN)
+    public RequestLogPageResponse getAllLogs(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(500) int limit,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long apiKeyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endTime) {
+        return requestLogService.getLogPage(new RequestLogQuery(userId, apiKeyId, startTime, endTime), cursor, limit);
+    }
+
+    @GetMapping("/all/export")
+    @RequiredRole(Role.ADMIN)
+    public void exportAllLogs(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long apiKeyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endTime,
+            HttpServletResponse response) throws IOException {
+        export(new RequestLogQuery(userId, apiKeyId, startTime, endTime), format, response);
+    }
+
+    /**
+     * 直接写入响应输出流，不经过消息转换器，也不在内存中缓存结果
+     */
+    private void export(RequestLogQuery query, String format, HttpServletResponse response) throws IOException {
+        RequestLogExporter.Format exportFormat = switch (format.toLowerCase()) {
+            case "ndjson" -> RequestLogExporter.Format.NDJSON;
+            case "csv" -> RequestLogExporter.Format.CSV;
+            default -> throw new ValidationException("INVALID_EXPORT_FORMAT", "Export format must be ndjson or csv");
+        };
+        String extension = exportFormat == RequestLogExporter.Format.CSV ? "csv" : "ndjson";
+        response.setContentType(exportFormat == RequestLogExporter.Format.CSV
+                ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"request_log." + extension + "\"");
+        long rows = requestLogExporter.export(query, exportFormat, response.getOutputStream());
+        log.debug("Exported {} request logs as {}", rows, extension);
+    }
+
+    /**
+     * 当前用户 ID；缺失时拒绝请求，避免查询条件退化为全部用户
+     */
+    private Long getCurrentUserId() {
+        Long userId = RequestContextHolder.getContext() != null ?
+                RequestContextHolder.getContext().getUserId() : null;
+        if (userId == null) {
+            throw new BusinessException(ErrorCodeConstants.INVALID_CREDENTIALS, "User not authenticated");
+        }
+        return userId;
+    }
+}
@@ -4,13 +4,16 @@ import org.elmo.robella.annotation.RequiredRole;
 import org.elmo.robella.model.common.Role;
 import org.elmo.robella.model.response.*;
 import org.elmo.robella.service.StatisticsService;
+import org.elmo.robella.service.statistics.LiveMetricsRing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 
 @RestController
@@ -21,6 +24,7 @@ import java.time.OffsetDateTime;
 public class StatisticsController {
 
     private final StatisticsService statisticsService;
+    private final LiveMetricsRing liveMetricsRing;
 
     @GetMapping("/overview")
     @RequiredRole(Role.ADMIN)
@@ -30,6 +34,17 @@ public class StatisticsController {
         return statisticsService.getSystemOverview(startTime, endTime);
     }
 
+    /**
+     * 本实例最近一段时间的实时指标，直接读取内存，不访问数据库
+     */
+    @GetMapping("/live")
+    @RequiredRole(Role.ADMIN)
+    public LiveStatsResponse getLiveStats(
+            @RequestParam(defaultValue = "300") @Min(1) int windowSeconds,
+            @RequestParam(defaultValue = "10") @Min(1) int stepSeconds) {
+        return liveMetricsRing.snapshot(Duration.ofSeconds(windowSeconds), Duration.ofSeconds(stepSeconds));
+    }
+
     @GetMapping("/overview/user/{userId}")
     public UserOverviewResponse getUserOverview(
             @PathVariable @NotNull Long userId,
@@ -0,0 +1,14 @@
+package org.elmo.robella.exception;
+
+import java.io.IOException;
+
+/**
+ * 向客户端写出流式响应失败，通常是客户端已断开连接
+ * 与读取上游失败区分开，调用方据此取消上游调用。
+ */
+public class ClientDisconnectedException extends IOException {
+
+    public ClientDisconnectedException(IOException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,49 @@
+package org.elmo.robella.exception;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 上游返回非 2xx 状态码
+ * 保留状态码，便于熔断与故障转移区分可重试错误（429、5xx）和请求本身的错误（其它 4xx）。
+ */
+@Getter
+public class UpstreamHttpException extends IOException {
+
+    private final int statusCode;
+
+    public UpstreamHttpException(int statusCode, String responseBody) {
+        super("HTTP " + statusCode + ": " + responseBody);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * 是否为上游侧的错误（限流或服务端错误）
+     */
+    public boolean isUpstreamFault() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * 判断一次失败的上游调用是否由上游引起：网络错误和超时（IOException）、429、5xx。
+     * 其它 4xx 说明请求本身有误，请求转换、JSON 序列化等本地错误与供应商无关，
+     * 这些情况既不计入熔断也不做故障转移
+     */
+    public static boolean isUpstreamFault(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UpstreamHttpException httpException) {
+                return httpException.isUpstreamFault();
+            }
+            if (cause instanceof JsonProcessingException) {
+                return false;
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,10 +1,12 @@
 package org.elmo.robella.interceptor;
 
 import org.elmo.robella.service.ApiKeyService;
+import org.elmo.robella.service.apikey.ApiKeyRateLimiter;
 import org.elmo.robella.model.entity.ApiKey;
 import org.elmo.robella.context.RequestContextHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 import jakarta.servlet.http.HttpServletRequest;
@@ -53,6 +55,14 @@ public class ApiKeyInterceptor implements HandlerInterceptor {
             if (validKey != null) {
                 log.debug("API key validation successful for user: {} on path: {}", validKey.getUserId(), path);
 
+                // 检查每分钟 / 每日 / 每月请求限制
+                ApiKeyRateLimiter.Decision decision = apiKeyService.acquireRequestPermit(validKey);
+                if (!decision.allowed()) {
+                    log.warn("API key {} exceeded {} limit on path: {}", validKey.getId(), decision.limitType(), path);
+                    handleRateLimited(response, decision);
+                    return false;
+                }
+
                 // 检查是否已有RequestId，如果没有则生成新的
                 String requestId = RequestContextHolder.getContext() != null ?
                     RequestContextHolder.getContext().getRequestId() : null;
@@ -90,6 +100,24 @@ public class ApiKeyInterceptor implements HandlerInterceptor {
         response.getWriter().write(body);
     }
 
+    private void handleRateLimited(HttpServletResponse response, ApiKeyRateLimiter.Decision decision) throws Exception {
+        boolean unavailable = decision.limitType() == ApiKeyRateLimiter.LimitType.UNAVAILABLE;
+        response.setStatus(unavailable ? HttpStatus.SERVICE_UNAVAILABLE.value() : HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(decision.retryAfterSeconds()));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        String message = switch (decision.limitType()) {
+            case RATE -> "Rate limit exceeded for this API key";
+            case DAILY -> "Daily request limit exceeded for this API key";
+            case MONTHLY -> "Monthly request limit exceeded for this API key";
+            case UNAVAILABLE -> "Request quota of this API key is temporarily unavailable";
+        };
+        String body = String.format("{\"error\":{\"type\":\"%s\",\"message\":\"%s\"}}",
+                unavailable ? "api_error" : "rate_limit_error", message);
+        response.getWriter().write(body);
+    }
+
     private boolean isApiKeyEndpoint(String path) {
         // 排除查看模型的端点，这些端点可以公开访问
         if (path.equals("/v1/models") || path.equals("/anthropic/v1/models")) {
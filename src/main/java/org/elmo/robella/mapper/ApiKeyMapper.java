@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 @Mapper
@@ -19,4 +20,6 @@ public interface ApiKeyMapper extends BaseMapper<ApiKey> {
     ApiKey findByKeyPrefix(@Param("keyPrefix") String keyPrefix);
 
     int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    int updateLastUsedAt(@Param("id") Long id, @Param("lastUsedAt") OffsetDateTime lastUsedAt);
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package org.elmo.robella.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface ApiKeyUsageMapper {
+
+    Long findRequestCount(@Param("apiKeyId") Long apiKeyId,
+                          @Param("periodType") String periodType,
+                          @Param("periodKey") String periodKey);
+
+    int upsertRequestCount(@Param("apiKeyId") Long apiKeyId,
+                           @Param("periodType") String periodType,
+                           @Param("periodKey") String periodKey,
+                           @Param("requestCount") long requestCount);
+}
@@ -1,10 +1,13 @@
 package org.elmo.robella.mapper;
 
+import org.elmo.robella.model.dto.RequestLogCursor;
+import org.elmo.robella.model.dto.RequestLogQuery;
 import org.elmo.robella.model.entity.RequestLog;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.time.OffsetDateTime;
 import java.math.BigDecimal;
@@ -22,4 +25,31 @@ public interface RequestLogMapper extends BaseMapper<RequestLog> {
     List<RequestLog> findByCreatedAtBetween(@Param("startTime") OffsetDateTime startTime, @Param("endTime") OffsetDateTime endTime);
 
     List<RequestLog> findByUserIdAndCreatedAtBetween(@Param("userId") Long userId, @Param("startTime") OffsetDateTime startTime, @Param("endTime") OffsetDateTime endTime);
-}
\ No newline at end of file
+
+    /**
+     * 多行 INSERT 批量写入
+     */
+    int insertBatch(@Param("logs") List<RequestLog> logs);
+
+    /**
+     * 插入一条日志，request_id 已存在时忽略（PostgreSQL 上为 request_id 与 created_at 都相同时）
+     *
+     * @return 实际插入的行数，0 表示该请求已记录过
+     */
+    int insertIgnore(@Param("log") RequestLog log);
+
+    /**
+     * 按 tokens_per_second 排序后的第 offset 个值（从 0 开始），用于中位数
+     */
+    BigDecimal findNthTokensPerSecond(@Param("userId") Long userId, @Param("startTime") OffsetDateTime startTime, @Param("endTime") OffsetDateTime endTime, @Param("offset") long offset);
+
+    /**
+     * 按 (created_at, id) 倒序取严格位于 cursor 之后的 limit 条日志，cursor 为空时从最新一条开始
+     */
+    List<RequestLog> findPage(@Param("query") RequestLogQuery query, @Param("cursor") RequestLogCursor cursor, @Param("limit") int limit);
+
+    /**
+     * 按 (created_at, id) 正序逐行读取满足条件的日志，调用方需在事务内使用并在结束后关闭
+     */
+    Cursor<RequestLog> streamLogs(@Param("query") RequestLogQuery query);
+}
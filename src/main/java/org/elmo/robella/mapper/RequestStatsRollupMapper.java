@@ -0,0 +1,47 @@
+package org.elmo.robella.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.elmo.robella.model.dto.RequestLogAggregate;
+import org.elmo.robella.model.dto.RequestStatsRollup;
+import org.elmo.robella.model.dto.RollupSegment;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Mapper
+public interface RequestStatsRollupMapper {
+
+    /**
+     * 把增量累加到汇总行，汇总行不存在时插入；同一语句内的行主键必须互不相同
+     *
+     * @return 各汇总行的主键及其中已有的分位数草图
+     */
+    List<RequestStatsRollup> upsertBatch(@Param("rows") List<RequestStatsRollup> rows);
+
+    /**
+     * 按主键写回合并后的分位数草图
+     */
+    int updateSketches(@Param("row") RequestStatsRollup row);
+
+    /**
+     * 各段汇总行中的分位数草图，只返回至少有一个草图的行
+     */
+    List<RequestStatsRollup> findSketches(@Param("userId") Long userId, @Param("segments") List<RollupSegment> segments);
+
+    /**
+     * 各段汇总行的整体聚合，userId 为空时统计全部用户
+     */
+    RequestLogAggregate aggregate(@Param("userId") Long userId, @Param("segments") List<RollupSegment> segments);
+
+    /**
+     * 各段汇总行按模型分组聚合，按请求数降序，limit 为空时不限制
+     */
+    List<RequestLogAggregate> aggregateByModel(@Param("userId") Long userId, @Param("segments") List<RollupSegment> segments, @Param("limit") Integer limit);
+
+    /**
+     * 指定粒度下按时间桶分组聚合，取桶起点在 [startTime, endTime] 内的汇总行，按桶起点升序
+     */
+    List<RequestLogAggregate> aggregateByBucket(@Param("userId") Long userId, @Param("granularity") String granularity,
+                                                @Param("startTime") OffsetDateTime startTime, @Param("endTime") OffsetDateTime endTime);
+}
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -33,4 +34,17 @@ public interface UserMapper extends BaseMapper<User> {
 
     boolean existsByGithubId(String githubId);
 
-    }
\ No newline at end of file
+    BigDecimal findCredits(@Param("userId") Long userId);
+
+    /**
+     * 原子增减余额
+     *
+     * @return 新余额，用户不存在时为 null
+     */
+    BigDecimal addCredits(@Param("userId") Long userId, @Param("delta") BigDecimal delta);
+
+    int applyCreditDelta(@Param("userId") Long userId, @Param("delta") BigDecimal delta);
+
+    int updateCredits(@Param("userId") Long userId, @Param("credits") BigDecimal credits);
+
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package org.elmo.robella.model.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * 请求日志在数据库中聚合后的一行结果
+ * groupKey 为分组键（模型调用标识），bucketStart 为按时间桶分组时的桶起点，不分组时均为空；
+ * latency* 为耗时直方图各区间的请求数
+ */
+@Data
+public class RequestLogAggregate {
+    private String groupKey;
+    private OffsetDateTime bucketStart;
+
+    private Long totalRequests;
+    private Long successfulRequests;
+    /** is_success 明确为 false 的请求数 */
+    private Long failedRequests;
+    private Long streamRequests;
+
+    private Long promptTokens;
+    private Long completionTokens;
+    private Long totalTokens;
+    private Double avgPromptTokens;
+    private Double avgCompletionTokens;
+    private Double avgTotalTokens;
+
+    private BigDecimal inputCost;
+    private BigDecimal outputCost;
+    private BigDecimal totalCost;
+    private Double avgInputCost;
+    private Double avgOutputCost;
+    private Double avgTotalCost;
+    private String currency;
+
+    private Long durationCount;
+    private Double avgDurationMs;
+    private Double minDurationMs;
+    private Double maxDurationMs;
+    private Double avgFirstTokenLatencyMs;
+
+    private Long tokensPerSecondCount;
+    private Double avgTokensPerSecond;
+    private BigDecimal minTokensPerSecond;
+    private BigDecimal maxTokensPerSecond;
+
+    private Long activeUsers;
+    private Long uniqueModels;
+
+    private Long latencyLe100ms;
+    private Long latencyLe250ms;
+    private Long latencyLe500ms;
+    private Long latencyLe1s;
+    private Long latencyLe2500ms;
+    private Long latencyLe5s;
+    private Long latencyLe10s;
+    private Long latencyLe30s;
+    private Long latencyLe60s;
+    private Long latencyGt60s;
+
+    /**
+     * 耗时直方图，下标与 {@code LatencyHistogram} 的区间一一对应
+     */
+    public long[] latencyHistogram() {
+        Long[] buckets = {latencyLe100ms, latencyLe250ms, latencyLe500ms, latencyLe1s, latencyLe2500ms,
+                latencyLe5s, latencyLe10s, latencyLe30s, latencyLe60s, latencyGt60s};
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i] != null ? buckets[i] : 0L;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,39 @@
+package org.elmo.robella.model.dto;
+
+import org.elmo.robella.exception.ValidationException;
+import org.elmo.robella.model.entity.RequestLog;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 请求日志键集分页游标：上一页最后一条的 (created_at, id)
+ * 对外编码为不透明的 base64url 字符串，下一页从严格小于该位置的日志开始。
+ */
+public record RequestLogCursor(OffsetDateTime createdAt, long id) {
+
+    public static RequestLogCursor of(RequestLog log) {
+        return new RequestLogCursor(log.getCreatedAt(), log.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt.toString() + '|' + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static RequestLogCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("missing separator");
+            }
+            return new RequestLogCursor(OffsetDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("INVALID_CURSOR", "Invalid request log cursor");
+        }
+    }
+}
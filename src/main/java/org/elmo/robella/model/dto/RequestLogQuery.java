@@ -0,0 +1,9 @@
+package org.elmo.robella.model.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * 请求日志明细查询条件，为空的字段不参与过滤；时间范围为 [startTime, endTime)
+ */
+public record RequestLogQuery(Long userId, Long apiKeyId, OffsetDateTime startTime, OffsetDateTime endTime) {
+}
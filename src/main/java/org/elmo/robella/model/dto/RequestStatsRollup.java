@@ -0,0 +1,54 @@
+package org.elmo.robella.model.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * request_stats_rollup 的一行增量：一个时间桶 × 用户 × 模型 × 供应商内新增请求日志的累计值
+ * 空的用户、供应商记为 0，空的模型记为 ''；latencyBuckets 与 {@code LatencyHistogram} 的区间一一对应。
+ * latencySketch / tpsSketch 为编码后的分位数草图，只在读写草图时使用
+ */
+@Data
+public class RequestStatsRollup {
+    private String granularity;
+    private OffsetDateTime bucketStart;
+    private long userId;
+    private String modelKey;
+    private long providerId;
+
+    private long requestCount;
+    private long successCount;
+    private long failureCount;
+    private long streamCount;
+
+    private long usageCount;
+    private long promptTokens;
+    private long completionTokens;
+    private long totalTokens;
+
+    private long costCount;
+    private BigDecimal inputCost = BigDecimal.ZERO;
+    private BigDecimal outputCost = BigDecimal.ZERO;
+    private BigDecimal totalCost = BigDecimal.ZERO;
+    private String currency;
+
+    private long durationCount;
+    private long durationSumMs;
+    private Integer durationMinMs;
+    private Integer durationMaxMs;
+
+    private long firstTokenCount;
+    private long firstTokenSumMs;
+
+    private long tpsCount;
+    private BigDecimal tpsSum = BigDecimal.ZERO;
+    private BigDecimal tpsMin;
+    private BigDecimal tpsMax;
+
+    private long[] latencyBuckets;
+
+    private byte[] latencySketch;
+    private byte[] tpsSketch;
+}
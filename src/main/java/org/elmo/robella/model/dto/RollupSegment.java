@@ -0,0 +1,9 @@
+package org.elmo.robella.model.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * 汇总表查询的一段：取 granularity 粒度、桶起点在 [from, to) 内的汇总行
+ */
+public record RollupSegment(String granularity, OffsetDateTime from, OffsetDateTime to) {
+}
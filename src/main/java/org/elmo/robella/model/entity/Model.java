@@ -33,6 +33,12 @@ public class Model {
 
     private Boolean published;
 
+    /**
+     * 非流式请求是否启用对冲（首选供应商超过延迟阈值未返回时向另一供应商并发请求）
+     */
+    @TableField("hedging_enabled")
+    private Boolean hedgingEnabled;
+
     @TableField(value = "created_at", fill = FieldFill.INSERT)
     private OffsetDateTime createdAt;
 
@@ -0,0 +1,64 @@
+package org.elmo.robella.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveStatsResponse {
+    private LiveStats total;
+    private List<LiveSeriesStats> series;
+    private List<LivePoint> points;
+    private Integer stepSeconds;
+    private OffsetDateTime periodStart;
+    private OffsetDateTime periodEnd;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LiveStats {
+        private Long requestCount;
+        private Long errorCount;
+        private Double errorRate;
+        private Double requestsPerSecond;
+        private Double averageDurationMs;
+        private Long maxDurationMs;
+        private Double averageFirstTokenLatencyMs;
+        private Long promptTokens;
+        private Long completionTokens;
+        private Long totalTokens;
+        private Double tokensPerSecond;
+        private BigDecimal totalCost;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LiveSeriesStats {
+        private String modelKey;
+        private Long providerId;
+        private LiveStats stats;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LivePoint {
+        private OffsetDateTime timestamp;
+        private Long requestCount;
+        private Long errorCount;
+        private Long totalTokens;
+        private BigDecimal totalCost;
+    }
+}
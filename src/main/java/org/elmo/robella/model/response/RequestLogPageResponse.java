@@ -0,0 +1,20 @@
+package org.elmo.robella.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.elmo.robella.model.entity.RequestLog;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RequestLogPageResponse {
+    private List<RequestLog> items;
+    /** 下一页的游标，没有更多数据时为 null */
+    private String nextCursor;
+    private boolean hasMore;
+}
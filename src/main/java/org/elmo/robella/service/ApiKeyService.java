@@ -2,6 +2,9 @@ package org.elmo.robella.service;
 
 import org.elmo.robella.model.entity.ApiKey;
 import org.elmo.robella.mapper.ApiKeyMapper;
+import org.elmo.robella.service.apikey.ApiKeyRateLimiter;
+import org.elmo.robella.service.apikey.ApiKeyTouchAggregator;
+import org.elmo.robella.service.apikey.VerifiedApiKeyCache;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +23,9 @@ import java.util.stream.Collectors;
 public class ApiKeyService extends ServiceImpl<ApiKeyMapper, ApiKey> {
 
     private final PasswordEncoder passwordEncoder;
+    private final VerifiedApiKeyCache verifiedApiKeyCache;
+    private final ApiKeyTouchAggregator apiKeyTouchAggregator;
+    private final ApiKeyRateLimiter apiKeyRateLimiter;
 
     private static final String API_KEY_PREFIX = "rk-";
     private static final int API_KEY_LENGTH = 32;
@@ -76,7 +82,12 @@ public class ApiKeyService extends ServiceImpl<ApiKeyMapper, ApiKey> {
         queryWrapper.eq(ApiKey::getId, id)
                    .eq(ApiKey::getUserId, userId);
 
-        return remove(queryWrapper);
+        boolean removed = remove(queryWrapper);
+        if (removed) {
+            verifiedApiKeyCache.invalidate(id);
+            apiKeyRateLimiter.invalidate(id);
+        }
+        return removed;
     }
 
     public ApiKey toggleApiKeyStatus(Long id, Long userId) {
@@ -93,6 +104,7 @@ public class ApiKeyService extends ServiceImpl<ApiKeyMapper, ApiKey> {
         key.setUpdatedAt(OffsetDateTime.now());
         boolean success = updateById(key);
         if (success) {
+            verifiedApiKeyCache.invalidate(id);
             return key;
         }
         throw new RuntimeException("Failed to toggle API key status");
@@ -103,6 +115,13 @@ public class ApiKeyService extends ServiceImpl<ApiKeyMapper, ApiKey> {
             return null;
         }
 
+        // 命中已验证缓存时跳过 BCrypt 校验与数据库查询
+        ApiKey cached = verifiedApiKeyCache.get(apiKey);
+        if (cached != null) {
+            apiKeyTouchAggregator.touch(cached.getId());
+            return cached;
+        }
+
         String keyPrefix = apiKey.substring(0, 16);
         LambdaQueryWrapper<ApiKey> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(ApiKey::getKeyPrefix, keyPrefix);
@@ -111,24 +130,32 @@ public class ApiKeyService extends ServiceImpl<ApiKeyMapper, ApiKey> {
         if (key != null && key.getActive() &&
                 (key.getExpiresAt() == null || key.getExpiresAt().isAfter(OffsetDateTime.now()))) {
             if (passwordEncoder.matches(apiKey, key.getKeyHash())) {
-                key.setLastUsedAt(OffsetDateTime.now());
-                updateById(key);
+                // 最近使用时间由聚合器异步批量写入，不在请求路径上更新
+                apiKeyTouchAggregator.touch(key.getId());
+                verifiedApiKeyCache.put(apiKey, key);
                 return key;
             }
         }
         return null;
     }
 
-    public boolean checkRateLimit(Long userId, String keyPrefix) {
-        return true;
+    /**
+     * 为一次请求获取配额（每分钟请求数、每日、每月），不满足时返回被触发的限制与重试等待时间
+     */
+    public ApiKeyRateLimiter.Decision acquireRequestPermit(ApiKey apiKey) {
+        return apiKeyRateLimiter.tryAcquire(apiKey);
+    }
+
+    public boolean checkRateLimit(ApiKey apiKey) {
+        return apiKeyRateLimiter.isWithinRateLimit(apiKey);
     }
 
-    public boolean checkDailyLimit(Long userId, String keyPrefix) {
-        return true;
+    public boolean checkDailyLimit(ApiKey apiKey) {
+        return apiKeyRateLimiter.isWithinDailyLimit(apiKey);
     }
 
-    public boolean checkMonthlyLimit(Long userId, String keyPrefix) {
-        return true;
+    public boolean checkMonthlyLimit(ApiKey apiKey) {
+        return apiKeyRateLimiter.isWithinMonthlyLimit(apiKey);
     }
 
     private String generateApiKey() {
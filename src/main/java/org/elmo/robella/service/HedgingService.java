@@ -0,0 +1,215 @@
+package org.elmo.robella.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.config.RoutingConfig;
+import org.elmo.robella.context.RequestContextHolder;
+import org.elmo.robella.context.RequestContextHolder.RequestContext;
+import org.elmo.robella.exception.ApiException;
+import org.elmo.robella.exception.UpstreamHttpException;
+import org.elmo.robella.model.entity.Model;
+import org.elmo.robella.model.internal.UnifiedChatRequest;
+import org.elmo.robella.model.internal.UnifiedChatResponse;
+import org.elmo.robella.service.loadblancer.UpstreamLatencyTracker;
+import org.elmo.robella.service.routing.ProviderCircuitBreakerRegistry;
+import org.elmo.robella.service.routing.RoutingTable;
+import org.elmo.robella.util.UpstreamCallHandle;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 非流式请求对冲
+ * 首选供应商模型在其近期响应耗时分位数（默认 P95）内未返回时，向另一个候选发出相同请求，
+ * 先成功者胜出，其余分支通过 OkHttp Call.cancel() 取消。各分支共享一个结算标记，只有胜出方会被计费。
+ * 各分支共用请求的余额预留，单个分支失败或被取消时不释放，整个竞争失败后由调用方释放。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HedgingService {
+
+    private final RoutingService routingService;
+    private final RoutingTable routingTable;
+    private final RoutingConfig routingConfig;
+    private final UpstreamLatencyTracker latencyTracker;
+    private final ProviderCircuitBreakerRegistry circuitBreakers;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 模型是否启用了对冲
+     */
+    public boolean isEnabledFor(String modelKey) {
+        if (!routingConfig.getHedging().isEnabled()) {
+            return false;
+        }
+        Model model = routingTable.snapshot().getModel(modelKey);
+        return model != null && Boolean.TRUE.equals(model.getHedgingEnabled());
+    }
+
+    /**
+     * 以对冲方式发送非流式请求；各分支的熔断结果在分支内记录
+     *
+     * @param modelKey 客户端请求的模型调用标识，用于选择对冲候选
+     * @param request  已替换为首选供应商模型Key的请求
+     * @param primary  首选路由
+     */
+    public UnifiedChatResponse chat(String modelKey, UnifiedChatRequest request, RoutingService.ClientWithInfo primary) {
+        RequestContext parent = RequestContextHolder.getContext();
+        Race race = new Race();
+        race.start(parent, parent.getRequestId(), request, primary);
+        try {
+            long delayMs = hedgeDelayMs(primary.getVendorModel().getId());
+            try {
+                return race.result.get(delayMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                startHedge(race, parent, modelKey, request, primary);
+            }
+            return race.result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求被中断", e);
+        } finally {
+            race.finish(parent);
+        }
+    }
+
+    private void startHedge(Race race, RequestContext parent, String modelKey, UnifiedChatRequest request,
+                            RoutingService.ClientWithInfo primary) {
+        // 先登记分支，避免首选分支恰好在此时失败而提前结束竞争
+        race.pending.incrementAndGet();
+        try {
+            if (race.result.isDone()) {
+                return;
+            }
+            RoutingService.ClientWithInfo hedge = routingService.routeAndClient(modelKey, Set.of(primary.getVendorModel().getId()));
+            if (hedge == null) {
+                log.debug("No hedge candidate for model {}, waiting for primary", modelKey);
+                return;
+            }
+            UnifiedChatRequest hedgeRequest = new UnifiedChatRequest();
+            BeanUtils.copyProperties(request, hedgeRequest);
+            hedgeRequest.setModel(hedge.getVendorModel().getVendorModelKey());
+            log.info("Primary provider {} exceeded hedge delay, hedging to provider {}",
+                    primary.getProvider().getId(), hedge.getProvider().getId());
+            race.start(parent, parent.getRequestId() + "-hedge", hedgeRequest, hedge);
+        } finally {
+            race.legFinished(null);
+        }
+    }
+
+    private long hedgeDelayMs(Long vendorModelId) {
+        RoutingConfig.HedgingConfig config = routingConfig.getHedging();
+        long percentile = latencyTracker.responseTimePercentile(vendorModelId, config.getPercentile(), config.getMinSamples());
+        long delay = percentile >= 0 ? percentile : config.getDefaultDelay().toMillis();
+        return Math.max(config.getMinDelay().toMillis(), Math.min(config.getMaxDelay().toMillis(), delay));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一次对冲竞争：所有分支都失败时以首个失败结束，任一分支成功并取得结算权时以其结果结束
+     */
+    private final class Race {
+
+        final CompletableFuture<UnifiedChatResponse> result = new CompletableFuture<>();
+        final AtomicBoolean settlement = new AtomicBoolean();
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        final List<Leg> legs = new CopyOnWriteArrayList<>();
+
+        void start(RequestContext parent, String requestId, UnifiedChatRequest request, RoutingService.ClientWithInfo route) {
+            RequestContext context = parent.toBuilder()
+                    .requestId(requestId)
+                    .providerId(route.getProvider().getId())
+                    .vendorModel(route.getVendorModel())
+                    .upstreamCall(new UpstreamCallHandle(settlement))
+                    .build();
+            Leg leg = new Leg(context, route);
+            legs.add(leg);
+            pending.incrementAndGet();
+            executor.execute(() -> run(leg, request));
+        }
+
+        private void run(Leg leg, UnifiedChatRequest request) {
+            RequestContextHolder.setContext(leg.context);
+            UpstreamCallHandle handle = leg.context.getUpstreamCall();
+            Long providerId = leg.route.getProvider().getId();
+            long start = System.nanoTime();
+            RuntimeException failure = null;
+            try {
+                UnifiedChatResponse response = leg.route.getClient().chat(request, leg.route.getProvider());
+                circuitBreakers.onSuccess(providerId, System.nanoTime() - start);
+                if (handle.claimSettlement()) {
+                    result.complete(response);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+                if (handle.isCancelled()) {
+                    // 被取消的分支不计入熔断统计，只归还探测名额
+                    circuitBreakers.releasePermission(providerId);
+                } else if (UpstreamHttpException.isUpstreamFault(e)) {
+                    circuitBreakers.onFailure(providerId, System.nanoTime() - start);
+                } else {
+                    circuitBreakers.onSuccess(providerId, System.nanoTime() - start);
+                }
+            } finally {
+                RequestContextHolder.clear();
+                legFinished(failure);
+            }
+        }
+
+        void legFinished(RuntimeException failure) {
+            if (failure != null) {
+                firstFailure.compareAndSet(null, failure);
+            }
+            if (pending.decrementAndGet() == 0 && !result.isDone()) {
+                RuntimeException first = firstFailure.get();
+                result.completeExceptionally(first != null ? first
+                        : new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错"));
+            }
+        }
+
+        /**
+         * 取消未胜出的分支，并把胜出分支的路由信息同步回调用方上下文
+         */
+        void finish(RequestContext parent) {
+            for (Leg leg : legs) {
+                UpstreamCallHandle handle = leg.context.getUpstreamCall();
+                if (handle.isSettlementOwner()) {
+                    parent.setRequestId(leg.context.getRequestId());
+                    parent.setProviderId(leg.context.getProviderId());
+                    parent.setVendorModel(leg.context.getVendorModel());
+                } else {
+                    handle.cancel();
+                }
+            }
+        }
+    }
+
+    private record Leg(RequestContext context, RoutingService.ClientWithInfo route) {
+    }
+}
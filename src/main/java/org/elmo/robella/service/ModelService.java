@@ -2,19 +2,45 @@ package org.elmo.robella.service;
 
 import org.elmo.robella.mapper.ModelMapper;
 import org.elmo.robella.model.entity.Model;
+import org.elmo.robella.service.routing.RoutingDataChangedEvent;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.io.Serializable;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class ModelService extends ServiceImpl<ModelMapper, Model> {
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public boolean save(Model model) {
+        boolean saved = super.save(model);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("model"));
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(Model model) {
+        boolean updated = super.updateById(model);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("model"));
+        return updated;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("model"));
+        return removed;
+    }
+
     public List<Model> findByPublishedTrue() {
         LambdaQueryWrapper<Model> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(Model::getPublished, true);
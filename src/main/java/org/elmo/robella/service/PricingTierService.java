@@ -11,6 +11,8 @@ import org.elmo.robella.model.entity.PricingTier;
 import org.elmo.robella.model.entity.VendorModel;
 import org.elmo.robella.model.enums.PricingStrategyType;
 import org.elmo.robella.service.pricing.PricingValidationService;
+import org.elmo.robella.service.routing.RoutingDataChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +26,7 @@ public class PricingTierService extends ServiceImpl<PricingTierMapper, PricingTi
     private final PricingTierMapper pricingTierMapper;
     private final VendorModelMapper vendorModelMapper;
     private final PricingValidationService validationService;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * 获取供应商模型的所有定价阶梯
@@ -66,6 +69,7 @@ public class PricingTierService extends ServiceImpl<PricingTierMapper, PricingTi
         vendorModel.setPricingStrategy(PricingStrategyType.TIERED);
         vendorModelMapper.updateById(vendorModel);
         
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("pricing_tier"));
         log.info("Created {} pricing tiers for vendor model {}", pricingTiers.size(), vendorModelId);
     }
     
@@ -90,6 +94,7 @@ public class PricingTierService extends ServiceImpl<PricingTierMapper, PricingTi
         existingTier.setCachedInputPrice(updatedTier.getCachedInputPrice());
         
         pricingTierMapper.updateById(existingTier);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("pricing_tier"));
         log.info("Updated pricing tier {}", pricingTierId);
     }
     
@@ -120,6 +125,7 @@ public class PricingTierService extends ServiceImpl<PricingTierMapper, PricingTi
             }
         }
         
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("pricing_tier"));
         log.info("Deleted pricing tier {}", pricingTierId);
     }
     
@@ -136,6 +142,7 @@ public class PricingTierService extends ServiceImpl<PricingTierMapper, PricingTi
 
         try {
             boolean result = this.saveBatch(pricingTiers, 1000); // 使用MyBatis-Plus原生批量插入，每批1000条
+            eventPublisher.publishEvent(new RoutingDataChangedEvent("pricing_tier"));
             log.info("Saved {} pricing tiers in batch, result: {}", pricingTiers.size(), result);
             return result;
         } catch (Exception e) {
@@ -155,6 +162,7 @@ public class PricingTierService extends ServiceImpl<PricingTierMapper, PricingTi
             LambdaQueryWrapper<PricingTier> queryWrapper = new LambdaQueryWrapper<>();
             queryWrapper.eq(PricingTier::getVendorModelId, vendorModelId);
             pricingTierMapper.delete(queryWrapper);
+            eventPublisher.publishEvent(new RoutingDataChangedEvent("pricing_tier"));
             log.info("Deleted all pricing tiers for vendor model {}", vendorModelId);
             return true;
         } catch (Exception e) {
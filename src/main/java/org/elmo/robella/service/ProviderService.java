@@ -6,6 +6,8 @@ import org.elmo.robella.common.ErrorCodeConstants;
 import org.elmo.robella.exception.BusinessException;
 import org.elmo.robella.mapper.ProviderMapper;
 import org.elmo.robella.mapper.VendorModelMapper;
+import org.elmo.robella.service.routing.RoutingDataChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
@@ -19,6 +21,7 @@ import java.util.List;
 public class ProviderService extends ServiceImpl<ProviderMapper, Provider> {
 
     private final VendorModelMapper vendorModelMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Provider methods
     public List<Provider> getAllProviders() {
@@ -41,7 +44,9 @@ public class ProviderService extends ServiceImpl<ProviderMapper, Provider> {
 
     public boolean createProvider(Provider provider) {
         provider.setEnabled(true);
-        return save(provider);
+        boolean saved = save(provider);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("provider"));
+        return saved;
     }
 
     public boolean updateProvider(Long id, Provider provider) {
@@ -51,7 +56,9 @@ public class ProviderService extends ServiceImpl<ProviderMapper, Provider> {
         }
 
         provider.setId(id);
-        return updateById(provider);
+        boolean updated = updateById(provider);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("provider"));
+        return updated;
     }
 
     public boolean deleteProvider(Long id) {
@@ -59,6 +66,8 @@ public class ProviderService extends ServiceImpl<ProviderMapper, Provider> {
         if (!vendorModels.isEmpty()) {
             throw new RuntimeException("Cannot delete provider with existing vendor models");
         }
-        return removeById(id);
+        boolean removed = removeById(id);
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("provider"));
+        return removed;
     }
 }
\ No newline at end of file
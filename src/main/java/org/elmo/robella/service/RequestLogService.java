@@ -6,7 +6,10 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.model.dto.RequestLogCursor;
+import org.elmo.robella.model.dto.RequestLogQuery;
 import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.model.response.RequestLogPageResponse;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -40,13 +43,6 @@ public class RequestLogService extends ServiceImpl<RequestLogMapper, RequestLog>
         }
     }
 
-    public List<RequestLog> getUserLogs(Long userId) {
-        LambdaQueryWrapper<RequestLog> wrapper = Wrappers.lambdaQuery();
-        wrapper.eq(RequestLog::getUserId, userId)
-               .orderByDesc(RequestLog::getCreatedAt);
-        return list(wrapper);
-    }
-
     public List<RequestLog> getUserLogsBetweenDates(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
         LambdaQueryWrapper<RequestLog> wrapper = Wrappers.lambdaQuery();
         wrapper.eq(RequestLog::getUserId, userId)
@@ -55,18 +51,21 @@ public class RequestLogService extends ServiceImpl<RequestLogMapper, RequestLog>
         return list(wrapper);
     }
 
-    public List<RequestLog> getApiKeyLogs(Long apiKeyId) {
-        LambdaQueryWrapper<RequestLog> wrapper = Wrappers.lambdaQuery();
-        wrapper.eq(RequestLog::getApiKeyId, apiKeyId)
-               .orderByDesc(RequestLog::getCreatedAt);
-        return list(wrapper);
-    }
-
-    public List<RequestLog> getRecentLogs() {
-        LambdaQueryWrapper<RequestLog> wrapper = Wrappers.lambdaQuery();
-        wrapper.orderByDesc(RequestLog::getCreatedAt)
-               .last("LIMIT 100");
-        return list(wrapper);
+    /**
+     * 按 (created_at, id) 倒序的一页日志，多取一条判断是否还有下一页
+     *
+     * @param cursor 上一页返回的游标，为空时从最新一条开始
+     */
+    public RequestLogPageResponse getLogPage(RequestLogQuery query, String cursor, int limit) {
+        RequestLogCursor after = cursor != null && !cursor.isBlank() ? RequestLogCursor.decode(cursor) : null;
+        List<RequestLog> logs = requestLogMapper.findPage(query, after, limit + 1);
+        boolean hasMore = logs.size() > limit;
+        List<RequestLog> items = hasMore ? logs.subList(0, limit) : logs;
+        return RequestLogPageResponse.builder()
+                .items(items)
+                .nextCursor(hasMore ? RequestLogCursor.of(items.get(limit - 1)).encode() : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     public Long getUserRequestCount(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
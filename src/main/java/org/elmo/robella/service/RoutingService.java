@@ -6,61 +6,101 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.elmo.robella.client.ClientFactory;
 
-import java.util.List;
-
 import org.elmo.robella.client.ApiClient;
+import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.exception.ApiException;
 import org.elmo.robella.model.entity.Provider;
 import org.elmo.robella.model.entity.VendorModel;
-import org.elmo.robella.mapper.VendorModelMapper;
 import org.elmo.robella.service.loadblancer.LoadBalancerStrategy;
+import org.elmo.robella.service.routing.ProviderCircuitBreakerRegistry;
+import org.elmo.robella.service.routing.RouteCandidates;
+import org.elmo.robella.service.routing.RoutingTable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.Set;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class RoutingService {
 
     private final ClientFactory clientFactory;
-    private final ProviderService providerService;
-    private final VendorModelMapper vendorModelMapper;
+    private final RoutingTable routingTable;
     private final LoadBalancerStrategy loadBalancer;
+    private final ProviderCircuitBreakerRegistry circuitBreakers;
 
     /**
-     * 使用负载均衡策略选择一个启用的供应商模型
+     * 使用负载均衡策略选择一个启用的供应商模型，熔断中的供应商不参与选择
      *
      * @param modelKey 客户端请求中的模型调用标识
      * @return 选定的供应商模型，如果没有可用供应商则返回空
      */
     public VendorModel selectVendor(String modelKey) {
-        List<VendorModel> candidates = vendorModelMapper.findByModelKeyAndEnabledTrue(modelKey);
-        if (candidates.isEmpty()) {
+        RouteCandidates candidates = routingTable.snapshot().getRoute(modelKey);
+        if (candidates == null || candidates.isEmpty()) {
             return null;
         }
-        return loadBalancer.select(candidates);
+        RouteCandidates available = candidates.filter(vm -> circuitBreakers.isCallPermitted(vm.getProviderId()));
+        return available.isEmpty() ? null : loadBalancer.select(available);
     }
 
     /**
      * 根据供应商模型调用标识获取对应的 API 客户端和 Provider。
      * <p>
-     * 该方法通过供应商模型调用标识查找启用的 VendorModel，
-     * 然后根据其 providerId 获取 Provider，并通过 ClientFactory 获取对应的 ApiClient 实例。
+     * 该方法从路由快照中查找启用的 VendorModel 及其 Provider，
+     * 并通过 ClientFactory 获取对应的 ApiClient 实例，整个过程不访问数据库。
      *
      * @param modelKey 供应商模型调用标识
      * @return ClientWithInfo 对应的 API 客户端、Provider 和 VendorModel，如果未找到则为空
      */
     public ClientWithInfo routeAndClient(String modelKey) {
-        VendorModel vendorModel = selectVendor(modelKey);
-        if (vendorModel == null) {
+        return routeAndClient(modelKey, Set.of());
+    }
+
+    /**
+     * 路由时排除指定的供应商模型（故障转移时排除已尝试过的）以及熔断中的供应商。
+     *
+     * @param modelKey                客户端请求中的模型调用标识
+     * @param excludedVendorModelIds 需要排除的供应商模型ID
+     * @return ClientWithInfo，没有剩余候选时为空
+     * @throws ApiException 所有候选供应商均处于熔断状态时抛出 503
+     */
+    public ClientWithInfo routeAndClient(String modelKey, Set<Long> excludedVendorModelIds) {
+        RouteCandidates candidates = routingTable.snapshot().getRoute(modelKey);
+        if (candidates == null || candidates.isEmpty()) {
             return null;
         }
 
-        Provider provider = providerService.getProviderById(vendorModel.getProviderId());
-        if (provider == null) {
-            return null;
+        Set<Long> rejectedProviders = new HashSet<>();
+        RouteCandidates available = candidates.filter(vm -> !excludedVendorModelIds.contains(vm.getId())
+                && circuitBreakers.isCallPermitted(vm.getProviderId()));
+        while (!available.isEmpty()) {
+            VendorModel vendorModel = loadBalancer.select(available);
+            if (vendorModel == null) {
+                return null;
+            }
+
+            Provider provider = available.getProvider(vendorModel);
+            if (provider == null) {
+                return null;
+            }
+
+            // 半开状态的探测名额可能已被并发请求占满，此时换一个候选
+            if (circuitBreakers.tryAcquirePermission(provider.getId())) {
+                ApiClient client = clientFactory.getClient(provider.getEndpointType());
+                return new ClientWithInfo(client, provider, vendorModel);
+            }
+            rejectedProviders.add(provider.getId());
+            available = available.filter(vm -> !rejectedProviders.contains(vm.getProviderId()));
         }
 
-        ApiClient client = clientFactory.getClient(provider.getEndpointType());
-        return new ClientWithInfo(client, provider, vendorModel);
+        if (excludedVendorModelIds.isEmpty()) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, ErrorCodeConstants.SERVICE_UNAVAILABLE,
+                    "All providers for model " + modelKey + " are temporarily unavailable");
+        }
+        return null;
     }
 
     /**
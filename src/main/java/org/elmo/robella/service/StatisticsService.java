@@ -2,668 +2,397 @@ package org.elmo.robella.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.mapper.RequestStatsRollupMapper;
+import org.elmo.robella.model.dto.RequestLogAggregate;
+import org.elmo.robella.model.dto.RequestStatsRollup;
+import org.elmo.robella.model.dto.RollupSegment;
 import org.elmo.robella.model.response.*;
 import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.service.statistics.LatencyHistogram;
+import org.elmo.robella.service.statistics.QuantileSketch;
+import org.elmo.robella.service.statistics.RollupGranularity;
+import org.elmo.robella.service.statistics.StatisticsResultCache;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.DayOfWeek;
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.function.Function;
+
+/**
+ * 请求统计
+ * 统计读取增量维护的汇总表 request_stats_rollup：窗口由天 / 小时 / 分钟桶覆盖（见 {@link RollupGranularity#cover}），
+ * 查询的行数只取决于窗口跨度而与日志量无关。耗时分位数与 token 速度中位数由各汇总行的分位数草图合并得到。
+ * 汇总表的查询结果经 {@link StatisticsResultCache} 缓存，时间序列中已结束的桶长期缓存，只重新查询末尾仍在写入的桶。
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
 
+    private final RequestStatsRollupMapper rollupMapper;
     private final RequestLogMapper requestLogMapper;
+    private final StatisticsResultCache resultCache;
 
     public SystemOverviewResponse getSystemOverview(OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateSystemOverview(logs);
-    }
-
-    public UserOverviewResponse getUserOverview(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime);
-        return calculateUserOverview(userId, logs, startTime, endTime);
-    }
-
-    public TokenUsageResponse getTokenUsage(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateTokenUsage(logs);
-    }
-
-    public CostUsageResponse getCostUsage(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateCostUsage(logs, startTime, endTime);
-    }
-
-    public RequestUsageResponse getRequestUsage(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateRequestUsage(logs, startTime, endTime);
-    }
-
-    public LatencyStatsResponse getLatencyStats(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-
-        List<Integer> durations = logs.stream()
-                .filter(log -> log.getDurationMs() != null)
-                .map(RequestLog::getDurationMs)
-                .collect(Collectors.toList());
-        return calculateLatencyStats(durations);
-    }
-
-    public TokenSpeedResponse getTokenSpeedStats(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-
-        List<BigDecimal> tokenSpeeds = logs.stream()
-                .filter(log -> log.getTokensPerSecond() != null)
-                .map(RequestLog::getTokensPerSecond)
-                .collect(Collectors.toList());
-        return calculateTokenSpeedStats(tokenSpeeds);
-    }
-
-    public ModelPopularityResponse getModelPopularity(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, int limit) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateModelPopularity(logs, startTime, endTime, limit);
-    }
-
-    public ModelCostResponse getModelCosts(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateModelCosts(logs, startTime, endTime);
-    }
-
-    public TimeSeriesResponse getUsageTimeSeries(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, String interval) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateTimeSeries(logs, startTime, endTime, interval);
-    }
-
-    public TimeSeriesResponse getCostTimeSeries(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, String interval) {
-        return getUsageTimeSeries(userId, startTime, endTime, interval);
-    }
-
-    public ErrorRateResponse getErrorRate(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateErrorRate(logs);
-    }
-
-    public ErrorByModelResponse getErrorsByModel(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
-        List<RequestLog> logs = userId != null
-                ? requestLogMapper.findByUserIdAndCreatedAtBetween(userId, startTime, endTime)
-                : requestLogMapper.findByCreatedAtBetween(startTime, endTime);
-        return calculateErrorsByModel(logs, startTime, endTime);
-    }
-
-    private SystemOverviewResponse calculateSystemOverview(List<RequestLog> logs) {
-        if (logs.isEmpty()) {
-            return SystemOverviewResponse.builder()
-                    .totalRequests(0L)
-                    .successfulRequests(0L)
-                    .failedRequests(0L)
-                    .totalTokens(0L)
-                    .totalCost(BigDecimal.ZERO)
-                    .averageDurationMs(0.0)
-                    .averageTokensPerSecond(0.0)
-                    .errorRate(0.0)
-                    .activeUsers(0)
-                    .uniqueModels(0)
-                    .periodStart(logs.isEmpty() ? null : logs.get(0).getCreatedAt())
-                    .periodEnd(logs.isEmpty() ? null : logs.get(logs.size() - 1).getCreatedAt())
-                    .build();
-        }
-
-        long totalRequests = logs.size();
-        long successfulRequests = logs.stream().filter(log -> Boolean.TRUE.equals(log.getIsSuccess())).count();
+        RequestLogAggregate aggregate = aggregate(null, startTime, endTime);
+        long totalRequests = count(aggregate.getTotalRequests());
+        long successfulRequests = count(aggregate.getSuccessfulRequests());
         long failedRequests = totalRequests - successfulRequests;
-        long totalTokens = logs.stream().mapToLong(log -> log.getTotalTokens() != null ? log.getTotalTokens() : 0).sum();
-        BigDecimal totalCost = logs.stream()
-                .map(log -> log.getTotalCost() != null ? log.getTotalCost() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        double avgDuration = logs.stream()
-                .filter(log -> log.getDurationMs() != null)
-                .mapToInt(RequestLog::getDurationMs)
-                .average()
-                .orElse(0.0);
-
-        double avgTokensPerSecond = logs.stream()
-                .filter(log -> log.getTokensPerSecond() != null)
-                .mapToDouble(log -> log.getTokensPerSecond().doubleValue())
-                .average()
-                .orElse(0.0);
-
-        Set<Long> uniqueUsers = logs.stream()
-                .map(RequestLog::getUserId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-        Set<String> uniqueModels = logs.stream()
-                .map(RequestLog::getModelKey)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
         return SystemOverviewResponse.builder()
                 .totalRequests(totalRequests)
                 .successfulRequests(successfulRequests)
                 .failedRequests(failedRequests)
-                .totalTokens(totalTokens)
-                .totalCost(totalCost)
-                .averageDurationMs(avgDuration)
-                .averageTokensPerSecond(avgTokensPerSecond)
-                .errorRate(totalRequests > 0 ? (failedRequests * 100.0 / totalRequests) : 0.0)
-                .activeUsers(uniqueUsers.size())
-                .uniqueModels(uniqueModels.size())
-                .periodStart(logs.get(0).getCreatedAt())
-                .periodEnd(logs.get(logs.size() - 1).getCreatedAt())
+                .totalTokens(count(aggregate.getTotalTokens()))
+                .totalCost(amount(aggregate.getTotalCost()))
+                .averageDurationMs(average(aggregate.getAvgDurationMs()))
+                .averageTokensPerSecond(average(aggregate.getAvgTokensPerSecond()))
+                .errorRate(percent(failedRequests, totalRequests))
+                .activeUsers((int) count(aggregate.getActiveUsers()))
+                .uniqueModels((int) count(aggregate.getUniqueModels()))
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private UserOverviewResponse calculateUserOverview(Long userId, List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime) {
-        if (logs.isEmpty()) {
-            return UserOverviewResponse.builder()
-                    .userId(userId)
-                    .totalRequests(0L)
-                    .successfulRequests(0L)
-                    .failedRequests(0L)
-                    .totalTokens(0L)
-                    .totalCost(BigDecimal.ZERO)
-                    .averageDurationMs(0.0)
-                    .averageTokensPerSecond(0.0)
-                    .errorRate(0.0)
-                    .uniqueModelsUsed(0)
-                    .periodStart(startTime)
-                    .periodEnd(endTime)
-                    .build();
-        }
-
-        long totalRequests = logs.size();
-        long successfulRequests = logs.stream().filter(log -> Boolean.TRUE.equals(log.getIsSuccess())).count();
+    public UserOverviewResponse getUserOverview(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
+        long totalRequests = count(aggregate.getTotalRequests());
+        long successfulRequests = count(aggregate.getSuccessfulRequests());
         long failedRequests = totalRequests - successfulRequests;
-        long totalTokens = logs.stream().mapToLong(log -> log.getTotalTokens() != null ? log.getTotalTokens() : 0).sum();
-        BigDecimal totalCost = logs.stream()
-                .map(log -> log.getTotalCost() != null ? log.getTotalCost() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        double avgDuration = logs.stream()
-                .filter(log -> log.getDurationMs() != null)
-                .mapToInt(RequestLog::getDurationMs)
-                .average()
-                .orElse(0.0);
-
-        double avgTokensPerSecond = logs.stream()
-                .filter(log -> log.getTokensPerSecond() != null)
-                .mapToDouble(log -> log.getTokensPerSecond().doubleValue())
-                .average()
-                .orElse(0.0);
-
-        Set<String> uniqueModels = logs.stream()
-                .map(RequestLog::getModelKey)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
         return UserOverviewResponse.builder()
                 .userId(userId)
                 .totalRequests(totalRequests)
                 .successfulRequests(successfulRequests)
                 .failedRequests(failedRequests)
-                .totalTokens(totalTokens)
-                .totalCost(totalCost)
-                .averageDurationMs(avgDuration)
-                .averageTokensPerSecond(avgTokensPerSecond)
-                .errorRate(totalRequests > 0 ? (failedRequests * 100.0 / totalRequests) : 0.0)
-                .uniqueModelsUsed(uniqueModels.size())
+                .totalTokens(count(aggregate.getTotalTokens()))
+                .totalCost(amount(aggregate.getTotalCost()))
+                .averageDurationMs(average(aggregate.getAvgDurationMs()))
+                .averageTokensPerSecond(average(aggregate.getAvgTokensPerSecond()))
+                .errorRate(percent(failedRequests, totalRequests))
+                .uniqueModelsUsed((int) count(aggregate.getUniqueModels()))
                 .periodStart(startTime)
                 .periodEnd(endTime)
                 .build();
     }
 
-    private TokenUsageResponse calculateTokenUsage(List<RequestLog> logs) {
-        if (logs.isEmpty()) {
-            return TokenUsageResponse.builder()
-                    .totalPromptTokens(0L)
-                    .totalCompletionTokens(0L)
-                    .totalTokens(0L)
-                    .averagePromptTokensPerRequest(0.0)
-                    .averageCompletionTokensPerRequest(0.0)
-                    .averageTokensPerRequest(0.0)
-                    .periodStart(null)
-                    .periodEnd(null)
-                    .build();
-        }
-
-        long totalPromptTokens = logs.stream().mapToLong(log -> log.getPromptTokens() != null ? log.getPromptTokens() : 0).sum();
-        long totalCompletionTokens = logs.stream().mapToLong(log -> log.getCompletionTokens() != null ? log.getCompletionTokens() : 0).sum();
-        long totalTokens = logs.stream().mapToLong(log -> log.getTotalTokens() != null ? log.getTotalTokens() : 0).sum();
-
-        double avgPromptTokens = logs.stream()
-                .filter(log -> log.getPromptTokens() != null)
-                .mapToInt(RequestLog::getPromptTokens)
-                .average()
-                .orElse(0.0);
-
-        double avgCompletionTokens = logs.stream()
-                .filter(log -> log.getCompletionTokens() != null)
-                .mapToInt(RequestLog::getCompletionTokens)
-                .average()
-                .orElse(0.0);
-
-        double avgTokens = logs.stream()
-                .filter(log -> log.getTotalTokens() != null)
-                .mapToInt(RequestLog::getTotalTokens)
-                .average()
-                .orElse(0.0);
-
+    public TokenUsageResponse getTokenUsage(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
         return TokenUsageResponse.builder()
-                .totalPromptTokens(totalPromptTokens)
-                .totalCompletionTokens(totalCompletionTokens)
-                .totalTokens(totalTokens)
-                .averagePromptTokensPerRequest(avgPromptTokens)
-                .averageCompletionTokensPerRequest(avgCompletionTokens)
-                .averageTokensPerRequest(avgTokens)
-                .periodStart(logs.get(0).getCreatedAt())
-                .periodEnd(logs.get(logs.size() - 1).getCreatedAt())
+                .totalPromptTokens(count(aggregate.getPromptTokens()))
+                .totalCompletionTokens(count(aggregate.getCompletionTokens()))
+                .totalTokens(count(aggregate.getTotalTokens()))
+                .averagePromptTokensPerRequest(average(aggregate.getAvgPromptTokens()))
+                .averageCompletionTokensPerRequest(average(aggregate.getAvgCompletionTokens()))
+                .averageTokensPerRequest(average(aggregate.getAvgTotalTokens()))
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private CostUsageResponse calculateCostUsage(List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime) {
-        if (logs.isEmpty()) {
-            return CostUsageResponse.builder()
-                    .totalInputCost(BigDecimal.ZERO)
-                    .totalOutputCost(BigDecimal.ZERO)
-                    .totalCost(BigDecimal.ZERO)
-                    .averageInputCostPerRequest(0.0)
-                    .averageOutputCostPerRequest(0.0)
-                    .averageCostPerRequest(0.0)
-                    .averageCostPerToken(BigDecimal.ZERO)
-                    .currency("USD")
-                    .periodStart(startTime)
-                    .periodEnd(endTime)
-                    .build();
-        }
-
-        BigDecimal totalInputCost = logs.stream()
-                .map(log -> log.getInputCost() != null ? log.getInputCost() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalOutputCost = logs.stream()
-                .map(log -> log.getOutputCost() != null ? log.getOutputCost() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalCost = logs.stream()
-                .map(log -> log.getTotalCost() != null ? log.getTotalCost() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        double avgInputCost = logs.stream()
-                .filter(log -> log.getInputCost() != null)
-                .mapToDouble(log -> log.getInputCost().doubleValue())
-                .average()
-                .orElse(0.0);
-
-        double avgOutputCost = logs.stream()
-                .filter(log -> log.getOutputCost() != null)
-                .mapToDouble(log -> log.getOutputCost().doubleValue())
-                .average()
-                .orElse(0.0);
-
-        double avgCost = logs.stream()
-                .filter(log -> log.getTotalCost() != null)
-                .mapToDouble(log -> log.getTotalCost().doubleValue())
-                .average()
-                .orElse(0.0);
-
-        long totalTokens = logs.stream().mapToLong(log -> log.getTotalTokens() != null ? log.getTotalTokens() : 0).sum();
-        BigDecimal avgCostPerToken = totalTokens > 0 ? totalCost.divide(BigDecimal.valueOf(totalTokens), 6, RoundingMode.HALF_UP) : BigDecimal.ZERO;
-
-        String currency = logs.stream()
-                .filter(log -> log.getCurrency() != null)
-                .map(RequestLog::getCurrency)
-                .findFirst()
-                .orElse("USD");
-
+    public CostUsageResponse getCostUsage(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
+        BigDecimal totalCost = amount(aggregate.getTotalCost());
+        long totalTokens = count(aggregate.getTotalTokens());
         return CostUsageResponse.builder()
-                .totalInputCost(totalInputCost)
-                .totalOutputCost(totalOutputCost)
+                .totalInputCost(amount(aggregate.getInputCost()))
+                .totalOutputCost(amount(aggregate.getOutputCost()))
                 .totalCost(totalCost)
-                .averageInputCostPerRequest(avgInputCost)
-                .averageOutputCostPerRequest(avgOutputCost)
-                .averageCostPerRequest(avgCost)
-                .averageCostPerToken(avgCostPerToken)
-                .currency(currency)
-                .periodStart(logs.get(0).getCreatedAt())
-                .periodEnd(logs.get(logs.size() - 1).getCreatedAt())
+                .averageInputCostPerRequest(average(aggregate.getAvgInputCost()))
+                .averageOutputCostPerRequest(average(aggregate.getAvgOutputCost()))
+                .averageCostPerRequest(average(aggregate.getAvgTotalCost()))
+                .averageCostPerToken(totalTokens > 0 ? totalCost.divide(BigDecimal.valueOf(totalTokens), 6, RoundingMode.HALF_UP) : BigDecimal.ZERO)
+                .currency(aggregate.getCurrency() != null ? aggregate.getCurrency() : "USD")
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private RequestUsageResponse calculateRequestUsage(List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime) {
-        if (logs.isEmpty()) {
-            return RequestUsageResponse.builder()
-                    .totalRequests(0L)
-                    .successfulRequests(0L)
-                    .failedRequests(0L)
-                    .streamRequests(0L)
-                    .nonStreamRequests(0L)
-                    .successRate(0.0)
-                    .errorRate(0.0)
-                    .streamRate(0.0)
-                    .periodStart(startTime)
-                    .periodEnd(endTime)
-                    .build();
-        }
-
-        long totalRequests = logs.size();
-        long successfulRequests = logs.stream().filter(log -> Boolean.TRUE.equals(log.getIsSuccess())).count();
+    public RequestUsageResponse getRequestUsage(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
+        long totalRequests = count(aggregate.getTotalRequests());
+        long successfulRequests = count(aggregate.getSuccessfulRequests());
         long failedRequests = totalRequests - successfulRequests;
-        long streamRequests = logs.stream().filter(log -> Boolean.TRUE.equals(log.getIsStream())).count();
-        long nonStreamRequests = totalRequests - streamRequests;
-
+        long streamRequests = count(aggregate.getStreamRequests());
         return RequestUsageResponse.builder()
                 .totalRequests(totalRequests)
                 .successfulRequests(successfulRequests)
                 .failedRequests(failedRequests)
                 .streamRequests(streamRequests)
-                .nonStreamRequests(nonStreamRequests)
+                .nonStreamRequests(totalRequests - streamRequests)
                 .successRate(totalRequests > 0 ? (successfulRequests * 1.0 / totalRequests) : 0.0)
-                .errorRate(totalRequests > 0 ? (failedRequests * 100.0 / totalRequests) : 0.0)
-                .streamRate(totalRequests > 0 ? (streamRequests * 100.0 / totalRequests) : 0.0)
-                .periodStart(logs.get(0).getCreatedAt())
-                .periodEnd(logs.get(logs.size() - 1).getCreatedAt())
+                .errorRate(percent(failedRequests, totalRequests))
+                .streamRate(percent(streamRequests, totalRequests))
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private LatencyStatsResponse calculateLatencyStats(List<Integer> durations) {
-        if (durations.isEmpty()) {
-            return LatencyStatsResponse.builder()
-                    .averageDurationMs(0.0)
-                    .minDurationMs(0.0)
-                    .maxDurationMs(0.0)
-                    .medianDurationMs(0.0)
-                    .p95DurationMs(0.0)
-                    .p99DurationMs(0.0)
-                    .averageFirstTokenLatencyMs(0.0)
-                    .build();
-        }
-
-        Collections.sort(durations);
-        double avg = durations.stream().mapToInt(Integer::intValue).average().orElse(0.0);
-        double min = durations.get(0);
-        double max = durations.get(durations.size() - 1);
-        double median = durations.get(durations.size() / 2);
-        double p95 = durations.get((int) (durations.size() * 0.95));
-        double p99 = durations.get((int) (durations.size() * 0.99));
-
+    public LatencyStatsResponse getLatencyStats(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
+        QuantileSketch sketch = mergeSketches(userId, startTime, endTime, RequestStatsRollup::getLatencySketch);
         return LatencyStatsResponse.builder()
-                .averageDurationMs(avg)
-                .minDurationMs(min)
-                .maxDurationMs(max)
-                .medianDurationMs(median)
-                .p95DurationMs(p95)
-                .p99DurationMs(p99)
-                .averageFirstTokenLatencyMs(0.0) // TODO: Implement first token latency calculation
+                .averageDurationMs(average(aggregate.getAvgDurationMs()))
+                .minDurationMs(average(aggregate.getMinDurationMs()))
+                .maxDurationMs(average(aggregate.getMaxDurationMs()))
+                .medianDurationMs(durationPercentile(aggregate, sketch, 0.5))
+                .p95DurationMs(durationPercentile(aggregate, sketch, 0.95))
+                .p99DurationMs(durationPercentile(aggregate, sketch, 0.99))
+                .averageFirstTokenLatencyMs(average(aggregate.getAvgFirstTokenLatencyMs()))
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private TokenSpeedResponse calculateTokenSpeedStats(List<BigDecimal> tokenSpeeds) {
-        if (tokenSpeeds.isEmpty()) {
-            return TokenSpeedResponse.builder()
-                    .averageTokensPerSecond(BigDecimal.ZERO)
-                    .maxTokensPerSecond(BigDecimal.ZERO)
-                    .minTokensPerSecond(BigDecimal.ZERO)
-                    .medianTokensPerSecond(BigDecimal.ZERO)
-                    .build();
+    public TokenSpeedResponse getTokenSpeedStats(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
+        QuantileSketch sketch = mergeSketches(userId, startTime, endTime, RequestStatsRollup::getTpsSketch);
+        long samples = count(aggregate.getTokensPerSecondCount());
+        BigDecimal median = null;
+        if (samples > 0 && sketch.count() == samples) {
+            median = BigDecimal.valueOf(clamp(sketch.quantile(0.5),
+                            amount(aggregate.getMinTokensPerSecond()).doubleValue(),
+                            amount(aggregate.getMaxTokensPerSecond()).doubleValue()))
+                    .setScale(2, RoundingMode.HALF_UP);
+        } else if (samples > 0) {
+            // 窗口内有草图引入之前汇总的行，退回到在明细上取值
+            median = requestLogMapper.findNthTokensPerSecond(userId, startTime, endTime, samples / 2);
         }
-
-        Collections.sort(tokenSpeeds);
-        BigDecimal avg = tokenSpeeds.stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(BigDecimal.valueOf(tokenSpeeds.size()), 6, RoundingMode.HALF_UP);
-        BigDecimal min = tokenSpeeds.get(0);
-        BigDecimal max = tokenSpeeds.get(tokenSpeeds.size() - 1);
-        BigDecimal median = tokenSpeeds.get(tokenSpeeds.size() / 2);
-
         return TokenSpeedResponse.builder()
-                .averageTokensPerSecond(avg)
-                .maxTokensPerSecond(max)
-                .minTokensPerSecond(min)
-                .medianTokensPerSecond(median)
+                .averageTokensPerSecond(aggregate.getAvgTokensPerSecond() != null
+                        ? BigDecimal.valueOf(aggregate.getAvgTokensPerSecond()).setScale(6, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO)
+                .maxTokensPerSecond(amount(aggregate.getMaxTokensPerSecond()))
+                .minTokensPerSecond(amount(aggregate.getMinTokensPerSecond()))
+                .medianTokensPerSecond(amount(median))
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private ModelPopularityResponse calculateModelPopularity(List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime, int limit) {
-        Map<String, ModelPopularityResponse.ModelStats> modelStatsMap = new HashMap<>();
-
-        for (RequestLog log : logs) {
-            if (log.getModelKey() == null) continue;
-
-            ModelPopularityResponse.ModelStats stats = modelStatsMap.computeIfAbsent(log.getModelKey(), k ->
-                ModelPopularityResponse.ModelStats.builder()
-                    .modelKey(k)
-                    .requestCount(0L)
-                    .totalTokens(0L)
-                    .totalCost(BigDecimal.ZERO)
-                    .successRate(0.0)
-                    .averageDurationMs(0.0)
+    public ModelPopularityResponse getModelPopularity(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, int limit) {
+        List<ModelPopularityResponse.ModelStats> models = new ArrayList<>();
+        for (RequestLogAggregate aggregate : aggregateByModel(userId, startTime, endTime, limit)) {
+            long requestCount = count(aggregate.getTotalRequests());
+            models.add(ModelPopularityResponse.ModelStats.builder()
+                    .modelKey(aggregate.getGroupKey())
+                    .requestCount(requestCount)
+                    .totalTokens(count(aggregate.getTotalTokens()))
+                    .totalCost(amount(aggregate.getTotalCost()))
+                    .successRate(requestCount > 0 ? (count(aggregate.getSuccessfulRequests()) * 1.0 / requestCount) : 0.0)
+                    .averageDurationMs(average(aggregate.getAvgDurationMs()))
                     .build());
-
-            stats.setRequestCount(stats.getRequestCount() + 1);
-            stats.setTotalTokens(stats.getTotalTokens() + (log.getTotalTokens() != null ? log.getTotalTokens() : 0));
-            stats.setTotalCost(stats.getTotalCost().add(log.getTotalCost() != null ? log.getTotalCost() : BigDecimal.ZERO));
-        }
-
-        // Calculate success rates and average durations
-        for (ModelPopularityResponse.ModelStats stats : modelStatsMap.values()) {
-            List<RequestLog> modelLogs = logs.stream()
-                    .filter(log -> log.getModelKey() != null && log.getModelKey().equals(stats.getModelKey()))
-                    .collect(Collectors.toList());
-
-            long successfulRequests = modelLogs.stream().filter(log -> Boolean.TRUE.equals(log.getIsSuccess())).count();
-            stats.setSuccessRate(modelLogs.size() > 0 ? (successfulRequests * 1.0 / modelLogs.size()) : 0.0);
-
-            double avgDuration = modelLogs.stream()
-                    .filter(log -> log.getDurationMs() != null)
-                    .mapToInt(RequestLog::getDurationMs)
-                    .average()
-                    .orElse(0.0);
-            stats.setAverageDurationMs(avgDuration);
         }
-
-        List<ModelPopularityResponse.ModelStats> sortedModels = modelStatsMap.values().stream()
-                .sorted((a, b) -> Long.compare(b.getRequestCount(), a.getRequestCount()))
-                .limit(limit)
-                .collect(Collectors.toList());
-
         return ModelPopularityResponse.builder()
-                .models(sortedModels)
+                .models(models)
                 .periodStart(startTime)
                 .periodEnd(endTime)
                 .build();
     }
 
-    private ModelCostResponse calculateModelCosts(List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime) {
-        Map<String, ModelCostResponse.ModelCostStats> modelCostMap = new HashMap<>();
-
-        for (RequestLog log : logs) {
-            if (log.getModelKey() == null) continue;
-
-            ModelCostResponse.ModelCostStats stats = modelCostMap.computeIfAbsent(log.getModelKey(), k ->
-                ModelCostResponse.ModelCostStats.builder()
-                    .modelKey(k)
-                    .totalCost(BigDecimal.ZERO)
-                    .totalTokens(0L)
-                    .averageCostPerToken(BigDecimal.ZERO)
-                    .averageCostPerRequest(BigDecimal.ZERO)
-                    .requestCount(0L)
+    public ModelCostResponse getModelCosts(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        List<ModelCostResponse.ModelCostStats> models = new ArrayList<>();
+        for (RequestLogAggregate aggregate : aggregateByModel(userId, startTime, endTime, null)) {
+            long requestCount = count(aggregate.getTotalRequests());
+            long totalTokens = count(aggregate.getTotalTokens());
+            BigDecimal totalCost = amount(aggregate.getTotalCost());
+            models.add(ModelCostResponse.ModelCostStats.builder()
+                    .modelKey(aggregate.getGroupKey())
+                    .totalCost(totalCost)
+                    .totalTokens(totalTokens)
+                    .averageCostPerToken(totalTokens > 0 ? totalCost.divide(BigDecimal.valueOf(totalTokens), 6, RoundingMode.HALF_UP) : BigDecimal.ZERO)
+                    .averageCostPerRequest(requestCount > 0 ? totalCost.divide(BigDecimal.valueOf(requestCount), 6, RoundingMode.HALF_UP) : BigDecimal.ZERO)
+                    .requestCount(requestCount)
                     .build());
-
-            stats.setRequestCount(stats.getRequestCount() + 1);
-            stats.setTotalTokens(stats.getTotalTokens() + (log.getTotalTokens() != null ? log.getTotalTokens() : 0));
-            stats.setTotalCost(stats.getTotalCost().add(log.getTotalCost() != null ? log.getTotalCost() : BigDecimal.ZERO));
         }
-
-        // Calculate averages
-        for (ModelCostResponse.ModelCostStats stats : modelCostMap.values()) {
-            if (stats.getTotalTokens() > 0) {
-                stats.setAverageCostPerToken(stats.getTotalCost().divide(BigDecimal.valueOf(stats.getTotalTokens()), 6, RoundingMode.HALF_UP));
-            }
-            if (stats.getRequestCount() > 0) {
-                stats.setAverageCostPerRequest(stats.getTotalCost().divide(BigDecimal.valueOf(stats.getRequestCount()), 6, RoundingMode.HALF_UP));
-            }
-        }
-
         return ModelCostResponse.builder()
-                .models(new ArrayList<>(modelCostMap.values()))
+                .models(models)
                 .periodStart(startTime)
                 .periodEnd(endTime)
                 .build();
     }
 
-    private TimeSeriesResponse calculateTimeSeries(List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime, String interval) {
-        Map<String, TimeSeriesResponse.TimeSeriesDataPoint> dataPointMap = new HashMap<>();
-        DateTimeFormatter formatter = getIntervalFormatter(interval);
-
-        for (RequestLog log : logs) {
-            String timeKey = log.getCreatedAt().format(formatter);
-
-            TimeSeriesResponse.TimeSeriesDataPoint dataPoint = dataPointMap.computeIfAbsent(timeKey, k ->
-                TimeSeriesResponse.TimeSeriesDataPoint.builder()
-                    .timestamp(parseTimeKey(k, interval))
-                    .requestCount(0L)
-                    .totalTokens(0L)
-                    .totalCost(BigDecimal.ZERO)
-                    .successfulRequests(0L)
-                    .failedRequests(0L)
-                    .build());
-
-            dataPoint.setRequestCount(dataPoint.getRequestCount() + 1);
-            dataPoint.setTotalTokens(dataPoint.getTotalTokens() + (log.getTotalTokens() != null ? log.getTotalTokens() : 0));
-            dataPoint.setTotalCost(dataPoint.getTotalCost().add(log.getTotalCost() != null ? log.getTotalCost() : BigDecimal.ZERO));
-
-            if (Boolean.TRUE.equals(log.getIsSuccess())) {
-                dataPoint.setSuccessfulRequests(dataPoint.getSuccessfulRequests() + 1);
-            } else {
-                dataPoint.setFailedRequests(dataPoint.getFailedRequests() + 1);
-            }
+    public TimeSeriesResponse getUsageTimeSeries(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, String interval) {
+        String unit = bucketUnit(interval);
+        RollupGranularity granularity = switch (unit) {
+            case "minute" -> RollupGranularity.MINUTE;
+            case "hour" -> RollupGranularity.HOUR;
+            default -> RollupGranularity.DAY;
+        };
+        // 周、月由天桶合并而来
+        Map<OffsetDateTime, TimeSeriesResponse.TimeSeriesDataPoint> points = new LinkedHashMap<>();
+        for (RequestLogAggregate aggregate : aggregateByBucket(userId, granularity, startTime, endTime)) {
+            long requestCount = count(aggregate.getTotalRequests());
+            long successfulRequests = count(aggregate.getSuccessfulRequests());
+            TimeSeriesResponse.TimeSeriesDataPoint point = points.computeIfAbsent(periodStart(aggregate.getBucketStart(), unit),
+                    timestamp -> TimeSeriesResponse.TimeSeriesDataPoint.builder()
+                            .timestamp(timestamp)
+                            .requestCount(0L)
+                            .totalTokens(0L)
+                            .totalCost(BigDecimal.ZERO)
+                            .successfulRequests(0L)
+                            .failedRequests(0L)
+                            .build());
+            point.setRequestCount(point.getRequestCount() + requestCount);
+            point.setTotalTokens(point.getTotalTokens() + count(aggregate.getTotalTokens()));
+            point.setTotalCost(point.getTotalCost().add(amount(aggregate.getTotalCost())));
+            point.setSuccessfulRequests(point.getSuccessfulRequests() + successfulRequests);
+            point.setFailedRequests(point.getFailedRequests() + requestCount - successfulRequests);
         }
-
-        List<TimeSeriesResponse.TimeSeriesDataPoint> sortedDataPoints = dataPointMap.values().stream()
-                .sorted(Comparator.comparing(TimeSeriesResponse.TimeSeriesDataPoint::getTimestamp))
-                .collect(Collectors.toList());
-
         return TimeSeriesResponse.builder()
                 .interval(interval)
-                .dataPoints(sortedDataPoints)
+                .dataPoints(new ArrayList<>(points.values()))
                 .periodStart(startTime)
                 .periodEnd(endTime)
                 .build();
     }
 
-    private ErrorRateResponse calculateErrorRate(List<RequestLog> logs) {
-        if (logs.isEmpty()) {
-            return ErrorRateResponse.builder()
-                    .overallErrorRate(0.0)
-                    .totalRequests(0L)
-                    .failedRequests(0L)
-                    .periodStart(null)
-                    .periodEnd(null)
-                    .build();
-        }
-
-        long totalRequests = logs.size();
-        long failedRequests = logs.stream().filter(log -> Boolean.FALSE.equals(log.getIsSuccess())).count();
+    public TimeSeriesResponse getCostTimeSeries(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, String interval) {
+        return getUsageTimeSeries(userId, startTime, endTime, interval);
+    }
 
+    public ErrorRateResponse getErrorRate(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        RequestLogAggregate aggregate = aggregate(userId, startTime, endTime);
+        long totalRequests = count(aggregate.getTotalRequests());
+        long failedRequests = count(aggregate.getFailedRequests());
         return ErrorRateResponse.builder()
-                .overallErrorRate(totalRequests > 0 ? (failedRequests * 100.0 / totalRequests) : 0.0)
+                .overallErrorRate(percent(failedRequests, totalRequests))
                 .totalRequests(totalRequests)
                 .failedRequests(failedRequests)
-                .periodStart(logs.get(0).getCreatedAt())
-                .periodEnd(logs.get(logs.size() - 1).getCreatedAt())
+                .periodStart(startTime)
+                .periodEnd(endTime)
                 .build();
     }
 
-    private ErrorByModelResponse calculateErrorsByModel(List<RequestLog> logs, OffsetDateTime startTime, OffsetDateTime endTime) {
-        Map<String, ErrorByModelResponse.ModelErrorStats> modelErrorMap = new HashMap<>();
+    public ErrorByModelResponse getErrorsByModel(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        List<ErrorByModelResponse.ModelErrorStats> models = new ArrayList<>();
+        for (RequestLogAggregate aggregate : aggregateByModel(userId, startTime, endTime, null)) {
+            long totalRequests = count(aggregate.getTotalRequests());
+            long failedRequests = count(aggregate.getFailedRequests());
+            models.add(ErrorByModelResponse.ModelErrorStats.builder()
+                    .modelKey(aggregate.getGroupKey())
+                    .totalRequests(totalRequests)
+                    .failedRequests(failedRequests)
+                    .errorRate(percent(failedRequests, totalRequests))
+                    .build());
+        }
+        return ErrorByModelResponse.builder()
+                .models(models)
+                .periodStart(startTime)
+                .periodEnd(endTime)
+                .build();
+    }
 
-        for (RequestLog log : logs) {
-            if (log.getModelKey() == null) continue;
+    private RequestLogAggregate aggregate(Long userId, OffsetDateTime startTime, OffsetDateTime endTime) {
+        return cached("aggregate", userId, startTime, endTime, null,
+                segments -> rollupMapper.aggregate(userId, segments));
+    }
 
-            ErrorByModelResponse.ModelErrorStats stats = modelErrorMap.computeIfAbsent(log.getModelKey(), k ->
-                ErrorByModelResponse.ModelErrorStats.builder()
-                    .modelKey(k)
-                    .totalRequests(0L)
-                    .failedRequests(0L)
-                    .errorRate(0.0)
-                    .build());
+    private List<RequestLogAggregate> aggregateByModel(Long userId, OffsetDateTime startTime, OffsetDateTime endTime, Integer limit) {
+        return cached("aggregateByModel", userId, startTime, endTime, String.valueOf(limit),
+                segments -> rollupMapper.aggregateByModel(userId, segments, limit));
+    }
 
-            stats.setTotalRequests(stats.getTotalRequests() + 1);
-            if (Boolean.FALSE.equals(log.getIsSuccess())) {
-                stats.setFailedRequests(stats.getFailedRequests() + 1);
-            }
+    /**
+     * 按窗口覆盖的汇总段查询并缓存；窗口两端按分钟取整后相同的查询结果相同
+     */
+    private <T> T cached(String query, Long userId, OffsetDateTime startTime, OffsetDateTime endTime, String qualifier,
+                         Function<List<RollupSegment>, T> loader) {
+        return resultCache.get(query, userId, RollupGranularity.MINUTE.truncate(startTime),
+                RollupGranularity.MINUTE.next(endTime), qualifier,
+                () -> loader.apply(RollupGranularity.cover(startTime, endTime)));
+    }
+
+    /**
+     * 桶起点在 [startTime, endTime] 内的各时间桶：已结束的桶走缓存，之后仍可能写入的桶每次查询
+     */
+    private List<RequestLogAggregate> aggregateByBucket(Long userId, RollupGranularity granularity,
+                                                        OffsetDateTime startTime, OffsetDateTime endTime) {
+        OffsetDateTime first = granularity.truncate(startTime);
+        OffsetDateTime last = granularity.truncate(endTime);
+        OffsetDateTime open = granularity.truncate(resultCache.settledBefore());
+        List<RequestLogAggregate> buckets = new ArrayList<>();
+        if (first.isBefore(open)) {
+            OffsetDateTime closedEnd = last.isBefore(open) ? granularity.next(last) : open;
+            // 桶起点按粒度对齐，closedEnd 前一分钟即最后一个已结束桶的起点或之后
+            buckets.addAll(resultCache.get("aggregateByBucket", userId, first, closedEnd, granularity.code(),
+                    () -> rollupMapper.aggregateByBucket(userId, granularity.code(), first, closedEnd.minusMinutes(1))));
+        }
+        if (!last.isBefore(open)) {
+            buckets.addAll(rollupMapper.aggregateByBucket(userId, granularity.code(), first.isAfter(open) ? first : open, last));
         }
+        return buckets;
+    }
 
-        // Calculate error rates
-        for (ErrorByModelResponse.ModelErrorStats stats : modelErrorMap.values()) {
-            if (stats.getTotalRequests() > 0) {
-                stats.setErrorRate(stats.getFailedRequests() * 100.0 / stats.getTotalRequests());
+    /**
+     * 合并各汇总行的分位数草图
+     */
+    private QuantileSketch mergeSketches(Long userId, OffsetDateTime startTime, OffsetDateTime endTime,
+                                         Function<RequestStatsRollup, byte[]> column) {
+        QuantileSketch merged = new QuantileSketch();
+        List<RequestStatsRollup> rows = cached("findSketches", userId, startTime, endTime, null,
+                segments -> rollupMapper.findSketches(userId, segments));
+        for (RequestStatsRollup row : rows) {
+            byte[] bytes = column.apply(row);
+            if (bytes != null) {
+                merged.merge(QuantileSketch.fromBytes(bytes));
             }
         }
+        return merged;
+    }
 
-        return ErrorByModelResponse.builder()
-                .models(new ArrayList<>(modelErrorMap.values()))
-                .periodStart(startTime)
-                .periodEnd(endTime)
-                .build();
+    /**
+     * 第 q 分位的耗时：草图覆盖窗口内全部样本时取草图的估计值（相对误差 1%），
+     * 否则（窗口包含草图引入之前汇总的行）由耗时直方图估算
+     */
+    private double durationPercentile(RequestLogAggregate aggregate, QuantileSketch sketch, double q) {
+        double min = average(aggregate.getMinDurationMs());
+        double max = average(aggregate.getMaxDurationMs());
+        long samples = count(aggregate.getDurationCount());
+        if (samples > 0 && sketch.count() == samples) {
+            return clamp(sketch.quantile(q), min, max);
+        }
+        return LatencyHistogram.percentile(aggregate.latencyHistogram(), q, min, max);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
     }
 
-    private DateTimeFormatter getIntervalFormatter(String interval) {
+    /**
+     * 时间桶所属的统计周期起点：周从周一开始，月从 1 日开始
+     */
+    private static OffsetDateTime periodStart(OffsetDateTime bucketStart, String unit) {
+        return switch (unit) {
+            case "week" -> bucketStart.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case "month" -> bucketStart.withDayOfMonth(1);
+            default -> bucketStart;
+        };
+    }
+
+    private String bucketUnit(String interval) {
         return switch (interval.toLowerCase()) {
-            case "minute" -> DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-            case "hour" -> DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
-            case "day" -> DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            case "week" -> DateTimeFormatter.ofPattern("yyyy-ww");
-            case "month" -> DateTimeFormatter.ofPattern("yyyy-MM");
-            default -> DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
+            case "minute", "day", "week", "month" -> interval.toLowerCase();
+            default -> "hour";
         };
     }
 
-    private OffsetDateTime parseTimeKey(String timeKey, String interval) {
-        try {
-            return switch (interval.toLowerCase()) {
-                case "minute" ->
-                        OffsetDateTime.parse(timeKey + ":00", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssXXX"));
-                case "hour" ->
-                        OffsetDateTime.parse(timeKey + ":00:00", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssXXX"));
-                case "day" ->
-                        OffsetDateTime.parse(timeKey + " 00:00:00", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssXXX"));
-                case "week" ->
-                    // Week parsing is more complex, simplified for now
-                        OffsetDateTime.parse(timeKey + "-1 00:00:00", DateTimeFormatter.ofPattern("yyyy-ww-ww HH:mm:ssXXX"));
-                case "month" ->
-                        OffsetDateTime.parse(timeKey + "-01 00:00:00", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssXXX"));
-                default ->
-                        OffsetDateTime.parse(timeKey + ":00:00", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssXXX"));
-            };
-        } catch (Exception e) {
-            return OffsetDateTime.now();
-        }
+    private static long count(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static double average(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static double percent(long part, long total) {
+        return total > 0 ? (part * 100.0 / total) : 0.0;
     }
-}
\ No newline at end of file
+}
@@ -4,25 +4,36 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.elmo.robella.model.entity.Model;
+import org.elmo.robella.model.entity.Provider;
 import org.elmo.robella.model.entity.VendorModel;
 import org.elmo.robella.model.internal.UnifiedChatRequest;
 import org.elmo.robella.model.internal.UnifiedChatResponse;
-import org.elmo.robella.model.internal.UnifiedStreamChunk;
 import org.elmo.robella.model.openai.model.ModelListResponse;
 import org.elmo.robella.model.openai.model.ModelInfo;
+import org.elmo.robella.common.EndpointType;
 import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.config.RoutingConfig;
+import org.elmo.robella.config.StreamingConfig;
 import org.elmo.robella.context.RequestContextHolder;
 import org.elmo.robella.context.RequestContextHolder.RequestContext;
 import org.elmo.robella.exception.BusinessException;
 import org.elmo.robella.exception.InsufficientCreditsException;
-import org.elmo.robella.mapper.ModelMapper;
+import org.elmo.robella.exception.UpstreamHttpException;
 import org.elmo.robella.model.openai.core.Usage;
+import org.elmo.robella.service.credit.CreditHold;
+import org.elmo.robella.service.credit.CreditHoldService;
+import org.elmo.robella.service.routing.ProviderCircuitBreakerRegistry;
+import org.elmo.robella.service.routing.RoutingTable;
+import org.elmo.robella.service.stream.UpstreamStream;
 import org.elmo.robella.util.BillingUtils;
 import org.elmo.robella.util.TokenCountingUtils;
+import org.elmo.robella.util.UpstreamCallHandle;
 import org.elmo.robella.model.enums.PricingStrategyType;
 import org.springframework.stereotype.Service;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.function.Function;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
@@ -32,14 +43,18 @@ import java.math.RoundingMode;
 public class UnifiedService {
 
     private final RoutingService routingService;
-    private final ModelMapper modelMapper;
-    private final UserService userService;
+    private final RoutingTable routingTable;
+    private final CreditHoldService creditHoldService;
     private final BillingUtils billingUtils;
     private final TokenCountingUtils tokenCountingUtils;
+    private final ProviderCircuitBreakerRegistry circuitBreakers;
+    private final RoutingConfig routingConfig;
+    private final HedgingService hedgingService;
+    private final StreamingConfig streamingConfig;
 
   
     public ModelListResponse listModels() {
-        List<Model> models = modelMapper.findByPublishedTrue();
+        List<Model> models = routingTable.snapshot().getPublishedModels();
         
         // 添加空值检查
         if (models == null) {
@@ -70,13 +85,103 @@ public class UnifiedService {
     }
 
     public UnifiedChatResponse sendChatRequest(UnifiedChatRequest request) {
-        RoutingService.ClientWithInfo clientWithInfo = beforeRequest(request);
-        return clientWithInfo.getClient().chat(request, clientWithInfo.getProvider());
+        String modelKey = request.getModel();
+        if (hedgingService.isEnabledFor(modelKey)) {
+            // 对冲的各分支自行记录熔断结果
+            return executeWithFailover(request, route -> hedgingService.chat(modelKey, request, route), false);
+        }
+        return executeWithFailover(request, route -> route.getClient().chat(request, route.getProvider()), true);
+    }
+
+    /**
+     * 流式请求只在上游返回首字节之前（建立连接或返回错误状态码）做故障转移，
+     * 已开始向客户端输出后不再切换供应商。
+     * 路由到的供应商端点格式与客户端端点相同时透传上游原始 SSE，否则经统一格式转换。
+     *
+     * @param clientEndpoint 客户端调用的端点格式
+     */
+    public UpstreamStream sendStreamRequest(UnifiedChatRequest request, EndpointType clientEndpoint) {
+        RequestContext ctx = RequestContextHolder.getContext();
+        if (ctx.getUpstreamCall() == null) {
+            // 流式调用总是绑定句柄，客户端断开时由控制器取消上游调用
+            ctx.setUpstreamCall(new UpstreamCallHandle());
+        }
+        return executeWithFailover(request, route -> {
+            Provider provider = route.getProvider();
+            if (streamingConfig.isPassthrough() && provider.getEndpointType() == clientEndpoint) {
+                return UpstreamStream.passthrough(route.getClient().chatStreamPassthrough(request, provider));
+            }
+            return UpstreamStream.unified(route.getClient().chatStream(request, provider));
+        }, true);
+    }
+
+    /**
+     * 调用上游并记录熔断结果，失败时按负载均衡策略在剩余候选中重新路由
+     * 余额预留只在首次路由时执行一次，重试使用新的 requestId 后缀以免请求日志冲突
+     */
+    private <T> T executeWithFailover(UnifiedChatRequest request, Function<RoutingService.ClientWithInfo, T> call,
+                                      boolean recordOutcome) {
+        String modelKey = request.getModel();
+        RoutingService.ClientWithInfo route = beforeRequest(request);
+        String baseRequestId = RequestContextHolder.getContext().getRequestId();
+        Set<Long> tried = new HashSet<>();
+        int attempt = 1;
+        while (true) {
+            Long providerId = route.getProvider().getId();
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(route);
+                if (recordOutcome) {
+                    circuitBreakers.onSuccess(providerId, System.nanoTime() - start);
+                }
+                return result;
+            } catch (RuntimeException e) {
+                boolean upstreamFault = UpstreamHttpException.isUpstreamFault(e);
+                if (recordOutcome && upstreamFault) {
+                    circuitBreakers.onFailure(providerId, System.nanoTime() - start);
+                } else if (recordOutcome) {
+                    circuitBreakers.onSuccess(providerId, System.nanoTime() - start);
+                }
+                tried.add(route.getVendorModel().getId());
+                RoutingService.ClientWithInfo next = upstreamFault ? nextRoute(modelKey, tried, ++attempt) : null;
+                if (next == null) {
+                    releaseHold();
+                    throw e;
+                }
+                log.warn("Upstream call to provider {} failed, failing over to provider {} (attempt {}): {}",
+                        providerId, next.getProvider().getId(), attempt, e.getMessage());
+                RequestContextHolder.getContext().setRequestId(baseRequestId + "-" + attempt);
+                applyRoute(request, next);
+                route = next;
+            }
+        }
+    }
+
+    /**
+     * 请求最终失败时释放余额预留
+     */
+    private void releaseHold() {
+        CreditHold hold = RequestContextHolder.getContext().getCreditHold();
+        if (hold != null) {
+            hold.release();
+        }
+    }
+
+    private RoutingService.ClientWithInfo nextRoute(String modelKey, Set<Long> tried, int attempt) {
+        RoutingConfig.FailoverConfig failover = routingConfig.getFailover();
+        if (!failover.isEnabled() || attempt > failover.getMaxAttempts()) {
+            return null;
+        }
+        return routingService.routeAndClient(modelKey, tried);
     }
 
-    public Stream<UnifiedStreamChunk> sendStreamRequest(UnifiedChatRequest request) {
-        RoutingService.ClientWithInfo clientWithInfo = beforeRequest(request);
-        return clientWithInfo.getClient().chatStream(request, clientWithInfo.getProvider());
+    private void applyRoute(UnifiedChatRequest request, RoutingService.ClientWithInfo route) {
+        // 替换模型名为供应商模型Key
+        request.setModel(route.getVendorModel().getVendorModelKey());
+
+        RequestContext ctx = RequestContextHolder.getContext();
+        ctx.setProviderId(route.getProvider().getId());
+        ctx.setVendorModel(route.getVendorModel());
     }
 
     /**
@@ -118,27 +223,22 @@ public class UnifiedService {
     }
 
     /**
-     * 执行预扣费操作
+     * 按预估成本在内存中预留余额，请求完成后由 ClientRequestLogger 结算
      * @param userId 用户ID
      * @param estimatedCost 预估成本
-     * @throws InsufficientCreditsException 当余额不足时抛出
+     * @throws InsufficientCreditsException 当可用余额不足时抛出
      */
     private void performPreBilling(Long userId, BigDecimal estimatedCost) throws InsufficientCreditsException {
         try {
-            // 尝试扣减用户余额（预扣费）
-            userService.deductUserCredits(userId, estimatedCost);
-            log.info("预扣费成功: userId={}, amount={}", userId, estimatedCost);
-            
-            // 在请求上下文中记录预扣费金额，用于后续退费或补扣
-            RequestContext context = RequestContextHolder.getContext();
-            context.setPreBilledAmount(estimatedCost);
-            
+            CreditHold hold = creditHoldService.place(userId, estimatedCost);
+            RequestContextHolder.getContext().setCreditHold(hold);
+            log.debug("预留余额成功: userId={}, amount={}", userId, estimatedCost);
         } catch (InsufficientCreditsException e) {
-            log.warn("用户余额不足，无法完成预扣费: userId={}, requiredAmount={}, error={}", 
+            log.warn("用户余额不足，无法预留: userId={}, requiredAmount={}, error={}",
                     userId, estimatedCost, e.getMessage());
             throw e;
         } catch (Exception e) {
-            log.error("预扣费失败: userId={}, amount={}, error={}", userId, estimatedCost, e.getMessage(), e);
+            log.error("预留余额失败: userId={}, amount={}, error={}", userId, estimatedCost, e.getMessage(), e);
             throw new BusinessException(ErrorCodeConstants.INTERNAL_ERROR, "预扣费失败: " + e.getMessage());
         }
     }
@@ -151,25 +251,22 @@ public class UnifiedService {
      */
     private RoutingService.ClientWithInfo beforeRequest(UnifiedChatRequest request) {
         String modelKey = request.getModel();
-        // 路由到合适的供应商
-        RoutingService.ClientWithInfo clientWithInfo = routingService.routeAndClient(modelKey);
-        if (clientWithInfo == null) {
-            throw new BusinessException(ErrorCodeConstants.RESOURCE_NOT_FOUND, "No available provider for model: " + modelKey);
-        }
-        // 替换模型名为供应商模型Key
-        request.setModel(clientWithInfo.getVendorModel().getVendorModelKey());
-        
-        // 设置请求上下文
         RequestContext ctx = RequestContextHolder.getContext();
-        ctx.setProviderId(clientWithInfo.getProvider().getId());
-        ctx.setVendorModel(clientWithInfo.getVendorModel());
-        
-        // 获取当前用户ID
+
+        // 获取当前用户ID，在路由之前校验，避免占用熔断器的半开探测名额
         Long userId = ctx.getUserId();
         if (userId == null) {
             throw new BusinessException(ErrorCodeConstants.UNAUTHORIZED, "User not authenticated");
         }
-        
+
+        // 路由到合适的供应商
+        RoutingService.ClientWithInfo clientWithInfo = routingService.routeAndClient(modelKey);
+        if (clientWithInfo == null) {
+            throw new BusinessException(ErrorCodeConstants.RESOURCE_NOT_FOUND, "No available provider for model: " + modelKey);
+        }
+        // 替换模型名并设置请求上下文
+        applyRoute(request, clientWithInfo);
+
         // 估算请求成本并进行预扣费
         try {
             BigDecimal estimatedCost = estimateRequestCost(request, clientWithInfo.getVendorModel());
@@ -180,7 +277,8 @@ public class UnifiedService {
             performPreBilling(userId, estimatedCost);
             
         } catch (InsufficientCreditsException e) {
-            // 余额不足，直接抛出异常，请求不会被执行
+            // 余额不足，直接抛出异常，请求不会被执行，归还已占用的探测名额
+            circuitBreakers.releasePermission(clientWithInfo.getProvider().getId());
             log.warn("用户余额不足，请求被拒绝: userId={}, model={}, error={}", 
                     userId, modelKey, e.getMessage());
             throw e;
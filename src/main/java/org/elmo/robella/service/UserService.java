@@ -11,6 +11,7 @@ import org.elmo.robella.exception.InsufficientCreditsException;
 import cn.dev33.satoken.stp.StpUtil;
 import org.elmo.robella.common.ErrorCodeConstants;
 import org.elmo.robella.exception.*;
+import org.elmo.robella.service.credit.CreditLedger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -28,6 +29,7 @@ import java.util.List;
 public class UserService extends ServiceImpl<UserMapper, User> {
 
     private final PasswordEncoder passwordEncoder;
+    private final CreditLedger creditLedger;
 
     @Transactional
     public UserResponse createUser(UserCreateRequest request) {
@@ -88,8 +90,15 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         user.setId(id);
         BeanUtils.copyProperties(request, user);
 
+        // 余额统一经由账本修改，避免覆盖尚未刷新的变动
+        BigDecimal credits = user.getCredits();
+        user.setCredits(null);
+
         // 使用 updateById 而不是 update(entity, wrapper) 以确保 TypeHandler 生效
         updateById(user);
+        if (credits != null) {
+            creditLedger.setBalance(id, credits);
+        }
 
         log.info("用户更新成功: {}", user.getUsername());
         return true;
@@ -132,53 +141,26 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         return result;
     }
 
-    @Transactional
     public void updateUserCredits(Long userId, BigDecimal credits) {
-        User user = getById(userId);
-        if (user == null) {
-            throw new ResourceNotFoundException(ErrorCodeConstants.USER_NOT_FOUND, "User not found with id: " + userId);
-        }
-
-        user.setCredits(credits);
-        user.setUpdatedAt(OffsetDateTime.now());
-
-        // 使用 updateById 而不是 update(entity, wrapper) 以确保 TypeHandler 生效
-        updateById(user);
+        creditLedger.setBalance(userId, credits);
         log.info("用户credits更新成功: userId={}, credits={}", userId, credits);
     }
 
-    @Transactional
+    /**
+     * 原子扣减余额（允许扣为负值），扣减后余额为负时抛出异常
+     */
     public void deductUserCredits(Long userId, BigDecimal amount) throws InsufficientCreditsException {
-        // 获取当前用户
-        User user = getById(userId);
-        if (user == null) {
-            throw new ResourceNotFoundException(ErrorCodeConstants.USER_NOT_FOUND, "User not found with id: " + userId);
-        }
-
-        // 扣减credits（允许为负值）
-        BigDecimal currentCredits = user.getCredits() != null ? user.getCredits() : BigDecimal.ZERO;
-        BigDecimal newCredits = currentCredits.subtract(amount);
-        updateUserCredits(userId, newCredits);
+        BigDecimal newCredits = creditLedger.apply(userId, amount.negate());
         log.info("用户credits扣减成功: userId={}, amount={}, newCredits={}", userId, amount, newCredits);
-        
+
         // 如果扣减后余额为负，抛出异常（但仍然扣减）
         if (newCredits.compareTo(BigDecimal.ZERO) < 0) {
-            throw new InsufficientCreditsException("Insufficient credits for user: " + userId + ". Required: " + amount + ", Available: " + currentCredits);
+            throw new InsufficientCreditsException("Insufficient credits for user: " + userId + ". Required: " + amount + ", Available: " + newCredits.add(amount));
         }
     }
 
-    @Transactional
     public void refundUserCredits(Long userId, BigDecimal amount) {
-        // 获取当前用户
-        User user = getById(userId);
-        if (user == null) {
-            throw new ResourceNotFoundException(ErrorCodeConstants.USER_NOT_FOUND, "User not found with id: " + userId);
-        }
-
-        // 退还credits
-        BigDecimal currentCredits = user.getCredits() != null ? user.getCredits() : BigDecimal.ZERO;
-        BigDecimal newCredits = currentCredits.add(amount);
-        updateUserCredits(userId, newCredits);
+        BigDecimal newCredits = creditLedger.apply(userId, amount);
         log.info("用户credits退还成功: userId={}, refundAmount={}, newCredits={}", userId, amount, newCredits);
     }
 
@@ -190,6 +172,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         }
         boolean result = removeById(id);
         if (result) {
+            creditLedger.evict(id);
             log.info("用户删除成功: {}", id);
         }
         return result;
@@ -255,6 +238,7 @@ public class UserService extends ServiceImpl<UserMapper, User> {
         UserResponse response = new UserResponse();
         // Copy all common properties using BeanUtils
         BeanUtils.copyProperties(user, response);
+        response.setCredits(creditLedger.projectBalance(user.getId(), user.getCredits()));
         
         // Convert Role enum to string
         if (user.getRole() != null) {
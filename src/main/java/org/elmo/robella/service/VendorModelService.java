@@ -14,11 +14,13 @@ import org.elmo.robella.common.ErrorCodeConstants;
 import org.elmo.robella.exception.BusinessException;
 import org.elmo.robella.exception.ResourceNotFoundException;
 import org.elmo.robella.exception.ValidationException;
+import org.elmo.robella.service.routing.RoutingDataChangedEvent;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,6 +39,7 @@ public class VendorModelService extends ServiceImpl<VendorModelMapper, VendorMod
     private final PricingTierMapper pricingTierMapper;
     private final ModelMapper modelMapper;
     private final ProviderMapper providerMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 获取所有VendorModel
@@ -130,6 +133,7 @@ public class VendorModelService extends ServiceImpl<VendorModelMapper, VendorMod
             savePricingTiers(vendorModel.getId(), request.getPricingTiers());
         }
 
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("vendor_model"));
         log.info("Created vendor model: {}", vendorModel.getVendorModelName());
         return convertToDTO(vendorModel);
     }
@@ -167,6 +171,7 @@ public class VendorModelService extends ServiceImpl<VendorModelMapper, VendorMod
             }
         }
 
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("vendor_model"));
         log.info("Updated vendor model: {}", vendorModel.getVendorModelName());
         return convertToDTO(vendorModel);
     }
@@ -191,6 +196,7 @@ public class VendorModelService extends ServiceImpl<VendorModelMapper, VendorMod
                     "Failed to delete vendor model");
         }
 
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("vendor_model"));
         log.info("Deleted vendor model: {}", vendorModel.getVendorModelName());
     }
 
@@ -211,6 +217,7 @@ public class VendorModelService extends ServiceImpl<VendorModelMapper, VendorMod
                     "Failed to update vendor model status");
         }
 
+        eventPublisher.publishEvent(new RoutingDataChangedEvent("vendor_model"));
         log.info("{} vendor model: {}", enabled ? "Enabled" : "Disabled", vendorModel.getVendorModelName());
         return convertToDTO(vendorModel);
     }
@@ -0,0 +1,456 @@
+package org.elmo.robella.service.apikey;
+
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.config.ApiKeyConfig;
+import org.elmo.robella.mapper.ApiKeyUsageMapper;
+import org.elmo.robella.model.entity.ApiKey;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * API Key 无锁限流器
+ * 每分钟请求数使用 GCRA 形式的原子令牌桶（容量 = rateLimit，按 rateLimit/分钟 匀速补充）；
+ * 每日 / 每月请求数在内存中原子计数，按自然日 / 自然月（UTC）切换，并定期持久化到 api_key_usage 表。
+ * 每个密钥的已持久化计数只在首次使用时加载一次；加载失败时拒绝请求（UNAVAILABLE），不会把额度当作清零。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ApiKeyRateLimiter {
+
+    static final String PERIOD_DAY = "day";
+    static final String PERIOD_MONTH = "month";
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    /** 计数加载失败后，在此时间内的请求直接拒绝，不再查询数据库 */
+    private static final long LOAD_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** 已退役计数器的最多写入次数，超过后丢弃（例如密钥已被删除导致外键约束失败） */
+    private static final int MAX_RETIRED_ATTEMPTS = 5;
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final Log BATCH_LOG = LogFactory.getLog(ApiKeyRateLimiter.class);
+
+    private final ApiKeyUsageMapper apiKeyUsageMapper;
+    private final ApiKeyConfig apiKeyConfig;
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final Map<Long, KeyState> states = new ConcurrentHashMap<>();
+    /** 已切换周期但尚未落库的计数器 */
+    private final Queue<PendingUsage> retired = new ConcurrentLinkedQueue<>();
+
+    public enum LimitType {
+        RATE, DAILY, MONTHLY,
+        /** 已持久化的日 / 月计数暂时无法加载，无法确认剩余额度 */
+        UNAVAILABLE
+    }
+
+    public record Decision(boolean allowed, LimitType limitType, long retryAfterSeconds) {
+
+        static final Decision ALLOWED = new Decision(true, null, 0);
+
+        static Decision rejected(LimitType limitType, long retryAfterSeconds) {
+            return new Decision(false, limitType, Math.max(1, retryAfterSeconds));
+        }
+    }
+
+    /**
+     * 尝试为一次请求获取配额，任一限制不满足时不消耗其它限制的额度
+     */
+    public Decision tryAcquire(ApiKey apiKey) {
+        if (!isLimited(apiKey.getRateLimit()) && !isLimited(apiKey.getDailyLimit())
+                && !isLimited(apiKey.getMonthlyLimit())) {
+            return Decision.ALLOWED;
+        }
+        long now = System.nanoTime();
+        KeyState state = enter(apiKey.getId(), now);
+        try {
+            return tryAcquire(apiKey, state, now);
+        } finally {
+            state.exit();
+        }
+    }
+
+    private Decision tryAcquire(ApiKey apiKey, KeyState state, long now) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        PeriodCounter daily = null;
+        if (isLimited(apiKey.getDailyLimit())) {
+            daily = counter(state.daily, apiKey.getId(), PERIOD_DAY, today.toString(), now);
+            if (daily == null) {
+                return Decision.rejected(LimitType.UNAVAILABLE, 1);
+            }
+            if (!daily.tryIncrement(apiKey.getDailyLimit())) {
+                return Decision.rejected(LimitType.DAILY, secondsUntil(today.plusDays(1)));
+            }
+        }
+
+        PeriodCounter monthly = null;
+        if (isLimited(apiKey.getMonthlyLimit())) {
+            monthly = counter(state.monthly, apiKey.getId(), PERIOD_MONTH, today.format(MONTH_FORMAT), now);
+            if (monthly == null) {
+                rollback(daily);
+                return Decision.rejected(LimitType.UNAVAILABLE, 1);
+            }
+            if (!monthly.tryIncrement(apiKey.getMonthlyLimit())) {
+                rollback(daily);
+                return Decision.rejected(LimitType.MONTHLY, secondsUntil(today.withDayOfMonth(1).plusMonths(1)));
+            }
+        }
+
+        if (isLimited(apiKey.getRateLimit())) {
+            long waitNanos = state.bucket.tryConsume(apiKey.getRateLimit(), now);
+            if (waitNanos > 0) {
+                rollback(daily);
+                rollback(monthly);
+                return Decision.rejected(LimitType.RATE, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+            }
+        }
+        return Decision.ALLOWED;
+    }
+
+    /**
+     * 不消耗额度，判断当前每分钟请求数是否仍有余量
+     */
+    public boolean isWithinRateLimit(ApiKey apiKey) {
+        if (!isLimited(apiKey.getRateLimit())) {
+            return true;
+        }
+        KeyState state = states.get(apiKey.getId());
+        return state == null || state.bucket.waitNanos(apiKey.getRateLimit(), System.nanoTime()) == 0;
+    }
+
+    public boolean isWithinDailyLimit(ApiKey apiKey) {
+        if (!isLimited(apiKey.getDailyLimit())) {
+            return true;
+        }
+        return isWithinPeriodLimit(apiKey, PERIOD_DAY, LocalDate.now(ZoneOffset.UTC).toString(), apiKey.getDailyLimit());
+    }
+
+    public boolean isWithinMonthlyLimit(ApiKey apiKey) {
+        if (!isLimited(apiKey.getMonthlyLimit())) {
+            return true;
+        }
+        return isWithinPeriodLimit(apiKey, PERIOD_MONTH, LocalDate.now(ZoneOffset.UTC).format(MONTH_FORMAT),
+                apiKey.getMonthlyLimit());
+    }
+
+    private boolean isWithinPeriodLimit(ApiKey apiKey, String periodType, String periodKey, int limit) {
+        long now = System.nanoTime();
+        KeyState state = enter(apiKey.getId(), now);
+        try {
+            AtomicReference<PeriodCounter> ref = PERIOD_DAY.equals(periodType) ? state.daily : state.monthly;
+            PeriodCounter counter = counter(ref, apiKey.getId(), periodType, periodKey, now);
+            return counter != null && counter.get() < limit;
+        } finally {
+            state.exit();
+        }
+    }
+
+    /**
+     * 密钥被删除时丢弃内存状态以及尚未落库的已退役计数
+     */
+    public void invalidate(Long apiKeyId) {
+        if (apiKeyId != null) {
+            states.remove(apiKeyId);
+            retired.removeIf(usage -> apiKeyId.equals(usage.apiKeyId()));
+        }
+    }
+
+    /**
+     * 定期把有变化的日 / 月计数写入数据库，并清理长时间未使用的密钥状态
+     */
+    @Scheduled(fixedDelayString = "#{@apiKeyConfig.rateLimit.persistInterval.toMillis()}")
+    public void persist() {
+        List<PendingUsage> batch = new ArrayList<>();
+        PendingUsage pending;
+        while ((pending = retired.poll()) != null) {
+            batch.add(pending);
+        }
+        long now = System.nanoTime();
+        long idleNanos = apiKeyConfig.getRateLimit().getIdleTimeout().toNanos();
+        states.forEach((apiKeyId, state) -> {
+            collectDirty(batch, apiKeyId, PERIOD_DAY, state.daily.get());
+            collectDirty(batch, apiKeyId, PERIOD_MONTH, state.monthly.get());
+            if (now - state.lastAccessNanos > idleNanos && state.retire()) {
+                // 独占后不会再有请求修改该状态；仍有未落库的计数时保留到下一轮
+                if (isDirty(state.daily.get()) || isDirty(state.monthly.get())) {
+                    state.reopen();
+                } else {
+                    states.remove(apiKeyId, state);
+                }
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            SqlHelper.executeBatch(sqlSessionFactory, BATCH_LOG, batch, apiKeyConfig.getRateLimit().getBatchSize(),
+                    (sqlSession, usage) -> sqlSession.getMapper(ApiKeyUsageMapper.class)
+                            .upsertRequestCount(usage.apiKeyId(), usage.periodType(), usage.counter().periodKey, usage.count()));
+            batch.forEach(usage -> usage.counter().markPersisted(usage.count()));
+            log.debug("Persisted {} API key usage counters", batch.size());
+        } catch (Exception e) {
+            // 已退役的计数器放回队列，当前周期的计数器下次仍会被识别为脏数据
+            batch.stream().filter(PendingUsage::isRetired).forEach(this::requeue);
+            log.warn("Failed to persist API key usage counters: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persist();
+    }
+
+    private void requeue(PendingUsage usage) {
+        if (usage.attempts() + 1 >= MAX_RETIRED_ATTEMPTS) {
+            log.error("Dropping API key usage counter for key {} ({} {}, count {}) after {} failed writes",
+                    usage.apiKeyId(), usage.periodType(), usage.counter().periodKey, usage.count(), MAX_RETIRED_ATTEMPTS);
+            return;
+        }
+        retired.add(new PendingUsage(usage.apiKeyId(), usage.periodType(), usage.counter(), usage.count(),
+                usage.attempts() + 1));
+    }
+
+    /**
+     * 获取密钥状态并登记为使用中；状态正被清理时等待清理完成后使用新状态
+     */
+    private KeyState enter(Long apiKeyId, long now) {
+        while (true) {
+            KeyState state = states.computeIfAbsent(apiKeyId, id -> new KeyState(now));
+            if (state.enter()) {
+                state.lastAccessNanos = now;
+                return state;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 获取当前周期计数器
+     * 同一密钥只有一个请求查询数据库，其余请求等待加载结果；进程内跨周期时新周期从 0 开始，不再查询。
+     *
+     * @return 计数器，已持久化的计数无法加载时为 null
+     */
+    private PeriodCounter counter(AtomicReference<PeriodCounter> ref, Long apiKeyId, String periodType,
+                                  String periodKey, long now) {
+        while (true) {
+            PeriodCounter current = ref.get();
+            boolean samePeriod = current != null && current.periodKey.equals(periodKey);
+            if (samePeriod) {
+                if (current.awaitLoaded()) {
+                    return current;
+                }
+                if (now - current.failedAtNanos < LOAD_RETRY_NANOS) {
+                    return null;
+                }
+            }
+            PeriodCounter fresh = new PeriodCounter(periodKey);
+            if (!ref.compareAndSet(current, fresh)) {
+                continue;
+            }
+            if (!samePeriod && current != null && current.isLoaded()) {
+                if (isDirty(current)) {
+                    retired.add(new PendingUsage(apiKeyId, periodType, current, current.get(), 0));
+                }
+                fresh.loaded(0);
+                return fresh;
+            }
+            try {
+                Long count = apiKeyUsageMapper.findRequestCount(apiKeyId, periodType, periodKey);
+                fresh.loaded(count != null ? count : 0L);
+                return fresh;
+            } catch (Exception e) {
+                log.error("Failed to load API key usage for key {} ({} {}), rejecting requests until it can be loaded: {}",
+                        apiKeyId, periodType, periodKey, e.getMessage());
+                fresh.failed(now);
+                return null;
+            }
+        }
+    }
+
+    private void collectDirty(List<PendingUsage> batch, Long apiKeyId, String periodType, PeriodCounter counter) {
+        if (isDirty(counter)) {
+            batch.add(new PendingUsage(apiKeyId, periodType, counter, counter.get(), PendingUsage.CURRENT));
+        }
+    }
+
+    private static boolean isDirty(PeriodCounter counter) {
+        return counter != null && counter.isLoaded() && counter.get() != counter.persisted;
+    }
+
+    private static void rollback(PeriodCounter counter) {
+        if (counter != null) {
+            counter.count.decrementAndGet();
+        }
+    }
+
+    private static boolean isLimited(Integer limit) {
+        return limit != null && limit > 0;
+    }
+
+    private static long secondsUntil(LocalDate date) {
+        OffsetDateTime boundary = date.atStartOfDay().atOffset(ZoneOffset.UTC);
+        return Duration.between(OffsetDateTime.now(ZoneOffset.UTC), boundary).toSeconds() + 1;
+    }
+
+    private static final class KeyState {
+        final TokenBucket bucket;
+        final AtomicReference<PeriodCounter> daily = new AtomicReference<>();
+        final AtomicReference<PeriodCounter> monthly = new AtomicReference<>();
+        /** 正在使用该状态的请求数，-1 表示已被清理线程独占 */
+        final AtomicInteger users = new AtomicInteger();
+        volatile long lastAccessNanos;
+
+        KeyState(long now) {
+            this.bucket = new TokenBucket(now);
+            this.lastAccessNanos = now;
+        }
+
+        boolean enter() {
+            while (true) {
+                int current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (users.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void exit() {
+            users.decrementAndGet();
+        }
+
+        /**
+         * 没有请求使用时独占该状态，之后的请求不会再修改它
+         */
+        boolean retire() {
+            return users.compareAndSet(0, -1);
+        }
+
+        void reopen() {
+            users.set(0);
+        }
+    }
+
+    /**
+     * GCRA 令牌桶：只保存一个理论到达时间（TAT），通过 CAS 推进，等价于容量为 limit 的令牌桶
+     */
+    static final class TokenBucket {
+        private final AtomicLong tat;
+
+        TokenBucket(long now) {
+            this.tat = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 表示获取成功，否则为需要等待的纳秒数
+         */
+        long tryConsume(int limitPerMinute, long now) {
+            long interval = WINDOW_NANOS / limitPerMinute;
+            while (true) {
+                long current = tat.get();
+                long wait = waitNanos(current, interval, now);
+                if (wait > 0) {
+                    return wait;
+                }
+                long base = current - now > 0 ? current : now;
+                if (tat.compareAndSet(current, base + interval)) {
+                    return 0;
+                }
+            }
+        }
+
+        long waitNanos(int limitPerMinute, long now) {
+            return waitNanos(tat.get(), WINDOW_NANOS / limitPerMinute, now);
+        }
+
+        private static long waitNanos(long current, long interval, long now) {
+            long allowAt = current - (WINDOW_NANOS - interval);
+            return allowAt - now > 0 ? allowAt - now : 0;
+        }
+    }
+
+    static final class PeriodCounter {
+        final String periodKey;
+        final AtomicLong count = new AtomicLong();
+        /** 已持久化的计数加载完成时为 true，加载失败时为 false */
+        final CompletableFuture<Boolean> loaded = new CompletableFuture<>();
+        volatile long persisted;
+        volatile long failedAtNanos;
+
+        PeriodCounter(String periodKey) {
+            this.periodKey = periodKey;
+        }
+
+        void loaded(long initial) {
+            count.set(initial);
+            persisted = initial;
+            loaded.complete(true);
+        }
+
+        void failed(long now) {
+            failedAtNanos = now;
+            loaded.complete(false);
+        }
+
+        boolean isLoaded() {
+            return loaded.getNow(false);
+        }
+
+        boolean awaitLoaded() {
+            return loaded.join();
+        }
+
+        long get() {
+            return count.get();
+        }
+
+        boolean tryIncrement(int limit) {
+            if (count.incrementAndGet() > limit) {
+                count.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        void markPersisted(long value) {
+            persisted = value;
+        }
+    }
+
+    /**
+     * @param attempts 已退役计数器已失败的写入次数；当前周期的计数器为 {@link #CURRENT}
+     */
+    private record PendingUsage(Long apiKeyId, String periodType, PeriodCounter counter, long count, int attempts) {
+
+        static final int CURRENT = -1;
+
+        boolean isRetired() {
+            return attempts != CURRENT;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.elmo.robella.service.apikey;
+
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.config.ApiKeyConfig;
+import org.elmo.robella.mapper.ApiKeyMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * API Key 最近使用时间聚合器
+ * 请求路径只在内存中记录每个密钥的最近使用时间，定时以一次批量 UPDATE 刷新到数据库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ApiKeyTouchAggregator {
+
+    private static final Log BATCH_LOG = LogFactory.getLog(ApiKeyTouchAggregator.class);
+
+    private final ApiKeyConfig apiKeyConfig;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final Map<Long, OffsetDateTime> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次使用，同一刷新周期内的多次使用合并为最后一次
+     */
+    public void touch(Long apiKeyId) {
+        if (apiKeyId != null) {
+            pending.put(apiKeyId, OffsetDateTime.now(ZoneOffset.UTC));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{@apiKeyConfig.touch.flushInterval.toMillis()}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, OffsetDateTime>> batch = new ArrayList<>(pending.size());
+        for (Long id : pending.keySet()) {
+            OffsetDateTime usedAt = pending.remove(id);
+            if (usedAt != null) {
+                batch.add(Map.entry(id, usedAt));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            SqlHelper.executeBatch(sqlSessionFactory, BATCH_LOG, batch, apiKeyConfig.getTouch().getBatchSize(),
+                    (sqlSession, entry) -> sqlSession.getMapper(ApiKeyMapper.class)
+                            .updateLastUsedAt(entry.getKey(), entry.getValue()));
+            log.debug("Flushed last_used_at for {} API keys", batch.size());
+        } catch (Exception e) {
+            // 写入失败时放回队列，保留期间更新的较新时间
+            batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(),
+                    (current, failed) -> current.isAfter(failed) ? current : failed));
+            log.warn("Failed to flush API key last_used_at ({} keys): {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
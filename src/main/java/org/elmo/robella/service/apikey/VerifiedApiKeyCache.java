@@ -0,0 +1,156 @@
+package org.elmo.robella.service.apikey;
+
+import org.elmo.robella.config.ApiKeyConfig;
+import org.elmo.robella.model.entity.ApiKey;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 已验证 API Key 缓存
+ * 以原始密钥的 HMAC-SHA256 指纹为键，命中时跳过 BCrypt 校验与数据库查询。
+ * HMAC 密钥为进程内随机生成，缓存中不保存任何可还原的明文密钥。
+ */
+@Component
+public class VerifiedApiKeyCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    /** 容量满时一次淘汰容量的十分之一，整表扫描的开销分摊到之后的多次写入 */
+    private static final int EVICTION_FRACTION = 10;
+
+    private final ApiKeyConfig.CacheConfig config;
+    private final Mac macPrototype;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public VerifiedApiKeyCache(ApiKeyConfig apiKeyConfig) {
+        this.config = apiKeyConfig.getCache();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        try {
+            this.macPrototype = Mac.getInstance(HMAC_ALGORITHM);
+            this.macPrototype.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize API key fingerprint", e);
+        }
+    }
+
+    /**
+     * 查找已验证的 API Key，未命中、已过期或缓存禁用时返回 null
+     */
+    public ApiKey get(String rawKey) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        String fingerprint = fingerprint(rawKey);
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime()) || !isUsable(entry.apiKey())) {
+            entries.remove(fingerprint, entry);
+            return null;
+        }
+        return entry.apiKey();
+    }
+
+    /**
+     * 缓存已通过 BCrypt 校验的 API Key，缓存有效期不会超过密钥本身的过期时间
+     */
+    public void put(String rawKey, ApiKey apiKey) {
+        if (!config.isEnabled() || !isUsable(apiKey)) {
+            return;
+        }
+        long ttlNanos = config.getTtl().toNanos();
+        if (apiKey.getExpiresAt() != null) {
+            long untilExpiry = Duration.between(OffsetDateTime.now(), apiKey.getExpiresAt()).toNanos();
+            ttlNanos = Math.min(ttlNanos, untilExpiry);
+        }
+        if (ttlNanos <= 0) {
+            return;
+        }
+        if (entries.size() >= config.getMaxSize()) {
+            evict();
+        }
+        entries.put(fingerprint(rawKey), new Entry(apiKey, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * 密钥被删除或停用时移除所有对应的缓存项
+     */
+    public void invalidate(Long apiKeyId) {
+        if (apiKeyId == null) {
+            return;
+        }
+        entries.values().removeIf(entry -> apiKeyId.equals(entry.apiKey().getId()));
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean isUsable(ApiKey apiKey) {
+        return Boolean.TRUE.equals(apiKey.getActive())
+                && (apiKey.getExpiresAt() == null || apiKey.getExpiresAt().isAfter(OffsetDateTime.now()));
+    }
+
+    /**
+     * 先清理过期项，仍然超出容量时按到期时间一次淘汰一批最早到期的条目；
+     * 其它线程正在淘汰时直接返回，容量短暂超出上限
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            entries.values().removeIf(entry -> entry.isExpired(now));
+            int maxSize = config.getMaxSize();
+            long excess = entries.size() - maxSize + Math.max(1, maxSize / EVICTION_FRACTION);
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<String, Entry>> oldest = entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().deadlineNanos()))
+                    .limit(excess)
+                    .toList();
+            oldest.forEach(e -> entries.remove(e.getKey(), e.getValue()));
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private String fingerprint(String rawKey) {
+        Mac mac;
+        try {
+            mac = (Mac) macPrototype.clone();
+        } catch (CloneNotSupportedException e) {
+            synchronized (macPrototype) {
+                return HexFormat.of().formatHex(macPrototype.doFinal(rawKey.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        return HexFormat.of().formatHex(mac.doFinal(rawKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private record Entry(ApiKey apiKey, long deadlineNanos) {
+        boolean isExpired(long now) {
+            return now - deadlineNanos >= 0;
+        }
+    }
+}
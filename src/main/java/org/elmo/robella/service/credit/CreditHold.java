@@ -0,0 +1,57 @@
+package org.elmo.robella.service.credit;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次请求的余额预留
+ * 请求开始时按预估成本预留，完成后按实际成本结算一次；释放是幂等的。
+ */
+public class CreditHold {
+
+    @Getter
+    private final Long userId;
+    private final long amountMicros;
+    private final CreditHoldService holdService;
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    CreditHold(Long userId, long amountMicros, CreditHoldService holdService) {
+        this.userId = userId;
+        this.amountMicros = amountMicros;
+        this.holdService = holdService;
+    }
+
+    public BigDecimal getAmount() {
+        return CreditLedger.fromMicros(amountMicros);
+    }
+
+    /**
+     * 按实际成本结算：记一笔扣费（合并写入）并释放预留，重复结算会被忽略
+     */
+    public void settle(BigDecimal actualCost) {
+        settle(actualCost, false);
+    }
+
+    /**
+     * 按实际成本结算
+     *
+     * @param journaled 扣费已随请求日志写入本地日志，由日志回放写入数据库
+     */
+    public void settle(BigDecimal actualCost, boolean journaled) {
+        if (settled.compareAndSet(false, true)) {
+            holdService.settle(this, actualCost, journaled);
+        }
+    }
+
+    /**
+     * 释放预留，不扣费（请求失败或被取消）
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            holdService.release(userId, amountMicros);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.elmo.robella.service.credit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.exception.InsufficientCreditsException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 余额预留（预授权）
+ * 替代请求前的数据库预扣费：可用余额 = 账本缓存余额 - 在途预留，预留在内存中原子地完成，
+ * 请求完成后转为一笔经账本合并写入的扣费，每个请求最多产生一次（批量的）数据库写入。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CreditHoldService {
+
+    private final CreditLedger creditLedger;
+    private final Map<Long, AtomicLong> heldMicros = new ConcurrentHashMap<>();
+
+    /**
+     * 按预估成本预留余额
+     *
+     * @throws InsufficientCreditsException 可用余额不足以覆盖预估成本
+     */
+    public CreditHold place(Long userId, BigDecimal estimatedCost) throws InsufficientCreditsException {
+        long amount = Math.max(0, CreditLedger.toMicros(estimatedCost));
+        AtomicLong held = heldMicros.computeIfAbsent(userId, id -> new AtomicLong());
+        while (true) {
+            long currentHeld = held.get();
+            long available = creditLedger.getBalanceMicros(userId) - currentHeld;
+            if (available - amount < 0) {
+                throw new InsufficientCreditsException("Insufficient credits for user: " + userId
+                        + ". Required: " + estimatedCost + ", Available: " + CreditLedger.fromMicros(available));
+            }
+            if (held.compareAndSet(currentHeld, currentHeld + amount)) {
+                return new CreditHold(userId, amount, this);
+            }
+        }
+    }
+
+    /**
+     * 当前可用余额（扣除在途预留）
+     */
+    public BigDecimal getAvailableBalance(Long userId) {
+        AtomicLong held = heldMicros.get(userId);
+        return CreditLedger.fromMicros(creditLedger.getBalanceMicros(userId) - (held != null ? held.get() : 0));
+    }
+
+    void settle(CreditHold hold, BigDecimal actualCost, boolean journaled) {
+        // 先记扣费再释放预留，期间可用余额只会被低估
+        BigDecimal balance = journaled
+                ? creditLedger.deferJournaled(hold.getUserId(), actualCost.negate())
+                : creditLedger.defer(hold.getUserId(), actualCost.negate());
+        hold.release();
+        log.debug("Settled hold for user {}: held={}, actual={}, balance={}",
+                hold.getUserId(), hold.getAmount(), actualCost, balance);
+    }
+
+    void release(Long userId, long amountMicros) {
+        AtomicLong held = heldMicros.get(userId);
+        if (held != null) {
+            held.addAndGet(-amountMicros);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.elmo.robella.service.credit;
+
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.config.CreditConfig;
+import org.elmo.robella.exception.ResourceNotFoundException;
+import org.elmo.robella.mapper.UserMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 用户余额账本
+ * 所有余额变动都以增量的形式原子地应用，不再读取-修改-写回：
+ * <ul>
+ *     <li>DIRECT：每次变动执行一条 {@code UPDATE ... SET credits = credits + ? RETURNING credits}</li>
+ *     <li>COALESCING：变动以百万分之一为单位累加到每个用户的分段计数器（LongAdder），
+ *     定时合并为每个用户一次 UPDATE，热点用户的大量变动只产生一次写入</li>
+ * </ul>
+ * 请求结算通过 {@link #defer} 提交，无论哪种模式都走合并写入；
+ * 开启本地日志时结算随请求日志写入日志文件，由回放写入数据库，账本只通过 {@link #deferJournaled} 记录内存变动。
+ * 用户余额首次访问时从数据库加载并缓存，之后的读取不访问数据库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CreditLedger {
+
+    private static final Log BATCH_LOG = LogFactory.getLog(CreditLedger.class);
+    private static final int SCALE = 6;
+
+    private final UserMapper userMapper;
+    private final CreditConfig creditConfig;
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Value("${spring.datasource.driver-class-name:}")
+    private String driverClassName;
+
+    /**
+     * 原子地增减用户余额
+     *
+     * @param delta 正数为充值/退款，负数为扣费
+     * @return 变动后的余额（COALESCING 模式下为包含未刷新变动的预计余额）
+     * @throws ResourceNotFoundException 用户不存在
+     */
+    public BigDecimal apply(Long userId, BigDecimal delta) {
+        if (isCoalescing()) {
+            return defer(userId, delta);
+        }
+        BigDecimal balance = userMapper.addCredits(userId, delta);
+        if (balance == null) {
+            throw userNotFound(userId);
+        }
+        Account account = accounts.get(userId);
+        if (account == null) {
+            return balance;
+        }
+        account.persistedMicros.addAndGet(toMicros(delta));
+        return fromMicros(account.balanceMicros());
+    }
+
+    /**
+     * 记录一笔延迟写入的变动，由定时刷新合并写入数据库，调用方不等待写入
+     *
+     * @return 包含未刷新变动的预计余额
+     */
+    public BigDecimal defer(Long userId, BigDecimal delta) {
+        Account account = account(userId);
+        account.pendingMicros.add(toMicros(delta));
+        return fromMicros(account.balanceMicros());
+    }
+
+    /**
+     * 记录一笔已写入本地日志的变动：只计入内存余额，数据库写入由日志回放完成
+     */
+    public BigDecimal deferJournaled(Long userId, BigDecimal delta) {
+        Account account = account(userId);
+        account.journaledMicros.add(toMicros(delta));
+        return fromMicros(account.balanceMicros());
+    }
+
+    /**
+     * 日志回放已把变动写入数据库
+     */
+    public void onJournalApplied(Long userId, long deltaMicros) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            account.persistedMicros.addAndGet(deltaMicros);
+            account.journaledMicros.add(-deltaMicros);
+        }
+    }
+
+    /**
+     * 日志回放放弃了该记录：变动改为普通的延迟写入，仍由定时刷新写入数据库，内存余额不变
+     */
+    public void onJournalSkipped(Long userId, long deltaMicros) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            account.journaledMicros.add(-deltaMicros);
+        } else {
+            // 上次运行遗留的记录，变动不在当前进程的内存余额中
+            account = account(userId);
+        }
+        account.pendingMicros.add(deltaMicros);
+    }
+
+    /**
+     * 当前余额（包含未刷新的变动）
+     */
+    public BigDecimal getBalance(Long userId) {
+        return fromMicros(getBalanceMicros(userId));
+    }
+
+    /**
+     * 当前余额，单位为百万分之一
+     */
+    public long getBalanceMicros(Long userId) {
+        return account(userId).balanceMicros();
+    }
+
+    /**
+     * 基于数据库中读到的余额叠加尚未刷新的变动，用于展示
+     */
+    public BigDecimal projectBalance(Long userId, BigDecimal persistedCredits) {
+        Account account = userId != null ? accounts.get(userId) : null;
+        if (account == null) {
+            return persistedCredits;
+        }
+        return fromMicros(account.balanceMicros());
+    }
+
+    /**
+     * 直接设置余额（管理员调整），丢弃该用户尚未刷新的变动；已写入本地日志的变动仍会在回放时生效。
+     * 在事务中调用时内存余额在事务提交后才更新，回滚时保持不变
+     */
+    public void setBalance(Long userId, BigDecimal credits) {
+        flushLock.lock();
+        try {
+            if (userMapper.updateCredits(userId, credits) == 0) {
+                throw userNotFound(userId);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            resetAccount(userId, credits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                resetAccount(userId, credits);
+            }
+        });
+    }
+
+    private void resetAccount(Long userId, BigDecimal credits) {
+        flushLock.lock();
+        try {
+            Account account = accounts.get(userId);
+            if (account != null) {
+                account.pendingMicros.reset();
+                account.persistedMicros.set(toMicros(credits));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 用户被删除时移除缓存的账户
+     */
+    public void evict(Long userId) {
+        accounts.remove(userId);
+    }
+
+    @Scheduled(fixedDelayString = "#{@creditConfig.ledger.flushInterval.toMillis()}")
+    public void flush() {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<Map.Entry<Long, Long>> batch = new ArrayList<>();
+            accounts.forEach((userId, account) -> {
+                long drained = account.pendingMicros.sumThenReset();
+                if (drained != 0) {
+                    account.flushingMicros.addAndGet(drained);
+                    batch.add(Map.entry(userId, drained));
+                }
+            });
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                SqlHelper.executeBatch(sqlSessionFactory, BATCH_LOG, batch, creditConfig.getLedger().getBatchSize(),
+                        (sqlSession, entry) -> sqlSession.getMapper(UserMapper.class)
+                                .applyCreditDelta(entry.getKey(), fromMicros(entry.getValue())));
+                for (Map.Entry<Long, Long> entry : batch) {
+                    Account account = accounts.get(entry.getKey());
+                    if (account != null) {
+                        account.persistedMicros.addAndGet(entry.getValue());
+                        account.flushingMicros.addAndGet(-entry.getValue());
+                    }
+                }
+                log.debug("Flushed credit deltas for {} users", batch.size());
+            } catch (Exception e) {
+                // 写入失败时放回累加器，下次刷新重试
+                for (Map.Entry<Long, Long> entry : batch) {
+                    Account account = accounts.get(entry.getKey());
+                    if (account != null) {
+                        account.pendingMicros.add(entry.getValue());
+                        account.flushingMicros.addAndGet(-entry.getValue());
+                    }
+                }
+                log.warn("Failed to flush credit deltas ({} users): {}", batch.size(), e.getMessage());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private boolean isCoalescing() {
+        return switch (creditConfig.getLedger().getMode()) {
+            case COALESCING -> true;
+            case DIRECT -> false;
+            case AUTO -> driverClassName != null && driverClassName.contains("sqlite");
+        };
+    }
+
+    private Account account(Long userId) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            return account;
+        }
+        // 在 computeIfAbsent 之外加载，避免持有哈希桶锁时访问数据库
+        BigDecimal persisted = userMapper.findCredits(userId);
+        if (persisted == null) {
+            throw userNotFound(userId);
+        }
+        Account loaded = new Account(toMicros(persisted));
+        Account existing = accounts.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static ResourceNotFoundException userNotFound(Long userId) {
+        return new ResourceNotFoundException(ErrorCodeConstants.USER_NOT_FOUND, "User not found with id: " + userId);
+    }
+
+    public static long toMicros(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal fromMicros(long micros) {
+        return BigDecimal.valueOf(micros, SCALE);
+    }
+
+    /**
+     * 单个用户的账户：persistedMicros 为已写入数据库的余额，
+     * pendingMicros 为尚未刷新的变动，flushingMicros 为正在写入的变动，journaledMicros 为等待日志回放的变动
+     */
+    private static final class Account {
+        final AtomicLong persistedMicros;
+        final LongAdder pendingMicros = new LongAdder();
+        final AtomicLong flushingMicros = new AtomicLong();
+        final LongAdder journaledMicros = new LongAdder();
+
+        Account(long persistedMicros) {
+            this.persistedMicros = new AtomicLong(persistedMicros);
+        }
+
+        long balanceMicros() {
+            return persistedMicros.get() + pendingMicros.sum() + flushingMicros.get() + journaledMicros.sum();
+        }
+    }
+}
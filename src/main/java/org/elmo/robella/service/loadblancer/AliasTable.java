@@ -0,0 +1,94 @@
+package org.elmo.robella.service.loadblancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Vose 别名表
+ * 构建时间 O(n)，每次抽样 O(1) 且不分配对象。表构建后不可变，可在多线程间共享。
+ */
+final class AliasTable {
+
+    private final long version;
+    private final double[] probability;
+    private final int[] alias;
+
+    private AliasTable(long version, double[] probability, int[] alias) {
+        this.version = version;
+        this.probability = probability;
+        this.alias = alias;
+    }
+
+    /**
+     * 根据权重构建别名表，负数或非法权重按 0 处理；权重全为 0 时退化为均匀分布
+     */
+    static AliasTable build(long version, double[] weights) {
+        int n = weights.length;
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+
+        double sum = 0;
+        for (double weight : weights) {
+            sum += sanitize(weight);
+        }
+
+        double[] scaled = new double[n];
+        for (int i = 0; i < n; i++) {
+            scaled[i] = sum > 0 ? sanitize(weights[i]) * n / sum : 1.0;
+        }
+
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            if (scaled[i] < 1.0) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // 剩余项因浮点误差只会略偏离 1，直接视为必中
+        while (largeSize > 0) {
+            int index = large[--largeSize];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (smallSize > 0) {
+            int index = small[--smallSize];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        return new AliasTable(version, probability, alias);
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return probability.length;
+    }
+
+    int sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    private static double sanitize(double weight) {
+        return weight > 0 && Double.isFinite(weight) ? weight : 0;
+    }
+}
@@ -1,7 +1,5 @@
 package org.elmo.robella.service.loadblancer;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -9,12 +7,15 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.elmo.robella.model.entity.PricingTier;
 import org.elmo.robella.model.entity.VendorModel;
 import org.elmo.robella.model.enums.PricingStrategyType;
 import org.elmo.robella.service.PricingTierService;
+import org.elmo.robella.service.routing.RouteCandidates;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
@@ -27,6 +28,7 @@ public class HybridWeightedLoadBalancer implements LoadBalancerStrategy {
     private static final int COST_SCALE = 10;
 
     private final PricingTierService pricingTierService;
+    private final Map<String, AliasTable> aliasTables = new ConcurrentHashMap<>();
 
     @Override
     public VendorModel select(List<VendorModel> candidates) {
@@ -34,30 +36,61 @@ public class HybridWeightedLoadBalancer implements LoadBalancerStrategy {
             return null;
         }
 
-        // 计算加权候选列表
-        List<WeightedCandidate> weightedCandidates = calculateWeightedCandidates(candidates);
-
-        // 基于权重随机选择
-        return selectByWeight(weightedCandidates);
+        // 无快照版本的候选列表无法缓存，临时构建别名表
+        AliasTable table = AliasTable.build(0L, calculateWeights(candidates, null));
+        return candidates.get(table.sample());
     }
 
-    private List<WeightedCandidate> calculateWeightedCandidates(List<VendorModel> candidates) {
-        return candidates.stream()
-                .map(vm -> {
-                    BigDecimal qualityWeight = vm.getWeight();
-                    BigDecimal costWeight = calculateCostWeight(vm);
-                    BigDecimal totalWeight = qualityWeight.multiply(costWeight);
+    @Override
+    public VendorModel select(RouteCandidates candidates) {
+        if (candidates.isEmpty()) {
+            return null;
+        }
 
-                    log.debug("Model {} - Quality: {}, Cost: {}, Total: {}",
-                            vm.getVendorModelName(), qualityWeight, costWeight, totalWeight);
+        if (!candidates.isVersioned()) {
+            // 过滤后的候选集合（如排除了熔断中的供应商）不缓存
+            AliasTable table = AliasTable.build(RouteCandidates.UNVERSIONED, calculateWeights(candidates.getVendorModels(), candidates));
+            return candidates.get(table.sample());
+        }
 
-                    return new WeightedCandidate(vm, totalWeight);
-                })
-                .collect(Collectors.toList());
+        // 别名表只在候选集合版本变化（供应商模型或定价变更）时重建，抽样 O(1) 且无对象分配
+        AliasTable table = aliasTables.get(candidates.getModelKey());
+        if (table == null || table.version() != candidates.getVersion() || table.size() != candidates.size()) {
+            table = AliasTable.build(candidates.getVersion(), calculateWeights(candidates.getVendorModels(), candidates));
+            aliasTables.put(candidates.getModelKey(), table);
+        }
+        return candidates.get(table.sample());
+    }
+
+    /**
+     * 计算每个候选的综合权重 = 质量权重 × 成本权重，阶梯定价优先使用路由快照中的定价阶梯
+     */
+    private double[] calculateWeights(List<VendorModel> candidates, RouteCandidates route) {
+        double[] weights = new double[candidates.size()];
+        for (int i = 0; i < weights.length; i++) {
+            VendorModel vm = candidates.get(i);
+            BigDecimal qualityWeight = vm.getWeight() != null ? vm.getWeight() : BigDecimal.ZERO;
+            BigDecimal costWeight = route != null
+                    ? calculateCostWeight(vm, () -> route.getPricingTiers(vm))
+                    : calculateCostWeight(vm);
+            BigDecimal totalWeight = qualityWeight.multiply(costWeight);
+
+            log.debug("Model {} - Quality: {}, Cost: {}, Total: {}",
+                    vm.getVendorModelName(), qualityWeight, costWeight, totalWeight);
+
+            weights[i] = totalWeight.doubleValue();
+        }
+        return weights;
     }
 
     private BigDecimal calculateCostWeight(VendorModel vm) {
-        BigDecimal avgCost = resolveAverageCost(vm);
+        return calculateCostWeight(vm, () -> vm.getId() != null
+                ? pricingTierService.getPricingTiersByVendorModel(vm.getId())
+                : null);
+    }
+
+    private BigDecimal calculateCostWeight(VendorModel vm, Supplier<List<PricingTier>> tierSource) {
+        BigDecimal avgCost = resolveAverageCost(vm, tierSource);
 
         if (avgCost == null || avgCost.compareTo(BigDecimal.ZERO) <= 0) {
             return BigDecimal.ONE;
@@ -66,7 +99,7 @@ public class HybridWeightedLoadBalancer implements LoadBalancerStrategy {
         return BigDecimal.ONE.divide(avgCost, COST_SCALE, RoundingMode.HALF_UP);
     }
 
-    private BigDecimal resolveAverageCost(VendorModel vendorModel) {
+    private BigDecimal resolveAverageCost(VendorModel vendorModel, Supplier<List<PricingTier>> tierSource) {
         BigDecimal avgFromModel = averageNonNullCosts(vendorModel.getInputPerMillionTokens(),
                 vendorModel.getOutputPerMillionTokens());
         if (avgFromModel != null) {
@@ -78,9 +111,8 @@ public class HybridWeightedLoadBalancer implements LoadBalancerStrategy {
             return vendorModel.getPerRequestPrice();
         }
 
-        if (vendorModel.getPricingStrategy() == PricingStrategyType.TIERED && vendorModel.getId() != null) {
-            List<PricingTier> tiers = pricingTierService.getPricingTiersByVendorModel(vendorModel.getId());
-            return averageCostFromTier(tiers);
+        if (vendorModel.getPricingStrategy() == PricingStrategyType.TIERED) {
+            return averageCostFromTier(tierSource.get());
         }
 
         return null;
@@ -122,38 +154,4 @@ public class HybridWeightedLoadBalancer implements LoadBalancerStrategy {
 
         return sum.divide(BigDecimal.valueOf(count), COST_SCALE, RoundingMode.HALF_UP);
     }
-
-    private VendorModel selectByWeight(List<WeightedCandidate> weightedCandidates) {
-        // 计算总权重
-        BigDecimal totalWeight = weightedCandidates.stream()
-                .map(WeightedCandidate::getWeight)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        if (totalWeight.compareTo(BigDecimal.ZERO) <= 0) {
-            // 如果所有权重都是0，使用随机选择
-            int randomIndex = (int) (Math.random() * weightedCandidates.size());
-            return weightedCandidates.get(randomIndex).getVendorModel();
-        }
-
-        // 基于权重随机选择
-        double randomValue = Math.random() * totalWeight.doubleValue();
-        double cumulativeWeight = 0;
-
-        for (WeightedCandidate wc : weightedCandidates) {
-            cumulativeWeight += wc.getWeight().doubleValue();
-            if (randomValue <= cumulativeWeight) {
-                return wc.getVendorModel();
-            }
-        }
-
-        // 兜底返回最后一个
-        return weightedCandidates.get(weightedCandidates.size() - 1).getVendorModel();
-    }
-
-    @Data
-    @AllArgsConstructor
-    private static class WeightedCandidate {
-        private final VendorModel vendorModel;
-        private final BigDecimal weight;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package org.elmo.robella.service.loadblancer;
+
+import lombok.RequiredArgsConstructor;
+import org.elmo.robella.config.LoadBalancerConfig;
+import org.elmo.robella.model.entity.VendorModel;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最低延迟负载均衡（power-of-two-choices）
+ * 随机取两个候选，选择 UpstreamLatencyTracker 得分（(EWMA 延迟 + 错误惩罚) × 在途请求）较低者。
+ * 没有观测数据的候选以同组已观测候选的平均延迟参与比较，整组都没有数据时使用配置的冷启动延迟。
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "robella.loadbalancer.strategy", havingValue = "LEAST_LATENCY")
+public class LeastLatencyLoadBalancer implements LoadBalancerStrategy {
+
+    private final UpstreamLatencyTracker latencyTracker;
+    private final LoadBalancerConfig loadBalancerConfig;
+
+    @Override
+    public VendorModel select(List<VendorModel> candidates) {
+        int size = candidates.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        VendorModel a = candidates.get(first);
+        VendorModel b = candidates.get(second);
+        double prior = latencyTracker.meanTtftMs(candidates);
+        if (prior < 0) {
+            prior = loadBalancerConfig.getLeastLatency().getColdStartLatency().toMillis();
+        }
+        return latencyTracker.score(a.getId(), prior) <= latencyTracker.score(b.getId(), prior) ? a : b;
+    }
+}
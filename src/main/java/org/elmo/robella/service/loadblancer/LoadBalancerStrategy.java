@@ -3,9 +3,15 @@ package org.elmo.robella.service.loadblancer;
 import java.util.List;
 
 import org.elmo.robella.model.entity.VendorModel;
+import org.elmo.robella.service.routing.RouteCandidates;
 
 public interface LoadBalancerStrategy {
     VendorModel select(List<VendorModel> candidates);
-    
 
+    /**
+     * 从路由快照的候选集合中选择，策略可以按候选集合版本缓存预计算结果
+     */
+    default VendorModel select(RouteCandidates candidates) {
+        return select(candidates.getVendorModels());
+    }
 }
@@ -0,0 +1,189 @@
+package org.elmo.robella.service.loadblancer;
+
+import lombok.RequiredArgsConstructor;
+import org.elmo.robella.config.LoadBalancerConfig;
+import org.elmo.robella.model.entity.VendorModel;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 供应商模型实时性能统计
+ * 按 VendorModel 维护首 token 延迟、总延迟和错误率的时间衰减 EWMA，以及在途请求数，
+ * 数据来自 ClientRequestLogger 记录的请求耗时。
+ */
+@Component
+@RequiredArgsConstructor
+public class UpstreamLatencyTracker {
+
+    /** 每个供应商模型保留的最近非流式响应耗时样本数，用于计算分位数 */
+    private static final int RESPONSE_TIME_SAMPLES = 256;
+
+    private final LoadBalancerConfig loadBalancerConfig;
+    private final Map<Long, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 请求开始发往上游
+     */
+    public void onStart(Long vendorModelId) {
+        if (vendorModelId != null) {
+            stats(vendorModelId).inFlight.incrementAndGet();
+        }
+    }
+
+    /**
+     * 请求结束
+     *
+     * @param firstTokenLatencyMs 首 token 延迟，非流式请求为 null，此时以总耗时作为首字节延迟
+     * @param durationMs          总耗时
+     * @param success             是否成功
+     */
+    public void onComplete(Long vendorModelId, Integer firstTokenLatencyMs, long durationMs, boolean success) {
+        if (vendorModelId == null) {
+            return;
+        }
+        Stats s = stats(vendorModelId);
+        s.inFlight.updateAndGet(current -> current > 0 ? current - 1 : 0);
+
+        double ttft = firstTokenLatencyMs != null ? firstTokenLatencyMs : durationMs;
+        long now = System.nanoTime();
+        double tau = loadBalancerConfig.getLeastLatency().getDecayTime().toNanos();
+        s.ewma.updateAndGet(previous -> previous.update(ttft, durationMs, success ? 0.0 : 1.0, now, tau));
+    }
+
+    /**
+     * 请求被主动取消（如对冲请求的落败方），只释放在途计数，不计入延迟和错误率
+     */
+    public void onCancel(Long vendorModelId) {
+        if (vendorModelId != null) {
+            stats(vendorModelId).inFlight.updateAndGet(current -> current > 0 ? current - 1 : 0);
+        }
+    }
+
+    /**
+     * 记录一次成功的非流式响应耗时
+     */
+    public void recordResponseTime(Long vendorModelId, long durationMs) {
+        if (vendorModelId == null) {
+            return;
+        }
+        Stats s = stats(vendorModelId);
+        int slot = (int) (s.responseTimeCount.getAndIncrement() % RESPONSE_TIME_SAMPLES);
+        s.responseTimes.set(slot, durationMs);
+    }
+
+    /**
+     * 最近非流式响应耗时的分位数
+     *
+     * @param quantile   分位点 (0~1]
+     * @param minSamples 最少样本数
+     * @return 分位数耗时（毫秒），样本不足时返回 -1
+     */
+    public long responseTimePercentile(Long vendorModelId, double quantile, int minSamples) {
+        Stats s = vendorModelId != null ? stats.get(vendorModelId) : null;
+        if (s == null) {
+            return -1;
+        }
+        int n = (int) Math.min(s.responseTimeCount.get(), RESPONSE_TIME_SAMPLES);
+        if (n == 0 || n < minSamples) {
+            return -1;
+        }
+        long[] samples = new long[n];
+        for (int i = 0; i < n; i++) {
+            samples[i] = s.responseTimes.get(i);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(quantile * n) - 1;
+        return samples[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    /**
+     * 负载均衡得分（预计的首字节延迟），越小越好
+     * 没有观测数据的供应商模型以 priorMs 作为延迟，在途请求同样计入；错误率按惩罚延迟叠加，
+     * 快速失败的上游不会因为延迟低而吸引流量。
+     *
+     * @param priorMs 没有观测数据时假定的首字节延迟
+     */
+    public double score(Long vendorModelId, double priorMs) {
+        Stats s = vendorModelId != null ? stats.get(vendorModelId) : null;
+        if (s == null) {
+            return priorMs;
+        }
+        Ewma ewma = s.ewma.get();
+        double latency = ewma.initialized() ? ewma.ttftMs() : priorMs;
+        double penaltyMs = loadBalancerConfig.getLeastLatency().getErrorPenaltyLatency().toMillis();
+        return (latency + ewma.errorRate() * penaltyMs) * (s.inFlight.get() + 1);
+    }
+
+    /**
+     * 候选中已有观测数据的供应商模型的平均首字节延迟
+     *
+     * @return 平均延迟（毫秒），都没有观测数据时返回 -1
+     */
+    public double meanTtftMs(List<VendorModel> candidates) {
+        double sum = 0;
+        int count = 0;
+        for (VendorModel candidate : candidates) {
+            Stats s = candidate.getId() != null ? stats.get(candidate.getId()) : null;
+            Ewma ewma = s != null ? s.ewma.get() : null;
+            if (ewma != null && ewma.initialized()) {
+                sum += ewma.ttftMs();
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : -1;
+    }
+
+    public Snapshot snapshot(Long vendorModelId) {
+        Stats s = vendorModelId != null ? stats.get(vendorModelId) : null;
+        if (s == null) {
+            return new Snapshot(0.0, 0.0, 0.0, 0);
+        }
+        Ewma ewma = s.ewma.get();
+        return new Snapshot(ewma.ttftMs(), ewma.totalMs(), ewma.errorRate(), s.inFlight.get());
+    }
+
+    private Stats stats(Long vendorModelId) {
+        return stats.computeIfAbsent(vendorModelId, id -> new Stats());
+    }
+
+    public record Snapshot(double ttftMs, double totalMs, double errorRate, int inFlight) {
+    }
+
+    private static final class Stats {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicReference<Ewma> ewma = new AtomicReference<>(Ewma.EMPTY);
+        final AtomicLongArray responseTimes = new AtomicLongArray(RESPONSE_TIME_SAMPLES);
+        final AtomicLong responseTimeCount = new AtomicLong();
+    }
+
+    /**
+     * 不可变 EWMA 状态，按距离上次更新的时间计算衰减权重
+     */
+    private record Ewma(double ttftMs, double totalMs, double errorRate, long stampNanos, boolean initialized) {
+
+        static final Ewma EMPTY = new Ewma(0.0, 0.0, 0.0, 0L, false);
+
+        Ewma update(double ttft, double total, double error, long now, double tau) {
+            if (!initialized) {
+                return new Ewma(ttft, total, error, now, true);
+            }
+            double elapsed = Math.max(0, now - stampNanos);
+            double weight = 1.0 - Math.exp(-elapsed / tau);
+            // 同一时刻的大量样本也要有最小权重，避免完全忽略
+            weight = Math.max(weight, 0.05);
+            return new Ewma(
+                    ttftMs + (ttft - ttftMs) * weight,
+                    totalMs + (total - totalMs) * weight,
+                    errorRate + (error - errorRate) * weight,
+                    now, true);
+        }
+    }
+}
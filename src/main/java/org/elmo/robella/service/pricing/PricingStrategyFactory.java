@@ -44,12 +44,32 @@ public class PricingStrategyFactory {
         }
     }
     
+    /**
+     * 使用已加载的定价阶梯创建计费策略，不访问数据库（用于路由快照预构建）
+     * @param vendorModel 供应商模型
+     * @param pricingTiers 该供应商模型的定价阶梯
+     * @return 计费策略实例
+     */
+    public PricingStrategy createPricingStrategy(VendorModel vendorModel, List<PricingTier> pricingTiers) {
+        if (vendorModel == null) {
+            throw new IllegalArgumentException("Vendor model cannot be null");
+        }
+        if (vendorModel.getPricingStrategy() == PricingStrategyType.TIERED) {
+            return createTieredPricingStrategy(vendorModel, pricingTiers);
+        }
+        return createPricingStrategy(vendorModel);
+    }
+    
     private PricingStrategy createTieredPricingStrategy(VendorModel vendorModel) {
         
         LambdaQueryWrapper<PricingTier> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(PricingTier::getVendorModelId, vendorModel.getId());
         List<PricingTier> pricingTiers = pricingTierMapper.selectList(queryWrapper);
 
+        return createTieredPricingStrategy(vendorModel, pricingTiers);
+    }
+
+    private PricingStrategy createTieredPricingStrategy(VendorModel vendorModel, List<PricingTier> pricingTiers) {
         if (pricingTiers == null || pricingTiers.isEmpty()) {
             // 如果没有配置阶梯价格，回退到固定价格
             return new FixedPricingStrategy(vendorModel);
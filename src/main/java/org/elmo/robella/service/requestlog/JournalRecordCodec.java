@@ -0,0 +1,175 @@
+package org.elmo.robella.service.requestlog;
+
+import org.elmo.robella.model.entity.RequestLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 本地日志记录的二进制编码：请求日志的各字段按固定顺序写入，可空字段带存在标记，
+ * 末尾为该请求对用户余额的变动（百万分之一单位，0 表示无变动）
+ */
+final class JournalRecordCodec {
+
+    private JournalRecordCodec() {
+    }
+
+    static byte[] encode(RequestLog log, long creditDeltaMicros) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, log.getRequestId());
+            writeLong(out, log.getUserId());
+            writeLong(out, log.getApiKeyId());
+            writeString(out, log.getModelKey());
+            writeString(out, log.getVendorModelKey());
+            writeLong(out, log.getProviderId());
+            writeString(out, log.getEndpointType());
+            writeInt(out, log.getPromptTokens());
+            writeInt(out, log.getCachedTokens());
+            writeInt(out, log.getCompletionTokens());
+            writeInt(out, log.getTotalTokens());
+            writeString(out, log.getTokenSource());
+            writeDecimal(out, log.getInputCost());
+            writeDecimal(out, log.getOutputCost());
+            writeDecimal(out, log.getTotalCost());
+            writeString(out, log.getCurrency());
+            writeInt(out, log.getDurationMs());
+            writeInt(out, log.getFirstTokenLatencyMs());
+            writeDecimal(out, log.getTokensPerSecond());
+            writeBoolean(out, log.getIsStream());
+            writeBoolean(out, log.getIsSuccess());
+            writeTime(out, log.getCreatedAt());
+            out.writeLong(creditDeltaMicros);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalEntry decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            RequestLog log = RequestLog.builder()
+                    .requestId(readString(in))
+                    .userId(readLong(in))
+                    .apiKeyId(readLong(in))
+                    .modelKey(readString(in))
+                    .vendorModelKey(readString(in))
+                    .providerId(readLong(in))
+                    .endpointType(readString(in))
+                    .promptTokens(readInt(in))
+                    .cachedTokens(readInt(in))
+                    .completionTokens(readInt(in))
+                    .totalTokens(readInt(in))
+                    .tokenSource(readString(in))
+                    .inputCost(readDecimal(in))
+                    .outputCost(readDecimal(in))
+                    .totalCost(readDecimal(in))
+                    .currency(readString(in))
+                    .durationMs(readInt(in))
+                    .firstTokenLatencyMs(readInt(in))
+                    .tokensPerSecond(readDecimal(in))
+                    .isStream(readBoolean(in))
+                    .isSuccess(readBoolean(in))
+                    .createdAt(readTime(in))
+                    .build();
+            return new JournalEntry(log, in.readLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? 0 : value ? 2 : 1);
+    }
+
+    private static Boolean readBoolean(DataInputStream in) throws IOException {
+        byte value = in.readByte();
+        return value == 0 ? null : value == 2;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeTime(DataOutputStream out, OffsetDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            Instant instant = value.toInstant();
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+            out.writeInt(value.getOffset().getTotalSeconds());
+        }
+    }
+
+    private static OffsetDateTime readTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds(in.readInt()));
+    }
+
+    /**
+     * 一条日志记录：请求日志及其对用户余额的变动
+     */
+    record JournalEntry(RequestLog requestLog, long creditDeltaMicros) {
+    }
+}
@@ -0,0 +1,26 @@
+package org.elmo.robella.service.requestlog;
+
+import lombok.RequiredArgsConstructor;
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.model.entity.RequestLog;
+
+import java.util.List;
+
+/**
+ * 以多行 INSERT 写入请求日志，每条语句最多 {@value #MAX_ROWS_PER_STATEMENT} 行，
+ * 避免超出数据库的绑定参数上限
+ */
+@RequiredArgsConstructor
+public class MybatisRequestLogSink implements RequestLogSink {
+
+    static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private final RequestLogMapper requestLogMapper;
+
+    @Override
+    public void write(List<RequestLog> logs) {
+        for (int from = 0; from < logs.size(); from += MAX_ROWS_PER_STATEMENT) {
+            requestLogMapper.insertBatch(logs.subList(from, Math.min(logs.size(), from + MAX_ROWS_PER_STATEMENT)));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.elmo.robella.service.requestlog;
+
+import lombok.RequiredArgsConstructor;
+import org.elmo.robella.model.entity.RequestLog;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 以 PostgreSQL COPY FROM STDIN（CSV）批量写入请求日志
+ * 一批日志编码为一段 CSV 通过一次 COPY 发送，相比多行 INSERT 省去了绑定参数和语句解析的开销。
+ * COPY 是原子的：任一行失败（如 request_id 重复）时整批回滚，由 {@link RequestLogWriter} 逐条重试。
+ */
+@RequiredArgsConstructor
+public class PostgresCopyRequestLogSink implements RequestLogSink {
+
+    static final String COLUMNS = "request_id, user_id, api_key_id, model_key, vendor_model_key, "
+            + "provider_id, endpoint_type, prompt_tokens, cached_tokens, completion_tokens, total_tokens, token_source, "
+            + "input_cost, output_cost, total_cost, currency, duration_ms, first_token_latency_ms, tokens_per_second, "
+            + "is_stream, is_success, created_at";
+
+    static final String COPY_SQL = "COPY request_log (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+    private final DataSource dataSource;
+
+    @Override
+    public void write(List<RequestLog> logs) {
+        byte[] csv = toCsv(logs).getBytes(StandardCharsets.UTF_8);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn(COPY_SQL, new ByteArrayInputStream(csv));
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("COPY request_log", COPY_SQL, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * 编码为 CSV：空值写为空字段（COPY 的 CSV 格式中即 NULL），字符串总是加引号以区分空串
+     */
+    static String toCsv(List<RequestLog> logs) {
+        StringBuilder csv = new StringBuilder(logs.size() * 256);
+        for (RequestLog log : logs) {
+            appendRow(csv, log);
+        }
+        return csv.toString();
+    }
+
+    /**
+     * 按 {@link #COLUMNS} 的顺序追加一行
+     */
+    static StringBuilder appendRow(StringBuilder csv, RequestLog log) {
+        text(csv, log.getRequestId()).append(',');
+        value(csv, log.getUserId()).append(',');
+        value(csv, log.getApiKeyId()).append(',');
+        text(csv, log.getModelKey()).append(',');
+        text(csv, log.getVendorModelKey()).append(',');
+        value(csv, log.getProviderId()).append(',');
+        text(csv, log.getEndpointType()).append(',');
+        value(csv, log.getPromptTokens()).append(',');
+        value(csv, log.getCachedTokens()).append(',');
+        value(csv, log.getCompletionTokens()).append(',');
+        value(csv, log.getTotalTokens()).append(',');
+        text(csv, log.getTokenSource()).append(',');
+        decimal(csv, log.getInputCost()).append(',');
+        decimal(csv, log.getOutputCost()).append(',');
+        decimal(csv, log.getTotalCost()).append(',');
+        text(csv, log.getCurrency()).append(',');
+        value(csv, log.getDurationMs()).append(',');
+        value(csv, log.getFirstTokenLatencyMs()).append(',');
+        decimal(csv, log.getTokensPerSecond()).append(',');
+        value(csv, log.getIsStream()).append(',');
+        value(csv, log.getIsSuccess()).append(',');
+        return time(csv, log.getCreatedAt()).append('\n');
+    }
+
+    private static StringBuilder text(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        return csv.append('"');
+    }
+
+    private static StringBuilder value(StringBuilder csv, Object value) {
+        return value == null ? csv : csv.append(value);
+    }
+
+    private static StringBuilder time(StringBuilder csv, OffsetDateTime value) {
+        return value == null ? csv : csv.append(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(value));
+    }
+
+    private static StringBuilder decimal(StringBuilder csv, BigDecimal value) {
+        return value == null ? csv : csv.append(value.toPlainString());
+    }
+}
@@ -0,0 +1,125 @@
+package org.elmo.robella.service.requestlog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PostgreSQL 的 request_log 月度分区，分区名为 request_log_pYYYYMM，范围按 UTC 自然月划分
+ * 没有对应月度分区的记录写入默认分区 request_log_default，创建月度分区时把默认分区中该月的记录迁入新分区。
+ * 归档时先分离分区再以 COPY TO STDOUT 导出；分离后写入该月的迟到记录（如本地日志回放）落在默认分区，不会再次归档。
+ * 分离后、删除前中断的分区仍保留在库中，下次归档时会重新导出。
+ */
+@Slf4j
+public class PostgresRequestLogPartitions implements RequestLogPartitions {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("request_log_p(\\d{6})");
+    private static final String DEFAULT_PARTITION = "request_log_default";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PostgresRequestLogPartitions(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public void ensurePartitions(YearMonth from, YearMonth to) {
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            String partition = partitionName(month);
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition))) {
+                continue;
+            }
+            String range = "FOR VALUES FROM ('" + monthStart(month) + "') TO ('" + monthStart(month.plusMonths(1)) + "')";
+            String inMonth = "created_at >= '" + monthStart(month) + "' AND created_at < '" + monthStart(month.plusMonths(1)) + "'";
+            Boolean hasDefaultRows = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE " + inMonth + ")", Boolean.class);
+            if (!Boolean.TRUE.equals(hasDefaultRows)) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF request_log " + range);
+                continue;
+            }
+            // 默认分区中已有该月记录时不能直接创建分区：先建独立的表迁入记录，再挂载为分区，在同一事务内完成
+            Integer moved = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE request_log INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                int count = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + " WHERE " + inMonth
+                        + " RETURNING *) INSERT INTO " + partition + " SELECT * FROM moved");
+                jdbcTemplate.execute("ALTER TABLE request_log ATTACH PARTITION " + partition + " " + range);
+                return count;
+            });
+            log.info("Created request log partition {} with {} rows moved from {}", partition, moved, DEFAULT_PARTITION);
+        }
+    }
+
+    @Override
+    public List<YearMonth> monthsBefore(YearMonth month) {
+        List<YearMonth> months = new ArrayList<>();
+        for (String table : jdbcTemplate.queryForList(
+                "SELECT tablename FROM pg_tables WHERE schemaname = current_schema() AND tablename LIKE 'request\\_log\\_p%'",
+                String.class)) {
+            Matcher matcher = PARTITION_NAME.matcher(table);
+            if (matcher.matches()) {
+                YearMonth partitionMonth = YearMonth.parse(matcher.group(1), SUFFIX);
+                if (partitionMonth.isBefore(month)) {
+                    months.add(partitionMonth);
+                }
+            }
+        }
+        months.sort(null);
+        return months;
+    }
+
+    @Override
+    public void export(YearMonth month, OutputStream out) throws IOException {
+        String partition = partitionName(month);
+        Boolean attached = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = 'request_log'::regclass AND c.relname = ?)",
+                Boolean.class, partition);
+        if (Boolean.TRUE.equals(attached)) {
+            jdbcTemplate.execute("ALTER TABLE request_log DETACH PARTITION " + partition);
+        }
+        String sql = "COPY " + partition + " TO STDOUT WITH (FORMAT csv, HEADER)";
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("COPY request_log partition", sql, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Override
+    public void drop(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(month));
+    }
+
+    static String partitionName(YearMonth month) {
+        return "request_log_p" + month.format(SUFFIX);
+    }
+
+    private static String monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+}
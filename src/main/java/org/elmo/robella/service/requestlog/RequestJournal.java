@@ -0,0 +1,320 @@
+package org.elmo.robella.service.requestlog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.config.RequestLogConfig;
+import org.elmo.robella.model.entity.RequestLog;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 请求日志本地追加日志（write-ahead journal）
+ * 记录写入内存映射的分段文件，进程崩溃后由操作系统页缓存保证数据落盘；分段写满后切换到新文件。
+ * 每条记录格式为 [长度 4][CRC32C 4][类型 1][数据]，长度最后写入，未写完的记录在恢复时被忽略。
+ * 后台回放从检查点读取记录写入数据库，回放完成的分段被删除；每次启动都从新分段开始追加。
+ * <p>
+ * 追加可在任意线程调用；读取与检查点只由单个回放线程调用。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestJournal {
+
+    static final int HEADER_SIZE = 9;
+    static final byte TYPE_REQUEST_LOG = 1;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+    private static final String CHECKPOINT = "checkpoint";
+    static final String DEAD_LETTER = "dead-letter.log";
+
+    private final RequestLogConfig requestLogConfig;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private Path directory;
+    private int segmentSize;
+    private long activeSegment;
+    private FileChannel activeChannel;
+    private MappedByteBuffer activeBuffer;
+    private volatile Position head;
+    private volatile boolean enabled;
+
+    // 以下字段只由回放线程访问
+    private long readSegment = -1;
+    private ByteBuffer readBuffer;
+
+    @PostConstruct
+    public void open() throws IOException {
+        RequestLogConfig.JournalConfig config = requestLogConfig.getJournal();
+        if (!config.isEnabled()) {
+            return;
+        }
+        directory = Paths.get(config.getDirectory());
+        Files.createDirectories(directory);
+        segmentSize = (int) Math.min(Integer.MAX_VALUE, config.getSegmentSize().toBytes());
+        TreeSet<Long> segments = listSegments();
+        openSegment(segments.isEmpty() ? 1 : segments.last() + 1);
+        enabled = true;
+        log.info("Request journal opened at {}, active segment {}, {} earlier segments",
+                directory.toAbsolutePath(), activeSegment, segments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 追加一条请求日志记录
+     *
+     * @param creditDeltaMicros 该请求对用户余额的变动，单位为百万分之一
+     * @return 是否已写入；未开启或写入失败时返回 false，调用方应改走直接写入
+     */
+    public boolean append(RequestLog requestLog, long creditDeltaMicros) {
+        if (!enabled) {
+            return false;
+        }
+        if (requestLog.getCreatedAt() == null) {
+            requestLog.setCreatedAt(OffsetDateTime.now());
+        }
+        byte[] payload = JournalRecordCodec.encode(requestLog, creditDeltaMicros);
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            log.warn("Request log {} too large for journal segment ({} bytes)", requestLog.getRequestId(), recordSize);
+            return false;
+        }
+        int checksum = checksum(payload);
+        appendLock.lock();
+        try {
+            if (!enabled) {
+                return false;
+            }
+            int offset = head.offset();
+            if (offset + recordSize > segmentSize) {
+                openSegment(activeSegment + 1);
+                offset = 0;
+            }
+            activeBuffer.putInt(offset + 4, checksum);
+            activeBuffer.put(offset + 8, TYPE_REQUEST_LOG);
+            activeBuffer.put(offset + HEADER_SIZE, payload);
+            activeBuffer.putInt(offset, payload.length);
+            if (requestLogConfig.getJournal().isForceOnAppend()) {
+                activeBuffer.force(offset, recordSize);
+            }
+            head = new Position(activeSegment, offset + recordSize);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to append request log {} to journal: {}", requestLog.getRequestId(), e.getMessage());
+            return false;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 从指定位置读取最多 maxRecords 条已写入的记录
+     */
+    Batch read(Position from, int maxRecords) {
+        List<JournalRecordCodec.JournalEntry> entries = new ArrayList<>();
+        Position position = from;
+        while (entries.size() < maxRecords) {
+            Position current = head;
+            if (position.segment() > current.segment()) {
+                break;
+            }
+            boolean sealed = position.segment() < current.segment();
+            ByteBuffer buffer = segmentForRead(position.segment());
+            if (buffer == null) {
+                if (!sealed) {
+                    break;
+                }
+                position = new Position(position.segment() + 1, 0);
+                continue;
+            }
+            int limit = sealed ? buffer.capacity() : current.offset();
+            int offset = position.offset();
+            byte[] payload = offset + HEADER_SIZE <= limit ? readRecord(buffer, offset, limit) : null;
+            if (payload == null) {
+                if (!sealed) {
+                    break;
+                }
+                // 已封闭分段的剩余部分为空或是崩溃时未写完的记录
+                position = new Position(position.segment() + 1, 0);
+                continue;
+            }
+            entries.add(JournalRecordCodec.decode(payload));
+            position = new Position(position.segment(), offset + HEADER_SIZE + payload.length);
+        }
+        return new Batch(entries, position);
+    }
+
+    /**
+     * 读取检查点；没有检查点时从最早的分段开始
+     */
+    Position readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (Files.exists(file)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            return new Position(buffer.getLong(), buffer.getInt());
+        }
+        TreeSet<Long> segments = listSegments();
+        return new Position(segments.isEmpty() ? activeSegment : segments.first(), 0);
+    }
+
+    /**
+     * 原子地更新检查点，并删除检查点之前已回放完成的分段
+     */
+    void writeCheckpoint(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12).putLong(position.segment()).putInt(position.offset());
+        Path tmp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.write(tmp, buffer.array());
+        Files.move(tmp, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Long segment : listSegments()) {
+            if (segment >= position.segment()) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(segment));
+            if (segment == readSegment) {
+                readSegment = -1;
+                readBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * 把回放时无法写入数据库的记录追加到死信文件，记录格式与分段文件相同，修复原因后可据此人工补录
+     */
+    void appendDeadLetter(JournalRecordCodec.JournalEntry entry) throws IOException {
+        byte[] payload = JournalRecordCodec.encode(entry.requestLog(), entry.creditDeltaMicros());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                .putInt(payload.length).putInt(checksum(payload)).put(TYPE_REQUEST_LOG).put(payload)
+                .flip();
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        appendLock.lock();
+        try {
+            if (!enabled) {
+                return;
+            }
+            enabled = false;
+            activeBuffer.force();
+            activeChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close request journal: {}", e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private byte[] readRecord(ByteBuffer buffer, int offset, int limit) {
+        int length = buffer.getInt(offset);
+        if (length <= 0 || length > limit - offset - HEADER_SIZE) {
+            return null;
+        }
+        byte type = buffer.get(offset + 8);
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_SIZE, payload);
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        if (type != TYPE_REQUEST_LOG || (int) crc.getValue() != buffer.getInt(offset + 4)) {
+            return null;
+        }
+        return payload;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(TYPE_REQUEST_LOG);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private void openSegment(long segment) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        if (activeChannel != null) {
+            activeBuffer.force();
+            activeChannel.close();
+        }
+        activeChannel = channel;
+        activeBuffer = buffer;
+        activeSegment = segment;
+        head = new Position(segment, 0);
+    }
+
+    private ByteBuffer segmentForRead(long segment) {
+        if (segment == readSegment) {
+            return readBuffer;
+        }
+        Path path = segmentPath(segment);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readSegment = segment;
+            return readBuffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TreeSet<Long> listSegments() throws IOException {
+        TreeSet<Long> segments = new TreeSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("journal-%020d.log", segment));
+    }
+
+    /**
+     * 日志中的位置：分段序号和段内偏移
+     */
+    record Position(long segment, int offset) {
+    }
+
+    /**
+     * 一次读取的结果及下一次读取的起点
+     */
+    record Batch(List<JournalRecordCodec.JournalEntry> entries, Position next) {
+    }
+}
@@ -0,0 +1,195 @@
+package org.elmo.robella.service.requestlog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.config.RequestLogConfig;
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.mapper.UserMapper;
+import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.service.credit.CreditLedger;
+import org.elmo.robella.service.statistics.RequestStatsRollupService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本地日志回放
+ * 从检查点开始读取 {@link RequestJournal} 中的记录，每批在一个事务内写入请求日志并应用余额变动，
+ * 提交后推进检查点。请求日志按 request_id（PostgreSQL 分区表上连同记录中的 created_at）忽略重复写入，只有确实插入的记录才应用余额变动，
+ * 因此检查点落后于已提交数据时（如崩溃后重启）重复回放是幂等的；统计汇总表同样只累加确实插入的记录。
+ * 单条记录确实无法写入时写入死信文件后跳过，其余额变动转由账本合并写入。
+ * 启动时先同步回放上次运行遗留的记录，再启动后台线程。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestJournalReplayer {
+
+    private final RequestJournal journal;
+    private final RequestLogConfig requestLogConfig;
+    private final RequestLogMapper requestLogMapper;
+    private final UserMapper userMapper;
+    private final CreditLedger creditLedger;
+    private final RequestStatsRollupService rollupService;
+    private final TransactionTemplate transactionTemplate;
+
+    private RequestJournal.Position position;
+    private volatile Thread replayer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        position = journal.readCheckpoint();
+        int recovered = replayAvailable();
+        if (recovered > 0) {
+            log.info("Recovered {} request log records from journal", recovered);
+        }
+        running = true;
+        Thread thread = new Thread(this::replayLoop, "request-journal-replayer");
+        thread.setDaemon(true);
+        replayer = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread current = replayer;
+        if (current == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(current);
+        try {
+            current.join(requestLogConfig.getWriter().getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (current.isAlive()) {
+            log.warn("Journal replay did not finish within timeout, remaining records will be replayed on next start");
+        }
+        replayer = null;
+    }
+
+    private void replayLoop() {
+        long intervalNanos = requestLogConfig.getJournal().getReplayInterval().toNanos();
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                replayAvailable();
+            } catch (Exception e) {
+                // 数据库不可用时保持检查点不动，下个周期重试
+                log.warn("Journal replay failed, will retry: {}", e.getMessage());
+            }
+        }
+        try {
+            replayAvailable();
+        } catch (Exception e) {
+            log.warn("Final journal replay failed, remaining records will be replayed on next start: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 回放当前已写入的全部记录
+     *
+     * @return 回放的记录数
+     */
+    int replayAvailable() throws IOException {
+        int total = 0;
+        while (true) {
+            RequestJournal.Batch batch = journal.read(position, requestLogConfig.getJournal().getReplayBatchSize());
+            if (!batch.entries().isEmpty()) {
+                apply(batch.entries());
+                total += batch.entries().size();
+            }
+            if (batch.next().equals(position)) {
+                return total;
+            }
+            journal.writeCheckpoint(batch.next());
+            position = batch.next();
+        }
+    }
+
+    private void apply(List<JournalRecordCodec.JournalEntry> entries) {
+        List<JournalRecordCodec.JournalEntry> applied;
+        try {
+            applied = transactionTemplate.execute(status -> insertAll(entries));
+        } catch (RuntimeException e) {
+            applied = applyOneByOne(entries, e);
+        }
+        // 提交后才把变动从“等待回放”转为“已持久化”
+        for (JournalRecordCodec.JournalEntry entry : applied) {
+            creditLedger.onJournalApplied(entry.requestLog().getUserId(), entry.creditDeltaMicros());
+        }
+    }
+
+    /**
+     * 整批失败时逐条各自提交，跳过确实无法写入的记录；全部失败则视为数据库不可用，抛出异常保持检查点不动
+     */
+    private List<JournalRecordCodec.JournalEntry> applyOneByOne(List<JournalRecordCodec.JournalEntry> entries,
+                                                                 RuntimeException batchFailure) {
+        List<JournalRecordCodec.JournalEntry> applied = new ArrayList<>();
+        List<JournalRecordCodec.JournalEntry> skipped = new ArrayList<>();
+        for (JournalRecordCodec.JournalEntry entry : entries) {
+            try {
+                applied.addAll(transactionTemplate.execute(status -> insertAll(List.of(entry))));
+            } catch (RuntimeException e) {
+                skipped.add(entry);
+                log.error("Failed to replay request log {}: {}", entry.requestLog().getRequestId(), e.getMessage());
+            }
+        }
+        if (skipped.size() == entries.size()) {
+            throw batchFailure;
+        }
+        skipped.forEach(this::skip);
+        return applied;
+    }
+
+    /**
+     * 放弃一条记录：原样写入死信文件，扣费改走账本的合并写入，保证余额变动仍然落库
+     */
+    private void skip(JournalRecordCodec.JournalEntry entry) {
+        RequestLog requestLog = entry.requestLog();
+        try {
+            journal.appendDeadLetter(entry);
+        } catch (IOException e) {
+            log.error("Failed to dead-letter request log {} (user {}, credit delta {} micros): {}",
+                    requestLog.getRequestId(), requestLog.getUserId(), entry.creditDeltaMicros(), e.getMessage());
+        }
+        if (entry.creditDeltaMicros() != 0 && requestLog.getUserId() != null) {
+            try {
+                creditLedger.onJournalSkipped(requestLog.getUserId(), entry.creditDeltaMicros());
+            } catch (RuntimeException e) {
+                log.error("Failed to re-queue credit delta of request log {}: {}", requestLog.getRequestId(), e.getMessage());
+            }
+        }
+    }
+
+    private List<JournalRecordCodec.JournalEntry> insertAll(List<JournalRecordCodec.JournalEntry> entries) {
+        List<JournalRecordCodec.JournalEntry> charged = new ArrayList<>();
+        List<RequestLog> inserted = new ArrayList<>(entries.size());
+        for (JournalRecordCodec.JournalEntry entry : entries) {
+            RequestLog requestLog = entry.requestLog();
+            if (requestLogMapper.insertIgnore(requestLog) == 0) {
+                // 已在之前的回放中提交
+                continue;
+            }
+            inserted.add(requestLog);
+            if (entry.creditDeltaMicros() != 0 && requestLog.getUserId() != null) {
+                userMapper.applyCreditDelta(requestLog.getUserId(), BigDecimal.valueOf(entry.creditDeltaMicros(), 6));
+                charged.add(entry);
+            }
+        }
+        rollupService.record(inserted);
+        return charged;
+    }
+}
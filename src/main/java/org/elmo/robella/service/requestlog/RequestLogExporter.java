@@ -0,0 +1,87 @@
+package org.elmo.robella.service.requestlog;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.cursor.Cursor;
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.model.dto.RequestLogQuery;
+import org.elmo.robella.model.entity.RequestLog;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 请求日志导出
+ * 通过 MyBatis {@link Cursor} 逐行读取并直接编码写入输出流，内存占用与导出的行数无关。
+ * 读取在只读事务内进行，PostgreSQL 驱动只有在关闭自动提交时才会按 fetchSize 分批拉取结果。
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestLogExporter {
+
+    static final String CSV_HEADER = "id," + PostgresCopyRequestLogSink.COLUMNS.replace(", ", ",") + "\n";
+
+    public enum Format {
+        /** 每行一个 JSON 对象 */
+        NDJSON,
+        /** 列顺序与 COPY 写入一致，首列为 id */
+        CSV
+    }
+
+    private final RequestLogMapper requestLogMapper;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 按 (created_at, id) 正序导出满足条件的日志，不关闭 out
+     *
+     * @return 导出的行数
+     */
+    @Transactional(readOnly = true)
+    public long export(RequestLogQuery query, Format format, OutputStream out) throws IOException {
+        try (Cursor<RequestLog> logs = requestLogMapper.streamLogs(query)) {
+            return format == Format.CSV ? writeCsv(logs, out) : writeNdjson(logs, out);
+        }
+    }
+
+    long writeNdjson(Iterable<RequestLog> logs, OutputStream out) throws IOException {
+        // 由生成器的缓冲区攒批写出，而不是每行 flush 一次
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (RequestLog log : logs) {
+                writer.writeValue(generator, log);
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    long writeCsv(Iterable<RequestLog> logs, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        StringBuilder row = new StringBuilder(256);
+        long count = 0;
+        for (RequestLog log : logs) {
+            row.setLength(0);
+            row.append(log.getId()).append(',');
+            PostgresCopyRequestLogSink.appendRow(row, log);
+            writer.append(row);
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+}
@@ -0,0 +1,87 @@
+package org.elmo.robella.service.requestlog;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.config.RequestLogConfig;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 请求日志分区维护
+ * 定期提前创建之后几个月的分区；开启保留期后，把早于保留期的月份导出为 gzip 压缩的 CSV 归档文件，
+ * 文件刷盘并原子改名后才从数据库中移除该月。统计汇总表不受影响，归档月份的统计仍可查询。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestLogPartitionMaintainer {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final RequestLogConfig requestLogConfig;
+    private final RequestLogPartitions partitions;
+
+    @Scheduled(fixedDelayString = "#{@requestLogConfig.partition.checkInterval.toMillis()}")
+    public void maintain() {
+        RequestLogConfig.PartitionConfig config = requestLogConfig.getPartition();
+        if (!config.isEnabled()) {
+            return;
+        }
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        try {
+            partitions.ensurePartitions(current, current.plusMonths(config.getPremakeMonths()));
+        } catch (Exception e) {
+            log.error("Failed to create request log partitions: {}", e.getMessage(), e);
+        }
+        if (config.getRetentionMonths() <= 0) {
+            return;
+        }
+        Path directory = Paths.get(config.getArchiveDirectory());
+        for (YearMonth month : partitions.monthsBefore(current.minusMonths(config.getRetentionMonths()))) {
+            try {
+                Path file = archive(month, directory);
+                log.info("Archived request logs of {} to {}", month, file);
+            } catch (Exception e) {
+                // 按时间顺序归档，失败时留到下次重试
+                log.error("Failed to archive request logs of {}: {}", month, e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 导出该月的请求日志并从数据库移除
+     *
+     * @return 归档文件路径
+     */
+    Path archive(YearMonth month, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve("request_log_" + month.format(MONTH) + ".csv.gz");
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             GZIPOutputStream out = new GZIPOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            partitions.export(month, out);
+            out.finish();
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        partitions.drop(month);
+        return target;
+    }
+}
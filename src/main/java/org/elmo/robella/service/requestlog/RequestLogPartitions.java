@@ -0,0 +1,32 @@
+package org.elmo.robella.service.requestlog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * 请求日志按 UTC 自然月划分的存储：PostgreSQL 为月度分区，SQLite 为单表中按 created_at 划分的范围
+ */
+public interface RequestLogPartitions {
+
+    /**
+     * 确保 [from, to] 内各月的分区存在
+     */
+    void ensurePartitions(YearMonth from, YearMonth to);
+
+    /**
+     * 早于 month 且仍留在数据库中的月份，按时间升序
+     */
+    List<YearMonth> monthsBefore(YearMonth month);
+
+    /**
+     * 把该月的请求日志以带表头的 CSV 写入 out
+     */
+    void export(YearMonth month, OutputStream out) throws IOException;
+
+    /**
+     * 从数据库中移除该月的请求日志，只应在导出文件落盘后调用
+     */
+    void drop(YearMonth month);
+}
@@ -0,0 +1,16 @@
+package org.elmo.robella.service.requestlog;
+
+import org.elmo.robella.model.entity.RequestLog;
+
+import java.util.List;
+
+/**
+ * 请求日志的持久化目标，由 {@link RequestLogWriter} 以批为单位调用
+ */
+public interface RequestLogSink {
+
+    /**
+     * 写入一批日志；抛出异常表示整批未写入
+     */
+    void write(List<RequestLog> logs);
+}
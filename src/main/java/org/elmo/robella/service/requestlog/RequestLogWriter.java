@@ -0,0 +1,183 @@
+package org.elmo.robella.service.requestlog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.config.RequestLogConfig;
+import org.elmo.robella.model.entity.RequestLog;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 请求日志异步批量写入器
+ * 请求线程只把日志放入无锁队列，由单个后台线程按 flushSize 条或 flushInterval 间隔批量写入。
+ * 队列有界，写满时按 overflowPolicy 同步写入或丢弃；关闭时在 shutdownTimeout 内写完剩余日志。
+ */
+@Slf4j
+@Component
+public class RequestLogWriter {
+
+    private final RequestLogConfig requestLogConfig;
+    private final RequestLogSink sink;
+
+    private final Queue<RequestLog> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Counter enqueued;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+
+    private volatile Thread drainer;
+    private volatile boolean running;
+
+    public RequestLogWriter(RequestLogConfig requestLogConfig, RequestLogSink sink, MeterRegistry meterRegistry) {
+        this.requestLogConfig = requestLogConfig;
+        this.sink = sink;
+        this.enqueued = meterRegistry.counter("robella.request.log.enqueued");
+        this.dropped = meterRegistry.counter("robella.request.log.dropped");
+        this.written = meterRegistry.counter("robella.request.log.written");
+        this.failed = meterRegistry.counter("robella.request.log.failed");
+        Gauge.builder("robella.request.log.queue.size", size, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!requestLogConfig.getWriter().isEnabled()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::drainLoop, "request-log-writer");
+        thread.setDaemon(true);
+        drainer = thread;
+        thread.start();
+    }
+
+    /**
+     * 提交一条日志，不等待写入
+     */
+    public void submit(RequestLog requestLog) {
+        if (requestLog.getCreatedAt() == null) {
+            requestLog.setCreatedAt(OffsetDateTime.now());
+        }
+        RequestLogConfig.WriterConfig config = requestLogConfig.getWriter();
+        Thread current = drainer;
+        if (!running || current == null) {
+            write(List.of(requestLog));
+            return;
+        }
+        int queued = size.incrementAndGet();
+        if (queued > config.getQueueCapacity()) {
+            size.decrementAndGet();
+            overflow(requestLog, config.getOverflowPolicy());
+            return;
+        }
+        queue.offer(requestLog);
+        enqueued.increment();
+        if (queued >= config.getFlushSize()) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * 队列中尚未写入的日志条数
+     */
+    public int pending() {
+        return size.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread current = drainer;
+        if (current == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(current);
+        try {
+            current.join(requestLogConfig.getWriter().getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (current.isAlive()) {
+            log.warn("Request log writer did not drain within timeout, {} logs not written", size.get());
+        }
+        drainer = null;
+    }
+
+    private void overflow(RequestLog requestLog, RequestLogConfig.OverflowPolicy policy) {
+        if (policy == RequestLogConfig.OverflowPolicy.DROP) {
+            dropped.increment();
+            log.warn("Request log queue full, dropping log {}", requestLog.getRequestId());
+            return;
+        }
+        // 背压：由调用线程承担写入
+        write(List.of(requestLog));
+    }
+
+    private void drainLoop() {
+        long intervalNanos = requestLogConfig.getWriter().getFlushInterval().toNanos();
+        while (running) {
+            if (size.get() < requestLogConfig.getWriter().getFlushSize()) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+            drain();
+        }
+        drain();
+    }
+
+    /**
+     * 按 flushSize 分批写完当前队列中的日志
+     */
+    void drain() {
+        int batchSize = Math.max(1, requestLogConfig.getWriter().getFlushSize());
+        List<RequestLog> batch = new ArrayList<>(batchSize);
+        RequestLog next;
+        while ((next = queue.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(next);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<RequestLog> batch) {
+        try {
+            sink.write(batch);
+            written.increment(batch.size());
+            return;
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failed.increment();
+                log.error("Failed to save request log {}: {}", batch.get(0).getRequestId(), e.getMessage());
+                return;
+            }
+            log.warn("Batch insert of {} request logs failed, retrying row by row: {}", batch.size(), e.getMessage());
+        }
+        // 整批失败（如个别 request_id 重复）时逐条写入，只丢弃确实无法写入的日志
+        for (RequestLog requestLog : batch) {
+            try {
+                sink.write(List.of(requestLog));
+                written.increment();
+            } catch (Exception e) {
+                failed.increment();
+                log.error("Failed to save request log {}: {}", requestLog.getRequestId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.elmo.robella.service.requestlog;
+
+import lombok.RequiredArgsConstructor;
+import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.service.statistics.RequestStatsRollupService;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 在写入请求日志的同一事务内累加统计汇总表：日志写入失败时汇总一同回滚，不会重复或遗漏计数
+ */
+@RequiredArgsConstructor
+public class RollupRequestLogSink implements RequestLogSink {
+
+    private final RequestLogSink delegate;
+    private final RequestStatsRollupService rollupService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void write(List<RequestLog> logs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            delegate.write(logs);
+            rollupService.record(logs);
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package org.elmo.robella.service.requestlog;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLite 没有分区：每个月是 request_log 中 created_at 落在该月的行，归档时导出后按范围删除，
+ * 删除后空出的页由之后的写入复用
+ * created_at 以文本存储（ISO-8601 或 datetime('now') 格式），月份边界用日期字符串比较，两种格式都能正确划分。
+ */
+public class SqliteRequestLogPartitions implements RequestLogPartitions {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SqliteRequestLogPartitions(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void ensurePartitions(YearMonth from, YearMonth to) {
+        // 单表存储，无需预先创建
+    }
+
+    @Override
+    public List<YearMonth> monthsBefore(YearMonth month) {
+        String oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM request_log WHERE created_at < ?", String.class, monthStart(month));
+        List<YearMonth> months = new ArrayList<>();
+        if (oldest == null) {
+            return months;
+        }
+        for (YearMonth current = YearMonth.parse(oldest.substring(0, 7)); current.isBefore(month); current = current.plusMonths(1)) {
+            months.add(current);
+        }
+        return months;
+    }
+
+    @Override
+    public void export(YearMonth month, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        boolean[] headerWritten = {false};
+        try {
+            jdbcTemplate.query("SELECT * FROM request_log WHERE created_at >= ? AND created_at < ? ORDER BY id",
+                    resultSet -> {
+                        try {
+                            ResultSetMetaData metaData = resultSet.getMetaData();
+                            int columns = metaData.getColumnCount();
+                            if (!headerWritten[0]) {
+                                for (int i = 1; i <= columns; i++) {
+                                    writer.write(i > 1 ? "," : "");
+                                    writer.write(metaData.getColumnName(i));
+                                }
+                                writer.write('\n');
+                                headerWritten[0] = true;
+                            }
+                            for (int i = 1; i <= columns; i++) {
+                                writer.write(i > 1 ? "," : "");
+                                writeValue(writer, resultSet.getString(i));
+                            }
+                            writer.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    monthStart(month), monthStart(month.plusMonths(1)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void drop(YearMonth month) {
+        jdbcTemplate.update("DELETE FROM request_log WHERE created_at >= ? AND created_at < ?",
+                monthStart(month), monthStart(month.plusMonths(1)));
+    }
+
+    /**
+     * 空值写为空字段，其余值一律加引号以区分空串
+     */
+    private static void writeValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String monthStart(YearMonth month) {
+        return month.atDay(1).toString();
+    }
+}
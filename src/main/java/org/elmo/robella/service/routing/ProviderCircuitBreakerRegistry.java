@@ -0,0 +1,268 @@
+package org.elmo.robella.service.routing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.config.RoutingConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 供应商熔断器
+ * 每个 Provider 一个熔断器，基于分桶滑动窗口统计失败率和慢调用率：
+ * CLOSED 超过阈值后进入 OPEN，拒绝路由；openDuration 后进入 HALF_OPEN，
+ * 放行少量探测请求，全部成功则关闭，任一失败则重新打开。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProviderCircuitBreakerRegistry {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final RoutingConfig routingConfig;
+    private final Map<Long, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 是否允许路由到该供应商（不占用半开探测名额），用于过滤候选
+     */
+    public boolean isCallPermitted(Long providerId) {
+        if (!isEnabled() || providerId == null) {
+            return true;
+        }
+        Breaker breaker = breakers.get(providerId);
+        return breaker == null || breaker.isCallPermitted(config(), System.nanoTime());
+    }
+
+    /**
+     * 选定供应商后申请调用许可；半开状态下会占用一个探测名额
+     */
+    public boolean tryAcquirePermission(Long providerId) {
+        if (!isEnabled() || providerId == null) {
+            return true;
+        }
+        Breaker breaker = breakers.get(providerId);
+        return breaker == null || breaker.tryAcquirePermission(config(), System.nanoTime());
+    }
+
+    /**
+     * 已申请许可但最终没有发出调用（请求被拒绝、对冲分支被取消）时归还半开探测名额，
+     * 否则名额只占用不释放，熔断器会一直停留在半开状态拒绝所有请求
+     */
+    public void releasePermission(Long providerId) {
+        if (!isEnabled() || providerId == null) {
+            return;
+        }
+        Breaker breaker = breakers.get(providerId);
+        if (breaker != null) {
+            breaker.releasePermission();
+        }
+    }
+
+    public void onSuccess(Long providerId, long durationNanos) {
+        record(providerId, true, durationNanos);
+    }
+
+    public void onFailure(Long providerId, long durationNanos) {
+        record(providerId, false, durationNanos);
+    }
+
+    public State getState(Long providerId) {
+        Breaker breaker = providerId != null ? breakers.get(providerId) : null;
+        return breaker == null ? State.CLOSED : breaker.state;
+    }
+
+    private void record(Long providerId, boolean success, long durationNanos) {
+        if (!isEnabled() || providerId == null) {
+            return;
+        }
+        RoutingConfig.CircuitBreakerConfig config = config();
+        State transitioned = breakers.computeIfAbsent(providerId, id -> new Breaker(config.getBuckets()))
+                .record(config, success, durationNanos, System.nanoTime());
+        if (transitioned != null) {
+            log.warn("Circuit breaker for provider {} transitioned to {}", providerId, transitioned);
+        }
+    }
+
+    private boolean isEnabled() {
+        return config().isEnabled();
+    }
+
+    private RoutingConfig.CircuitBreakerConfig config() {
+        return routingConfig.getCircuitBreaker();
+    }
+
+    /**
+     * 单个供应商的熔断状态，状态迁移在锁内完成；state 为 volatile 以便无锁读取
+     */
+    private static final class Breaker {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] bucketEpochs;
+        private final int[] calls;
+        private final int[] failures;
+        private final int[] slowCalls;
+
+        private volatile State state = State.CLOSED;
+        private long openUntilNanos;
+        private int halfOpenPermits;
+        private int halfOpenSuccesses;
+
+        Breaker(int buckets) {
+            int size = Math.max(1, buckets);
+            bucketEpochs = new long[size];
+            calls = new int[size];
+            failures = new int[size];
+            slowCalls = new int[size];
+            Arrays.fill(bucketEpochs, Long.MIN_VALUE);
+        }
+
+        boolean isCallPermitted(RoutingConfig.CircuitBreakerConfig config, long now) {
+            State current = state;
+            if (current == State.CLOSED) {
+                return true;
+            }
+            lock.lock();
+            try {
+                maybeHalfOpen(now);
+                return state == State.HALF_OPEN && halfOpenPermits < config.getHalfOpenMaxCalls();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean tryAcquirePermission(RoutingConfig.CircuitBreakerConfig config, long now) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            lock.lock();
+            try {
+                maybeHalfOpen(now);
+                if (state == State.CLOSED) {
+                    return true;
+                }
+                if (state == State.HALF_OPEN && halfOpenPermits < config.getHalfOpenMaxCalls()) {
+                    halfOpenPermits++;
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void releasePermission() {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+                    halfOpenPermits--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 记录一次调用结果
+         *
+         * @return 发生状态迁移时返回新状态，否则返回 null
+         */
+        State record(RoutingConfig.CircuitBreakerConfig config, boolean success, long durationNanos, long now) {
+            boolean slow = durationNanos >= config.getSlowCallDuration().toNanos();
+            lock.lock();
+            try {
+                switch (state) {
+                    case OPEN:
+                        // 熔断打开前已发出的请求，结果不再影响状态
+                        return null;
+                    case HALF_OPEN:
+                        if (!success) {
+                            open(config, now);
+                            return State.OPEN;
+                        }
+                        if (++halfOpenSuccesses >= config.getHalfOpenMaxCalls()) {
+                            close();
+                            return State.CLOSED;
+                        }
+                        return null;
+                    default:
+                        addToWindow(config, success, slow, now);
+                        if (shouldTrip(config, now)) {
+                            open(config, now);
+                            return State.OPEN;
+                        }
+                        return null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void maybeHalfOpen(long now) {
+            if (state == State.OPEN && now - openUntilNanos >= 0) {
+                state = State.HALF_OPEN;
+                halfOpenPermits = 0;
+                halfOpenSuccesses = 0;
+            }
+        }
+
+        private void open(RoutingConfig.CircuitBreakerConfig config, long now) {
+            state = State.OPEN;
+            openUntilNanos = now + config.getOpenDuration().toNanos();
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            Arrays.fill(bucketEpochs, Long.MIN_VALUE);
+        }
+
+        private void addToWindow(RoutingConfig.CircuitBreakerConfig config, boolean success, boolean slow, long now) {
+            long epoch = Math.floorDiv(now, bucketNanos(config));
+            int index = (int) Math.floorMod(epoch, (long) bucketEpochs.length);
+            if (bucketEpochs[index] != epoch) {
+                bucketEpochs[index] = epoch;
+                calls[index] = 0;
+                failures[index] = 0;
+                slowCalls[index] = 0;
+            }
+            calls[index]++;
+            if (!success) {
+                failures[index]++;
+            }
+            if (slow) {
+                slowCalls[index]++;
+            }
+        }
+
+        private boolean shouldTrip(RoutingConfig.CircuitBreakerConfig config, long now) {
+            long oldestEpoch = Math.floorDiv(now, bucketNanos(config)) - bucketEpochs.length + 1;
+            int totalCalls = 0;
+            int totalFailures = 0;
+            int totalSlow = 0;
+            for (int i = 0; i < bucketEpochs.length; i++) {
+                if (bucketEpochs[i] >= oldestEpoch) {
+                    totalCalls += calls[i];
+                    totalFailures += failures[i];
+                    totalSlow += slowCalls[i];
+                }
+            }
+            if (totalCalls < Math.max(1, config.getMinimumCalls())) {
+                return false;
+            }
+            return totalFailures >= config.getFailureRateThreshold() * totalCalls
+                    || totalSlow >= config.getSlowCallRateThreshold() * totalCalls;
+        }
+
+        private long bucketNanos(RoutingConfig.CircuitBreakerConfig config) {
+            return Math.max(1L, config.getWindow().toNanos() / bucketEpochs.length);
+        }
+    }
+}
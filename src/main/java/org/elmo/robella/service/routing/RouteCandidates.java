@@ -0,0 +1,83 @@
+package org.elmo.robella.service.routing;
+
+import lombok.Getter;
+import org.elmo.robella.model.entity.PricingTier;
+import org.elmo.robella.model.entity.Provider;
+import org.elmo.robella.model.entity.VendorModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 某个模型调用标识下的候选供应商模型集合（不可变）
+ * version 在候选集合或其定价发生变化时递增，负载均衡器可据此缓存预计算结果。
+ */
+@Getter
+public class RouteCandidates {
+
+    /**
+     * 临时过滤出的候选集合没有稳定版本号，负载均衡器不应缓存其预计算结果
+     */
+    public static final long UNVERSIONED = -1L;
+
+    private final String modelKey;
+    private final long version;
+    private final List<VendorModel> vendorModels;
+    private final Map<Long, Provider> providers;
+    private final Map<Long, List<PricingTier>> pricingTiers;
+
+    RouteCandidates(String modelKey, long version, List<VendorModel> vendorModels,
+                    Map<Long, Provider> providers, Map<Long, List<PricingTier>> pricingTiers) {
+        this.modelKey = modelKey;
+        this.version = version;
+        this.vendorModels = List.copyOf(vendorModels);
+        this.providers = providers;
+        this.pricingTiers = pricingTiers;
+    }
+
+    /**
+     * 按条件过滤候选，没有候选被排除时返回自身（保留版本号），否则返回 {@link #UNVERSIONED} 的副本
+     */
+    public RouteCandidates filter(Predicate<VendorModel> predicate) {
+        List<VendorModel> kept = null;
+        for (int i = 0; i < vendorModels.size(); i++) {
+            VendorModel vendorModel = vendorModels.get(i);
+            boolean keep = predicate.test(vendorModel);
+            if (kept == null && !keep) {
+                kept = new ArrayList<>(vendorModels.subList(0, i));
+            } else if (kept != null && keep) {
+                kept.add(vendorModel);
+            }
+        }
+        return kept == null ? this : new RouteCandidates(modelKey, UNVERSIONED, kept, providers, pricingTiers);
+    }
+
+    public boolean isVersioned() {
+        return version != UNVERSIONED;
+    }
+
+    public boolean isEmpty() {
+        return vendorModels.isEmpty();
+    }
+
+    public int size() {
+        return vendorModels.size();
+    }
+
+    public VendorModel get(int index) {
+        return vendorModels.get(index);
+    }
+
+    public Provider getProvider(VendorModel vendorModel) {
+        return providers.get(vendorModel.getProviderId());
+    }
+
+    /**
+     * 获取供应商模型的定价阶梯（按 tierNumber 升序），没有配置时返回空列表
+     */
+    public List<PricingTier> getPricingTiers(VendorModel vendorModel) {
+        return pricingTiers.getOrDefault(vendorModel.getId(), List.of());
+    }
+}
@@ -0,0 +1,10 @@
+package org.elmo.robella.service.routing;
+
+/**
+ * 路由相关数据（Provider、VendorModel、Model、PricingTier）发生变更的事件
+ * 事务提交后由 RoutingTable 重建路由快照。
+ *
+ * @param source 发生变更的数据类型，仅用于日志
+ */
+public record RoutingDataChangedEvent(String source) {
+}
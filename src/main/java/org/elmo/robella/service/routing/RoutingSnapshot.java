@@ -0,0 +1,54 @@
+package org.elmo.robella.service.routing;
+
+import lombok.Getter;
+import org.elmo.robella.model.entity.Model;
+import org.elmo.robella.model.entity.Provider;
+import org.elmo.robella.service.pricing.PricingStrategy;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路由快照（不可变）
+ * 包含 modelKey → 候选供应商模型、Provider、预构建的计费策略以及已发布模型列表，
+ * 请求路径只读取快照，不访问数据库。
+ */
+@Getter
+public class RoutingSnapshot {
+
+    static final RoutingSnapshot EMPTY = new RoutingSnapshot(0L, Map.of(), Map.of(), Map.of(), Map.of(), List.of());
+
+    private final long version;
+    private final Map<String, RouteCandidates> routes;
+    private final Map<Long, Provider> providers;
+    private final Map<Long, PricingStrategy> pricingStrategies;
+    private final Map<String, Model> models;
+    private final List<Model> publishedModels;
+
+    RoutingSnapshot(long version, Map<String, RouteCandidates> routes, Map<Long, Provider> providers,
+                    Map<Long, PricingStrategy> pricingStrategies, Map<String, Model> models,
+                    List<Model> publishedModels) {
+        this.version = version;
+        this.routes = Map.copyOf(routes);
+        this.providers = Map.copyOf(providers);
+        this.pricingStrategies = Map.copyOf(pricingStrategies);
+        this.models = Map.copyOf(models);
+        this.publishedModels = List.copyOf(publishedModels);
+    }
+
+    public RouteCandidates getRoute(String modelKey) {
+        return modelKey != null ? routes.get(modelKey) : null;
+    }
+
+    public Provider getProvider(Long providerId) {
+        return providerId != null ? providers.get(providerId) : null;
+    }
+
+    public PricingStrategy getPricingStrategy(Long vendorModelId) {
+        return vendorModelId != null ? pricingStrategies.get(vendorModelId) : null;
+    }
+
+    public Model getModel(String modelKey) {
+        return modelKey != null ? models.get(modelKey) : null;
+    }
+}
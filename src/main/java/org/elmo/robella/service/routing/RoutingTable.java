@@ -0,0 +1,195 @@
+package org.elmo.robella.service.routing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.elmo.robella.client.ProviderHttpClientRegistry;
+import org.elmo.robella.mapper.ModelMapper;
+import org.elmo.robella.mapper.PricingTierMapper;
+import org.elmo.robella.mapper.ProviderMapper;
+import org.elmo.robella.mapper.VendorModelMapper;
+import org.elmo.robella.model.entity.Model;
+import org.elmo.robella.model.entity.PricingTier;
+import org.elmo.robella.model.entity.Provider;
+import org.elmo.robella.model.entity.VendorModel;
+import org.elmo.robella.service.pricing.PricingStrategy;
+import org.elmo.robella.service.pricing.PricingStrategyFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 路由表
+ * 持有当前的不可变路由快照，在路由相关数据变更并提交后整体重建并原子替换。
+ * 请求路径通过 {@link #snapshot()} 读取，只做哈希查找，不访问数据库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoutingTable {
+
+    private final VendorModelMapper vendorModelMapper;
+    private final ProviderMapper providerMapper;
+    private final PricingTierMapper pricingTierMapper;
+    private final ModelMapper modelMapper;
+    private final PricingStrategyFactory pricingStrategyFactory;
+    private final ProviderHttpClientRegistry providerHttpClients;
+
+    /** 首次加载失败后，请求路径上的重试间隔 */
+    private static final long LOAD_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final AtomicReference<RoutingSnapshot> current = new AtomicReference<>(RoutingSnapshot.EMPTY);
+    private final AtomicLong versions = new AtomicLong();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile boolean loaded;
+    private volatile boolean loadFailed;
+    private volatile long lastFailedLoadNanos;
+
+    /**
+     * 获取当前路由快照，首次访问时同步加载。
+     * 同一时间只有一个请求执行加载，其余请求以及加载失败后的重试间隔内直接返回空快照，
+     * 数据库不可用时不会因每个请求都重新加载而放大压力
+     */
+    public RoutingSnapshot snapshot() {
+        if (!loaded) {
+            tryLoad();
+        }
+        return current.get();
+    }
+
+    private void tryLoad() {
+        if (loadFailed && System.nanoTime() - lastFailedLoadNanos < LOAD_RETRY_NANOS) {
+            return;
+        }
+        if (!rebuildLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!loaded) {
+                rebuild();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoutingDataChanged(RoutingDataChangedEvent event) {
+        log.debug("Routing data changed ({}), rebuilding routing snapshot", event.source());
+        refresh();
+    }
+
+    /**
+     * 从数据库重建路由快照，失败时保留旧快照
+     */
+    public void refresh() {
+        rebuildLock.lock();
+        try {
+            rebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        try {
+            RoutingSnapshot previous = current.get();
+            RoutingSnapshot snapshot = build(previous);
+            current.set(snapshot);
+            loaded = true;
+            // 删除或修改了配置的供应商，其 HTTP 客户端在下次使用时按新配置重建
+            providerHttpClients.retainAll(snapshot.getProviders().values());
+            log.info("Routing snapshot v{} built: {} model keys, {} providers",
+                    snapshot.getVersion(), snapshot.getRoutes().size(), snapshot.getProviders().size());
+        } catch (Exception e) {
+            if (!loaded) {
+                lastFailedLoadNanos = System.nanoTime();
+                loadFailed = true;
+            }
+            log.error("Failed to rebuild routing snapshot, keeping v{}: {}", current.get().getVersion(), e.getMessage(), e);
+        }
+    }
+
+    private RoutingSnapshot build(RoutingSnapshot previous) {
+        long version = versions.incrementAndGet();
+
+        Map<Long, Provider> providers = providerMapper.selectList(null).stream()
+                .collect(Collectors.toMap(Provider::getId, p -> p, (a, b) -> a));
+
+        Map<Long, List<PricingTier>> tiers = pricingTierMapper.selectList(null).stream()
+                .filter(tier -> tier.getVendorModelId() != null)
+                .collect(Collectors.groupingBy(PricingTier::getVendorModelId, Collectors.collectingAndThen(
+                        Collectors.toList(),
+                        list -> list.stream()
+                                .sorted(Comparator.comparing(PricingTier::getTierNumber,
+                                        Comparator.nullsLast(Comparator.naturalOrder())))
+                                .toList())));
+
+        Map<String, List<VendorModel>> byModelKey = new LinkedHashMap<>();
+        Map<Long, PricingStrategy> pricingStrategies = new HashMap<>();
+        for (VendorModel vendorModel : vendorModelMapper.findByEnabledTrue()) {
+            if (vendorModel.getModelKey() == null || !providers.containsKey(vendorModel.getProviderId())) {
+                continue;
+            }
+            byModelKey.computeIfAbsent(vendorModel.getModelKey(), key -> new ArrayList<>()).add(vendorModel);
+            try {
+                pricingStrategies.put(vendorModel.getId(), pricingStrategyFactory.createPricingStrategy(
+                        vendorModel, tiers.getOrDefault(vendorModel.getId(), List.of())));
+            } catch (Exception e) {
+                log.warn("Failed to build pricing strategy for vendor model {}: {}", vendorModel.getId(), e.getMessage());
+            }
+        }
+
+        Map<String, RouteCandidates> routes = new HashMap<>();
+        byModelKey.forEach((modelKey, vendorModels) -> {
+            vendorModels.sort(Comparator.comparing(VendorModel::getId));
+            routes.put(modelKey, new RouteCandidates(modelKey,
+                    candidateVersion(previous.getRoute(modelKey), vendorModels, tiers, version),
+                    vendorModels, providers, tiers));
+        });
+
+        List<Model> allModels = modelMapper.selectList(null);
+        Map<String, Model> models = allModels.stream()
+                .filter(model -> model.getModelKey() != null)
+                .collect(Collectors.toMap(Model::getModelKey, model -> model, (a, b) -> a));
+        List<Model> publishedModels = allModels.stream()
+                .filter(model -> Boolean.TRUE.equals(model.getPublished()))
+                .toList();
+
+        return new RoutingSnapshot(version, routes, providers, pricingStrategies, models, publishedModels);
+    }
+
+    /**
+     * 候选集合及其定价未变化时沿用旧版本号，避免负载均衡器无谓地重建预计算结果
+     */
+    private long candidateVersion(RouteCandidates previous, List<VendorModel> vendorModels,
+                                  Map<Long, List<PricingTier>> tiers, long version) {
+        if (previous == null || !previous.getVendorModels().equals(vendorModels)) {
+            return version;
+        }
+        for (VendorModel vendorModel : vendorModels) {
+            if (!Objects.equals(previous.getPricingTiers(vendorModel), tiers.getOrDefault(vendorModel.getId(), List.of()))) {
+                return version;
+            }
+        }
+        return previous.getVersion();
+    }
+}
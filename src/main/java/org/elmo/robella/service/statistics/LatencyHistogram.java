@@ -0,0 +1,53 @@
+package org.elmo.robella.service.statistics;
+
+/**
+ * 汇总表中的耗时直方图：固定区间，每个区间记录耗时落在其中（上界含）的请求数
+ * 区间固定，因此不同时间桶、不同维度的直方图可以直接逐项相加合并
+ */
+public final class LatencyHistogram {
+
+    /** 各区间的上界（毫秒），最后一个区间没有上界 */
+    static final long[] UPPER_BOUNDS_MS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    public static final int BUCKETS = UPPER_BOUNDS_MS.length + 1;
+
+    private LatencyHistogram() {
+    }
+
+    public static int bucketOf(long durationMs) {
+        for (int i = 0; i < UPPER_BOUNDS_MS.length; i++) {
+            if (durationMs <= UPPER_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return UPPER_BOUNDS_MS.length;
+    }
+
+    /**
+     * 估算第 q 分位的耗时：找到目标排名所在的区间，在区间内线性插值，并限制在 [minMs, maxMs] 内
+     */
+    public static double percentile(long[] counts, double q, double minMs, double maxMs) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long before = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (before + counts[i] < rank) {
+                before += counts[i];
+                continue;
+            }
+            double lower = Math.max(minMs, i == 0 ? 0 : UPPER_BOUNDS_MS[i - 1]);
+            double upper = Math.min(maxMs, i < UPPER_BOUNDS_MS.length ? UPPER_BOUNDS_MS[i] : maxMs);
+            if (upper < lower) {
+                upper = lower;
+            }
+            return lower + (upper - lower) * (rank - before) / counts[i];
+        }
+        return maxMs;
+    }
+}
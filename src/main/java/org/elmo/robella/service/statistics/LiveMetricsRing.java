@@ -0,0 +1,311 @@
+package org.elmo.robella.service.statistics;
+
+import org.elmo.robella.config.StatisticsConfig;
+import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.model.response.LiveStatsResponse;
+import org.elmo.robella.service.credit.CreditLedger;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 最近一段时间网关流量的内存实时指标
+ * 每个 模型 × 供应商 一个按时间分桶的环形缓冲区（默认 60 分钟 × 1 秒），桶上记录所属时间片，
+ * 写入时发现时间片过期即清零复用，无需后台清理。环上的桶按下标分段加锁，
+ * 写入当前时间桶与读取整个窗口只在同一分段上竞争；不同模型 × 供应商之间互不影响。
+ * <p>
+ * 只反映本实例自启动以来的请求，用于"当前"看板，历史统计仍以汇总表为准。
+ */
+@Component
+public class LiveMetricsRing {
+
+    private final boolean enabled;
+    private final long resolutionMillis;
+    private final int slots;
+    private final int stripes;
+    private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    public LiveMetricsRing(StatisticsConfig statisticsConfig) {
+        StatisticsConfig.LiveConfig config = statisticsConfig.getLive();
+        this.enabled = config.isEnabled();
+        this.resolutionMillis = Math.max(1, config.getResolution().toMillis());
+        this.slots = (int) Math.max(1, config.getWindow().toMillis() / resolutionMillis);
+        this.stripes = Math.max(1, Math.min(config.getStripes(), slots));
+    }
+
+    /**
+     * 记录一条已完成的请求
+     */
+    public void record(RequestLog log) {
+        record(log, System.currentTimeMillis());
+    }
+
+    void record(RequestLog log, long nowMillis) {
+        if (!enabled) {
+            return;
+        }
+        SeriesKey key = new SeriesKey(log.getModelKey() != null ? log.getModelKey() : "",
+                log.getProviderId() != null ? log.getProviderId() : 0L);
+        series.computeIfAbsent(key, k -> new Series(slots, stripes))
+                .add(Math.floorDiv(nowMillis, resolutionMillis), log);
+    }
+
+    /**
+     * 最近 window 内的汇总、各模型 × 供应商汇总以及按 step 划分的时间序列
+     * 窗口不超过配置的保留范围；时间点按步长对齐，最后一个点包含当前尚未结束的时间桶。
+     */
+    public LiveStatsResponse snapshot(Duration window, Duration step) {
+        return snapshot(window, step, System.currentTimeMillis());
+    }
+
+    LiveStatsResponse snapshot(Duration window, Duration step, long nowMillis) {
+        long current = Math.floorDiv(nowMillis, resolutionMillis);
+        int windowSlots = (int) Math.min(slots, Math.max(1, window.toMillis() / resolutionMillis));
+        int stepSlots = (int) Math.min(windowSlots, Math.max(1, step.toMillis() / resolutionMillis));
+        int pointCount = (windowSlots + stepSlots - 1) / stepSlots;
+        long firstPoint = Math.floorDiv(current, stepSlots) * stepSlots - (long) (pointCount - 1) * stepSlots;
+        long first = Math.max(firstPoint, current - slots + 1);
+
+        Counters total = new Counters();
+        Counters[] points = new Counters[pointCount];
+        Arrays.setAll(points, i -> new Counters());
+        List<Map.Entry<SeriesKey, Counters>> perSeries = new ArrayList<>();
+        for (Map.Entry<SeriesKey, Series> entry : series.entrySet()) {
+            Series ring = entry.getValue();
+            if (ring.lastEpoch < current - slots) {
+                // 超出保留范围仍无请求的序列直接移除；与并发写入交错时最多丢失一次实时计数
+                series.remove(entry.getKey(), ring);
+                continue;
+            }
+            Counters counters = new Counters();
+            for (long epoch = first; epoch <= current; epoch++) {
+                ring.collect(epoch, counters, points[(int) ((epoch - firstPoint) / stepSlots)]);
+            }
+            if (counters.requests > 0) {
+                total.merge(counters);
+                perSeries.add(Map.entry(entry.getKey(), counters));
+            }
+        }
+
+        double seconds = Math.max(1, nowMillis - first * resolutionMillis) / 1000.0;
+        perSeries.sort(Comparator.comparingLong((Map.Entry<SeriesKey, Counters> e) -> e.getValue().requests).reversed());
+        List<LiveStatsResponse.LiveSeriesStats> seriesStats = perSeries.stream()
+                .map(e -> LiveStatsResponse.LiveSeriesStats.builder()
+                        .modelKey(e.getKey().modelKey())
+                        .providerId(e.getKey().providerId())
+                        .stats(e.getValue().toStats(seconds))
+                        .build())
+                .toList();
+        List<LiveStatsResponse.LivePoint> timeline = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            timeline.add(LiveStatsResponse.LivePoint.builder()
+                    .timestamp(toTime(firstPoint + (long) i * stepSlots))
+                    .requestCount(points[i].requests)
+                    .errorCount(points[i].errors)
+                    .totalTokens(points[i].totalTokens)
+                    .totalCost(points[i].cost())
+                    .build());
+        }
+        return LiveStatsResponse.builder()
+                .total(total.toStats(seconds))
+                .series(seriesStats)
+                .points(timeline)
+                .stepSeconds((int) (stepSlots * resolutionMillis / 1000))
+                .periodStart(toTime(first))
+                .periodEnd(OffsetDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), ZoneOffset.UTC))
+                .build();
+    }
+
+    private OffsetDateTime toTime(long epoch) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epoch * resolutionMillis), ZoneOffset.UTC);
+    }
+
+    record SeriesKey(String modelKey, long providerId) {
+    }
+
+    /**
+     * 单个模型 × 供应商的环形缓冲区，各指标按桶下标存放在并列数组中
+     */
+    private static final class Series {
+
+        private final ReentrantLock[] locks;
+        private final long[] epochs;
+        private final long[] requests;
+        private final long[] errors;
+        private final long[] durationCount;
+        private final long[] durationSum;
+        private final long[] durationMax;
+        private final long[] firstTokenCount;
+        private final long[] firstTokenSum;
+        private final long[] promptTokens;
+        private final long[] completionTokens;
+        private final long[] totalTokens;
+        private final long[] costMicros;
+
+        private volatile long lastEpoch = Long.MIN_VALUE;
+
+        Series(int slots, int stripes) {
+            locks = new ReentrantLock[stripes];
+            Arrays.setAll(locks, i -> new ReentrantLock());
+            epochs = new long[slots];
+            requests = new long[slots];
+            errors = new long[slots];
+            durationCount = new long[slots];
+            durationSum = new long[slots];
+            durationMax = new long[slots];
+            firstTokenCount = new long[slots];
+            firstTokenSum = new long[slots];
+            promptTokens = new long[slots];
+            completionTokens = new long[slots];
+            totalTokens = new long[slots];
+            costMicros = new long[slots];
+            Arrays.fill(epochs, Long.MIN_VALUE);
+        }
+
+        void add(long epoch, RequestLog log) {
+            int index = (int) Math.floorMod(epoch, (long) epochs.length);
+            ReentrantLock lock = locks[index % locks.length];
+            lock.lock();
+            try {
+                if (epochs[index] != epoch) {
+                    reset(index, epoch);
+                }
+                requests[index]++;
+                if (!Boolean.TRUE.equals(log.getIsSuccess())) {
+                    errors[index]++;
+                }
+                if (log.getDurationMs() != null) {
+                    durationCount[index]++;
+                    durationSum[index] += log.getDurationMs();
+                    durationMax[index] = Math.max(durationMax[index], log.getDurationMs());
+                }
+                if (log.getFirstTokenLatencyMs() != null) {
+                    firstTokenCount[index]++;
+                    firstTokenSum[index] += log.getFirstTokenLatencyMs();
+                }
+                promptTokens[index] += value(log.getPromptTokens());
+                completionTokens[index] += value(log.getCompletionTokens());
+                totalTokens[index] += value(log.getTotalTokens());
+                if (log.getTotalCost() != null) {
+                    costMicros[index] += CreditLedger.toMicros(log.getTotalCost());
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (epoch > lastEpoch) {
+                lastEpoch = epoch;
+            }
+        }
+
+        /**
+         * 把 epoch 时间片的桶累加到各个目标上；桶已被更新的时间片复用时跳过
+         */
+        void collect(long epoch, Counters... targets) {
+            int index = (int) Math.floorMod(epoch, (long) epochs.length);
+            ReentrantLock lock = locks[index % locks.length];
+            lock.lock();
+            try {
+                if (epochs[index] != epoch) {
+                    return;
+                }
+                for (Counters target : targets) {
+                    target.requests += requests[index];
+                    target.errors += errors[index];
+                    target.durationCount += durationCount[index];
+                    target.durationSum += durationSum[index];
+                    target.durationMax = Math.max(target.durationMax, durationMax[index]);
+                    target.firstTokenCount += firstTokenCount[index];
+                    target.firstTokenSum += firstTokenSum[index];
+                    target.promptTokens += promptTokens[index];
+                    target.completionTokens += completionTokens[index];
+                    target.totalTokens += totalTokens[index];
+                    target.costMicros += costMicros[index];
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void reset(int index, long epoch) {
+            epochs[index] = epoch;
+            requests[index] = 0;
+            errors[index] = 0;
+            durationCount[index] = 0;
+            durationSum[index] = 0;
+            durationMax[index] = 0;
+            firstTokenCount[index] = 0;
+            firstTokenSum[index] = 0;
+            promptTokens[index] = 0;
+            completionTokens[index] = 0;
+            totalTokens[index] = 0;
+            costMicros[index] = 0;
+        }
+
+        private static long value(Integer value) {
+            return value != null ? value : 0L;
+        }
+    }
+
+    /**
+     * 读取时的累加器
+     */
+    private static final class Counters {
+        long requests;
+        long errors;
+        long durationCount;
+        long durationSum;
+        long durationMax;
+        long firstTokenCount;
+        long firstTokenSum;
+        long promptTokens;
+        long completionTokens;
+        long totalTokens;
+        long costMicros;
+
+        void merge(Counters other) {
+            requests += other.requests;
+            errors += other.errors;
+            durationCount += other.durationCount;
+            durationSum += other.durationSum;
+            durationMax = Math.max(durationMax, other.durationMax);
+            firstTokenCount += other.firstTokenCount;
+            firstTokenSum += other.firstTokenSum;
+            promptTokens += other.promptTokens;
+            completionTokens += other.completionTokens;
+            totalTokens += other.totalTokens;
+            costMicros += other.costMicros;
+        }
+
+        BigDecimal cost() {
+            return BigDecimal.valueOf(costMicros, 6);
+        }
+
+        LiveStatsResponse.LiveStats toStats(double seconds) {
+            return LiveStatsResponse.LiveStats.builder()
+                    .requestCount(requests)
+                    .errorCount(errors)
+                    .errorRate(requests > 0 ? (double) errors / requests : 0.0)
+                    .requestsPerSecond(requests / seconds)
+                    .averageDurationMs(durationCount > 0 ? (double) durationSum / durationCount : null)
+                    .maxDurationMs(durationCount > 0 ? durationMax : null)
+                    .averageFirstTokenLatencyMs(firstTokenCount > 0 ? (double) firstTokenSum / firstTokenCount : null)
+                    .promptTokens(promptTokens)
+                    .completionTokens(completionTokens)
+                    .totalTokens(totalTokens)
+                    .tokensPerSecond(totalTokens / seconds)
+                    .totalCost(cost())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.elmo.robella.service.statistics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 可合并的分位数草图（对数分桶，思路同 DDSketch）
+ * 正数 x 落入下标为 ceil(log_γ(x)) 的桶，γ = (1 + α) / (1 - α)，取桶的代表值时相对误差不超过 α（1%）。
+ * 桶的划分与数据无关，两个草图逐桶相加即为合并后的草图，因此可以按时间桶、用户、模型分别保存，查询时再合并；
+ * 桶数只随数值范围的对数增长（1ms 到 1 小时约 760 个），与样本数无关。
+ * <p>
+ * 不是线程安全的。
+ */
+public final class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final byte FORMAT_VERSION = 1;
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    /** 小于等于 0 的样本数 */
+    private long zeroCount;
+    private long count;
+
+    public void add(double value) {
+        if (value <= 0 || Double.isNaN(value)) {
+            zeroCount++;
+        } else {
+            buckets.merge((int) Math.ceil(Math.log(value) / LOG_GAMMA), 1L, Long::sum);
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        other.buckets.forEach((index, bucketCount) -> buckets.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 第 q 分位的估计值：排名为 ceil(q * count) 的样本所在桶的代表值；草图为空时返回 0
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = zeroCount;
+        if (seen >= rank) {
+            return 0.0;
+        }
+        int index = buckets.lastKey();
+        for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                index = entry.getKey();
+                break;
+            }
+        }
+        // 桶 (γ^(i-1), γ^i] 中到两端相对误差相同的点
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * 编码为字节：版本、0 值计数、桶数，随后按下标升序写入 [下标差, 计数]，均为变长整数
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + buckets.size() * 3);
+        out.write(FORMAT_VERSION);
+        writeVarLong(out, zeroCount);
+        writeVarLong(out, buckets.size());
+        int previous = 0;
+        for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+            int delta = entry.getKey() - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 31));
+            writeVarLong(out, entry.getValue());
+            previous = entry.getKey();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果还原；null 或空数组视为空草图
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        QuantileSketch sketch = new QuantileSketch();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported quantile sketch version: " + version);
+        }
+        sketch.zeroCount = readVarLong(in);
+        sketch.count = sketch.zeroCount;
+        long size = readVarLong(in);
+        int index = 0;
+        for (long i = 0; i < size; i++) {
+            int zigzag = (int) readVarLong(in);
+            index += (zigzag >>> 1) ^ -(zigzag & 1);
+            long bucketCount = readVarLong(in);
+            sketch.buckets.put(index, bucketCount);
+            sketch.count += bucketCount;
+        }
+        return sketch;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.elmo.robella.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.elmo.robella.mapper.RequestStatsRollupMapper;
+import org.elmo.robella.model.dto.RequestStatsRollup;
+import org.elmo.robella.model.entity.RequestLog;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 请求统计汇总表的增量维护
+ * 一批请求日志先在内存中按 粒度 × 时间桶 × 用户 × 模型 × 供应商 合并，再以 UPSERT 累加到 request_stats_rollup，
+ * 每个汇总行每批只写一次。调用方应与请求日志的写入放在同一事务内，使汇总与明细保持一致。
+ * <p>
+ * 分位数草图无法在 SQL 中累加：UPSERT 通过 RETURNING 取回行中已有的草图，在内存中合并本批增量后写回。
+ * UPSERT 已持有这些行的行锁直到事务结束，读取-合并-写回期间不会与其他事务交错。
+ * 事务提交后通知 {@link StatisticsResultCache}，使迟到写入所涉及的已结束窗口的缓存失效。
+ */
+@Service
+@RequiredArgsConstructor
+public class RequestStatsRollupService {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 200;
+
+    // 固定的行顺序，避免并发事务以不同顺序更新同一批汇总行而死锁
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::granularity)
+            .thenComparing(RollupKey::bucketStart)
+            .thenComparingLong(RollupKey::userId)
+            .thenComparing(RollupKey::modelKey)
+            .thenComparingLong(RollupKey::providerId);
+
+    private final RequestStatsRollupMapper rollupMapper;
+    private final StatisticsResultCache resultCache;
+
+    /**
+     * 把一批已写入（或与本次事务一同写入）的请求日志累加到汇总表
+     */
+    public void record(List<RequestLog> logs) {
+        Map<RollupKey, RollupDelta> deltas = merge(logs);
+        List<RequestStatsRollup> rows = new ArrayList<>(deltas.size());
+        deltas.values().forEach(delta -> rows.add(delta.row()));
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<RequestStatsRollup> current = rollupMapper.upsertBatch(
+                    rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT)));
+            for (RequestStatsRollup stored : current) {
+                RollupDelta delta = deltas.get(keyOf(stored));
+                if (delta == null || (delta.latency().isEmpty() && delta.tps().isEmpty())) {
+                    continue;
+                }
+                stored.setLatencySketch(mergeSketch(stored.getLatencySketch(), delta.latency()));
+                stored.setTpsSketch(mergeSketch(stored.getTpsSketch(), delta.tps()));
+                rollupMapper.updateSketches(stored);
+            }
+        }
+        logs.stream()
+                .map(RequestLog::getCreatedAt)
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .ifPresent(this::invalidateAfterCommit);
+    }
+
+    private void invalidateAfterCommit(OffsetDateTime earliest) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            resultCache.invalidateFrom(earliest);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                resultCache.invalidateFrom(earliest);
+            }
+        });
+    }
+
+    static Map<RollupKey, RollupDelta> merge(List<RequestLog> logs) {
+        Map<RollupKey, RollupDelta> rows = new TreeMap<>(KEY_ORDER);
+        for (RequestLog log : logs) {
+            if (log.getCreatedAt() == null) {
+                continue;
+            }
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                RollupKey key = new RollupKey(granularity.code(), granularity.truncate(log.getCreatedAt()),
+                        log.getUserId() != null ? log.getUserId() : 0L,
+                        log.getModelKey() != null ? log.getModelKey() : "",
+                        log.getProviderId() != null ? log.getProviderId() : 0L);
+                add(rows.computeIfAbsent(key, RequestStatsRollupService::newDelta), log);
+            }
+        }
+        return rows;
+    }
+
+    private static RollupDelta newDelta(RollupKey key) {
+        RequestStatsRollup row = new RequestStatsRollup();
+        row.setGranularity(key.granularity());
+        row.setBucketStart(key.bucketStart());
+        row.setUserId(key.userId());
+        row.setModelKey(key.modelKey());
+        row.setProviderId(key.providerId());
+        row.setLatencyBuckets(new long[LatencyHistogram.BUCKETS]);
+        return new RollupDelta(row, new QuantileSketch(), new QuantileSketch());
+    }
+
+    private static void add(RollupDelta delta, RequestLog log) {
+        RequestStatsRollup row = delta.row();
+        row.setRequestCount(row.getRequestCount() + 1);
+        if (Boolean.TRUE.equals(log.getIsSuccess())) {
+            row.setSuccessCount(row.getSuccessCount() + 1);
+        } else if (Boolean.FALSE.equals(log.getIsSuccess())) {
+            row.setFailureCount(row.getFailureCount() + 1);
+        }
+        if (Boolean.TRUE.equals(log.getIsStream())) {
+            row.setStreamCount(row.getStreamCount() + 1);
+        }
+        if (log.getTotalTokens() != null) {
+            row.setUsageCount(row.getUsageCount() + 1);
+        }
+        row.setPromptTokens(row.getPromptTokens() + value(log.getPromptTokens()));
+        row.setCompletionTokens(row.getCompletionTokens() + value(log.getCompletionTokens()));
+        row.setTotalTokens(row.getTotalTokens() + value(log.getTotalTokens()));
+        if (log.getTotalCost() != null) {
+            row.setCostCount(row.getCostCount() + 1);
+        }
+        row.setInputCost(row.getInputCost().add(amount(log.getInputCost())));
+        row.setOutputCost(row.getOutputCost().add(amount(log.getOutputCost())));
+        row.setTotalCost(row.getTotalCost().add(amount(log.getTotalCost())));
+        if (row.getCurrency() == null) {
+            row.setCurrency(log.getCurrency());
+        }
+        Integer duration = log.getDurationMs();
+        if (duration != null) {
+            row.setDurationCount(row.getDurationCount() + 1);
+            row.setDurationSumMs(row.getDurationSumMs() + duration);
+            row.setDurationMinMs(row.getDurationMinMs() == null ? duration : Math.min(row.getDurationMinMs(), duration));
+            row.setDurationMaxMs(row.getDurationMaxMs() == null ? duration : Math.max(row.getDurationMaxMs(), duration));
+            row.getLatencyBuckets()[LatencyHistogram.bucketOf(duration)]++;
+            delta.latency().add(duration);
+        }
+        if (log.getFirstTokenLatencyMs() != null) {
+            row.setFirstTokenCount(row.getFirstTokenCount() + 1);
+            row.setFirstTokenSumMs(row.getFirstTokenSumMs() + log.getFirstTokenLatencyMs());
+        }
+        BigDecimal tps = log.getTokensPerSecond();
+        if (tps != null) {
+            row.setTpsCount(row.getTpsCount() + 1);
+            row.setTpsSum(row.getTpsSum().add(tps));
+            row.setTpsMin(row.getTpsMin() == null ? tps : row.getTpsMin().min(tps));
+            row.setTpsMax(row.getTpsMax() == null ? tps : row.getTpsMax().max(tps));
+            delta.tps().add(tps.doubleValue());
+        }
+    }
+
+    private static RollupKey keyOf(RequestStatsRollup row) {
+        return new RollupKey(row.getGranularity(), row.getBucketStart().withOffsetSameInstant(ZoneOffset.UTC),
+                row.getUserId(), row.getModelKey(), row.getProviderId());
+    }
+
+    private static byte[] mergeSketch(byte[] stored, QuantileSketch delta) {
+        if (delta.isEmpty()) {
+            return stored;
+        }
+        QuantileSketch sketch = QuantileSketch.fromBytes(stored);
+        sketch.merge(delta);
+        return sketch.toBytes();
+    }
+
+    private static long value(Integer value) {
+        return value != null ? value : 0L;
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    record RollupKey(String granularity, OffsetDateTime bucketStart, long userId, String modelKey, long providerId) {
+    }
+
+    /**
+     * 一个汇总行的增量及其分位数草图
+     */
+    record RollupDelta(RequestStatsRollup row, QuantileSketch latency, QuantileSketch tps) {
+    }
+}
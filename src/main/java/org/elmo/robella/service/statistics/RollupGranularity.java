@@ -0,0 +1,91 @@
+package org.elmo.robella.service.statistics;
+
+import org.elmo.robella.model.dto.RollupSegment;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 汇总表的时间粒度，时间桶按 UTC 对齐
+ */
+public enum RollupGranularity {
+    MINUTE("minute", ChronoUnit.MINUTES),
+    HOUR("hour", ChronoUnit.HOURS),
+    DAY("day", ChronoUnit.DAYS);
+
+    private final String code;
+    private final ChronoUnit unit;
+
+    RollupGranularity(String code, ChronoUnit unit) {
+        this.code = code;
+        this.unit = unit;
+    }
+
+    /**
+     * 写入 granularity 列的值
+     */
+    public String code() {
+        return code;
+    }
+
+    /**
+     * 时间所在桶的起点
+     */
+    public OffsetDateTime truncate(OffsetDateTime time) {
+        return time.withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(unit);
+    }
+
+    /**
+     * 时间所在桶的下一个桶的起点
+     */
+    public OffsetDateTime next(OffsetDateTime time) {
+        return truncate(time).plus(1, unit);
+    }
+
+    private OffsetDateTime ceil(OffsetDateTime time) {
+        OffsetDateTime truncated = truncate(time);
+        return truncated.isEqual(time) ? truncated : truncated.plus(1, unit);
+    }
+
+    /**
+     * 用尽量粗的桶覆盖窗口 [startTime, endTime]：中间的整天用天桶，两端不足一天的部分用小时桶，
+     * 再往外不足一小时的部分用分钟桶，因此查询读取的汇总行数只取决于窗口跨越的天数。
+     * 窗口两端按分钟取整，即统计精度为分钟。
+     */
+    public static List<RollupSegment> cover(OffsetDateTime startTime, OffsetDateTime endTime) {
+        OffsetDateTime start = MINUTE.truncate(startTime);
+        OffsetDateTime end = MINUTE.truncate(endTime).plusMinutes(1);
+        List<RollupSegment> segments = new ArrayList<>();
+        OffsetDateTime hourStart = HOUR.ceil(start);
+        OffsetDateTime hourEnd = HOUR.truncate(end);
+        if (!hourStart.isBefore(hourEnd)) {
+            segments.add(MINUTE.segment(start, end));
+            return segments;
+        }
+        OffsetDateTime dayStart = DAY.ceil(hourStart);
+        OffsetDateTime dayEnd = DAY.truncate(hourEnd);
+        if (dayStart.isBefore(dayEnd)) {
+            segments.add(DAY.segment(dayStart, dayEnd));
+            HOUR.addSegment(segments, hourStart, dayStart);
+            HOUR.addSegment(segments, dayEnd, hourEnd);
+        } else {
+            segments.add(HOUR.segment(hourStart, hourEnd));
+        }
+        MINUTE.addSegment(segments, start, hourStart);
+        MINUTE.addSegment(segments, hourEnd, end);
+        return segments;
+    }
+
+    private RollupSegment segment(OffsetDateTime from, OffsetDateTime to) {
+        return new RollupSegment(code, from, to);
+    }
+
+    private void addSegment(List<RollupSegment> segments, OffsetDateTime from, OffsetDateTime to) {
+        if (from.isBefore(to)) {
+            segments.add(segment(from, to));
+        }
+    }
+}
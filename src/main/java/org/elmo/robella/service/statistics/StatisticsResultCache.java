@@ -0,0 +1,113 @@
+package org.elmo.robella.service.statistics;
+
+import org.elmo.robella.config.StatisticsConfig;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 统计查询结果缓存
+ * 以 查询 × 用户 × 时间窗口 × 附加参数（粒度、条数等）为键缓存汇总表的查询结果。时间窗口由调用方按汇总表的桶边界取整，
+ * 同一分钟内反复轮询的看板命中同一条目。
+ * <p>
+ * 窗口在 {@link #settledBefore()} 之前结束的结果视为已结束，长期缓存；迟到的请求日志（如本地日志回放）写入汇总表后
+ * 通过 {@link #invalidateFrom} 使受影响的已结束条目失效。仍包含正在写入时间段的结果只短暂缓存。
+ * 缓存的结果会被多个请求共享，调用方不得修改。
+ */
+@Component
+public class StatisticsResultCache {
+
+    private final StatisticsConfig.CacheConfig config;
+    private final Map<CacheKey, Entry> entries = new ConcurrentHashMap<>();
+
+    public StatisticsResultCache(StatisticsConfig statisticsConfig) {
+        this.config = statisticsConfig.getCache();
+    }
+
+    /**
+     * 取窗口 [from, to) 的查询结果，未命中时调用 loader 查询并缓存
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String query, Long userId, OffsetDateTime from, OffsetDateTime to, String qualifier, Supplier<T> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+        CacheKey key = new CacheKey(query, userId, from.toInstant(), to.toInstant(), qualifier);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.isExpired(now)) {
+            return (T) entry.value();
+        }
+        boolean closed = !to.isAfter(settledBefore());
+        T value = loader.get();
+        if (entries.size() >= config.getMaxSize()) {
+            evict();
+        }
+        long ttlNanos = (closed ? config.getClosedTtl() : config.getOpenTtl()).toNanos();
+        entries.put(key, new Entry(value, closed, System.nanoTime() + ttlNanos));
+        return value;
+    }
+
+    /**
+     * 在此之前结束的时间段不再有新的请求日志写入
+     */
+    public OffsetDateTime settledBefore() {
+        return OffsetDateTime.now(ZoneOffset.UTC).minus(config.getSettleDelay());
+    }
+
+    /**
+     * 汇总表中 time 及之后的时间桶有变化时，移除窗口与之重叠的已结束条目
+     */
+    public void invalidateFrom(OffsetDateTime time) {
+        // 已结束条目的窗口都在 settledBefore 之前，正常写入（时间接近当前）不会影响它们
+        if (entries.isEmpty() || !time.isBefore(settledBefore())) {
+            return;
+        }
+        Instant changed = time.toInstant();
+        entries.entrySet().removeIf(e -> e.getValue().closed() && e.getKey().to().isAfter(changed));
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 先清理过期项，仍然超出容量时淘汰最早到期的条目
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        while (entries.size() >= config.getMaxSize()) {
+            CacheKey oldest = null;
+            long oldestDeadline = Long.MAX_VALUE;
+            for (Map.Entry<CacheKey, Entry> e : entries.entrySet()) {
+                if (e.getValue().deadlineNanos() < oldestDeadline) {
+                    oldestDeadline = e.getValue().deadlineNanos();
+                    oldest = e.getKey();
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest);
+        }
+    }
+
+    private record CacheKey(String query, Long userId, Instant from, Instant to, String qualifier) {
+    }
+
+    private record Entry(Object value, boolean closed, long deadlineNanos) {
+        boolean isExpired(long now) {
+            return now - deadlineNanos >= 0;
+        }
+    }
+}
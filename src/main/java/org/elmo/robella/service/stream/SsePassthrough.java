@@ -0,0 +1,69 @@
+package org.elmo.robella.service.stream;
+
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.elmo.robella.exception.ClientDisconnectedException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 原始 SSE 透传
+ * 上游响应体按读到的块原样写入客户端输出流，不解码、不解析、不重新序列化；
+ * 同一块字节随后交给 {@link SseStreamScanner} 提取请求日志需要的信息。
+ * 关闭时释放上游连接（未读完时直接断开）并完成请求日志。
+ */
+public class SsePassthrough implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Response response;
+    private final SseStreamScanner scanner;
+    private final Runnable onClose;
+    private boolean closed;
+
+    public SsePassthrough(Response response, SseStreamScanner scanner, Runnable onClose) {
+        this.response = response;
+        this.scanner = scanner;
+        this.onClose = onClose;
+    }
+
+    /**
+     * 转发直到上游结束
+     *
+     * @return 转发的字节数
+     * @throws ClientDisconnectedException 写入客户端失败
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        BufferedSource source = response.body().source();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            try {
+                out.write(buffer, 0, read);
+                out.flush();
+            } catch (IOException e) {
+                throw new ClientDisconnectedException(e);
+            }
+            // 只扫描已送达客户端的字节，断开时按实际转发的内容计费
+            scanner.feed(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            response.close();
+        } finally {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.elmo.robella.service.stream;
+
+import org.elmo.robella.config.StreamingConfig;
+import org.elmo.robella.exception.ClientDisconnectedException;
+import org.elmo.robella.util.JsonUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接写入 Servlet 输出流的 SSE 写入器
+ * 事件在复用的缓冲区中编码为 {@code event:} / {@code data:} 帧，JSON 直接序列化为 UTF-8 字节，
+ * 不经过消息转换器。增量事件按配置合并刷新：缓冲超过上限或距上次刷新超过间隔时才写出，
+ * 其余事件（首个事件、结构性事件、结束标记）立即刷新。
+ * 合并只在写入时判断，不另起定时器：一段停顿前的最后几个增量会随下一个事件或流结束一起写出。
+ * 非线程安全，与请求线程绑定。
+ */
+public class SseResponseWriter {
+
+    private static final byte[] EVENT = "event: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA = "data: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final JsonUtils jsonUtils;
+    private final long flushIntervalNanos;
+    private final long maxBuffered;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+    private long lastFlush = System.nanoTime();
+    private boolean started;
+
+    public SseResponseWriter(OutputStream out, JsonUtils jsonUtils, StreamingConfig.FlushConfig flush) {
+        this.out = out;
+        this.jsonUtils = jsonUtils;
+        this.flushIntervalNanos = flush.getInterval().toNanos();
+        this.maxBuffered = flush.getMaxBuffered().toBytes();
+    }
+
+    /**
+     * 写入增量事件，按合并策略决定是否刷新
+     *
+     * @param event 事件名，为 null 时只写 data 行
+     */
+    public void write(String event, Object data) throws IOException {
+        encode(event, data);
+        if (!started || buffer.size() >= maxBuffered || System.nanoTime() - lastFlush >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * 写入事件并立即刷新，用于结构性事件和结束标记
+     */
+    public void writeAndFlush(String event, Object data) throws IOException {
+        encode(event, data);
+        flush();
+    }
+
+    /**
+     * 写入原样的 data 内容（如 [DONE]）并立即刷新
+     */
+    public void writeRawAndFlush(byte[] data) throws IOException {
+        buffer.write(DATA);
+        buffer.write(data);
+        buffer.write(EVENT_END);
+        flush();
+    }
+
+    /**
+     * 写出缓冲区内容
+     *
+     * @throws ClientDisconnectedException 写入客户端失败
+     */
+    public void flush() throws IOException {
+        try {
+            if (buffer.size() > 0) {
+                buffer.writeTo(out);
+                buffer.reset();
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new ClientDisconnectedException(e);
+        }
+        lastFlush = System.nanoTime();
+        started = true;
+    }
+
+    private void encode(String event, Object data) throws IOException {
+        if (event != null) {
+            buffer.write(EVENT);
+            buffer.write(event.getBytes(StandardCharsets.UTF_8));
+            buffer.write('\n');
+        }
+        // JSON 中的换行都已转义，一个 data 行即可容纳整个事件
+        buffer.write(DATA);
+        jsonUtils.writeJson(buffer, data);
+        buffer.write(EVENT_END);
+    }
+}
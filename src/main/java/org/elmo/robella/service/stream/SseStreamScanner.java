@@ -0,0 +1,50 @@
+package org.elmo.robella.service.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import okio.Buffer;
+import org.elmo.robella.util.SseFrame;
+import org.elmo.robella.util.SseFrameDecoder;
+
+import java.io.IOException;
+
+/**
+ * 透传 SSE 时的增量扫描器
+ * 原始字节原样转发给客户端的同时喂给扫描器，扫描器用 {@link SseFrameDecoder} 切分出事件，
+ * 由子类从中提取首 token 时间和 usage 供请求日志使用，不构造完整的响应对象。
+ * 扫描失败只记录日志，不影响转发。
+ */
+@Slf4j
+public abstract class SseStreamScanner {
+
+    /** 尚未凑成完整事件的字节 */
+    private final Buffer pending = new Buffer();
+    private final SseFrameDecoder decoder = new SseFrameDecoder(pending);
+
+    /**
+     * 扫描一段从上游读到的字节，可在任意位置截断
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        pending.write(bytes, offset, length);
+        try {
+            SseFrame frame;
+            while ((frame = decoder.next()) != null) {
+                scan(frame);
+            }
+        } catch (IOException e) {
+            log.debug("Failed to decode SSE event: {}", e.getMessage());
+        }
+    }
+
+    private void scan(SseFrame frame) {
+        try {
+            onEvent(frame);
+        } catch (Exception e) {
+            log.debug("Failed to scan SSE event: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一个完整的事件；frame 只在本次调用内有效
+     */
+    protected abstract void onEvent(SseFrame frame) throws Exception;
+}
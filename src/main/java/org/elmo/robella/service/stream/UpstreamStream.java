@@ -0,0 +1,23 @@
+package org.elmo.robella.service.stream;
+
+import org.elmo.robella.model.internal.UnifiedStreamChunk;
+
+import java.util.stream.Stream;
+
+/**
+ * 上游流式响应：客户端端点与供应商端点格式相同时为原始 SSE 透传，否则为统一格式的分块流
+ */
+public record UpstreamStream(SsePassthrough passthrough, Stream<UnifiedStreamChunk> chunks) {
+
+    public static UpstreamStream passthrough(SsePassthrough passthrough) {
+        return new UpstreamStream(passthrough, null);
+    }
+
+    public static UpstreamStream unified(Stream<UnifiedStreamChunk> chunks) {
+        return new UpstreamStream(null, chunks);
+    }
+
+    public boolean isPassthrough() {
+        return passthrough != null;
+    }
+}
@@ -0,0 +1,90 @@
+package org.elmo.robella.service.stream.anthropic;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.elmo.robella.client.logging.ClientRequestLogger;
+import org.elmo.robella.model.anthropic.stream.AnthropicStreamEvent;
+import org.elmo.robella.service.stream.SseStreamScanner;
+import org.elmo.robella.util.JsonUtils;
+import org.elmo.robella.util.SseFrame;
+
+import java.io.IOException;
+
+/**
+ * Anthropic 流式透传扫描器
+ * 按事件名分派：message_start / content_block_start 记录首 token，content_block_delta 只取出增量文本，
+ * 只有带 usage 的 message_delta 才完整解析并交给 {@link ClientRequestLogger}。
+ */
+public class AnthropicStreamScanner extends SseStreamScanner {
+
+    private final ClientRequestLogger clientRequestLogger;
+    private final JsonUtils jsonUtils;
+    private boolean firstToken;
+
+    public AnthropicStreamScanner(ClientRequestLogger clientRequestLogger, JsonUtils jsonUtils) {
+        this.clientRequestLogger = clientRequestLogger;
+        this.jsonUtils = jsonUtils;
+    }
+
+    @Override
+    protected void onEvent(SseFrame frame) throws IOException {
+        byte[] data = frame.data();
+        int length = frame.length();
+        String type = frame.event() != null ? frame.event() : readType(data, length);
+        if (type == null) {
+            return;
+        }
+        switch (type) {
+            case "message_start", "content_block_start" -> {
+                if (!firstToken) {
+                    firstToken = true;
+                    clientRequestLogger.markFirstToken();
+                }
+            }
+            case "content_block_delta" -> collectText(data, length);
+            case "message_delta" -> {
+                AnthropicStreamEvent delta = jsonUtils.fromJson(data, 0, length, AnthropicStreamEvent.class);
+                if (delta != null) {
+                    clientRequestLogger.logStreamChunk(delta);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void collectText(byte[] data, int length) throws IOException {
+        try (JsonParser parser = jsonUtils.createParser(data, 0, length)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                String name = parser.currentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING
+                        && ("text".equals(name) || "partial_json".equals(name) || "thinking".equals(name))) {
+                    clientRequestLogger.logStreamText(parser.getText());
+                }
+            }
+        }
+    }
+
+    /**
+     * 没有 event 字段时取顶层的 type
+     */
+    private String readType(byte[] data, int length) throws IOException {
+        try (JsonParser parser = jsonUtils.createParser(data, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if ("type".equals(name)) {
+                    return parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+}
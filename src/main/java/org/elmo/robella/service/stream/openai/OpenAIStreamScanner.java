@@ -0,0 +1,71 @@
+package org.elmo.robella.service.stream.openai;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.elmo.robella.client.logging.ClientRequestLogger;
+import org.elmo.robella.model.openai.stream.ChatCompletionChunk;
+import org.elmo.robella.service.stream.SseStreamScanner;
+import org.elmo.robella.util.JsonUtils;
+import org.elmo.robella.util.SseFrame;
+
+import java.io.IOException;
+
+/**
+ * OpenAI 流式透传扫描器
+ * 每个分块只用 JsonParser 顺序读一遍：出现非空 choices 时记录首 token，收集 delta 中的文本供计数；
+ * 只有带 usage 的分块（通常是最后一个）才完整解析并交给 {@link ClientRequestLogger}。
+ */
+public class OpenAIStreamScanner extends SseStreamScanner {
+
+    private static final byte[] DONE = {'[', 'D', 'O', 'N', 'E', ']'};
+
+    private final ClientRequestLogger clientRequestLogger;
+    private final JsonUtils jsonUtils;
+    private boolean firstToken;
+
+    public OpenAIStreamScanner(ClientRequestLogger clientRequestLogger, JsonUtils jsonUtils) {
+        this.clientRequestLogger = clientRequestLogger;
+        this.jsonUtils = jsonUtils;
+    }
+
+    @Override
+    protected void onEvent(SseFrame frame) throws IOException {
+        if (frame.dataEquals(DONE)) {
+            return;
+        }
+        byte[] data = frame.data();
+        int length = frame.length();
+        boolean choices = false;
+        boolean usage = false;
+        try (JsonParser parser = jsonUtils.createParser(data, 0, length)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "choices" -> choices |= value == JsonToken.START_ARRAY && parser.nextToken() == JsonToken.START_OBJECT;
+                    case "usage" -> usage |= value == JsonToken.START_OBJECT;
+                    case "content", "reasoning_content", "refusal", "arguments" -> {
+                        if (value == JsonToken.VALUE_STRING) {
+                            clientRequestLogger.logStreamText(parser.getText());
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+        if (usage) {
+            ChatCompletionChunk chunk = jsonUtils.fromJson(data, 0, length, ChatCompletionChunk.class);
+            if (chunk != null) {
+                clientRequestLogger.logStreamChunk(chunk);
+            }
+        }
+        if (choices && !firstToken) {
+            firstToken = true;
+            clientRequestLogger.markFirstToken();
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.elmo.robella.model.enums.PricingStrategyType;
 import org.elmo.robella.service.pricing.PricingStrategyFactory;
 import org.elmo.robella.service.pricing.PricingStrategy;
 import org.elmo.robella.service.pricing.PricingValidationService;
+import org.elmo.robella.service.routing.RoutingTable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -23,6 +24,7 @@ public class BillingUtils {
     private final ExchangeRateService exchangeRateService;
     private final PricingStrategyFactory pricingStrategyFactory;
     private final PricingValidationService validationService;
+    private final RoutingTable routingTable;
 
     /**
      * 计算请求成本
@@ -38,8 +40,11 @@ public class BillingUtils {
 
         VendorModel vendorModel = context.getVendorModel();
         
-        // 使用计费策略工厂获取合适的计费策略
-        PricingStrategy pricingStrategy = pricingStrategyFactory.createPricingStrategy(vendorModel);
+        // 优先使用路由快照中预构建的计费策略，不存在时再通过工厂创建
+        PricingStrategy pricingStrategy = routingTable.snapshot().getPricingStrategy(vendorModel.getId());
+        if (pricingStrategy == null) {
+            pricingStrategy = pricingStrategyFactory.createPricingStrategy(vendorModel);
+        }
         
         // 获取输入令牌数量
         long inputTokens = 0;
@@ -2,12 +2,17 @@ package org.elmo.robella.util;
 
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -31,4 +36,30 @@ public class JsonUtils {
             return null;
         }
     }
+
+    /**
+     * 直接以 UTF-8 写入输出流，不经过中间字符串；不关闭 out
+     */
+    public void writeJson(OutputStream out, Object obj) throws IOException {
+        objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, obj);
+    }
+
+    /**
+     * 直接从 UTF-8 字节解析，省去先解码为字符串
+     */
+    public <T> T fromJson(byte[] json, int offset, int length, Class<T> clazz) {
+        try {
+            return objectMapper.readValue(json, offset, length, clazz);
+        } catch (IOException e) {
+            log.error("Failed to deserialize JSON to object", e);
+            return null;
+        }
+    }
+
+    /**
+     * 创建流式解析器，用于只读取少数字段的场景
+     */
+    public JsonParser createParser(byte[] json, int offset, int length) throws IOException {
+        return objectMapper.getFactory().createParser(json, offset, length);
+    }
 }
\ No newline at end of file
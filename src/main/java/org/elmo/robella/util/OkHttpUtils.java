@@ -5,18 +5,22 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.elmo.robella.config.OkHttpConfig;
+import org.elmo.robella.config.RoutingConfig;
+import org.elmo.robella.context.RequestContextHolder;
+import org.elmo.robella.exception.UpstreamHttpException;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * OkHttp工具类
@@ -30,6 +34,7 @@ public class OkHttpUtils {
     private final OkHttpClient okHttpClient;
     private final ObjectMapper objectMapper;
     private final OkHttpConfig config;
+    private final RoutingConfig routingConfig;
 
     /**
      * 发送GET请求
@@ -89,6 +94,26 @@ public class OkHttpUtils {
         return executeCall(builder.post(requestBody).build());
     }
 
+    /**
+     * 使用指定客户端发送POST请求（JSON格式，带请求头），用于调用供应商接口。
+     * 开启故障转移时只尝试一次，失败后由 UnifiedService 切换到其它候选供应商，
+     * 而不是在同一个供应商上退避重试
+     *
+     * @param client  供应商的 HTTP 客户端
+     * @param url     请求URL
+     * @param body    请求体
+     * @param headers 请求头
+     * @return 响应内容
+     */
+    public String postJson(OkHttpClient client, String url, Object body, Map<String, String> headers) throws IOException {
+        String jsonBody = objectMapper.writeValueAsString(body);
+        RequestBody requestBody = RequestBody.create(jsonBody, MediaType.get("application/json; charset=utf-8"));
+        Request.Builder builder = new Request.Builder().url(url);
+        addHeaders(builder, headers);
+        int maxAttempts = routingConfig.getFailover().isEnabled() ? 1 : retryAttempts();
+        return executeCall(client, builder.post(requestBody).build(), maxAttempts);
+    }
+
     /**
      * 发送POST请求（表单格式）
      *
@@ -220,13 +245,66 @@ public class OkHttpUtils {
 
     /**
      * 发送POST请求获取流式响应（Server-Sent Events）
+     * 直接在响应体字节上切分事件，每个事件交给 parser 解析，返回 null 的事件被跳过。
+     * 传给 parser 的 {@link SseFrame} 会被复用，parser 不能保留它。
      *
+     * @param client  流式调用的 HTTP 客户端
      * @param url     请求URL
      * @param body    请求体
      * @param headers 请求头
-     * @return 流式响应字符串流
+     * @param parser  事件解析函数
+     * @return 解析后的事件流，关闭时释放连接
      */
-    public Stream<String> postStream(String url, Object body, Map<String, String> headers) throws IOException {
+    public <T> Stream<T> postStream(OkHttpClient client, String url, Object body, Map<String, String> headers,
+                                    Function<SseFrame, T> parser) throws IOException {
+        Response response = openStream(client, url, body, headers);
+        SseFrameDecoder decoder = new SseFrameDecoder(response.body().source());
+
+        Spliterator<T> events = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean first = true;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    SseFrame frame;
+                    while ((frame = decoder.next()) != null) {
+                        if (first) {
+                            first = false;
+                            log.info("First event actually arrived at {}", System.currentTimeMillis());
+                        }
+                        T value = parser.apply(frame);
+                        if (value != null) {
+                            action.accept(value);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(events, false)
+                .onClose(() -> {
+                    try {
+                        response.close();
+                    } catch (Exception e) {
+                        log.warn("Error closing response: {}", e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 发送POST流式请求，返回状态码成功、响应体尚未读取的响应，由调用方读取并关闭
+     *
+     * @param client  流式调用的 HTTP 客户端，读超时应已按流式放宽
+     * @param url     请求URL
+     * @param body    请求体
+     * @param headers 请求头
+     * @return 未读取的流式响应
+     */
+    public Response openStream(OkHttpClient client, String url, Object body, Map<String, String> headers) throws IOException {
         String jsonBody = objectMapper.writeValueAsString(body);
         RequestBody requestBody = RequestBody.create(jsonBody, MediaType.get("application/json; charset=utf-8"));
 
@@ -245,74 +323,61 @@ public class OkHttpUtils {
             log.debug("Request headers: {}", request.headers());
         }
 
-        // 创建自定义超时的OkHttpClient用于流式请求
-        OkHttpClient streamClient = okHttpClient.newBuilder()
-                .readTimeout(config.getTimeout().getRead().multipliedBy(5).toMillis(), TimeUnit.MILLISECONDS)
-                .build();
-
-        Response response = null;
-        BufferedReader reader = null;
-        
+        Response response = newCall(client, request).execute();
         try {
-            response = streamClient.newCall(request).execute();
-
             if (!response.isSuccessful()) {
                 String errorBody = response.body() != null ? response.body().string() : "No error body";
-                throw new IOException("HTTP " + response.code() + ": " + errorBody);
+                throw new UpstreamHttpException(response.code(), errorBody);
             }
 
             if (response.body() == null) {
                 throw new IOException("Response body is null");
             }
-
-            // 明确指定UTF-8编码
-            reader = new BufferedReader(new InputStreamReader(response.body().byteStream(), StandardCharsets.UTF_8));
-            
-            // 为了确保资源正确关闭，需要保存引用
-            final Response finalResponse = response;
-            final BufferedReader finalReader = reader;
-
-            AtomicBoolean first = new AtomicBoolean(true);
-            return reader.lines()
-                    .peek(line -> {
-                        if (first.compareAndSet(true, false)) {
-                            log.info("First line actually arrived at {}", System.currentTimeMillis());
-                        }
-                    })
-                    .onClose(() -> {
-                        try {
-                            finalReader.close();
-                        } catch (IOException e) {
-                            log.warn("Error closing reader: {}", e.getMessage());
-                        }
-                        try {
-                            finalResponse.close();
-                        } catch (Exception e) {
-                            log.warn("Error closing response: {}", e.getMessage());
-                        }
-                    })
-                    // 处理SSE格式，过滤空行和注释行
-                    .filter(line -> line != null && !line.trim().isEmpty() && !line.trim().startsWith(":"));
+            return response;
         } catch (IOException e) {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception ex) {
-                    log.warn("Error closing response in exception handler: {}", ex.getMessage());
-                }
+            try {
+                response.close();
+            } catch (Exception ex) {
+                log.warn("Error closing response in exception handler: {}", ex.getMessage());
             }
             throw e;
         }
     }
 
+    /**
+     * 创建 Call 并绑定到当前请求上下文的上游调用句柄，以便其它线程取消
+     */
+    private Call newCall(OkHttpClient client, Request request) {
+        Call call = client.newCall(request);
+        UpstreamCallHandle handle = RequestContextHolder.getContext().getUpstreamCall();
+        if (handle != null) {
+            handle.bind(call);
+        }
+        return call;
+    }
+
+    private boolean isCancelled() {
+        UpstreamCallHandle handle = RequestContextHolder.getContext().getUpstreamCall();
+        return handle != null && handle.isCancelled();
+    }
+
     /**
      * 执行HTTP请求（带重试机制）
      */
     private String executeCall(Request request) throws IOException {
+        return executeCall(okHttpClient, request, retryAttempts());
+    }
+
+    private int retryAttempts() {
+        OkHttpConfig.RetryConfig retry = config.getRetry();
+        return retry.isEnabled() ? Math.max(1, retry.getMaxAttempts()) : 1;
+    }
+
+    private String executeCall(OkHttpClient client, Request request, int maxAttempts) throws IOException {
         int attempt = 0;
         IOException lastException = null;
 
-        while (attempt < config.getRetry().getMaxAttempts()) {
+        while (attempt < maxAttempts) {
             try {
                 if (config.getBuffer().isEnableLogging()) {
                     log.debug("Sending request to: {}", request.url());
@@ -322,12 +387,12 @@ public class OkHttpUtils {
                     }
                 }
 
-                try (Response response = okHttpClient.newCall(request).execute()) {
+                try (Response response = newCall(client, request).execute()) {
                     String responseBody = Objects.requireNonNull(response.body()).string();
 
                     if (!response.isSuccessful()) {
                         log.warn("HTTP request failed with status: {}, response: {}", response.code(), responseBody);
-                        throw new IOException("HTTP " + response.code() + ": " + responseBody);
+                        throw new UpstreamHttpException(response.code(), responseBody);
                     }
 
                     if (config.getBuffer().isEnableLogging()) {
@@ -343,10 +408,18 @@ public class OkHttpUtils {
                 lastException = e;
                 attempt++;
 
-                if (attempt < config.getRetry().getMaxAttempts()) {
+                // 请求本身有误（非 429 的 4xx）或调用已被取消时重试没有意义
+                if (e instanceof UpstreamHttpException httpException && !httpException.isUpstreamFault()) {
+                    throw e;
+                }
+                if (isCancelled()) {
+                    throw e;
+                }
+
+                if (attempt < maxAttempts) {
                     long delayMs = calculateDelay(attempt);
                     log.warn("Request failed (attempt {}/{}), retrying in {}ms: {}",
-                            attempt, config.getRetry().getMaxAttempts(), delayMs, e.getMessage());
+                            attempt, maxAttempts, delayMs, e.getMessage());
 
                     try {
                         Thread.sleep(delayMs);
@@ -355,7 +428,7 @@ public class OkHttpUtils {
                         throw new IOException("Request interrupted", ie);
                     }
                 } else {
-                    log.error("Request failed after {} attempts: {}", config.getRetry().getMaxAttempts(), e.getMessage());
+                    log.error("Request failed after {} attempts: {}", maxAttempts, e.getMessage());
                 }
             }
         }
@@ -0,0 +1,45 @@
+package org.elmo.robella.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 由 {@link SseFrameDecoder} 解出的一个 SSE 事件
+ * 同一解码器每次返回同一个实例，data 直接指向解码器内部缓冲区，只在取下一个事件之前有效；
+ * 需要保留时自行复制或解析。
+ */
+public final class SseFrame {
+
+    String event;
+    byte[] data;
+    int length;
+
+    SseFrame() {
+    }
+
+    /**
+     * 事件名，没有 event 字段时为 null
+     */
+    public String event() {
+        return event;
+    }
+
+    /**
+     * 多个 data 字段以 \n 拼接后的 UTF-8 字节，有效范围为 [0, length())
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean dataEquals(byte[] expected) {
+        return Arrays.equals(data, 0, length, expected, 0, expected.length);
+    }
+
+    public String dataAsString() {
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,162 @@
+package org.elmo.robella.util;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 按 SSE 规范在字节层面切分事件
+ * 直接从 Okio {@link BufferedSource} 读取：支持 CRLF / LF / CR 换行、注释行、event 字段和多行 data，
+ * 不把每行解码为字符串，行缓冲、data 缓冲和返回的 {@link SseFrame} 都在解码器内复用。
+ * id 与 retry 字段与转发无关，直接忽略。
+ *
+ * <p>源读尽仍没有换行时返回 null，未成行的字节留在源中：对网络流即结束，
+ * 对 {@link okio.Buffer} 则可以追加数据后继续调用。非线程安全。
+ */
+public class SseFrameDecoder {
+
+    private static final ByteString LINE_END = ByteString.encodeUtf8("\r\n");
+    private static final byte[] DATA = "data".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT = "event".getBytes(StandardCharsets.US_ASCII);
+
+    private final BufferedSource source;
+    private final SseFrame frame = new SseFrame();
+
+    private byte[] line = new byte[256];
+    private byte[] data = new byte[1024];
+    private int dataLength;
+    private boolean hasData;
+    private String event;
+    private String lastEvent;
+    /** 上一行以 CR 结束，紧随其后的 LF 属于同一个换行 */
+    private boolean skipLf;
+
+    public SseFrameDecoder(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * 读取下一个带 data 的事件，返回的实例在下次调用前有效
+     *
+     * @return 事件，源中没有完整事件时为 null
+     */
+    public SseFrame next() throws IOException {
+        int length;
+        while ((length = readLine()) >= 0) {
+            if (length == 0) {
+                if (dispatch()) {
+                    return frame;
+                }
+            } else {
+                processLine(length);
+            }
+        }
+        return null;
+    }
+
+    private int readLine() throws IOException {
+        if (skipLf) {
+            if (!source.request(1)) {
+                return -1;
+            }
+            if (source.getBuffer().getByte(0) == '\n') {
+                source.skip(1);
+            }
+            skipLf = false;
+        }
+        long end = source.indexOfElement(LINE_END);
+        if (end < 0) {
+            return -1;
+        }
+        if (end > Integer.MAX_VALUE - 8) {
+            throw new IOException("SSE line too long: " + end);
+        }
+        int length = (int) end;
+        if (length > line.length) {
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        for (int read = 0; read < length; ) {
+            read += source.read(line, read, length - read);
+        }
+        skipLf = source.readByte() == '\r';
+        return length;
+    }
+
+    private void processLine(int length) {
+        if (line[0] == ':') {
+            return;
+        }
+        int colon = indexOf(line, length, (byte) ':');
+        int nameLength = colon < 0 ? length : colon;
+        int valueStart = colon < 0 ? length : colon + 1;
+        if (valueStart < length && line[valueStart] == ' ') {
+            valueStart++;
+        }
+        if (fieldIs(DATA, nameLength)) {
+            appendData(valueStart, length);
+        } else if (fieldIs(EVENT, nameLength)) {
+            setEvent(valueStart, length);
+        }
+    }
+
+    private boolean fieldIs(byte[] name, int nameLength) {
+        return Arrays.equals(line, 0, nameLength, name, 0, name.length);
+    }
+
+    private void appendData(int start, int end) {
+        int needed = dataLength + (hasData ? 1 : 0) + end - start;
+        if (needed > data.length) {
+            data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+        }
+        if (hasData) {
+            data[dataLength++] = '\n';
+        }
+        System.arraycopy(line, start, data, dataLength, end - start);
+        dataLength += end - start;
+        hasData = true;
+    }
+
+    /**
+     * 事件名通常在整条流里只有少数几种，与上一个相同时复用字符串
+     */
+    private void setEvent(int start, int end) {
+        if (lastEvent == null || lastEvent.length() != end - start || !asciiEquals(lastEvent, start, end)) {
+            lastEvent = new String(line, start, end - start, StandardCharsets.UTF_8);
+        }
+        event = lastEvent;
+    }
+
+    private boolean asciiEquals(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line[i] != value.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean dispatch() {
+        boolean dispatched = hasData;
+        if (dispatched) {
+            frame.event = event;
+            frame.data = data;
+            frame.length = dataLength;
+        }
+        dataLength = 0;
+        hasData = false;
+        event = null;
+        return dispatched;
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte b) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,68 @@
+package org.elmo.robella.util;
+
+import okhttp3.Call;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 上游调用句柄
+ * 绑定当前正在执行的 OkHttp Call，使其它线程可以取消该调用（如对冲请求的落败方）。
+ * 同一请求的多个对冲分支共享一个结算标记，只有率先 claim 成功的分支会被计费。
+ */
+public class UpstreamCallHandle {
+
+    private final AtomicBoolean settlement;
+    private volatile Call call;
+    private volatile boolean cancelled;
+    private volatile boolean settlementOwner;
+
+    public UpstreamCallHandle() {
+        this(new AtomicBoolean());
+    }
+
+    public UpstreamCallHandle(AtomicBoolean settlement) {
+        this.settlement = settlement;
+    }
+
+    /**
+     * 绑定即将执行的 Call；句柄已被取消时立即取消该 Call
+     */
+    public void bind(Call call) {
+        this.call = call;
+        if (cancelled) {
+            call.cancel();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 申请结算权，同一句柄重复申请是幂等的
+     *
+     * @return 当前分支是否为唯一的计费方
+     */
+    public boolean claimSettlement() {
+        if (settlementOwner) {
+            return true;
+        }
+        if (settlement.compareAndSet(false, true)) {
+            settlementOwner = true;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isSettlementOwner() {
+        return settlementOwner;
+    }
+}
@@ -0,0 +1,10 @@
+-- API Key 用量计数表 (PostgreSQL version)
+-- 按自然日 / 自然月（UTC）持久化限流器的请求计数，重启后继续累计
+CREATE TABLE IF NOT EXISTS api_key_usage (
+    api_key_id BIGINT NOT NULL REFERENCES api_key(id) ON DELETE CASCADE,
+    period_type VARCHAR(10) NOT NULL,
+    period_key VARCHAR(10) NOT NULL,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (api_key_id, period_type, period_key)
+);
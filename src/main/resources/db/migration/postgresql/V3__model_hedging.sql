@@ -0,0 +1,2 @@
+-- 模型级对冲请求开关 (PostgreSQL version)
+ALTER TABLE model ADD COLUMN IF NOT EXISTS hedging_enabled BOOLEAN NOT NULL DEFAULT false;
@@ -0,0 +1,12 @@
+-- 请求日志表与 RequestLog 实体对齐 (PostgreSQL version)
+-- 补齐实体中已有但初始脚本缺失的列；status 已由 is_success 取代，不再要求非空
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS token_source VARCHAR(20);
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS currency VARCHAR(10);
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS duration_ms INTEGER;
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS first_token_latency_ms INTEGER;
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS tokens_per_second DECIMAL(10,2);
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS is_stream BOOLEAN DEFAULT false;
+ALTER TABLE request_log ADD COLUMN IF NOT EXISTS is_success BOOLEAN DEFAULT true;
+ALTER TABLE request_log ALTER COLUMN status DROP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_request_log_is_success ON request_log(is_success);
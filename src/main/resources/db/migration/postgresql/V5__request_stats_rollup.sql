@@ -0,0 +1,102 @@
+-- 请求统计汇总表 (PostgreSQL version)
+-- 按分钟 / 小时 / 天（UTC）× 用户 × 模型 × 供应商累计请求日志，随请求日志在同一事务内增量更新。
+-- 空的用户、供应商记为 0，空的模型记为 ''，以便作为主键的一部分。
+-- latency_* 为耗时直方图，每列是耗时落在该区间（上界含）内的请求数。
+CREATE TABLE IF NOT EXISTS request_stats_rollup (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    user_id BIGINT NOT NULL DEFAULT 0,
+    model_key VARCHAR(255) NOT NULL DEFAULT '',
+    provider_id BIGINT NOT NULL DEFAULT 0,
+    request_count BIGINT NOT NULL DEFAULT 0,
+    success_count BIGINT NOT NULL DEFAULT 0,
+    failure_count BIGINT NOT NULL DEFAULT 0,
+    stream_count BIGINT NOT NULL DEFAULT 0,
+    usage_count BIGINT NOT NULL DEFAULT 0,
+    prompt_tokens BIGINT NOT NULL DEFAULT 0,
+    completion_tokens BIGINT NOT NULL DEFAULT 0,
+    total_tokens BIGINT NOT NULL DEFAULT 0,
+    cost_count BIGINT NOT NULL DEFAULT 0,
+    input_cost DECIMAL(20,6) NOT NULL DEFAULT 0,
+    output_cost DECIMAL(20,6) NOT NULL DEFAULT 0,
+    total_cost DECIMAL(20,6) NOT NULL DEFAULT 0,
+    currency VARCHAR(10),
+    duration_count BIGINT NOT NULL DEFAULT 0,
+    duration_sum_ms BIGINT NOT NULL DEFAULT 0,
+    duration_min_ms INTEGER,
+    duration_max_ms INTEGER,
+    first_token_count BIGINT NOT NULL DEFAULT 0,
+    first_token_sum_ms BIGINT NOT NULL DEFAULT 0,
+    tps_count BIGINT NOT NULL DEFAULT 0,
+    tps_sum DECIMAL(24,2) NOT NULL DEFAULT 0,
+    tps_min DECIMAL(10,2),
+    tps_max DECIMAL(10,2),
+    latency_le_100ms BIGINT NOT NULL DEFAULT 0,
+    latency_le_250ms BIGINT NOT NULL DEFAULT 0,
+    latency_le_500ms BIGINT NOT NULL DEFAULT 0,
+    latency_le_1s BIGINT NOT NULL DEFAULT 0,
+    latency_le_2500ms BIGINT NOT NULL DEFAULT 0,
+    latency_le_5s BIGINT NOT NULL DEFAULT 0,
+    latency_le_10s BIGINT NOT NULL DEFAULT 0,
+    latency_le_30s BIGINT NOT NULL DEFAULT 0,
+    latency_le_60s BIGINT NOT NULL DEFAULT 0,
+    latency_gt_60s BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, bucket_start, user_id, model_key, provider_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_request_stats_rollup_user ON request_stats_rollup(user_id, granularity, bucket_start);
+
+-- 由已有的请求日志回填
+INSERT INTO request_stats_rollup (
+    granularity, bucket_start, user_id, model_key, provider_id,
+    request_count, success_count, failure_count, stream_count,
+    usage_count, prompt_tokens, completion_tokens, total_tokens,
+    cost_count, input_cost, output_cost, total_cost, currency,
+    duration_count, duration_sum_ms, duration_min_ms, duration_max_ms,
+    first_token_count, first_token_sum_ms,
+    tps_count, tps_sum, tps_min, tps_max,
+    latency_le_100ms, latency_le_250ms, latency_le_500ms, latency_le_1s, latency_le_2500ms,
+    latency_le_5s, latency_le_10s, latency_le_30s, latency_le_60s, latency_gt_60s)
+SELECT g.granularity,
+       date_trunc(g.granularity, l.created_at AT TIME ZONE 'UTC') AT TIME ZONE 'UTC',
+       COALESCE(l.user_id, 0),
+       COALESCE(l.model_key, ''),
+       COALESCE(l.provider_id, 0),
+       COUNT(*),
+       SUM(CASE WHEN l.is_success THEN 1 ELSE 0 END),
+       SUM(CASE WHEN NOT l.is_success THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.is_stream THEN 1 ELSE 0 END),
+       COUNT(l.total_tokens),
+       COALESCE(SUM(l.prompt_tokens), 0),
+       COALESCE(SUM(l.completion_tokens), 0),
+       COALESCE(SUM(l.total_tokens), 0),
+       COUNT(l.total_cost),
+       COALESCE(SUM(l.input_cost), 0),
+       COALESCE(SUM(l.output_cost), 0),
+       COALESCE(SUM(l.total_cost), 0),
+       MIN(l.currency),
+       COUNT(l.duration_ms),
+       COALESCE(SUM(l.duration_ms), 0),
+       MIN(l.duration_ms),
+       MAX(l.duration_ms),
+       COUNT(l.first_token_latency_ms),
+       COALESCE(SUM(l.first_token_latency_ms), 0),
+       COUNT(l.tokens_per_second),
+       COALESCE(SUM(l.tokens_per_second), 0),
+       MIN(l.tokens_per_second),
+       MAX(l.tokens_per_second),
+       SUM(CASE WHEN l.duration_ms <= 100 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 100 AND l.duration_ms <= 250 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 250 AND l.duration_ms <= 500 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 500 AND l.duration_ms <= 1000 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 1000 AND l.duration_ms <= 2500 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 2500 AND l.duration_ms <= 5000 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 5000 AND l.duration_ms <= 10000 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 10000 AND l.duration_ms <= 30000 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 30000 AND l.duration_ms <= 60000 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN l.duration_ms > 60000 THEN 1 ELSE 0 END)
+FROM request_log l
+CROSS JOIN (VALUES ('minute'), ('hour'), ('day')) AS g(granularity)
+WHERE l.created_at IS NOT NULL
+GROUP BY 1, 2, 3, 4, 5
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,5 @@
+-- 统计汇总表的分位数草图 (PostgreSQL version)
+-- 每个汇总行保存该时间桶内耗时与 token 速度的可合并分位数草图（QuantileSketch 编码），查询时逐行合并。
+-- 本迁移之前汇总的行没有草图，覆盖这些行的查询退回到耗时直方图估算。
+ALTER TABLE request_stats_rollup ADD COLUMN IF NOT EXISTS latency_sketch BYTEA;
+ALTER TABLE request_stats_rollup ADD COLUMN IF NOT EXISTS tps_sketch BYTEA;
@@ -0,0 +1,77 @@
+-- 请求日志按 created_at（UTC 自然月）范围分区 (PostgreSQL version)
+-- 分区表的唯一约束必须包含分区键，request_id 的唯一性改为 (request_id, created_at)；
+-- 本地日志回放沿用记录中的 created_at，按该约束忽略重复仍是幂等的。
+-- 单列索引换成 (列, created_at) 复合索引，按时间过滤的查询可以同时利用分区裁剪与索引。
+-- 之后月份的分区由 RequestLogPartitionMaintainer 提前创建，过期分区由其分离并导出为压缩文件。
+ALTER TABLE request_log RENAME TO request_log_legacy;
+
+CREATE TABLE request_log (
+    id BIGINT NOT NULL DEFAULT nextval('request_log_id_seq'),
+    request_id VARCHAR(255) NOT NULL,
+    user_id BIGINT REFERENCES users(id),
+    api_key_id BIGINT REFERENCES api_key(id),
+    model_key VARCHAR(255),
+    vendor_model_key VARCHAR(255),
+    provider_id BIGINT REFERENCES provider(id),
+    endpoint_type VARCHAR(50),
+    prompt_tokens INTEGER DEFAULT 0,
+    cached_tokens INTEGER DEFAULT 0,
+    completion_tokens INTEGER DEFAULT 0,
+    total_tokens INTEGER DEFAULT 0,
+    token_source VARCHAR(20),
+    input_cost DECIMAL(10,6) DEFAULT 0.000000,
+    output_cost DECIMAL(10,6) DEFAULT 0.000000,
+    cached_cost DECIMAL(10,6) DEFAULT 0.000000,
+    total_cost DECIMAL(10,6) DEFAULT 0.000000,
+    currency VARCHAR(10),
+    duration_ms INTEGER,
+    first_token_latency_ms INTEGER,
+    tokens_per_second DECIMAL(10,2),
+    is_stream BOOLEAN DEFAULT false,
+    is_success BOOLEAN DEFAULT true,
+    status VARCHAR(50),
+    error_message TEXT,
+    response_time_ms INTEGER,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at),
+    UNIQUE (request_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- 为已有数据覆盖的月份以及之后三个月创建分区，分区名为 request_log_pYYYYMM
+DO $$
+DECLARE
+    month_start TIMESTAMP := date_trunc('month',
+            COALESCE((SELECT MIN(created_at) FROM request_log_legacy), CURRENT_TIMESTAMP) AT TIME ZONE 'UTC');
+    last_month TIMESTAMP := date_trunc('month',
+            GREATEST(COALESCE((SELECT MAX(created_at) FROM request_log_legacy), CURRENT_TIMESTAMP), CURRENT_TIMESTAMP)
+            AT TIME ZONE 'UTC') + INTERVAL '3 months';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF request_log FOR VALUES FROM (%L) TO (%L)',
+                'request_log_p' || to_char(month_start, 'YYYYMM'),
+                month_start AT TIME ZONE 'UTC',
+                (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO request_log (id, request_id, user_id, api_key_id, model_key, vendor_model_key, provider_id, endpoint_type,
+                         prompt_tokens, cached_tokens, completion_tokens, total_tokens, token_source,
+                         input_cost, output_cost, cached_cost, total_cost, currency, duration_ms,
+                         first_token_latency_ms, tokens_per_second, is_stream, is_success, status, error_message,
+                         response_time_ms, created_at)
+SELECT id, request_id, user_id, api_key_id, model_key, vendor_model_key, provider_id, endpoint_type,
+       prompt_tokens, cached_tokens, completion_tokens, total_tokens, token_source,
+       input_cost, output_cost, cached_cost, total_cost, currency, duration_ms,
+       first_token_latency_ms, tokens_per_second, is_stream, is_success, status, error_message,
+       response_time_ms, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM request_log_legacy;
+
+-- 沿用原表的 id 序列
+ALTER SEQUENCE request_log_id_seq OWNED BY request_log.id;
+DROP TABLE request_log_legacy;
+
+CREATE INDEX IF NOT EXISTS idx_request_log_created_at ON request_log(created_at);
+CREATE INDEX IF NOT EXISTS idx_request_log_user_created ON request_log(user_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_request_log_api_key_created ON request_log(api_key_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_request_log_model_created ON request_log(model_key, created_at);
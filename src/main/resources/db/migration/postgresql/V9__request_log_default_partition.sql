@@ -0,0 +1,6 @@
+-- 请求日志默认分区 (PostgreSQL version)
+-- 没有对应月度分区的记录写入 request_log_default，而不是插入失败：
+-- 分区维护关闭或连续失败、提前创建的月份用完时，日志仍能写入；
+-- 归档分离某月分区后，本地日志回放写入的该月迟到记录同样落在默认分区，仍可查询，不会再次归档。
+-- RequestLogPartitionMaintainer 创建月度分区时把默认分区中该月的记录迁入新分区。
+CREATE TABLE IF NOT EXISTS request_log_default PARTITION OF request_log DEFAULT;
@@ -0,0 +1,2 @@
+-- 模型级对冲请求开关 (SQLite version)
+ALTER TABLE model ADD COLUMN hedging_enabled INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,52 @@
+-- 请求日志表与 RequestLog 实体对齐 (SQLite version)
+-- 补齐实体中已有但初始脚本缺失的列；status 已由 is_success 取代，不再要求非空。
+-- SQLite 不支持修改列约束，因此重建表
+CREATE TABLE request_log_new (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    request_id VARCHAR(255) NOT NULL UNIQUE,
+    user_id INTEGER REFERENCES users(id),
+    api_key_id INTEGER REFERENCES api_key(id),
+    model_key VARCHAR(255),
+    vendor_model_key VARCHAR(255),
+    provider_id INTEGER REFERENCES provider(id),
+    endpoint_type VARCHAR(50),
+    prompt_tokens INTEGER DEFAULT 0,
+    cached_tokens INTEGER DEFAULT 0,
+    completion_tokens INTEGER DEFAULT 0,
+    total_tokens INTEGER DEFAULT 0,
+    token_source VARCHAR(20),
+    input_cost REAL DEFAULT 0.000000,
+    output_cost REAL DEFAULT 0.000000,
+    cached_cost REAL DEFAULT 0.000000,
+    total_cost REAL DEFAULT 0.000000,
+    currency VARCHAR(10),
+    duration_ms INTEGER,
+    first_token_latency_ms INTEGER,
+    tokens_per_second REAL,
+    is_stream INTEGER DEFAULT 0,
+    is_success INTEGER DEFAULT 1,
+    status VARCHAR(50),
+    error_message TEXT,
+    response_time_ms INTEGER,
+    created_at TEXT DEFAULT (datetime('now'))
+);
+
+INSERT INTO request_log_new (id, request_id, user_id, api_key_id, model_key, vendor_model_key, provider_id,
+                             endpoint_type, prompt_tokens, cached_tokens, completion_tokens, total_tokens,
+                             input_cost, output_cost, cached_cost, total_cost, status, error_message,
+                             response_time_ms, duration_ms, created_at)
+SELECT id, request_id, user_id, api_key_id, model_key, vendor_model_key, provider_id,
+       endpoint_type, prompt_tokens, cached_tokens, completion_tokens, total_tokens,
+       input_cost, output_cost, cached_cost, total_cost, status, error_message,
+       response_time_ms, response_time_ms, created_at
+FROM request_log;
+
+DROP TABLE request_log;
+ALTER TABLE request_log_new RENAME TO request_log;
+
+CREATE INDEX IF NOT EXISTS idx_request_log_user_id ON request_log(user_id);
+CREATE INDEX IF NOT EXISTS idx_request_log_api_key_id ON request_log(api_key_id);
+CREATE INDEX IF NOT EXISTS idx_request_log_model_key ON request_log(model_key);
+CREATE INDEX IF NOT EXISTS idx_request_log_created_at ON request_log(created_at);
+CREATE INDEX IF NOT EXISTS idx_request_log_status ON request_log(status);
+CREATE INDEX IF NOT EXISTS idx_request_log_is_success ON request_log(is_success);
@@ -0,0 +1,12 @@
+-- 请求日志索引调整 (SQLite version)
+-- SQLite 不支持分区，过期月份由 RequestLogPartitionMaintainer 导出为压缩文件后按 created_at 范围删除。
+-- 单列索引换成 (列, created_at) 复合索引，与 PostgreSQL 版本保持一致。
+DROP INDEX IF EXISTS idx_request_log_user_id;
+DROP INDEX IF EXISTS idx_request_log_api_key_id;
+DROP INDEX IF EXISTS idx_request_log_model_key;
+DROP INDEX IF EXISTS idx_request_log_status;
+DROP INDEX IF EXISTS idx_request_log_is_success;
+
+CREATE INDEX IF NOT EXISTS idx_request_log_user_created ON request_log(user_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_request_log_api_key_created ON request_log(api_key_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_request_log_model_created ON request_log(model_key, created_at);
@@ -0,0 +1,9 @@
+-- 请求日志按 (created_at, id) 键集分页 (SQLite version)
+-- 同一时间戳可能有多条日志，排序与游标都带上 id 作为决胜列；复合索引覆盖按用户 / API Key 过滤后的分页与导出。
+DROP INDEX IF EXISTS idx_request_log_created_at;
+DROP INDEX IF EXISTS idx_request_log_user_created;
+DROP INDEX IF EXISTS idx_request_log_api_key_created;
+
+CREATE INDEX IF NOT EXISTS idx_request_log_created_id ON request_log(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_request_log_user_created_id ON request_log(user_id, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_request_log_api_key_created_id ON request_log(api_key_id, created_at, id);
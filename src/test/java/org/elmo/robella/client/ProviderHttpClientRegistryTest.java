@@ -0,0 +1,57 @@
+package org.elmo.robella.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.elmo.robella.config.OkHttpConfig;
+import org.elmo.robella.model.entity.Provider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderHttpClientRegistryTest {
+
+    private final ProviderHttpClientRegistry registry =
+            new ProviderHttpClientRegistry(new OkHttpClient(), new OkHttpConfig(), new ObjectMapper());
+
+    private static Provider provider(long id, String config) {
+        Provider provider = new Provider();
+        provider.setId(id);
+        provider.setConfig(config);
+        return provider;
+    }
+
+    @Test
+    void providersShouldHaveIsolatedClientsBuiltFromConfig() {
+        Provider first = provider(1, "{\"http\": {\"readTimeoutMs\": 1000, \"http2\": false}}");
+        Provider second = provider(2, null);
+
+        OkHttpClient client = registry.client(first);
+
+        assertThat(registry.client(first)).isSameAs(client);
+        assertThat(client.protocols()).containsExactly(Protocol.HTTP_1_1);
+        assertThat(client.readTimeoutMillis()).isEqualTo(1000);
+        assertThat(registry.streamClient(first).readTimeoutMillis()).isEqualTo(5000);
+        assertThat(registry.streamClient(first).connectionPool()).isSameAs(client.connectionPool());
+        assertThat(registry.client(second).connectionPool()).isNotSameAs(client.connectionPool());
+        assertThat(registry.client(second).dispatcher()).isNotSameAs(client.dispatcher());
+    }
+
+    @Test
+    void changedOrRemovedProvidersShouldBeRebuilt() {
+        Provider first = provider(1, "{\"http\": {\"maxIdleConnections\": 5}}");
+        Provider second = provider(2, null);
+        OkHttpClient firstClient = registry.client(first);
+        OkHttpClient secondClient = registry.client(second);
+
+        first.setConfig("{\"http\": {\"maxIdleConnections\": 10}}");
+        assertThat(registry.client(first)).isNotSameAs(firstClient);
+
+        OkHttpClient rebuilt = registry.client(first);
+        registry.retainAll(List.of(first));
+        assertThat(registry.client(first)).isSameAs(rebuilt);
+        assertThat(registry.client(second)).isNotSameAs(secondClient);
+    }
+}
@@ -0,0 +1,64 @@
+package org.elmo.robella.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.elmo.robella.model.entity.ApiKey;
+import org.elmo.robella.service.ApiKeyService;
+import org.elmo.robella.service.apikey.ApiKeyRateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiKeyInterceptorTest {
+
+    private ApiKeyService apiKeyService;
+    private ApiKeyInterceptor interceptor;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private final StringWriter body = new StringWriter();
+    private final ApiKey apiKey = new ApiKey();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        apiKeyService = mock(ApiKeyService.class);
+        interceptor = new ApiKeyInterceptor(apiKeyService);
+        request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn("/v1/chat/completions");
+        when(request.getHeader("Authorization")).thenReturn("Bearer sk-test");
+        response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        apiKey.setId(7L);
+        when(apiKeyService.validateApiKey("sk-test")).thenReturn(apiKey);
+    }
+
+    @Test
+    void rateLimitedRequestShouldGet429WithRetryAfter() throws Exception {
+        when(apiKeyService.acquireRequestPermit(apiKey))
+                .thenReturn(new ApiKeyRateLimiter.Decision(false, ApiKeyRateLimiter.LimitType.RATE, 12));
+
+        assertThat(interceptor.preHandle(request, response, new Object())).isFalse();
+
+        verify(response).setStatus(429);
+        verify(response).setHeader("Retry-After", "12");
+        assertThat(body.toString()).contains("rate_limit_error");
+    }
+
+    @Test
+    void unavailableQuotaShouldGet503WithRetryAfter() throws Exception {
+        when(apiKeyService.acquireRequestPermit(apiKey))
+                .thenReturn(new ApiKeyRateLimiter.Decision(false, ApiKeyRateLimiter.LimitType.UNAVAILABLE, 1));
+
+        assertThat(interceptor.preHandle(request, response, new Object())).isFalse();
+
+        verify(response).setStatus(503);
+        verify(response).setHeader("Retry-After", "1");
+        assertThat(body.toString()).contains("api_error");
+    }
+}
@@ -0,0 +1,177 @@
+package org.elmo.robella.service;
+
+import org.elmo.robella.client.ApiClient;
+import org.elmo.robella.client.logging.ClientRequestLogger;
+import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.config.RoutingConfig;
+import org.elmo.robella.context.RequestContextHolder;
+import org.elmo.robella.exception.ApiException;
+import org.elmo.robella.exception.UpstreamHttpException;
+import org.elmo.robella.model.entity.Provider;
+import org.elmo.robella.model.entity.VendorModel;
+import org.elmo.robella.model.internal.UnifiedChatRequest;
+import org.elmo.robella.model.internal.UnifiedChatResponse;
+import org.elmo.robella.model.openai.core.ChatCompletionRequest;
+import org.elmo.robella.service.credit.CreditHoldService;
+import org.elmo.robella.service.credit.CreditLedger;
+import org.elmo.robella.service.loadblancer.UpstreamLatencyTracker;
+import org.elmo.robella.service.requestlog.RequestJournal;
+import org.elmo.robella.service.requestlog.RequestLogWriter;
+import org.elmo.robella.service.routing.ProviderCircuitBreakerRegistry;
+import org.elmo.robella.service.routing.RoutingTable;
+import org.elmo.robella.service.statistics.LiveMetricsRing;
+import org.elmo.robella.util.BillingUtils;
+import org.elmo.robella.util.TokenCountingUtils;
+import org.elmo.robella.util.UpstreamCallHandle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HedgingServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String MODEL_KEY = "gpt";
+
+    private RoutingService routingService;
+    private CreditHoldService holdService;
+    private ClientRequestLogger requestLogger;
+    private HedgingService hedgingService;
+
+    @BeforeEach
+    void setUp() {
+        routingService = mock(RoutingService.class);
+        UpstreamLatencyTracker latencyTracker = mock(UpstreamLatencyTracker.class);
+        when(latencyTracker.responseTimePercentile(anyLong(), anyDouble(), anyInt())).thenReturn(-1L);
+        RoutingConfig routingConfig = new RoutingConfig();
+        routingConfig.getHedging().setDefaultDelay(Duration.ofMillis(100));
+        routingConfig.getHedging().setMinDelay(Duration.ofMillis(100));
+
+        CreditLedger creditLedger = mock(CreditLedger.class);
+        when(creditLedger.getBalanceMicros(USER_ID)).thenReturn(CreditLedger.toMicros(new BigDecimal("10")));
+        holdService = new CreditHoldService(creditLedger);
+        requestLogger = new ClientRequestLogger(mock(RequestLogWriter.class), mock(RequestJournal.class),
+                mock(TokenCountingUtils.class), mock(BillingUtils.class), creditLedger,
+                latencyTracker, mock(LiveMetricsRing.class));
+        hedgingService = new HedgingService(routingService, mock(RoutingTable.class), routingConfig,
+                latencyTracker, mock(ProviderCircuitBreakerRegistry.class));
+
+        RequestContextHolder.getContext().setRequestId("req-1");
+        RequestContextHolder.getContext().setUserId(USER_ID);
+        RequestContextHolder.getContext().setCreditHold(holdService.place(USER_ID, new BigDecimal("2")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedgingService.shutdown();
+        RequestContextHolder.clear();
+    }
+
+    @Test
+    void primaryShouldWinWithoutHedgingWhenFasterThanDelay() {
+        UnifiedChatResponse response = new UnifiedChatResponse();
+        ApiClient primary = mock(ApiClient.class);
+        when(primary.chat(any(), any())).thenReturn(response);
+
+        UnifiedChatResponse result = hedgingService.chat(MODEL_KEY, new UnifiedChatRequest(), route(primary, 1L));
+
+        assertThat(result).isSameAs(response);
+        verify(routingService, never()).routeAndClient(eq(MODEL_KEY), anySet());
+        assertThat(RequestContextHolder.getContext().getRequestId()).isEqualTo("req-1");
+        assertThat(RequestContextHolder.getContext().getProviderId()).isEqualTo(1L);
+    }
+
+    @Test
+    void hedgeShouldWinAndCancelSlowPrimary() throws InterruptedException {
+        AtomicReference<UpstreamCallHandle> primaryHandle = new AtomicReference<>();
+        CountDownLatch primaryFinished = new CountDownLatch(1);
+        ApiClient primary = mock(ApiClient.class);
+        when(primary.chat(any(), any())).thenAnswer(invocation -> {
+            UpstreamCallHandle handle = RequestContextHolder.getContext().getUpstreamCall();
+            primaryHandle.set(handle);
+            requestLogger.startRequest(new ChatCompletionRequest(), false);
+            try {
+                while (!handle.isCancelled()) {
+                    Thread.sleep(5);
+                }
+                requestLogger.completeLog(false);
+                throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "Canceled");
+            } finally {
+                primaryFinished.countDown();
+            }
+        });
+        UnifiedChatResponse hedgeResponse = new UnifiedChatResponse();
+        ApiClient hedge = mock(ApiClient.class);
+        when(hedge.chat(any(), any())).thenReturn(hedgeResponse);
+        when(routingService.routeAndClient(eq(MODEL_KEY), anySet())).thenReturn(route(hedge, 2L));
+
+        UnifiedChatResponse result = hedgingService.chat(MODEL_KEY, new UnifiedChatRequest(), route(primary, 1L));
+
+        assertThat(result).isSameAs(hedgeResponse);
+        assertThat(primaryFinished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(primaryHandle.get().isCancelled()).isTrue();
+        assertThat(primaryHandle.get().isSettlementOwner()).isFalse();
+        // 胜出分支的路由信息同步回调用方，落败分支被取消时不释放共用的预留
+        assertThat(RequestContextHolder.getContext().getRequestId()).isEqualTo("req-1-hedge");
+        assertThat(RequestContextHolder.getContext().getProviderId()).isEqualTo(2L);
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("8");
+    }
+
+    @Test
+    void raceShouldFailWhenBothLegsFailAndLeaveHoldToCaller() {
+        ApiClient primary = mock(ApiClient.class);
+        when(primary.chat(any(), any())).thenAnswer(invocation -> {
+            requestLogger.startRequest(new ChatCompletionRequest(), false);
+            Thread.sleep(300);
+            requestLogger.completeLog(false);
+            throw upstreamFailure();
+        });
+        ApiClient hedge = mock(ApiClient.class);
+        ApiException hedgeFailure = upstreamFailure();
+        when(hedge.chat(any(), any())).thenAnswer(invocation -> {
+            requestLogger.startRequest(new ChatCompletionRequest(), false);
+            requestLogger.completeLog(false);
+            throw hedgeFailure;
+        });
+        when(routingService.routeAndClient(eq(MODEL_KEY), anySet())).thenReturn(route(hedge, 2L));
+
+        assertThatThrownBy(() -> hedgingService.chat(MODEL_KEY, new UnifiedChatRequest(), route(primary, 1L)))
+                .isSameAs(hedgeFailure);
+
+        // 两个分支都失败后预留仍在，由 UnifiedService 决定故障转移或释放
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("8");
+        assertThat(RequestContextHolder.getContext().getRequestId()).isEqualTo("req-1");
+    }
+
+    private ApiException upstreamFailure() {
+        return new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错", new UpstreamHttpException(503, "unavailable"));
+    }
+
+    private RoutingService.ClientWithInfo route(ApiClient client, Long id) {
+        Provider provider = new Provider();
+        provider.setId(id);
+        VendorModel vendorModel = new VendorModel();
+        vendorModel.setId(id);
+        vendorModel.setModelKey(MODEL_KEY);
+        vendorModel.setVendorModelKey(MODEL_KEY + "-" + id);
+        return new RoutingService.ClientWithInfo(client, provider, vendorModel);
+    }
+}
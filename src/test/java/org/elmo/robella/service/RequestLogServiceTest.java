@@ -0,0 +1,64 @@
+package org.elmo.robella.service;
+
+import org.elmo.robella.exception.ValidationException;
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.model.dto.RequestLogCursor;
+import org.elmo.robella.model.dto.RequestLogQuery;
+import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.model.response.RequestLogPageResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RequestLogServiceTest {
+
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final RequestLogQuery QUERY = new RequestLogQuery(1L, null, null, null);
+
+    private final RequestLogMapper requestLogMapper = mock(RequestLogMapper.class);
+    private final RequestLogService requestLogService = new RequestLogService(requestLogMapper);
+
+    private static RequestLog log(long id) {
+        return RequestLog.builder().id(id).userId(1L).createdAt(TIME).build();
+    }
+
+    @Test
+    void pageShouldReturnCursorOfLastItemWhenMoreRowsRemain() {
+        when(requestLogMapper.findPage(eq(QUERY), isNull(), eq(3))).thenReturn(List.of(log(5), log(4), log(3)));
+
+        RequestLogPageResponse page = requestLogService.getLogPage(QUERY, null, 2);
+
+        assertThat(page.getItems()).extracting(RequestLog::getId).containsExactly(5L, 4L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(RequestLogCursor.decode(page.getNextCursor())).isEqualTo(new RequestLogCursor(TIME, 4L));
+    }
+
+    @Test
+    void lastPageShouldHaveNoCursor() {
+        RequestLogCursor after = new RequestLogCursor(TIME, 4L);
+        when(requestLogMapper.findPage(QUERY, after, 3)).thenReturn(List.of(log(3)));
+
+        RequestLogPageResponse page = requestLogService.getLogPage(QUERY, after.encode(), 2);
+
+        verify(requestLogMapper).findPage(QUERY, after, 3);
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void malformedCursorShouldBeRejected() {
+        assertThatThrownBy(() -> requestLogService.getLogPage(QUERY, "not-a-cursor", 10))
+                .isInstanceOf(ValidationException.class);
+    }
+}
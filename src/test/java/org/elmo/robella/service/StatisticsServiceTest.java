@@ -0,0 +1,165 @@
+package org.elmo.robella.service;
+
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.mapper.RequestStatsRollupMapper;
+import org.elmo.robella.model.dto.RequestLogAggregate;
+import org.elmo.robella.model.dto.RequestStatsRollup;
+import org.elmo.robella.model.response.LatencyStatsResponse;
+import org.elmo.robella.model.response.SystemOverviewResponse;
+import org.elmo.robella.model.response.TimeSeriesResponse;
+import org.elmo.robella.model.response.TokenSpeedResponse;
+import org.elmo.robella.config.StatisticsConfig;
+import org.elmo.robella.service.statistics.QuantileSketch;
+import org.elmo.robella.service.statistics.StatisticsResultCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatisticsServiceTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final OffsetDateTime END = START.plusDays(30);
+
+    private RequestStatsRollupMapper rollupMapper;
+    private RequestLogMapper requestLogMapper;
+    private StatisticsService statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        rollupMapper = mock(RequestStatsRollupMapper.class);
+        requestLogMapper = mock(RequestLogMapper.class);
+        statisticsService = new StatisticsService(rollupMapper, requestLogMapper,
+                new StatisticsResultCache(new StatisticsConfig()));
+    }
+
+    @Test
+    void overviewShouldBeBuiltFromAggregateRow() {
+        RequestLogAggregate aggregate = new RequestLogAggregate();
+        aggregate.setTotalRequests(4L);
+        aggregate.setSuccessfulRequests(3L);
+        aggregate.setTotalTokens(100L);
+        aggregate.setTotalCost(new BigDecimal("1.5"));
+        aggregate.setActiveUsers(2L);
+        when(rollupMapper.aggregate(eq(null), any())).thenReturn(aggregate);
+
+        SystemOverviewResponse overview = statisticsService.getSystemOverview(START, END);
+
+        assertThat(overview.getFailedRequests()).isEqualTo(1L);
+        assertThat(overview.getErrorRate()).isEqualTo(25.0);
+        assertThat(overview.getAverageDurationMs()).isZero();
+        assertThat(overview.getActiveUsers()).isEqualTo(2);
+        assertThat(overview.getPeriodStart()).isEqualTo(START);
+        verify(requestLogMapper, never()).findByCreatedAtBetween(any(), any());
+    }
+
+    @Test
+    void latencyPercentilesShouldFallBackToHistogramWithoutSketches() {
+        RequestLogAggregate aggregate = new RequestLogAggregate();
+        aggregate.setDurationCount(200L);
+        aggregate.setMinDurationMs(20.0);
+        aggregate.setMaxDurationMs(45000.0);
+        aggregate.setLatencyLe100ms(100L);
+        aggregate.setLatencyLe500ms(90L);
+        aggregate.setLatencyLe60s(10L);
+        when(rollupMapper.aggregate(eq(7L), any())).thenReturn(aggregate);
+
+        LatencyStatsResponse stats = statisticsService.getLatencyStats(7L, START, END);
+
+        assertThat(stats.getMedianDurationMs()).isEqualTo(100.0);
+        assertThat(stats.getP95DurationMs()).isEqualTo(500.0);
+        // 落在 (30s, 60s] 区间，上界被最大值 45s 截断后插值
+        assertThat(stats.getP99DurationMs()).isEqualTo(42000.0);
+        verify(requestLogMapper, never()).findByCreatedAtBetween(any(), any());
+    }
+
+    @Test
+    void percentilesShouldComeFromMergedSketches() {
+        QuantileSketch first = new QuantileSketch();
+        QuantileSketch second = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            (i <= 50 ? first : second).add(i * 10);
+        }
+        RequestStatsRollup row1 = new RequestStatsRollup();
+        row1.setLatencySketch(first.toBytes());
+        row1.setTpsSketch(first.toBytes());
+        RequestStatsRollup row2 = new RequestStatsRollup();
+        row2.setLatencySketch(second.toBytes());
+        RequestLogAggregate aggregate = new RequestLogAggregate();
+        aggregate.setDurationCount(100L);
+        aggregate.setMinDurationMs(10.0);
+        aggregate.setMaxDurationMs(1000.0);
+        aggregate.setTokensPerSecondCount(50L);
+        aggregate.setMinTokensPerSecond(new BigDecimal("10"));
+        aggregate.setMaxTokensPerSecond(new BigDecimal("500"));
+        when(rollupMapper.aggregate(eq(7L), any())).thenReturn(aggregate);
+        when(rollupMapper.findSketches(eq(7L), any())).thenReturn(List.of(row1, row2));
+
+        LatencyStatsResponse latency = statisticsService.getLatencyStats(7L, START, END);
+        TokenSpeedResponse speed = statisticsService.getTokenSpeedStats(7L, START, END);
+
+        assertThat(latency.getMedianDurationMs()).isBetween(495.0, 505.0);
+        assertThat(latency.getP99DurationMs()).isBetween(980.0, 1000.0);
+        assertThat(speed.getMedianTokensPerSecond().doubleValue()).isBetween(247.0, 253.0);
+        verify(requestLogMapper, never()).findNthTokensPerSecond(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void weeklySeriesShouldMergeDayBuckets() {
+        RequestLogAggregate monday = new RequestLogAggregate();
+        monday.setBucketStart(OffsetDateTime.of(2025, 1, 6, 0, 0, 0, 0, ZoneOffset.UTC));
+        monday.setTotalRequests(5L);
+        monday.setSuccessfulRequests(4L);
+        RequestLogAggregate sunday = new RequestLogAggregate();
+        sunday.setBucketStart(OffsetDateTime.of(2025, 1, 12, 0, 0, 0, 0, ZoneOffset.UTC));
+        sunday.setTotalRequests(3L);
+        sunday.setSuccessfulRequests(3L);
+        when(rollupMapper.aggregateByBucket(any(), eq("day"), any(), any())).thenReturn(List.of(monday, sunday));
+
+        TimeSeriesResponse series = statisticsService.getUsageTimeSeries(null, START, END, "week");
+
+        assertThat(series.getDataPoints()).singleElement().satisfies(point -> {
+            assertThat(point.getTimestamp()).isEqualTo(OffsetDateTime.of(2025, 1, 6, 0, 0, 0, 0, ZoneOffset.UTC));
+            assertThat(point.getRequestCount()).isEqualTo(8L);
+            assertThat(point.getFailedRequests()).isEqualTo(1L);
+        });
+    }
+
+    @Test
+    void closedWindowShouldBeServedFromCache() {
+        when(rollupMapper.aggregate(any(), any())).thenReturn(new RequestLogAggregate());
+
+        statisticsService.getSystemOverview(START, END);
+        statisticsService.getErrorRate(null, START.plusSeconds(20), END.plusSeconds(30));
+        SystemOverviewResponse overview = statisticsService.getSystemOverview(START, END.plusSeconds(40));
+
+        // 同一分钟内的窗口共用缓存结果，响应仍回显请求的时间
+        verify(rollupMapper, times(1)).aggregate(any(), any());
+        assertThat(overview.getPeriodEnd()).isEqualTo(END.plusSeconds(40));
+    }
+
+    @Test
+    void onlyOpenTrailingBucketsShouldBeRequeried() {
+        when(rollupMapper.aggregateByBucket(any(), eq("hour"), any(), any())).thenReturn(List.of());
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+
+        statisticsService.getUsageTimeSeries(null, now.minusHours(3), now, "hour");
+        statisticsService.getUsageTimeSeries(null, now.minusHours(3), now, "hour");
+
+        // 已结束的桶查询一次后走缓存，末尾仍在写入的桶每次重新查询
+        verify(rollupMapper, times(3)).aggregateByBucket(any(), eq("hour"), any(), any());
+    }
+}
@@ -0,0 +1,190 @@
+package org.elmo.robella.service;
+
+import org.elmo.robella.client.ApiClient;
+import org.elmo.robella.client.logging.ClientRequestLogger;
+import org.elmo.robella.common.ErrorCodeConstants;
+import org.elmo.robella.config.RoutingConfig;
+import org.elmo.robella.config.StreamingConfig;
+import org.elmo.robella.context.RequestContextHolder;
+import org.elmo.robella.exception.ApiException;
+import org.elmo.robella.exception.BusinessException;
+import org.elmo.robella.exception.InsufficientCreditsException;
+import org.elmo.robella.exception.UpstreamHttpException;
+import org.elmo.robella.model.entity.Provider;
+import org.elmo.robella.model.entity.VendorModel;
+import org.elmo.robella.model.enums.PricingStrategyType;
+import org.elmo.robella.model.internal.UnifiedChatRequest;
+import org.elmo.robella.model.internal.UnifiedChatResponse;
+import org.elmo.robella.model.openai.core.ChatCompletionRequest;
+import org.elmo.robella.service.credit.CreditHoldService;
+import org.elmo.robella.service.credit.CreditLedger;
+import org.elmo.robella.service.loadblancer.UpstreamLatencyTracker;
+import org.elmo.robella.service.requestlog.RequestJournal;
+import org.elmo.robella.service.requestlog.RequestLogWriter;
+import org.elmo.robella.service.routing.ProviderCircuitBreakerRegistry;
+import org.elmo.robella.service.routing.RoutingTable;
+import org.elmo.robella.service.statistics.LiveMetricsRing;
+import org.elmo.robella.util.BillingUtils;
+import org.elmo.robella.util.TokenCountingUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnifiedServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String MODEL_KEY = "gpt";
+
+    private RoutingService routingService;
+    private CreditHoldService holdService;
+    private ProviderCircuitBreakerRegistry circuitBreakers;
+    private ClientRequestLogger requestLogger;
+    private UnifiedService unifiedService;
+
+    @BeforeEach
+    void setUp() {
+        routingService = mock(RoutingService.class);
+        CreditLedger creditLedger = mock(CreditLedger.class);
+        when(creditLedger.getBalanceMicros(USER_ID)).thenReturn(CreditLedger.toMicros(new BigDecimal("10")));
+        holdService = new CreditHoldService(creditLedger);
+        requestLogger = new ClientRequestLogger(mock(RequestLogWriter.class), mock(RequestJournal.class),
+                mock(TokenCountingUtils.class), mock(BillingUtils.class), creditLedger,
+                mock(UpstreamLatencyTracker.class), mock(LiveMetricsRing.class));
+        circuitBreakers = mock(ProviderCircuitBreakerRegistry.class);
+        unifiedService = new UnifiedService(routingService, mock(RoutingTable.class), holdService,
+                mock(BillingUtils.class), mock(TokenCountingUtils.class), circuitBreakers,
+                new RoutingConfig(), mock(HedgingService.class), new StreamingConfig());
+
+        RequestContextHolder.getContext().setRequestId("req-1");
+        RequestContextHolder.getContext().setUserId(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.clear();
+    }
+
+    @Test
+    void failoverShouldKeepCreditHoldForNextAttempt() {
+        ApiClient failing = failingClient();
+        ApiClient succeeding = mock(ApiClient.class);
+        AtomicReference<BigDecimal> availableDuringRetry = new AtomicReference<>();
+        UnifiedChatResponse response = new UnifiedChatResponse();
+        when(succeeding.chat(any(), any())).thenAnswer(invocation -> {
+            availableDuringRetry.set(holdService.getAvailableBalance(USER_ID));
+            return response;
+        });
+        when(routingService.routeAndClient(MODEL_KEY)).thenReturn(route(failing, 1L));
+        when(routingService.routeAndClient(eq(MODEL_KEY), anySet())).thenReturn(route(succeeding, 2L));
+
+        UnifiedChatResponse result = unifiedService.sendChatRequest(request());
+
+        assertThat(result).isSameAs(response);
+        // 预估成本 2 的预留在第二次尝试时仍然有效，由成功结算时释放
+        assertThat(availableDuringRetry.get()).isEqualByComparingTo("8");
+        assertThat(RequestContextHolder.getContext().getCreditHold()).isNotNull();
+        assertThat(RequestContextHolder.getContext().getRequestId()).isEqualTo("req-1-2");
+    }
+
+    @Test
+    void finalFailureShouldReleaseCreditHold() {
+        ApiClient failing = failingClient();
+        when(routingService.routeAndClient(MODEL_KEY)).thenReturn(route(failing, 1L));
+        when(routingService.routeAndClient(eq(MODEL_KEY), anySet())).thenReturn(null);
+
+        assertThatThrownBy(() -> unifiedService.sendChatRequest(request()))
+                .isInstanceOf(ApiException.class);
+
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void onlyUpstreamFaultsShouldFailOver() {
+        ApiClient timingOut = mock(ApiClient.class);
+        when(timingOut.chat(any(), any())).thenThrow(new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错",
+                new SocketTimeoutException("timeout")));
+        ApiClient succeeding = mock(ApiClient.class);
+        UnifiedChatResponse response = new UnifiedChatResponse();
+        when(succeeding.chat(any(), any())).thenReturn(response);
+        when(routingService.routeAndClient(MODEL_KEY)).thenReturn(route(timingOut, 1L));
+        when(routingService.routeAndClient(eq(MODEL_KEY), anySet())).thenReturn(route(succeeding, 2L));
+
+        assertThat(unifiedService.sendChatRequest(request())).isSameAs(response);
+        verify(circuitBreakers).onFailure(eq(1L), anyLong());
+
+        // 本地的请求转换错误与供应商无关，不计入熔断也不切换供应商
+        ApiClient broken = mock(ApiClient.class);
+        when(broken.chat(any(), any())).thenThrow(new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错",
+                new IllegalArgumentException("unsupported content part")));
+        when(routingService.routeAndClient(MODEL_KEY)).thenReturn(route(broken, 3L));
+
+        assertThatThrownBy(() -> unifiedService.sendChatRequest(request())).isInstanceOf(ApiException.class);
+        verify(circuitBreakers, never()).onFailure(eq(3L), anyLong());
+        verify(routingService, times(1)).routeAndClient(eq(MODEL_KEY), anySet());
+    }
+
+    @Test
+    void rejectedRequestShouldNotHoldCircuitBreakerPermit() {
+        RoutingService.ClientWithInfo expensive = route(mock(ApiClient.class), 1L);
+        expensive.getVendorModel().setPerRequestPrice(new BigDecimal("20"));
+        when(routingService.routeAndClient(MODEL_KEY)).thenReturn(expensive);
+
+        // 余额不足时归还路由占用的探测名额
+        assertThatThrownBy(() -> unifiedService.sendChatRequest(request()))
+                .isInstanceOf(InsufficientCreditsException.class);
+        verify(circuitBreakers).releasePermission(1L);
+
+        // 未认证的请求在路由之前被拒绝
+        RequestContextHolder.getContext().setUserId(null);
+        assertThatThrownBy(() -> unifiedService.sendChatRequest(request()))
+                .isInstanceOf(BusinessException.class);
+        verify(routingService, times(1)).routeAndClient(MODEL_KEY);
+    }
+
+    /**
+     * 与真实客户端一样在失败时记录请求日志后抛出上游错误
+     */
+    private ApiClient failingClient() {
+        ApiClient client = mock(ApiClient.class);
+        when(client.chat(any(), any())).thenAnswer(invocation -> {
+            requestLogger.startRequest(new ChatCompletionRequest(), false);
+            requestLogger.completeLog(false);
+            throw new ApiException(ErrorCodeConstants.PROVIDER_ERROR, "请求出错", new UpstreamHttpException(503, "unavailable"));
+        });
+        return client;
+    }
+
+    private RoutingService.ClientWithInfo route(ApiClient client, Long id) {
+        Provider provider = new Provider();
+        provider.setId(id);
+        VendorModel vendorModel = new VendorModel();
+        vendorModel.setId(id);
+        vendorModel.setModelKey(MODEL_KEY);
+        vendorModel.setVendorModelKey(MODEL_KEY + "-" + id);
+        vendorModel.setPricingStrategy(PricingStrategyType.PER_REQUEST);
+        vendorModel.setPerRequestPrice(new BigDecimal("2"));
+        return new RoutingService.ClientWithInfo(client, provider, vendorModel);
+    }
+
+    private UnifiedChatRequest request() {
+        UnifiedChatRequest request = new UnifiedChatRequest();
+        request.setModel(MODEL_KEY);
+        return request;
+    }
+}
@@ -0,0 +1,221 @@
+package org.elmo.robella.service.apikey;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.config.ApiKeyConfig;
+import org.elmo.robella.mapper.ApiKeyUsageMapper;
+import org.elmo.robella.model.entity.ApiKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiKeyRateLimiterTest {
+
+    private static final Long KEY_ID = 7L;
+
+    private ApiKeyUsageMapper usageMapper;
+    private ApiKeyConfig config;
+    private ApiKeyRateLimiter rateLimiter;
+    private SqlSession sqlSession;
+    private SqlSessionFactory sqlSessionFactory;
+    /** 模拟 api_key_usage 表，键为 periodType:periodKey */
+    private final Map<String, Long> persisted = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        usageMapper = mock(ApiKeyUsageMapper.class);
+        when(usageMapper.findRequestCount(eq(KEY_ID), anyString(), anyString())).thenAnswer(invocation ->
+                persisted.get(invocation.getArgument(1) + ":" + invocation.getArgument(2)));
+        when(usageMapper.upsertRequestCount(eq(KEY_ID), anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+            persisted.put(invocation.getArgument(1) + ":" + invocation.getArgument(2), invocation.getArgument(3));
+            return 1;
+        });
+        sqlSession = mock(SqlSession.class);
+        when(sqlSession.getMapper(ApiKeyUsageMapper.class)).thenReturn(usageMapper);
+        sqlSessionFactory = mock(SqlSessionFactory.class);
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH)).thenReturn(sqlSession);
+
+        config = new ApiKeyConfig();
+        rateLimiter = new ApiKeyRateLimiter(usageMapper, config, sqlSessionFactory);
+    }
+
+    @Test
+    void rateLimitShouldAllowBurstThenRejectWithRetryAfter() {
+        ApiKey apiKey = apiKey(3, null, null);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire(apiKey).allowed()).isTrue();
+        }
+        ApiKeyRateLimiter.Decision decision = rateLimiter.tryAcquire(apiKey);
+
+        assertThat(decision.allowed()).isFalse();
+        assertThat(decision.limitType()).isEqualTo(ApiKeyRateLimiter.LimitType.RATE);
+        // 每 20 秒补充一个令牌
+        assertThat(decision.retryAfterSeconds()).isBetween(1L, 21L);
+        assertThat(rateLimiter.isWithinRateLimit(apiKey)).isFalse();
+    }
+
+    @Test
+    void rejectedRequestShouldNotConsumeDailyOrMonthlyQuota() {
+        ApiKey apiKey = apiKey(1, 10, 100);
+
+        assertThat(rateLimiter.tryAcquire(apiKey).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire(apiKey).limitType()).isEqualTo(ApiKeyRateLimiter.LimitType.RATE);
+        rateLimiter.persist();
+
+        assertThat(persisted).containsEntry("day:" + today(), 1L);
+        assertThat(persisted).containsEntry("month:" + today().substring(0, 7), 1L);
+    }
+
+    @Test
+    void dailyLimitShouldContinueFromPersistedCountAndLoadOnce() {
+        persisted.put("day:" + today(), 8L);
+        ApiKey apiKey = apiKey(null, 10, null);
+
+        assertThat(rateLimiter.tryAcquire(apiKey).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire(apiKey).allowed()).isTrue();
+        ApiKeyRateLimiter.Decision decision = rateLimiter.tryAcquire(apiKey);
+
+        assertThat(decision.limitType()).isEqualTo(ApiKeyRateLimiter.LimitType.DAILY);
+        assertThat(decision.retryAfterSeconds()).isPositive();
+        assertThat(rateLimiter.isWithinDailyLimit(apiKey)).isFalse();
+        verify(usageMapper, times(1)).findRequestCount(KEY_ID, ApiKeyRateLimiter.PERIOD_DAY, today());
+    }
+
+    @Test
+    void loadFailureShouldFailClosedWithoutRetryingImmediately() {
+        when(usageMapper.findRequestCount(any(), any(), any())).thenThrow(new IllegalStateException("connection refused"));
+        ApiKey apiKey = apiKey(null, 10, null);
+
+        ApiKeyRateLimiter.Decision first = rateLimiter.tryAcquire(apiKey);
+        ApiKeyRateLimiter.Decision second = rateLimiter.tryAcquire(apiKey);
+
+        assertThat(first.allowed()).isFalse();
+        assertThat(first.limitType()).isEqualTo(ApiKeyRateLimiter.LimitType.UNAVAILABLE);
+        assertThat(second.limitType()).isEqualTo(ApiKeyRateLimiter.LimitType.UNAVAILABLE);
+        assertThat(rateLimiter.isWithinDailyLimit(apiKey)).isFalse();
+        verify(usageMapper, times(1)).findRequestCount(any(), any(), any());
+    }
+
+    @Test
+    void evictionShouldNotLoseConcurrentIncrements() throws InterruptedException {
+        config.getRateLimit().setIdleTimeout(Duration.ZERO);
+        ApiKey apiKey = apiKey(null, 1_000_000, null);
+        AtomicInteger allowed = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread persister = new Thread(() -> {
+            while (running.get()) {
+                rateLimiter.persist();
+            }
+        });
+        persister.start();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    if (rateLimiter.tryAcquire(apiKey).allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        running.set(false);
+        persister.join();
+        rateLimiter.persist();
+
+        assertThat(allowed.get()).isEqualTo(8000);
+        assertThat(persisted).containsEntry("day:" + today(), 8000L);
+    }
+
+    @Test
+    void retiredCountersOfDeletedKeyShouldBeDropped() {
+        ApiKey apiKey = apiKey(null, 10, null);
+        rateLimiter.tryAcquire(apiKey);
+        retireDailyCounter("2000-01-01");
+        doThrow(new IllegalStateException("violates foreign key constraint")).when(sqlSessionFactory)
+                .openSession(ExecutorType.BATCH);
+        rateLimiter.persist();
+
+        // 密钥被删除后，写入失败而放回队列的计数不再重试
+        rateLimiter.invalidate(KEY_ID);
+        doReturn(sqlSession).when(sqlSessionFactory).openSession(ExecutorType.BATCH);
+        rateLimiter.persist();
+
+        verify(usageMapper, never()).upsertRequestCount(anyLong(), anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void retiredCounterShouldBeDroppedAfterRepeatedFailures() {
+        ApiKey apiKey = apiKey(null, 10, null);
+        rateLimiter.tryAcquire(apiKey);
+        retireDailyCounter("2000-01-01");
+        doThrow(new IllegalStateException("database down")).when(sqlSessionFactory).openSession(ExecutorType.BATCH);
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.persist();
+        }
+
+        doReturn(sqlSession).when(sqlSessionFactory).openSession(ExecutorType.BATCH);
+        rateLimiter.persist();
+
+        assertThat(persisted).containsEntry("day:" + today(), 1L).doesNotContainKey("day:2000-01-01");
+    }
+
+    /**
+     * 把当前日计数器替换为过去周期的脏计数器，下一次请求时进程内跨周期将其退役
+     */
+    @SuppressWarnings("unchecked")
+    private void retireDailyCounter(String periodKey) {
+        Map<Long, ?> states = (Map<Long, ?>) ReflectionTestUtils.getField(rateLimiter, "states");
+        AtomicReference<ApiKeyRateLimiter.PeriodCounter> daily = (AtomicReference<ApiKeyRateLimiter.PeriodCounter>)
+                ReflectionTestUtils.getField(states.get(KEY_ID), "daily");
+        ApiKeyRateLimiter.PeriodCounter old = new ApiKeyRateLimiter.PeriodCounter(periodKey);
+        old.loaded(0);
+        old.tryIncrement(10);
+        daily.set(old);
+        rateLimiter.tryAcquire(apiKey(null, 10, null));
+    }
+
+    private ApiKey apiKey(Integer rateLimit, Integer dailyLimit, Integer monthlyLimit) {
+        ApiKey apiKey = new ApiKey();
+        apiKey.setId(KEY_ID);
+        apiKey.setRateLimit(rateLimit);
+        apiKey.setDailyLimit(dailyLimit);
+        apiKey.setMonthlyLimit(monthlyLimit);
+        return apiKey;
+    }
+
+    private static String today() {
+        return LocalDate.now(ZoneOffset.UTC).toString();
+    }
+}
@@ -0,0 +1,103 @@
+package org.elmo.robella.service.apikey;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.config.ApiKeyConfig;
+import org.elmo.robella.mapper.ApiKeyMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ApiKeyTouchAggregatorTest {
+
+    private ApiKeyMapper apiKeyMapper;
+    private SqlSession sqlSession;
+    private SqlSessionFactory sqlSessionFactory;
+    private ApiKeyTouchAggregator aggregator;
+    /** 模拟 api_key.last_used_at */
+    private final Map<Long, OffsetDateTime> lastUsedAt = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        apiKeyMapper = mock(ApiKeyMapper.class);
+        when(apiKeyMapper.updateLastUsedAt(anyLong(), any())).thenAnswer(invocation -> {
+            lastUsedAt.put(invocation.getArgument(0), invocation.getArgument(1));
+            return 1;
+        });
+        sqlSession = mock(SqlSession.class);
+        when(sqlSession.getMapper(ApiKeyMapper.class)).thenReturn(apiKeyMapper);
+        sqlSessionFactory = mock(SqlSessionFactory.class);
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH)).thenReturn(sqlSession);
+        aggregator = new ApiKeyTouchAggregator(new ApiKeyConfig(), sqlSessionFactory);
+    }
+
+    @Test
+    void touchesShouldCoalescePerKeyWithLastWriteWinning() throws InterruptedException {
+        aggregator.touch(1L);
+        OffsetDateTime afterFirst = OffsetDateTime.now(ZoneOffset.UTC);
+        Thread.sleep(5);
+        aggregator.touch(1L);
+        aggregator.touch(2L);
+
+        aggregator.flush();
+
+        verify(apiKeyMapper, times(1)).updateLastUsedAt(1L, lastUsedAt.get(1L));
+        verify(apiKeyMapper, times(2)).updateLastUsedAt(anyLong(), any());
+        assertThat(lastUsedAt.get(1L)).isAfter(afterFirst);
+        assertThat(lastUsedAt).containsKey(2L);
+    }
+
+    @Test
+    void flushShouldRunOnConfiguredInterval() throws NoSuchMethodException {
+        Scheduled scheduled = ApiKeyTouchAggregator.class.getMethod("flush").getAnnotation(Scheduled.class);
+
+        assertThat(scheduled.fixedDelayString()).contains("apiKeyConfig.touch.flushInterval");
+
+        aggregator.touch(1L);
+        aggregator.flush();
+        aggregator.flush();
+        // 第二次刷新没有待写入的记录，不再打开批量会话
+        verify(sqlSessionFactory, times(1)).openSession(ExecutorType.BATCH);
+    }
+
+    @Test
+    void shutdownShouldFlushPendingTouches() {
+        aggregator.touch(3L);
+
+        aggregator.shutdown();
+
+        assertThat(lastUsedAt).containsKey(3L);
+    }
+
+    @Test
+    void failedFlushShouldRequeuePendingTouches() {
+        doThrow(new IllegalStateException("database down")).when(sqlSessionFactory).openSession(ExecutorType.BATCH);
+        aggregator.touch(1L);
+
+        aggregator.flush();
+        verify(apiKeyMapper, never()).updateLastUsedAt(anyLong(), any());
+
+        doReturn(sqlSession).when(sqlSessionFactory).openSession(ExecutorType.BATCH);
+        aggregator.flush();
+
+        verify(apiKeyMapper, times(1)).updateLastUsedAt(anyLong(), any());
+        assertThat(lastUsedAt).containsKey(1L);
+    }
+}
@@ -0,0 +1,119 @@
+package org.elmo.robella.service.apikey;
+
+import org.elmo.robella.config.ApiKeyConfig;
+import org.elmo.robella.model.entity.ApiKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerifiedApiKeyCacheTest {
+
+    private ApiKeyConfig config;
+    private VerifiedApiKeyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        config = new ApiKeyConfig();
+        cache = new VerifiedApiKeyCache(config);
+    }
+
+    @Test
+    void verifiedKeyShouldHitUntilTtlExpires() throws InterruptedException {
+        ApiKey apiKey = apiKey(1L);
+        cache.put("rk-secret-1", apiKey);
+
+        assertThat(cache.get("rk-secret-1")).isSameAs(apiKey);
+        assertThat(cache.get("rk-secret-2")).isNull();
+
+        config.getCache().setTtl(Duration.ofMillis(20));
+        cache.put("rk-secret-3", apiKey);
+        Thread.sleep(40);
+        assertThat(cache.get("rk-secret-3")).isNull();
+    }
+
+    @Test
+    void ttlShouldNotOutliveKeyExpiry() {
+        ApiKey expired = apiKey(1L);
+        expired.setExpiresAt(OffsetDateTime.now().minusSeconds(1));
+        ApiKey expiring = apiKey(2L);
+        expiring.setExpiresAt(OffsetDateTime.now().plusSeconds(60));
+
+        cache.put("rk-expired", expired);
+        cache.put("rk-expiring", expiring);
+
+        assertThat(cache.get("rk-expired")).isNull();
+        assertThat(cache.get("rk-expiring")).isSameAs(expiring);
+    }
+
+    @Test
+    void disabledOrDeletedKeyShouldBeInvalidated() {
+        ApiKey apiKey = apiKey(1L);
+        ApiKey other = apiKey(2L);
+        cache.put("rk-secret-1", apiKey);
+        cache.put("rk-secret-1b", apiKey);
+        cache.put("rk-secret-2", other);
+
+        cache.invalidate(1L);
+
+        assertThat(cache.get("rk-secret-1")).isNull();
+        assertThat(cache.get("rk-secret-1b")).isNull();
+        assertThat(cache.get("rk-secret-2")).isSameAs(other);
+
+        // 缓存对象被停用后即使未显式失效也不再命中
+        other.setActive(false);
+        assertThat(cache.get("rk-secret-2")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void cacheShouldBeKeyedByProcessLocalHmacFingerprint() {
+        cache.put("rk-secret-1", apiKey(1L));
+        VerifiedApiKeyCache another = new VerifiedApiKeyCache(config);
+        another.put("rk-secret-1", apiKey(1L));
+
+        String fingerprint = fingerprints(cache).keySet().iterator().next();
+        String otherFingerprint = fingerprints(another).keySet().iterator().next();
+
+        assertThat(fingerprint).matches("[0-9a-f]{64}").doesNotContain("rk-secret-1");
+        // 每个进程随机生成 HMAC 密钥，同一明文在不同实例中的指纹不同
+        assertThat(otherFingerprint).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void fullCacheShouldEvictEarliestExpiringBatch() {
+        config.getCache().setMaxSize(20);
+        for (int i = 0; i < 20; i++) {
+            config.getCache().setTtl(Duration.ofMinutes(5).plusSeconds(i));
+            cache.put("rk-secret-" + i, apiKey((long) i));
+        }
+
+        cache.put("rk-secret-new", apiKey(100L));
+
+        // 一次淘汰容量的十分之一，之后的写入不再触发扫描
+        assertThat(cache.size()).isEqualTo(19);
+        assertThat(cache.get("rk-secret-0")).isNull();
+        assertThat(cache.get("rk-secret-1")).isNull();
+        assertThat(cache.get("rk-secret-2")).isNotNull();
+        assertThat(cache.get("rk-secret-new")).isNotNull();
+        cache.put("rk-secret-new2", apiKey(101L));
+        assertThat(cache.size()).isEqualTo(20);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> fingerprints(VerifiedApiKeyCache cache) {
+        return (Map<String, ?>) ReflectionTestUtils.getField(cache, "entries");
+    }
+
+    private static ApiKey apiKey(Long id) {
+        ApiKey apiKey = new ApiKey();
+        apiKey.setId(id);
+        apiKey.setActive(true);
+        return apiKey;
+    }
+}
@@ -0,0 +1,72 @@
+package org.elmo.robella.service.credit;
+
+import org.elmo.robella.exception.InsufficientCreditsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CreditHoldServiceTest {
+
+    private static final Long USER_ID = 1L;
+
+    private CreditLedger creditLedger;
+    private CreditHoldService holdService;
+
+    @BeforeEach
+    void setUp() {
+        creditLedger = mock(CreditLedger.class);
+        when(creditLedger.getBalanceMicros(USER_ID)).thenReturn(CreditLedger.toMicros(new BigDecimal("10")));
+        holdService = new CreditHoldService(creditLedger);
+    }
+
+    @Test
+    void placeShouldReserveAvailableBalance() {
+        holdService.place(USER_ID, new BigDecimal("4"));
+        holdService.place(USER_ID, new BigDecimal("5"));
+
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("1");
+        verify(creditLedger, never()).defer(any(), any());
+    }
+
+    @Test
+    void placeShouldRejectWhenHoldsExceedBalance() {
+        holdService.place(USER_ID, new BigDecimal("8"));
+
+        assertThatThrownBy(() -> holdService.place(USER_ID, new BigDecimal("3")))
+                .isInstanceOf(InsufficientCreditsException.class);
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("2");
+    }
+
+    @Test
+    void settleShouldDebitActualCostOnceAndReleaseHold() {
+        CreditHold hold = holdService.place(USER_ID, new BigDecimal("3"));
+
+        hold.settle(new BigDecimal("1.25"));
+        hold.settle(new BigDecimal("1.25"));
+        hold.release();
+
+        verify(creditLedger, times(1)).defer(USER_ID, new BigDecimal("-1.25"));
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void releaseShouldNotDebit() {
+        CreditHold hold = holdService.place(USER_ID, new BigDecimal("3"));
+
+        hold.release();
+        hold.release();
+
+        verify(creditLedger, never()).defer(any(), any());
+        assertThat(holdService.getAvailableBalance(USER_ID)).isEqualByComparingTo("10");
+    }
+}
@@ -0,0 +1,159 @@
+package org.elmo.robella.service.credit;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.config.CreditConfig;
+import org.elmo.robella.exception.ResourceNotFoundException;
+import org.elmo.robella.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CreditLedgerTest {
+
+    private UserMapper userMapper;
+    private CreditConfig creditConfig;
+    private CreditLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        userMapper = mock(UserMapper.class);
+        SqlSession sqlSession = mock(SqlSession.class);
+        when(sqlSession.getMapper(UserMapper.class)).thenReturn(userMapper);
+        SqlSessionFactory sqlSessionFactory = mock(SqlSessionFactory.class);
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH)).thenReturn(sqlSession);
+        creditConfig = new CreditConfig();
+        ledger = new CreditLedger(userMapper, creditConfig, sqlSessionFactory);
+    }
+
+    @Test
+    void directModeShouldApplyDeltaAtomically() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.DIRECT);
+        when(userMapper.addCredits(1L, new BigDecimal("-1.5"))).thenReturn(new BigDecimal("8.5"));
+
+        BigDecimal balance = ledger.apply(1L, new BigDecimal("-1.5"));
+
+        assertThat(balance).isEqualByComparingTo("8.5");
+        verify(userMapper, never()).findCredits(anyLong());
+    }
+
+    @Test
+    void directModeShouldRejectUnknownUser() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.DIRECT);
+        when(userMapper.addCredits(any(), any())).thenReturn(null);
+
+        assertThatThrownBy(() -> ledger.apply(42L, BigDecimal.ONE))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void coalescingModeShouldAccumulateWithoutWrites() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.COALESCING);
+        when(userMapper.findCredits(1L)).thenReturn(new BigDecimal("10"));
+
+        ledger.apply(1L, new BigDecimal("-0.000123"));
+        ledger.apply(1L, new BigDecimal("-2"));
+        BigDecimal balance = ledger.apply(1L, new BigDecimal("0.5"));
+
+        assertThat(balance).isEqualByComparingTo("8.499877");
+        assertThat(ledger.getBalance(1L)).isEqualByComparingTo("8.499877");
+        verify(userMapper, times(1)).findCredits(1L);
+        verify(userMapper, never()).addCredits(any(), any());
+        verify(userMapper, never()).applyCreditDelta(any(), any());
+    }
+
+    @Test
+    void coalescingFlushShouldWriteOneDeltaPerUser() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.COALESCING);
+        when(userMapper.findCredits(1L)).thenReturn(new BigDecimal("10"));
+        ledger.apply(1L, new BigDecimal("-1"));
+        ledger.apply(1L, new BigDecimal("-0.5"));
+
+        ledger.flush();
+
+        verify(userMapper, times(1)).applyCreditDelta(1L, new BigDecimal("-1.500000"));
+        assertThat(ledger.getBalance(1L)).isEqualByComparingTo("8.5");
+    }
+
+    @Test
+    void autoModeShouldCoalesceOnlyForSqlite() {
+        ReflectionTestUtils.setField(ledger, "driverClassName", "org.sqlite.JDBC");
+        when(userMapper.findCredits(1L)).thenReturn(BigDecimal.ONE);
+
+        ledger.apply(1L, BigDecimal.ONE);
+
+        verify(userMapper, never()).addCredits(any(), any());
+    }
+
+    @Test
+    void setBalanceShouldDiscardPendingDeltas() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.COALESCING);
+        when(userMapper.findCredits(1L)).thenReturn(new BigDecimal("10"));
+        when(userMapper.updateCredits(1L, new BigDecimal("100"))).thenReturn(1);
+        ledger.apply(1L, new BigDecimal("-3"));
+
+        ledger.setBalance(1L, new BigDecimal("100"));
+
+        assertThat(ledger.getBalance(1L)).isEqualByComparingTo("100");
+        assertThat(ledger.projectBalance(1L, new BigDecimal("100"))).isEqualByComparingTo("100");
+    }
+
+    @Test
+    void setBalanceInTransactionShouldUpdateCacheAfterCommit() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.COALESCING);
+        when(userMapper.findCredits(1L)).thenReturn(new BigDecimal("10"));
+        when(userMapper.updateCredits(eq(1L), any())).thenReturn(1);
+        ledger.apply(1L, new BigDecimal("-3"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ledger.setBalance(1L, new BigDecimal("100"));
+            // 提交之前其它请求仍看到原余额，回滚时不需要撤销
+            assertThat(ledger.getBalance(1L)).isEqualByComparingTo("7");
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(ledger.getBalance(1L)).isEqualByComparingTo("100");
+
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            ledger.setBalance(1L, new BigDecimal("50"));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertThat(ledger.getBalance(1L)).isEqualByComparingTo("100");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void journaledDeltasShouldOnlyMoveToPersistedOnReplay() {
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.COALESCING);
+        when(userMapper.findCredits(1L)).thenReturn(new BigDecimal("10"));
+
+        ledger.deferJournaled(1L, new BigDecimal("-2"));
+        ledger.flush();
+
+        assertThat(ledger.getBalance(1L)).isEqualByComparingTo("8");
+        verify(userMapper, never()).applyCreditDelta(any(), any());
+
+        ledger.onJournalApplied(1L, CreditLedger.toMicros(new BigDecimal("-2")));
+
+        assertThat(ledger.getBalance(1L)).isEqualByComparingTo("8");
+    }
+}
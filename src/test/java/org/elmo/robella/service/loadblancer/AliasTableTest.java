@@ -0,0 +1,62 @@
+package org.elmo.robella.service.loadblancer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AliasTableTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void sampleShouldFollowWeights() {
+        AliasTable table = AliasTable.build(1L, new double[]{1, 2, 7});
+
+        int[] counts = sample(table);
+
+        assertThat(counts[0] / (double) SAMPLES).isCloseTo(0.1, within(0.01));
+        assertThat(counts[1] / (double) SAMPLES).isCloseTo(0.2, within(0.01));
+        assertThat(counts[2] / (double) SAMPLES).isCloseTo(0.7, within(0.01));
+    }
+
+    @Test
+    void sampleShouldNeverPickZeroOrInvalidWeights() {
+        AliasTable table = AliasTable.build(1L, new double[]{0, 3, -1, Double.NaN, 1});
+
+        int[] counts = sample(table);
+
+        assertThat(counts[0]).isZero();
+        assertThat(counts[2]).isZero();
+        assertThat(counts[3]).isZero();
+        assertThat(counts[1] + counts[4]).isEqualTo(SAMPLES);
+    }
+
+    @Test
+    void sampleShouldFallbackToUniformWhenAllWeightsAreZero() {
+        AliasTable table = AliasTable.build(1L, new double[]{0, 0, 0, 0});
+
+        int[] counts = sample(table);
+
+        for (int count : counts) {
+            assertThat(count / (double) SAMPLES).isCloseTo(0.25, within(0.01));
+        }
+    }
+
+    @Test
+    void buildShouldKeepVersionAndSize() {
+        AliasTable table = AliasTable.build(42L, new double[]{5});
+
+        assertThat(table.version()).isEqualTo(42L);
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.sample()).isZero();
+    }
+
+    private int[] sample(AliasTable table) {
+        int[] counts = new int[table.size()];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[table.sample()]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,87 @@
+package org.elmo.robella.service.loadblancer;
+
+import org.elmo.robella.config.LoadBalancerConfig;
+import org.elmo.robella.model.entity.VendorModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeastLatencyLoadBalancerTest {
+
+    private UpstreamLatencyTracker tracker;
+    private LeastLatencyLoadBalancer loadBalancer;
+
+    @BeforeEach
+    void setUp() {
+        LoadBalancerConfig config = new LoadBalancerConfig();
+        tracker = new UpstreamLatencyTracker(config);
+        loadBalancer = new LeastLatencyLoadBalancer(tracker, config);
+    }
+
+    @Test
+    void shouldPreferLowerLatency() {
+        complete(1L, 200, true);
+        complete(2L, 800, true);
+
+        assertThat(loadBalancer.select(List.of(vendorModel(1L), vendorModel(2L))).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void coldModelShouldUseCandidateMeanAsPrior() {
+        complete(1L, 200, true);
+        complete(2L, 600, true);
+
+        List<VendorModel> candidates = List.of(vendorModel(1L), vendorModel(2L), vendorModel(3L));
+        // 冷启动候选按平均值 400ms 参与比较：胜过 600ms 的候选，输给 200ms 的候选
+        assertThat(tracker.meanTtftMs(candidates)).isEqualTo(400.0);
+        Set<Long> selected = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            selected.add(loadBalancer.select(candidates).getId());
+        }
+        assertThat(selected).containsOnly(1L, 3L);
+    }
+
+    @Test
+    void inFlightRequestsShouldCountForColdModel() {
+        complete(1L, 1500, true);
+        // 冷启动候选没有完成的样本，但在途请求仍然推高得分
+        tracker.onStart(2L);
+        tracker.onStart(2L);
+
+        assertThat(tracker.score(2L, 1000)).isEqualTo(3000.0);
+        assertThat(loadBalancer.select(List.of(vendorModel(1L), vendorModel(2L))).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void fastFailingModelShouldNotAttractTraffic() {
+        complete(1L, 900, true);
+        complete(2L, 5, false);
+
+        assertThat(tracker.score(2L, 0)).isGreaterThan(tracker.score(1L, 0));
+        assertThat(loadBalancer.select(List.of(vendorModel(1L), vendorModel(2L))).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void allColdCandidatesShouldUseConfiguredPrior() {
+        assertThat(tracker.meanTtftMs(List.of(vendorModel(1L), vendorModel(2L)))).isEqualTo(-1.0);
+        tracker.onStart(1L);
+
+        assertThat(loadBalancer.select(List.of(vendorModel(1L), vendorModel(2L))).getId()).isEqualTo(2L);
+    }
+
+    private void complete(Long vendorModelId, long durationMs, boolean success) {
+        tracker.onStart(vendorModelId);
+        tracker.onComplete(vendorModelId, null, durationMs, success);
+    }
+
+    private VendorModel vendorModel(Long id) {
+        VendorModel vendorModel = new VendorModel();
+        vendorModel.setId(id);
+        return vendorModel;
+    }
+}
@@ -0,0 +1,33 @@
+package org.elmo.robella.service.requestlog;
+
+import org.elmo.robella.model.entity.RequestLog;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostgresCopyRequestLogSinkTest {
+
+    @Test
+    void shouldEncodeNullsAsEmptyAndQuoteText() {
+        RequestLog log = RequestLog.builder()
+                .requestId("req-1")
+                .userId(7L)
+                .modelKey("say \"hi\", ok")
+                .tokenSource("")
+                .totalCost(new BigDecimal("1E-6"))
+                .isStream(false)
+                .isSuccess(true)
+                .createdAt(OffsetDateTime.of(2025, 1, 2, 3, 4, 0, 0, ZoneOffset.UTC))
+                .build();
+
+        String csv = PostgresCopyRequestLogSink.toCsv(List.of(log));
+
+        assertThat(csv).isEqualTo("\"req-1\",7,,\"say \"\"hi\"\", ok\",,,,,,,,\"\",,,0.000001,,,,,false,true,"
+                + "2025-01-02T03:04:00Z\n");
+    }
+}
@@ -0,0 +1,114 @@
+package org.elmo.robella.service.requestlog;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.elmo.robella.config.CreditConfig;
+import org.elmo.robella.config.RequestLogConfig;
+import org.elmo.robella.mapper.RequestLogMapper;
+import org.elmo.robella.mapper.UserMapper;
+import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.service.credit.CreditLedger;
+import org.elmo.robella.service.statistics.RequestStatsRollupService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RequestJournalReplayerTest {
+
+    private static final Long USER_ID = 1L;
+
+    @TempDir
+    Path directory;
+
+    private RequestJournal journal;
+    private RequestLogMapper requestLogMapper;
+    private UserMapper userMapper;
+    private CreditLedger creditLedger;
+    private RequestJournalReplayer replayer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RequestLogConfig config = new RequestLogConfig();
+        config.getJournal().setEnabled(true);
+        config.getJournal().setDirectory(directory.toString());
+        journal = new RequestJournal(config);
+        journal.open();
+
+        requestLogMapper = mock(RequestLogMapper.class);
+        userMapper = mock(UserMapper.class);
+        when(userMapper.findCredits(USER_ID)).thenReturn(new BigDecimal("10"));
+        SqlSession sqlSession = mock(SqlSession.class);
+        when(sqlSession.getMapper(UserMapper.class)).thenReturn(userMapper);
+        SqlSessionFactory sqlSessionFactory = mock(SqlSessionFactory.class);
+        when(sqlSessionFactory.openSession(ExecutorType.BATCH)).thenReturn(sqlSession);
+        CreditConfig creditConfig = new CreditConfig();
+        creditConfig.getLedger().setMode(CreditConfig.LedgerMode.COALESCING);
+        creditLedger = new CreditLedger(userMapper, creditConfig, sqlSessionFactory);
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        replayer = new RequestJournalReplayer(journal, config, requestLogMapper, userMapper, creditLedger,
+                mock(RequestStatsRollupService.class), transactionTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replayer.shutdown();
+        journal.close();
+    }
+
+    @Test
+    void skippedRecordShouldBeDeadLetteredAndStillCharged() throws Exception {
+        // 失败的记录排在前面，整批事务在写入其它记录之前失败
+        journal(log("broken"), new BigDecimal("-2"));
+        journal(log("ok"), new BigDecimal("-1"));
+        when(requestLogMapper.insertIgnore(argThat(log -> log != null && "ok".equals(log.getRequestId())))).thenReturn(1);
+        when(requestLogMapper.insertIgnore(argThat(log -> log != null && "broken".equals(log.getRequestId()))))
+                .thenThrow(new IllegalStateException("no partition of relation \"request_log\" found for row"));
+
+        replayer.start();
+
+        assertThat(creditLedger.getBalance(USER_ID)).isEqualByComparingTo("7");
+        verify(userMapper, times(1)).applyCreditDelta(USER_ID, new BigDecimal("-1.000000"));
+
+        // 被放弃记录的扣费由账本的合并写入落库，余额不因此回升
+        creditLedger.flush();
+        verify(userMapper, times(1)).applyCreditDelta(USER_ID, new BigDecimal("-2.000000"));
+        assertThat(creditLedger.getBalance(USER_ID)).isEqualByComparingTo("7");
+
+        byte[] deadLetter = Files.readAllBytes(directory.resolve(RequestJournal.DEAD_LETTER));
+        JournalRecordCodec.JournalEntry entry = JournalRecordCodec.decode(
+                Arrays.copyOfRange(deadLetter, RequestJournal.HEADER_SIZE, deadLetter.length));
+        assertThat(entry.requestLog().getRequestId()).isEqualTo("broken");
+        assertThat(entry.creditDeltaMicros()).isEqualTo(-2_000_000L);
+    }
+
+    private void journal(RequestLog requestLog, BigDecimal delta) {
+        assertThat(journal.append(requestLog, CreditLedger.toMicros(delta))).isTrue();
+        creditLedger.deferJournaled(USER_ID, delta);
+    }
+
+    private RequestLog log(String requestId) {
+        return RequestLog.builder().requestId(requestId).userId(USER_ID).modelKey("gpt")
+                .isStream(false).isSuccess(true).createdAt(OffsetDateTime.now()).build();
+    }
+}
@@ -0,0 +1,96 @@
+package org.elmo.robella.service.requestlog;
+
+import org.elmo.robella.config.RequestLogConfig;
+import org.elmo.robella.model.entity.RequestLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private RequestLogConfig config;
+    private RequestJournal journal;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new RequestLogConfig();
+        config.getJournal().setEnabled(true);
+        config.getJournal().setDirectory(directory.toString());
+        config.getJournal().setSegmentSize(DataSize.ofKilobytes(1));
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void shouldRoundTripRecords() throws Exception {
+        RequestLog log = RequestLog.builder()
+                .requestId("req-1").userId(7L).modelKey("gpt").promptTokens(10).totalCost(new BigDecimal("0.001234"))
+                .isStream(true).isSuccess(true)
+                .createdAt(OffsetDateTime.of(2025, 1, 2, 3, 4, 5, 6000, ZoneOffset.ofHours(8)))
+                .build();
+
+        assertThat(journal.append(log, -1234)).isTrue();
+        RequestJournal.Batch batch = journal.read(journal.readCheckpoint(), 10);
+
+        assertThat(batch.entries()).hasSize(1);
+        JournalRecordCodec.JournalEntry entry = batch.entries().get(0);
+        assertThat(entry.requestLog()).isEqualTo(log);
+        assertThat(entry.creditDeltaMicros()).isEqualTo(-1234);
+        assertThat(journal.read(batch.next(), 10).entries()).isEmpty();
+    }
+
+    @Test
+    void shouldRotateSegmentsAndReadAcrossThem() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            assertThat(journal.append(log("req-" + i), 0)).isTrue();
+        }
+
+        RequestJournal.Batch batch = journal.read(journal.readCheckpoint(), 100);
+
+        assertThat(batch.entries()).extracting(entry -> entry.requestLog().getRequestId())
+                .containsExactly(IntStream.range(0, 50).mapToObj(i -> "req-" + i).toArray(String[]::new));
+        assertThat(batch.next().segment()).isGreaterThan(1);
+    }
+
+    @Test
+    void shouldResumeFromCheckpointAfterRestart() throws Exception {
+        journal.append(log("a"), 0);
+        journal.append(log("b"), 0);
+        RequestJournal.Batch first = journal.read(journal.readCheckpoint(), 1);
+        journal.writeCheckpoint(first.next());
+        journal.close();
+
+        journal = open();
+        journal.append(log("c"), 0);
+        RequestJournal.Batch rest = journal.read(journal.readCheckpoint(), 10);
+
+        assertThat(rest.entries()).extracting(entry -> entry.requestLog().getRequestId()).containsExactly("b", "c");
+    }
+
+    private RequestJournal open() throws Exception {
+        RequestJournal opened = new RequestJournal(config);
+        opened.open();
+        return opened;
+    }
+
+    private static RequestLog log(String requestId) {
+        return RequestLog.builder().requestId(requestId).isSuccess(true).build();
+    }
+}
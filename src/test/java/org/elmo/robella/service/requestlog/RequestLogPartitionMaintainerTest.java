@@ -0,0 +1,91 @@
+package org.elmo.robella.service.requestlog;
+
+import org.elmo.robella.config.RequestLogConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestLogPartitionMaintainerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void maintainShouldPremakePartitionsAndArchiveExpiredMonths() throws IOException {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        FakePartitions partitions = new FakePartitions();
+        partitions.months.put(current.minusMonths(3), "id,request_id\n\"1\",\"a\"\n");
+        partitions.months.put(current.minusMonths(2), "id,request_id\n\"2\",\"b\"\n");
+        partitions.months.put(current.minusMonths(1), "id,request_id\n\"3\",\"c\"\n");
+        RequestLogConfig config = new RequestLogConfig();
+        config.getPartition().setRetentionMonths(1);
+        config.getPartition().setArchiveDirectory(directory.toString());
+
+        new RequestLogPartitionMaintainer(config, partitions).maintain();
+
+        assertThat(partitions.ensured).containsExactly(current, current.plusMonths(3));
+        assertThat(partitions.months).containsOnlyKeys(current.minusMonths(1));
+        Path archived = directory.resolve("request_log_" + current.minusMonths(3).toString().replace("-", "") + ".csv.gz");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archived))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("id,request_id\n\"1\",\"a\"\n");
+        }
+    }
+
+    @Test
+    void failedExportShouldKeepMonthInDatabase() {
+        YearMonth month = YearMonth.of(2025, 1);
+        FakePartitions partitions = new FakePartitions();
+        partitions.months.put(month, null);
+        RequestLogPartitionMaintainer maintainer = new RequestLogPartitionMaintainer(new RequestLogConfig(), partitions);
+
+        assertThatThrownBy(() -> maintainer.archive(month, directory)).isInstanceOf(IOException.class);
+        assertThat(partitions.months).containsKey(month);
+        assertThat(directory.resolve("request_log_202501.csv.gz")).doesNotExist();
+    }
+
+    private static final class FakePartitions implements RequestLogPartitions {
+
+        private final TreeMap<YearMonth, String> months = new TreeMap<>();
+        private final List<YearMonth> ensured = new ArrayList<>();
+
+        @Override
+        public void ensurePartitions(YearMonth from, YearMonth to) {
+            ensured.add(from);
+            ensured.add(to);
+        }
+
+        @Override
+        public List<YearMonth> monthsBefore(YearMonth month) {
+            return new ArrayList<>(months.headMap(month).keySet());
+        }
+
+        @Override
+        public void export(YearMonth month, OutputStream out) throws IOException {
+            String csv = months.get(month);
+            if (csv == null) {
+                throw new IOException("export failed");
+            }
+            out.write(csv.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void drop(YearMonth month) {
+            months.remove(month);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.elmo.robella.service.requestlog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elmo.robella.config.RequestLogConfig;
+import org.elmo.robella.model.entity.RequestLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLogWriterTest {
+
+    private RequestLogConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private List<List<RequestLog>> batches;
+    private RequestLogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        config = new RequestLogConfig();
+        config.getWriter().setFlushInterval(Duration.ofHours(1));
+        meterRegistry = new SimpleMeterRegistry();
+        batches = new CopyOnWriteArrayList<>();
+        writer = new RequestLogWriter(config, logs -> {
+            if (logs.stream().anyMatch(log -> "bad".equals(log.getRequestId()))) {
+                throw new IllegalStateException("duplicate key");
+            }
+            batches.add(List.copyOf(logs));
+        }, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void shouldWriteSynchronouslyWhenDisabled() {
+        config.getWriter().setEnabled(false);
+        writer.start();
+
+        writer.submit(log("a"));
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).get(0).getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    void shouldDrainQueuedLogsInBatchesOnShutdown() {
+        config.getWriter().setFlushSize(2);
+        config.getWriter().setQueueCapacity(100);
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.submit(log("r" + i));
+        }
+
+        writer.shutdown();
+
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(5);
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        assertThat(writer.pending()).isZero();
+    }
+
+    @Test
+    void shouldDropWhenQueueFull() {
+        config.getWriter().setQueueCapacity(1);
+        config.getWriter().setFlushSize(100);
+        config.getWriter().setOverflowPolicy(RequestLogConfig.OverflowPolicy.DROP);
+        writer.start();
+
+        writer.submit(log("a"));
+        writer.submit(log("b"));
+
+        assertThat(meterRegistry.counter("robella.request.log.dropped").count()).isEqualTo(1);
+        assertThat(writer.pending()).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void shouldFallBackToRowWritesWhenBatchFails() {
+        config.getWriter().setFlushSize(100);
+        writer.start();
+        writer.submit(log("a"));
+        writer.submit(log("bad"));
+        writer.submit(log("c"));
+
+        writer.shutdown();
+
+        assertThat(meterRegistry.counter("robella.request.log.written").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("robella.request.log.failed").count()).isEqualTo(1);
+    }
+
+    private static RequestLog log(String requestId) {
+        return RequestLog.builder().requestId(requestId).isSuccess(true).build();
+    }
+}
@@ -0,0 +1,126 @@
+package org.elmo.robella.service.routing;
+
+import org.elmo.robella.config.RoutingConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderCircuitBreakerRegistryTest {
+
+    private static final Long PROVIDER_ID = 1L;
+    private static final long FAST = Duration.ofMillis(100).toNanos();
+
+    private RoutingConfig routingConfig;
+    private ProviderCircuitBreakerRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        routingConfig = new RoutingConfig();
+        RoutingConfig.CircuitBreakerConfig config = routingConfig.getCircuitBreaker();
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setHalfOpenMaxCalls(2);
+        registry = new ProviderCircuitBreakerRegistry(routingConfig);
+    }
+
+    @Test
+    void shouldStayClosedBelowMinimumCalls() {
+        registry.onFailure(PROVIDER_ID, FAST);
+        registry.onFailure(PROVIDER_ID, FAST);
+        registry.onFailure(PROVIDER_ID, FAST);
+
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.CLOSED);
+        assertThat(registry.isCallPermitted(PROVIDER_ID)).isTrue();
+    }
+
+    @Test
+    void shouldOpenWhenFailureRateExceedsThreshold() {
+        registry.onSuccess(PROVIDER_ID, FAST);
+        registry.onSuccess(PROVIDER_ID, FAST);
+        registry.onFailure(PROVIDER_ID, FAST);
+        registry.onFailure(PROVIDER_ID, FAST);
+
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.OPEN);
+        assertThat(registry.isCallPermitted(PROVIDER_ID)).isFalse();
+        assertThat(registry.isCallPermitted(2L)).isTrue();
+    }
+
+    @Test
+    void shouldOpenOnSlowCalls() {
+        routingConfig.getCircuitBreaker().setSlowCallDuration(Duration.ofSeconds(1));
+        long slow = Duration.ofSeconds(2).toNanos();
+        for (int i = 0; i < 4; i++) {
+            registry.onSuccess(PROVIDER_ID, slow);
+        }
+
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.OPEN);
+    }
+
+    @Test
+    void shouldCloseAfterSuccessfulHalfOpenProbes() {
+        routingConfig.getCircuitBreaker().setOpenDuration(Duration.ZERO);
+        tripOpen();
+
+        assertThat(registry.isCallPermitted(PROVIDER_ID)).isTrue();
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.HALF_OPEN);
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isFalse();
+
+        registry.onSuccess(PROVIDER_ID, FAST);
+        registry.onSuccess(PROVIDER_ID, FAST);
+
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.CLOSED);
+    }
+
+    @Test
+    void shouldReopenWhenHalfOpenProbeFails() {
+        routingConfig.getCircuitBreaker().setOpenDuration(Duration.ZERO);
+        tripOpen();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+
+        routingConfig.getCircuitBreaker().setOpenDuration(Duration.ofMinutes(1));
+        registry.onFailure(PROVIDER_ID, FAST);
+
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.OPEN);
+        assertThat(registry.isCallPermitted(PROVIDER_ID)).isFalse();
+    }
+
+    @Test
+    void releasedPermitsShouldBeReusableInHalfOpen() {
+        routingConfig.getCircuitBreaker().setOpenDuration(Duration.ZERO);
+        tripOpen();
+
+        // 多轮占用后未发出调用的名额被归还，不会把熔断器卡在半开状态
+        for (int i = 0; i < 5; i++) {
+            assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+            registry.releasePermission(PROVIDER_ID);
+        }
+        assertThat(registry.isCallPermitted(PROVIDER_ID)).isTrue();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isFalse();
+
+        registry.onSuccess(PROVIDER_ID, FAST);
+        registry.onSuccess(PROVIDER_ID, FAST);
+        assertThat(registry.getState(PROVIDER_ID)).isEqualTo(ProviderCircuitBreakerRegistry.State.CLOSED);
+    }
+
+    @Test
+    void shouldPermitEverythingWhenDisabled() {
+        routingConfig.getCircuitBreaker().setEnabled(false);
+        tripOpen();
+
+        assertThat(registry.isCallPermitted(PROVIDER_ID)).isTrue();
+        assertThat(registry.tryAcquirePermission(PROVIDER_ID)).isTrue();
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            registry.onFailure(PROVIDER_ID, FAST);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.elmo.robella.service.routing;
+
+import org.elmo.robella.client.ProviderHttpClientRegistry;
+import org.elmo.robella.mapper.ModelMapper;
+import org.elmo.robella.mapper.PricingTierMapper;
+import org.elmo.robella.mapper.ProviderMapper;
+import org.elmo.robella.mapper.VendorModelMapper;
+import org.elmo.robella.model.entity.Model;
+import org.elmo.robella.model.entity.PricingTier;
+import org.elmo.robella.model.entity.Provider;
+import org.elmo.robella.model.entity.VendorModel;
+import org.elmo.robella.service.pricing.PricingStrategy;
+import org.elmo.robella.service.pricing.PricingStrategyFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RoutingTableTest {
+
+    private VendorModelMapper vendorModelMapper;
+    private PricingStrategyFactory pricingStrategyFactory;
+    private ProviderHttpClientRegistry providerHttpClients;
+    private RoutingTable routingTable;
+
+    private final List<VendorModel> vendorModels = new ArrayList<>();
+    private final List<PricingTier> pricingTiers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        vendorModelMapper = mock(VendorModelMapper.class);
+        when(vendorModelMapper.findByEnabledTrue()).thenAnswer(invocation -> new ArrayList<>(vendorModels));
+        ProviderMapper providerMapper = mock(ProviderMapper.class);
+        when(providerMapper.selectList(any())).thenReturn(List.of(provider(10L), provider(20L)));
+        PricingTierMapper pricingTierMapper = mock(PricingTierMapper.class);
+        when(pricingTierMapper.selectList(any())).thenAnswer(invocation -> new ArrayList<>(pricingTiers));
+        ModelMapper modelMapper = mock(ModelMapper.class);
+        when(modelMapper.selectList(any())).thenReturn(List.of(model("gpt", true), model("claude", false)));
+        pricingStrategyFactory = mock(PricingStrategyFactory.class);
+        when(pricingStrategyFactory.createPricingStrategy(any(), any())).thenReturn(mock(PricingStrategy.class));
+        providerHttpClients = mock(ProviderHttpClientRegistry.class);
+
+        routingTable = new RoutingTable(vendorModelMapper, providerMapper, pricingTierMapper, modelMapper,
+                pricingStrategyFactory, providerHttpClients);
+    }
+
+    @Test
+    void snapshotShouldGroupEnabledVendorModelsByModelKey() {
+        vendorModels.add(vendorModel(2L, "gpt", 20L));
+        vendorModels.add(vendorModel(1L, "gpt", 10L));
+        vendorModels.add(vendorModel(3L, "claude", 10L));
+        // 供应商不存在或没有模型调用标识的供应商模型不参与路由
+        vendorModels.add(vendorModel(4L, "gpt", 99L));
+        vendorModels.add(vendorModel(5L, null, 10L));
+
+        RoutingSnapshot snapshot = routingTable.snapshot();
+
+        assertThat(snapshot.getRoutes()).containsOnlyKeys("gpt", "claude");
+        RouteCandidates gpt = snapshot.getRoute("gpt");
+        assertThat(gpt.getVendorModels()).extracting(VendorModel::getId).containsExactly(1L, 2L);
+        assertThat(gpt.getProvider(gpt.get(1)).getId()).isEqualTo(20L);
+        assertThat(snapshot.getPricingStrategy(1L)).isNotNull();
+        assertThat(snapshot.getPricingStrategy(4L)).isNull();
+        assertThat(snapshot.getModel("claude")).isNotNull();
+        assertThat(snapshot.getRoute(null)).isNull();
+        assertThat(snapshot.getRoute("unknown")).isNull();
+        assertThat(snapshot.getPublishedModels()).extracting(Model::getModelKey).containsExactly("gpt");
+        verify(providerHttpClients).retainAll(argThat(providers -> providers.size() == 2));
+    }
+
+    @Test
+    void rebuildShouldIncreaseVersionAndKeepUnchangedCandidateVersions() {
+        vendorModels.add(vendorModel(1L, "gpt", 10L));
+        vendorModels.add(vendorModel(3L, "claude", 10L));
+        RoutingSnapshot first = routingTable.snapshot();
+
+        vendorModels.add(vendorModel(2L, "gpt", 20L));
+        routingTable.refresh();
+        RoutingSnapshot second = routingTable.snapshot();
+
+        assertThat(second.getVersion()).isGreaterThan(first.getVersion());
+        assertThat(second.getRoute("gpt").getVersion()).isEqualTo(second.getVersion());
+        assertThat(second.getRoute("claude").getVersion()).isEqualTo(first.getRoute("claude").getVersion());
+
+        // 定价阶梯变化同样使候选版本失效
+        PricingTier tier = new PricingTier();
+        tier.setVendorModelId(3L);
+        tier.setTierNumber(1);
+        pricingTiers.add(tier);
+        routingTable.refresh();
+
+        RoutingSnapshot third = routingTable.snapshot();
+        assertThat(third.getRoute("claude").getVersion()).isEqualTo(third.getVersion());
+        assertThat(third.getRoute("claude").getPricingTiers(vendorModels.get(1))).containsExactly(tier);
+    }
+
+    @Test
+    void routingDataChangeShouldRebuildAfterCommit() throws NoSuchMethodException {
+        TransactionalEventListener listener = RoutingTable.class
+                .getMethod("onRoutingDataChanged", RoutingDataChangedEvent.class)
+                .getAnnotation(TransactionalEventListener.class);
+        // 事务提交后重建，没有事务时直接重建
+        assertThat(listener.phase()).isEqualTo(TransactionPhase.AFTER_COMMIT);
+        assertThat(listener.fallbackExecution()).isTrue();
+
+        vendorModels.add(vendorModel(1L, "gpt", 10L));
+        RoutingSnapshot before = routingTable.snapshot();
+        vendorModels.add(vendorModel(3L, "claude", 10L));
+
+        routingTable.onRoutingDataChanged(new RoutingDataChangedEvent("vendor_model"));
+
+        RoutingSnapshot after = routingTable.snapshot();
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.getRoutes()).containsOnlyKeys("gpt", "claude");
+    }
+
+    @Test
+    void snapshotShouldLoadLazilyAndBackOffAfterFailedLoad() {
+        vendorModels.add(vendorModel(1L, "gpt", 10L));
+        doThrow(new IllegalStateException("database down")).when(vendorModelMapper).findByEnabledTrue();
+        verifyNoInteractions(vendorModelMapper);
+
+        // 加载失败时返回空快照，重试间隔内的访问不再访问数据库
+        RoutingSnapshot failed = routingTable.snapshot();
+        assertThat(failed.getVersion()).isZero();
+        assertThat(failed.getRoutes()).isEmpty();
+        assertThat(routingTable.snapshot().getRoutes()).isEmpty();
+        verify(vendorModelMapper, times(1)).findByEnabledTrue();
+
+        doAnswer(invocation -> new ArrayList<>(vendorModels)).when(vendorModelMapper).findByEnabledTrue();
+        ReflectionTestUtils.setField(routingTable, "lastFailedLoadNanos", System.nanoTime() - TimeUnit.MINUTES.toNanos(1));
+        RoutingSnapshot loaded = routingTable.snapshot();
+        assertThat(loaded.getRoute("gpt")).isNotNull();
+
+        // 加载成功后读取不再访问数据库
+        routingTable.snapshot();
+        verify(vendorModelMapper, times(2)).findByEnabledTrue();
+    }
+
+    @Test
+    void concurrentSnapshotShouldNotWaitForInFlightLoad() {
+        ReentrantLock rebuildLock = (ReentrantLock) ReflectionTestUtils.getField(routingTable, "rebuildLock");
+        rebuildLock.lock();
+        try {
+            // 其它请求正在加载时直接返回空快照
+            RoutingSnapshot snapshot = CompletableFuture.supplyAsync(routingTable::snapshot).join();
+            assertThat(snapshot.getRoutes()).isEmpty();
+            verifyNoInteractions(vendorModelMapper);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private static Provider provider(Long id) {
+        Provider provider = new Provider();
+        provider.setId(id);
+        return provider;
+    }
+
+    private static Model model(String modelKey, boolean published) {
+        Model model = new Model();
+        model.setModelKey(modelKey);
+        model.setPublished(published);
+        return model;
+    }
+
+    private static VendorModel vendorModel(Long id, String modelKey, Long providerId) {
+        VendorModel vendorModel = new VendorModel();
+        vendorModel.setId(id);
+        vendorModel.setModelKey(modelKey);
+        vendorModel.setProviderId(providerId);
+        vendorModel.setEnabled(true);
+        return vendorModel;
+    }
+}
@@ -0,0 +1,71 @@
+package org.elmo.robella.service.statistics;
+
+import org.elmo.robella.config.StatisticsConfig;
+import org.elmo.robella.model.entity.RequestLog;
+import org.elmo.robella.model.response.LiveStatsResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveMetricsRingTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private static LiveMetricsRing ring(Duration window) {
+        StatisticsConfig config = new StatisticsConfig();
+        config.getLive().setWindow(window);
+        return new LiveMetricsRing(config);
+    }
+
+    private static RequestLog log(String modelKey, boolean success, Integer durationMs, int tokens) {
+        return RequestLog.builder()
+                .modelKey(modelKey)
+                .providerId(1L)
+                .isSuccess(success)
+                .durationMs(durationMs)
+                .firstTokenLatencyMs(durationMs != null ? durationMs / 2 : null)
+                .totalTokens(tokens)
+                .totalCost(success ? new BigDecimal("0.25") : null)
+                .build();
+    }
+
+    @Test
+    void snapshotShouldAggregateWindowPerSeriesAndStep() {
+        LiveMetricsRing ring = ring(Duration.ofMinutes(60));
+        ring.record(log("gpt-4o", true, 200, 100), NOW - 5_000);
+        ring.record(log("gpt-4o", true, 400, 300), NOW - 1_000);
+        ring.record(log("gpt-4o", false, null, 0), NOW);
+        ring.record(log("claude", true, 1000, 50), NOW - 30_000);
+        // 窗口之外
+        ring.record(log("claude", true, 1000, 50), NOW - 600_000);
+
+        LiveStatsResponse response = ring.snapshot(Duration.ofMinutes(1), Duration.ofSeconds(10), NOW);
+
+        LiveStatsResponse.LiveStats total = response.getTotal();
+        assertThat(total.getRequestCount()).isEqualTo(4);
+        assertThat(total.getErrorCount()).isEqualTo(1);
+        assertThat(total.getAverageDurationMs()).isEqualTo(1600 / 3.0);
+        assertThat(total.getMaxDurationMs()).isEqualTo(1000);
+        assertThat(total.getTotalTokens()).isEqualTo(450);
+        assertThat(total.getTotalCost()).isEqualByComparingTo("0.75");
+        assertThat(response.getSeries()).extracting(LiveStatsResponse.LiveSeriesStats::getModelKey)
+                .containsExactly("gpt-4o", "claude");
+        assertThat(response.getPoints()).hasSize(6);
+        assertThat(response.getPoints().get(4).getRequestCount()).isEqualTo(2);
+        assertThat(response.getPoints().get(5).getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void bucketShouldBeReusedAfterRingWrapsAround() {
+        LiveMetricsRing ring = ring(Duration.ofSeconds(10));
+        ring.record(log("gpt-4o", true, 100, 10), NOW - 10_000);
+        ring.record(log("gpt-4o", true, 100, 10), NOW);
+
+        LiveStatsResponse response = ring.snapshot(Duration.ofSeconds(10), Duration.ofSeconds(1), NOW);
+
+        assertThat(response.getTotal().getRequestCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,58 @@
+package org.elmo.robella.service.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantileSketchTest {
+
+    @Test
+    void quantilesShouldStayWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int value = 1; value <= 10000; value++) {
+            sketch.add(value);
+        }
+
+        assertThat(sketch.quantile(0.5)).isCloseTo(5000, within(5000 * QuantileSketch.RELATIVE_ACCURACY));
+        assertThat(sketch.quantile(0.9)).isCloseTo(9000, within(9000 * QuantileSketch.RELATIVE_ACCURACY));
+    }
+
+    @Test
+    void mergedSketchShouldMatchSketchOfAllValues() {
+        Random random = new Random(42);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = 0; i < 5000; i++) {
+            double value = Math.exp(random.nextGaussian() * 2 + 6);
+            all.add(value);
+            (i % 2 == 0 ? left : right).add(value);
+        }
+
+        left.merge(right);
+
+        assertThat(left.count()).isEqualTo(all.count());
+        assertThat(left.quantile(0.95)).isEqualTo(all.quantile(0.95));
+    }
+
+    @Test
+    void encodingShouldRoundTrip() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0);
+        sketch.add(0.25);
+        sketch.add(120);
+        sketch.add(120);
+        sketch.add(3_600_000);
+
+        QuantileSketch decoded = QuantileSketch.fromBytes(sketch.toBytes());
+
+        assertThat(decoded.count()).isEqualTo(5);
+        assertThat(decoded.quantile(0.1)).isZero();
+        assertThat(decoded.quantile(0.6)).isEqualTo(sketch.quantile(0.6));
+        assertThat(decoded.quantile(1.0)).isEqualTo(sketch.quantile(1.0));
+        assertThat(QuantileSketch.fromBytes(null).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package org.elmo.robella.service.statistics;
+
+import org.elmo.robella.model.dto.RequestStatsRollup;
+import org.elmo.robella.model.dto.RollupSegment;
+import org.elmo.robella.model.entity.RequestLog;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestStatsRollupServiceTest {
+
+    private static OffsetDateTime at(int day, int hour, int minute) {
+        return OffsetDateTime.of(2025, 1, day, hour, minute, 0, 0, ZoneOffset.UTC);
+    }
+
+    private static RequestLog log(OffsetDateTime createdAt, int durationMs, boolean success) {
+        return RequestLog.builder()
+                .userId(1L)
+                .modelKey("gpt-4o")
+                .providerId(2L)
+                .totalTokens(10)
+                .totalCost(new BigDecimal("0.5"))
+                .durationMs(durationMs)
+                .isSuccess(success)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    @Test
+    void mergeShouldCombineLogsPerBucketAtEachGranularity() {
+        List<RequestLog> logs = List.of(
+                log(at(2, 3, 4).plusSeconds(10), 80, true),
+                log(at(2, 3, 4).plusSeconds(50), 3000, false),
+                log(at(2, 3, 30), 400, true));
+
+        Map<RequestStatsRollupService.RollupKey, RequestStatsRollupService.RollupDelta> deltas =
+                RequestStatsRollupService.merge(logs);
+
+        // 两个分钟桶 + 一个小时桶 + 一个天桶
+        assertThat(deltas).hasSize(4);
+        RequestStatsRollupService.RollupDelta hourDelta = deltas.values().stream()
+                .filter(delta -> delta.row().getGranularity().equals("hour"))
+                .findFirst().orElseThrow();
+        RequestStatsRollup hour = hourDelta.row();
+        assertThat(hour.getBucketStart()).isEqualTo(at(2, 3, 0));
+        assertThat(hour.getRequestCount()).isEqualTo(3);
+        assertThat(hour.getFailureCount()).isEqualTo(1);
+        assertThat(hour.getTotalCost()).isEqualByComparingTo("1.5");
+        assertThat(hour.getDurationMinMs()).isEqualTo(80);
+        assertThat(hour.getDurationMaxMs()).isEqualTo(3000);
+        assertThat(hour.getLatencyBuckets()).containsExactly(1, 0, 1, 0, 0, 1, 0, 0, 0, 0);
+        assertThat(hourDelta.latency().count()).isEqualTo(3);
+        assertThat(hourDelta.tps().isEmpty()).isTrue();
+    }
+
+    @Test
+    void coverShouldUseCoarsestBucketsInsideWindow() {
+        List<RollupSegment> segments = RollupGranularity.cover(at(1, 22, 30), at(4, 1, 15));
+
+        assertThat(segments).containsExactly(
+                new RollupSegment("day", at(2, 0, 0), at(4, 0, 0)),
+                new RollupSegment("hour", at(1, 23, 0), at(2, 0, 0)),
+                new RollupSegment("hour", at(4, 0, 0), at(4, 1, 0)),
+                new RollupSegment("minute", at(1, 22, 30), at(1, 23, 0)),
+                new RollupSegment("minute", at(4, 1, 0), at(4, 1, 16)));
+    }
+
+    @Test
+    void coverShouldUseMinutesForShortWindow() {
+        assertThat(RollupGranularity.cover(at(1, 10, 5), at(1, 10, 20)))
+                .containsExactly(new RollupSegment("minute", at(1, 10, 5), at(1, 10, 21)));
+    }
+}
@@ -0,0 +1,85 @@
+package org.elmo.robella.service.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elmo.robella.config.StreamingConfig;
+import org.elmo.robella.exception.ClientDisconnectedException;
+import org.elmo.robella.util.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SseResponseWriterTest {
+
+    private final List<String> flushed = new ArrayList<>();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+        @Override
+        public void flush() {
+            flushed.add(toString(StandardCharsets.UTF_8));
+        }
+    };
+    private final JsonUtils jsonUtils = new JsonUtils(new ObjectMapper());
+
+    @Test
+    void deltasShouldBeCoalescedUntilStructuralEvent() throws IOException {
+        StreamingConfig.FlushConfig flush = new StreamingConfig.FlushConfig();
+        flush.setInterval(Duration.ofMinutes(1));
+        SseResponseWriter writer = new SseResponseWriter(out, jsonUtils, flush);
+
+        writer.write("content_block_delta", Map.of("text", "a\nb"));
+        writer.write("content_block_delta", Map.of("text", "c"));
+        assertThat(flushed).hasSize(1);
+
+        writer.writeAndFlush("message_stop", Map.of("type", "message_stop"));
+        writer.writeRawAndFlush("[DONE]".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(flushed).hasSize(3);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                event: content_block_delta
+                data: {"text":"a\\nb"}
+
+                event: content_block_delta
+                data: {"text":"c"}
+
+                event: message_stop
+                data: {"type":"message_stop"}
+
+                data: [DONE]
+
+                """);
+    }
+
+    @Test
+    void zeroIntervalShouldFlushEveryEvent() throws IOException {
+        SseResponseWriter writer = new SseResponseWriter(out, jsonUtils, new StreamingConfig.FlushConfig());
+
+        writer.write(null, Map.of("id", 1));
+        writer.write(null, Map.of("id", 2));
+
+        assertThat(flushed).containsExactly("data: {\"id\":1}\n\n", "data: {\"id\":1}\n\ndata: {\"id\":2}\n\n");
+    }
+
+    @Test
+    void writeFailureShouldBeReportedAsClientDisconnect() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        SseResponseWriter writer = new SseResponseWriter(broken, jsonUtils, new StreamingConfig.FlushConfig());
+
+        assertThatThrownBy(() -> writer.write(null, Map.of("id", 1)))
+                .isInstanceOf(ClientDisconnectedException.class)
+                .hasMessage("Broken pipe");
+    }
+}
@@ -0,0 +1,44 @@
+package org.elmo.robella.service.stream.openai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elmo.robella.client.logging.ClientRequestLogger;
+import org.elmo.robella.model.openai.stream.ChatCompletionChunk;
+import org.elmo.robella.util.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OpenAIStreamScannerTest {
+
+    private final ClientRequestLogger clientRequestLogger = mock(ClientRequestLogger.class);
+    private final OpenAIStreamScanner scanner = new OpenAIStreamScanner(clientRequestLogger, new JsonUtils(new ObjectMapper()));
+
+    @Test
+    void eventsSplitAcrossReadsShouldBeScannedOnce() {
+        byte[] bytes = ("""
+                data: {"id":"1","choices":[{"index":0,"delta":{"content":"Hel"}}],"usage":null}
+
+                data: {"id":"1","choices":[{"index":0,"delta":{"content":"lo"}}]}\r
+                \r
+                data: {"id":"1","choices":[],"usage":{"prompt_tokens":3,"completion_tokens":2,"total_tokens":5}}
+
+                data: [DONE]
+
+                """).getBytes(StandardCharsets.UTF_8);
+
+        // 每次只喂 7 个字节，模拟事件被任意切分
+        for (int i = 0; i < bytes.length; i += 7) {
+            scanner.feed(bytes, i, Math.min(7, bytes.length - i));
+        }
+
+        verify(clientRequestLogger, times(1)).markFirstToken();
+        verify(clientRequestLogger).logStreamText("Hel");
+        verify(clientRequestLogger).logStreamText("lo");
+        verify(clientRequestLogger, times(1)).logStreamChunk(any(ChatCompletionChunk.class));
+    }
+}
@@ -0,0 +1,46 @@
+package org.elmo.robella.util;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SseFrameDecoderTest {
+
+    private final Buffer source = new Buffer();
+    private final SseFrameDecoder decoder = new SseFrameDecoder(source);
+
+    @Test
+    void shouldDecodeFieldsCommentsAndMixedLineEndings() throws IOException {
+        source.writeUtf8(": keep-alive\r\nevent: ping\rdata:{\"a\":1}\r\r"
+                + "data: line1\ndata\ndata: line3\n\n"
+                + "event: ignored\n\n");
+
+        SseFrame frame = decoder.next();
+        assertThat(frame.event()).isEqualTo("ping");
+        assertThat(frame.dataAsString()).isEqualTo("{\"a\":1}");
+
+        frame = decoder.next();
+        assertThat(frame.event()).isNull();
+        assertThat(frame.dataAsString()).isEqualTo("line1\n\nline3");
+
+        // 没有 data 的事件不分派
+        assertThat(decoder.next()).isNull();
+    }
+
+    @Test
+    void incompleteEventShouldWaitForMoreBytes() throws IOException {
+        source.writeUtf8("data: [DO");
+        assertThat(decoder.next()).isNull();
+
+        source.writeUtf8("NE]\r");
+        assertThat(decoder.next()).isNull();
+
+        // CR 之后的 LF 属于同一个换行，不能当成空行
+        source.writeUtf8("\n\r\n");
+        SseFrame frame = decoder.next();
+        assertThat(frame.dataEquals("[DONE]".getBytes())).isTrue();
+    }
+}
@@ -38,6 +38,7 @@ const formSchema = z.object({
   capabilities: z.array(z.string()).optional(),
   contextWindow: z.number().int().min(1).optional(),
   published: z.boolean(),
+  hedgingEnabled: z.boolean(),
 })
 
 type FormData = z.infer<typeof formSchema>
@@ -63,6 +64,7 @@ export function ModelFormDialog({ open, onOpenChange, model, onSuccess }: ModelF
       capabilities: [],
       contextWindow: undefined,
       published: false,
+      hedgingEnabled: false,
     },
   })
 
@@ -81,6 +83,7 @@ export function ModelFormDialog({ open, onOpenChange, model, onSuccess }: ModelF
           capabilities: model.capabilities || [],
           contextWindow: model.contextWindow,
           published: model.published,
+          hedgingEnabled: model.hedgingEnabled ?? false,
         })
       } else {
         form.reset({
@@ -91,6 +94,7 @@ export function ModelFormDialog({ open, onOpenChange, model, onSuccess }: ModelF
           capabilities: [],
           contextWindow: undefined,
           published: false,
+          hedgingEnabled: false,
         })
       }
     }
@@ -327,6 +331,29 @@ export function ModelFormDialog({ open, onOpenChange, model, onSuccess }: ModelF
                   </FormItem>
                 )}
               />
+
+              <FormField
+                control={form.control}
+                name="hedgingEnabled"
+                render={({ field }) => (
+                  <FormItem className="flex flex-row items-center justify-between rounded-lg border p-4">
+                    <div className="space-y-0.5">
+                      <FormLabel className="text-base">
+                        对冲请求
+                      </FormLabel>
+                      <FormDescription>
+                        非流式请求超过首选供应商的 P95 延迟仍未返回时，向另一供应商并发请求，取先返回者
+                      </FormDescription>
+                    </div>
+                    <FormControl>
+                      <Switch
+                        checked={field.value}
+                        onCheckedChange={field.onChange}
+                      />
+                    </FormControl>
+                  </FormItem>
+                )}
+              />
             </div>
 
             <DialogFooter>
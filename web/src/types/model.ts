@@ -16,6 +16,7 @@ export interface Model {
   capabilities?: ModelCapability[]
   contextWindow?: number
   published: boolean
+  hedgingEnabled?: boolean
   createdAt?: string
   updatedAt?: string
 }
@@ -28,6 +29,7 @@ export interface CreateModelRequest {
   capabilities?: ModelCapability[]
   contextWindow?: number
   published?: boolean
+  hedgingEnabled?: boolean
 }
 
 export interface UpdateModelRequest {
@@ -38,6 +40,7 @@ export interface UpdateModelRequest {
   capabilities?: ModelCapability[]
   contextWindow?: number
   published?: boolean
+  hedgingEnabled?: boolean
 }
 
 export interface ModelFilters {